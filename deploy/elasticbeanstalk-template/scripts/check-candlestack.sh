@@ -0,0 +1,54 @@
+#! /bin/bash
+
+port=$1
+type=$2
+instanceid=$3
+metric=$4
+warning=$5
+critical=$6
+evaluation=$7
+threshold=$8
+
+# Candlestack evaluates the check against the metrics it already holds in memory,
+# this script only forwards the request and relays the result back to Nagios
+
+# This function percent encodes a single URL path segment or query value
+function urlencode {
+	local LC_ALL=C
+	local input="$1"
+	local length=${#input}
+	local encoded=""
+	local i c
+	for (( i = 0; i < length; i++ )); do
+		c="${input:i:1}"
+		case "$c" in
+			[a-zA-Z0-9.~_-]) encoded+="$c" ;;
+			*) encoded+=$(printf '%%%02X' "'$c") ;;
+		esac
+	done
+	echo "$encoded"
+}
+
+url="http://127.0.0.1:$port/check/$(urlencode "$type")/$(urlencode "$instanceid")/$(urlencode "$metric")"
+url+="?warning=$(urlencode "$warning")&critical=$(urlencode "$critical")&evaluation=$(urlencode "$evaluation")&threshold=$(urlencode "$threshold")"
+
+response=$(curl -s -m 10 "$url")
+if [ "$?" != 0 ] || [ -z "$response" ];then
+	echo "UNKNOWN: Failed to reach Candlestack on port $port"
+	exit 3
+fi
+
+# The first line is the exit code and the rest is the plugin output
+exit_code=$(head -n 1 <<< "$response")
+output=$(tail -n +2 <<< "$response")
+
+case "$exit_code" in
+	0|1|2|3) ;;
+	*)
+		echo "UNKNOWN: Unexpected response from Candlestack"
+		exit 3
+		;;
+esac
+
+echo "$output"
+exit "$exit_code"
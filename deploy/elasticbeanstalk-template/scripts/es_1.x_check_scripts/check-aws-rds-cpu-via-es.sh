@@ -195,11 +195,11 @@ cputotal=0
 while read line; do
 	# This line creates 3 variables metric_name, metric_value and timestamp
 	eval $(awk -F, '{printf "metric_name=%s metric_value=%s timestamp=%s\n",$1,$2,$3}' <<< "$line")
-	cputotal=$((cputotal+metric_value))
+	cputotal=$(bc <<< "$cputotal+$metric_value")
 	counter=$((counter+1))
 done < <( clean_input "$input")
 
-cpuavg=$((cputotal/counter))
+cpuavg=$(bc <<< "scale=2; $cputotal/$counter")
 if  check_exp "$cpuavg <= $warning" ;then
 	log_msg "OK: CPU Utilization = average of $cpuavg% over $timeinterval"
 elif check_exp "$cpuavg > $warning && $cpuavg <= $critical" ;then
@@ -131,11 +131,11 @@ while read line; do
 		metric_value=$(printf "%f" "$metric_value")
 	fi
 	# Add to the running tallies
-	healthtotal=$((healthtotal+metric_value))
+	healthtotal=$(bc <<< "$healthtotal+$metric_value")
 	counter=$((counter+1))
 done < <( clean_input "$input")
 
-healthavg=$((healthtotal/counter))
+healthavg=$(bc <<< "scale=2; $healthtotal/$counter")
 if  check_exp "$healthavg <= $warning" ;then
 	log_msg "OK: Environment Health = average of $healthavg over $timeinterval"
 elif check_exp "$healthavg > $warning && $healthavg <= $critical" ;then
@@ -7,27 +7,41 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.codearcs.candlestack.aws.AWSClientRegistry;
+import io.codearcs.candlestack.aws.DiscoveryEventListener;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
+import io.codearcs.candlestack.aws.cloudwatch.CloudWatchAccessor;
 import io.codearcs.candlestack.aws.ec2.EC2HostMonitorLookup;
+import io.codearcs.candlestack.aws.ec2.EC2Inventory;
 import io.codearcs.candlestack.aws.ec2.EC2MetricsFetcher;
 import io.codearcs.candlestack.aws.elasticbeanstalk.EBHostMonitorLookup;
+import io.codearcs.candlestack.aws.elasticbeanstalk.EBInventory;
 import io.codearcs.candlestack.aws.elasticbeanstalk.EBMetricsFetcher;
 import io.codearcs.candlestack.aws.lambda.LambdaHostMonitorLookup;
+import io.codearcs.candlestack.aws.lambda.LambdaInventory;
 import io.codearcs.candlestack.aws.lambda.LambdaMetricsFetcher;
 import io.codearcs.candlestack.aws.rds.RDSHostMonitorLookup;
+import io.codearcs.candlestack.aws.rds.RDSInventory;
 import io.codearcs.candlestack.aws.rds.RDSMetricsFetcher;
 import io.codearcs.candlestack.aws.s3.S3HostMonitorLookup;
 import io.codearcs.candlestack.aws.s3.S3MetricsFetcher;
 import io.codearcs.candlestack.aws.sqs.SQSHostMonitorLookup;
+import io.codearcs.candlestack.aws.sqs.SQSInventory;
 import io.codearcs.candlestack.aws.sqs.SQSMetricsFetcher;
 import io.codearcs.candlestack.nagios.GlobalNagiosProperties;
 import io.codearcs.candlestack.nagios.HostMonitorLookup;
 import io.codearcs.candlestack.nagios.NagiosUpdater;
+import io.codearcs.candlestack.nagios.check.CheckEngine;
+import io.codearcs.candlestack.nagios.check.CheckServer;
+import io.codearcs.candlestack.nagios.check.ElasticsearchQueryCoordinator;
+import io.codearcs.candlestack.nagios.check.MetricCheckSource;
+import io.codearcs.candlestack.nagios.check.StoreCheckSource;
 
 
 /**
@@ -42,10 +56,18 @@ public class Candlestack {
 
 	private List<MetricsFetcher> metricsFetchers;
 
+	private MetricsFetcherScheduler metricsFetcherScheduler;
+
 	private List<HostMonitorLookup> hostMonitorLookups;
 
 	private NagiosUpdater nagiosUpdater;
 
+	private DiscoveryEventListener discoveryEventListener;
+
+	private CheckEngine checkEngine;
+
+	private CheckServer checkServer;
+
 
 	public Candlestack( Properties props ) throws CandlestackException {
 
@@ -91,19 +113,52 @@ public class Candlestack {
 			hostMonitorLookups.add( new LambdaHostMonitorLookup( contactGroups ) );
 		}
 
-		nagiosUpdater = new NagiosUpdater( hostMonitorLookups );
+		if ( GlobalNagiosProperties.isCheckEngineEnabled() || GlobalNagiosProperties.isCheckServerEnabled() ) {
+
+			// The engine and the server share the source so they also share anything it caches
+			MetricCheckSource checkSource;
+			if ( GlobalNagiosProperties.getCheckSource().equals( GlobalNagiosProperties.CHECK_SOURCE_ELASTICSEARCH ) ) {
+				LOGGER.info( "Candlestack will evaluate checks against Elasticsearch" );
+				checkSource = new ElasticsearchQueryCoordinator();
+			} else {
+				LOGGER.info( "Candlestack will evaluate checks against the in-memory metric store" );
+				checkSource = new StoreCheckSource();
+			}
+
+			if ( GlobalNagiosProperties.isCheckEngineEnabled() ) {
+				LOGGER.info( "Candlestack will evaluate checks in process and submit them to Nagios as passive results" );
+				checkEngine = new CheckEngine( checkSource );
+			}
+
+			if ( GlobalNagiosProperties.isCheckServerEnabled() ) {
+				LOGGER.info( "Candlestack will answer Nagios checks over HTTP" );
+				checkServer = new CheckServer( checkSource );
+			}
+
+		}
+
+		metricsFetcherScheduler = new MetricsFetcherScheduler( metricsFetchers );
+
+		nagiosUpdater = new NagiosUpdater( hostMonitorLookups, checkEngine );
+
+		if ( GlobalAWSProperties.isDiscoveryEnabled() ) {
+			LOGGER.info( "Candlestack will discover infrastructure changes from state change events" );
+			discoveryEventListener = new DiscoveryEventListener( nagiosUpdater::requestCheck );
+		}
 
 	}
 
 
 	public void shutdown() {
 
-		for ( MetricsFetcher metricsFetcher : metricsFetchers ) {
-			metricsFetcher.shutdown();
+		metricsFetcherScheduler.shutdown();
+
+		if ( discoveryEventListener != null ) {
+			discoveryEventListener.shutdown();
 			try {
-				metricsFetcher.join();
+				discoveryEventListener.join( TimeUnit.SECONDS.toMillis( 30 ) );
 			} catch ( InterruptedException e ) {
-				LOGGER.error( "Candlestack got interrupted while waiting for MetricsFetcher [" + metricsFetcher.getName() + "] to join" );
+				LOGGER.error( "Candlestack got interrupted while waiting for DiscoveryEventListener to join" );
 			}
 		}
 
@@ -114,6 +169,27 @@ public class Candlestack {
 			LOGGER.error( "Candlestack got interrupted while waiting for NagiosUpdater to join" );
 		}
 
+		if ( checkEngine != null ) {
+			checkEngine.shutdown();
+			try {
+				checkEngine.join( TimeUnit.SECONDS.toMillis( 30 ) );
+			} catch ( InterruptedException e ) {
+				LOGGER.error( "Candlestack got interrupted while waiting for CheckEngine to join" );
+			}
+		}
+
+		if ( checkServer != null ) {
+			checkServer.shutdown();
+		}
+
+		EBInventory.destroy();
+		EC2Inventory.destroy();
+		RDSInventory.destroy();
+		SQSInventory.destroy();
+		LambdaInventory.destroy();
+		MetricsFetcherWorkerPool.destroy();
+		CloudWatchAccessor.destroy();
+		AWSClientRegistry.destroy();
 		MetricsReaderWriter.destroy();
 
 	}
@@ -121,14 +197,27 @@ public class Candlestack {
 
 	public void start() {
 
-		// Start the various metrics fetchers
-		for ( MetricsFetcher metricsFetcher : metricsFetchers ) {
-			metricsFetcher.start();
+		// Start answering checks before Nagios gets pointed at us
+		if ( checkServer != null ) {
+			checkServer.start();
 		}
 
+		// Start the various metrics fetchers
+		metricsFetcherScheduler.start();
+
 		// Start the Nagios updater process
 		nagiosUpdater.start();
 
+		// Start applying state change events, these wake the Nagios updater when something changes
+		if ( discoveryEventListener != null ) {
+			discoveryEventListener.start();
+		}
+
+		// Start evaluating checks, these only begin once the Nagios updater has handed over the services
+		if ( checkEngine != null ) {
+			checkEngine.start();
+		}
+
 	}
 
 	private static class ShutdownThread extends Thread {
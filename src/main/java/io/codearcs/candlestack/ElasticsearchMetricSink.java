@@ -0,0 +1,466 @@
+package io.codearcs.candlestack;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.TimeZone;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+
+/**
+ * Sends metrics straight to the Elasticsearch bulk API, indexing them into the same
+ * daily <code>candlestack-YYYY.MM.DD</code> indices the check scripts query so the
+ * Filebeat and Logstash hop can be skipped.
+ *
+ * Metrics are batched until either the batch reaches the configured size or the sink
+ * is flushed. Requests rejected with a 429, either as a whole or per item, are retried
+ * with exponential backoff. Batches that still can't be delivered are appended to a
+ * spill file which is replayed once Elasticsearch is reachable again.
+ */
+public class ElasticsearchMetricSink implements MetricSink {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger( ElasticsearchMetricSink.class );
+
+	private static final String URL_PROPERTY_KEY_SUFFIX = ".url",
+			AUTH_TOKEN_PROPERTY_KEY_SUFFIX = ".authtoken",
+			DOC_TYPE_PROPERTY_KEY_SUFFIX = ".doc.type",
+			GZIP_PROPERTY_KEY_SUFFIX = ".gzip",
+			MAX_BATCH_BYTES_PROPERTY_KEY_SUFFIX = ".max.batch.bytes",
+			MAX_RETRIES_PROPERTY_KEY_SUFFIX = ".max.retries",
+			MAX_RETRY_MS_PROPERTY_KEY_SUFFIX = ".max.retry.ms",
+			INITIAL_BACKOFF_MS_PROPERTY_KEY_SUFFIX = ".initial.backoff.ms",
+			MAX_BACKOFF_MS_PROPERTY_KEY_SUFFIX = ".max.backoff.ms",
+			TIMEOUT_MS_PROPERTY_KEY_SUFFIX = ".timeout.ms",
+			SPILL_FILE_PROPERTY_KEY_SUFFIX = ".spill.file",
+			MAX_SPILL_BYTES_PROPERTY_KEY_SUFFIX = ".max.spill.bytes",
+			LOGS_HOST_PROPERTY_KEY = "aws.logs.host",
+			LOGS_AUTH_TOKEN_PROPERTY_KEY = "aws.logs.authtoken",
+			DEFAULT_DOC_TYPE = "logs",
+			DEFAULT_SPILL_DIR = "/var/tmp/candlestack/",
+			INDEX_PREFIX = "candlestack-",
+			BULK_PATH = "/_bulk";
+
+	private static final int DEFAULT_MAX_BATCH_BYTES = 5 * 1024 * 1024,
+			DEFAULT_MAX_RETRIES = 5,
+			DEFAULT_TIMEOUT_MS = 30_000,
+			TOO_MANY_REQUESTS = 429;
+
+	private static final long DEFAULT_INITIAL_BACKOFF_MS = 500,
+			DEFAULT_MAX_RETRY_MS = 5_000,
+			DEFAULT_MAX_BACKOFF_MS = 60_000,
+			DEFAULT_MAX_SPILL_BYTES = 512L * 1024 * 1024,
+			MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	// Logstash names the daily indices using the UTC date of the event
+	private static final FastDateFormat INDEX_DATE_FORMAT = FastDateFormat.getInstance( "yyyy.MM.dd", TimeZone.getTimeZone( "UTC" ) );
+
+	private static final FastDateFormat METRIC_DATE_FORMAT = FastDateFormat.getInstance( "yyyy-MM-dd'T'HH:mm:ss.SSSZZ" );
+
+
+	private final String name;
+
+	private final URL bulkUrl;
+
+	private final String authorization, docType;
+
+	private final boolean gzip;
+
+	private final int maxBatchBytes, maxRetries, timeoutMs;
+
+	private final long maxRetryMs, initialBackoffMs, maxBackoffMs, maxSpillBytes;
+
+	private final File spillFile;
+
+	private final MetricEncoder encoder;
+
+	private final StringBuilder batch;
+
+	private int batchCount;
+
+	private long cachedIndexDay;
+
+	private String cachedActionLine;
+
+	private long outageBackoffMs, nextAttemptTime;
+
+
+	public ElasticsearchMetricSink( String name ) throws CandlestackException {
+
+		this.name = name;
+		String propertyKeyPrefix = "metrics.sink." + name;
+
+		String url = GlobalCandlestackProperties.getStringProperty( propertyKeyPrefix + URL_PROPERTY_KEY_SUFFIX, "" ).trim();
+		if ( url.isEmpty() ) {
+			url = "https://" + GlobalCandlestackProperties.getStringProperty( LOGS_HOST_PROPERTY_KEY );
+		}
+		try {
+			bulkUrl = new URL( ( url.endsWith( "/" ) ? url.substring( 0, url.length() - 1 ) : url ) + BULK_PATH );
+		} catch ( IOException e ) {
+			throw new CandlestackPropertiesException( "ElasticsearchMetricSink [" + name + "] was provided an invalid url [" + url + "]", e );
+		}
+
+		String authToken = GlobalCandlestackProperties.getStringProperty( propertyKeyPrefix + AUTH_TOKEN_PROPERTY_KEY_SUFFIX, "" ).trim();
+		if ( authToken.isEmpty() ) {
+			authToken = GlobalCandlestackProperties.getStringProperty( LOGS_AUTH_TOKEN_PROPERTY_KEY, "" ).trim();
+		}
+		authorization = authToken.isEmpty() ? null : "Basic " + authToken;
+
+		docType = GlobalCandlestackProperties.getStringProperty( propertyKeyPrefix + DOC_TYPE_PROPERTY_KEY_SUFFIX, DEFAULT_DOC_TYPE ).trim();
+		gzip = GlobalCandlestackProperties.getBooleanProperty( propertyKeyPrefix + GZIP_PROPERTY_KEY_SUFFIX, true );
+		maxBatchBytes = GlobalCandlestackProperties.getIntProperty( propertyKeyPrefix + MAX_BATCH_BYTES_PROPERTY_KEY_SUFFIX, DEFAULT_MAX_BATCH_BYTES );
+		maxRetries = GlobalCandlestackProperties.getIntProperty( propertyKeyPrefix + MAX_RETRIES_PROPERTY_KEY_SUFFIX, DEFAULT_MAX_RETRIES );
+		maxRetryMs = GlobalCandlestackProperties.getLongProperty( propertyKeyPrefix + MAX_RETRY_MS_PROPERTY_KEY_SUFFIX, DEFAULT_MAX_RETRY_MS );
+		timeoutMs = GlobalCandlestackProperties.getIntProperty( propertyKeyPrefix + TIMEOUT_MS_PROPERTY_KEY_SUFFIX, DEFAULT_TIMEOUT_MS );
+		initialBackoffMs = GlobalCandlestackProperties.getLongProperty( propertyKeyPrefix + INITIAL_BACKOFF_MS_PROPERTY_KEY_SUFFIX, DEFAULT_INITIAL_BACKOFF_MS );
+		maxBackoffMs = GlobalCandlestackProperties.getLongProperty( propertyKeyPrefix + MAX_BACKOFF_MS_PROPERTY_KEY_SUFFIX, DEFAULT_MAX_BACKOFF_MS );
+		maxSpillBytes = GlobalCandlestackProperties.getLongProperty( propertyKeyPrefix + MAX_SPILL_BYTES_PROPERTY_KEY_SUFFIX, DEFAULT_MAX_SPILL_BYTES );
+		if ( maxBatchBytes < 1 || maxRetries < 0 || maxRetryMs < 0 || timeoutMs < 1 || initialBackoffMs < 1 || maxBackoffMs < initialBackoffMs ) {
+			throw new CandlestackPropertiesException( "ElasticsearchMetricSink [" + name + "] was provided invalid batch, retry or timeout settings" );
+		}
+
+		String spillFilePath = GlobalCandlestackProperties.getStringProperty( propertyKeyPrefix + SPILL_FILE_PROPERTY_KEY_SUFFIX, "" ).trim();
+		spillFile = new File( spillFilePath.isEmpty() ? DEFAULT_SPILL_DIR + name + "_spill.ndjson" : spillFilePath );
+		File spillDir = spillFile.getAbsoluteFile().getParentFile();
+		if ( !spillDir.exists() ) {
+			spillDir.mkdirs();
+		}
+
+		encoder = new MetricEncoder( METRIC_DATE_FORMAT );
+		batch = new StringBuilder( Math.min( maxBatchBytes, DEFAULT_MAX_BATCH_BYTES ) + 1024 );
+		cachedIndexDay = Long.MIN_VALUE;
+
+		LOGGER.info( "ElasticsearchMetricSink [" + name + "] will send metrics to [" + bulkUrl + "]" );
+
+	}
+
+
+	@Override
+	public void write( MetricRecord record ) throws CandlestackException {
+
+		batch.append( getActionLine( record.metricDate ) );
+
+		// Drop the \r the metric files use, bulk requests are newline delimited
+		encoder.encode( record );
+		batch.append( encoder.getBuffer(), 0, encoder.getLength() - 2 ).append( '\n' );
+		batchCount++;
+
+		if ( batch.length() >= maxBatchBytes ) {
+			sendBatch();
+		}
+
+	}
+
+
+	@Override
+	public void flush() throws CandlestackException {
+		sendBatch();
+		replaySpillFile();
+	}
+
+
+	@Override
+	public void close() {
+		try {
+			sendBatch();
+		} catch ( CandlestackException e ) {
+			LOGGER.error( "ElasticsearchMetricSink [" + name + "] failed to send final batch", e );
+		}
+	}
+
+
+	private String getActionLine( long metricDate ) {
+		long day = Math.floorDiv( metricDate, MILLIS_PER_DAY );
+		if ( day != cachedIndexDay ) {
+			String index = INDEX_PREFIX + INDEX_DATE_FORMAT.format( day * MILLIS_PER_DAY );
+			cachedActionLine = "{\"index\":{\"_index\":\"" + index + "\"" + ( docType.isEmpty() ? "" : ",\"_type\":\"" + docType + "\"" ) + "}}\n";
+			cachedIndexDay = day;
+		}
+		return cachedActionLine;
+	}
+
+
+	private void sendBatch() throws CandlestackException {
+
+		if ( batchCount == 0 ) {
+			return;
+		}
+
+		String payload = batch.toString();
+		int count = batchCount;
+		batch.setLength( 0 );
+		batchCount = 0;
+
+		// While Elasticsearch is known to be unavailable don't hold up the worker trying it again
+		if ( System.currentTimeMillis() < nextAttemptTime ) {
+			spill( payload, count );
+			return;
+		}
+
+		String undelivered = send( payload );
+		if ( undelivered != null ) {
+			outageBackoffMs = outageBackoffMs == 0 ? initialBackoffMs : Math.min( maxBackoffMs, outageBackoffMs * 2 );
+			nextAttemptTime = System.currentTimeMillis() + outageBackoffMs;
+			spill( undelivered, count );
+		} else {
+			outageBackoffMs = 0;
+			nextAttemptTime = 0;
+		}
+
+	}
+
+
+	/**
+	 * Posts the payload, retrying with exponential backoff while Elasticsearch is pushing back.
+	 * Retries stop once the next one would go past the max retry time, so an outage only holds
+	 * up the sink worker for that long before the payload is spilled.
+	 *
+	 * @return null if everything was delivered, otherwise the part of the payload that wasn't
+	 */
+	private String send( String payload ) {
+
+		long backoffMs = initialBackoffMs, retryDeadline = System.currentTimeMillis() + maxRetryMs;
+		for ( int attempt = 0; ; attempt++ ) {
+
+			String retryPayload;
+			try {
+				retryPayload = post( payload );
+				if ( retryPayload == null ) {
+					return null;
+				}
+			} catch ( IOException e ) {
+				LOGGER.warn( "ElasticsearchMetricSink [" + name + "] failed to send bulk request on attempt [" + ( attempt + 1 ) + "]: " + e.getMessage() );
+				retryPayload = payload;
+			}
+
+			if ( attempt >= maxRetries || System.currentTimeMillis() + backoffMs > retryDeadline ) {
+				return retryPayload;
+			}
+
+			try {
+				Thread.sleep( backoffMs );
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				return retryPayload;
+			}
+			backoffMs = Math.min( maxBackoffMs, backoffMs * 2 );
+			payload = retryPayload;
+
+		}
+
+	}
+
+
+	/**
+	 * @return null if the request succeeded, otherwise the part of the payload that should be retried
+	 * @throws IOException
+	 *           if the request failed in a way that should be retried as a whole
+	 */
+	private String post( String payload ) throws IOException {
+
+		byte[] body = payload.getBytes( StandardCharsets.UTF_8 );
+		if ( gzip ) {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream( body.length / 4 );
+			try ( GZIPOutputStream gzipStream = new GZIPOutputStream( compressed ) ) {
+				gzipStream.write( body );
+			}
+			body = compressed.toByteArray();
+		}
+
+		HttpURLConnection connection = (HttpURLConnection) bulkUrl.openConnection();
+		try {
+
+			connection.setRequestMethod( "POST" );
+			connection.setDoOutput( true );
+			connection.setConnectTimeout( timeoutMs );
+			connection.setReadTimeout( timeoutMs );
+			connection.setFixedLengthStreamingMode( body.length );
+			connection.setRequestProperty( "Content-Type", "application/x-ndjson" );
+			if ( gzip ) {
+				connection.setRequestProperty( "Content-Encoding", "gzip" );
+			}
+			if ( authorization != null ) {
+				connection.setRequestProperty( "Authorization", authorization );
+			}
+
+			try ( OutputStream out = connection.getOutputStream() ) {
+				out.write( body );
+			}
+
+			int statusCode = connection.getResponseCode();
+			String response = readResponse( statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream() );
+
+			if ( statusCode == TOO_MANY_REQUESTS || statusCode >= 500 ) {
+				throw new IOException( "received status code [" + statusCode + "]" );
+			} else if ( statusCode >= 400 ) {
+				// Retrying a request Elasticsearch considers bad won't help, so log it and move on
+				LOGGER.error( "ElasticsearchMetricSink [" + name + "] bulk request was rejected with status code [" + statusCode + "] and response [" + response + "]" );
+				return null;
+			}
+
+			return response.contains( "\"errors\":true" ) ? getRejectedItems( payload, response ) : null;
+
+		} finally {
+			connection.disconnect();
+		}
+
+	}
+
+
+	/**
+	 * Works out which items of the bulk request were rejected due to back pressure so just those
+	 * can be retried, any other item level failures are logged and dropped.
+	 */
+	private String getRejectedItems( String payload, String response ) {
+
+		JsonArray items = new JsonParser().parse( response ).getAsJsonObject().getAsJsonArray( "items" );
+		String[] lines = payload.split( "\n" );
+
+		StringBuilder rejected = new StringBuilder();
+		int failed = 0;
+		for ( int i = 0; i < items.size() && i * 2 + 1 < lines.length; i++ ) {
+
+			JsonObject result = items.get( i ).getAsJsonObject().entrySet().iterator().next().getValue().getAsJsonObject();
+			int status = result.get( "status" ).getAsInt();
+			if ( status == TOO_MANY_REQUESTS ) {
+				rejected.append( lines[i * 2] ).append( '\n' ).append( lines[i * 2 + 1] ).append( '\n' );
+			} else if ( status >= 300 ) {
+				JsonElement error = result.get( "error" );
+				if ( failed++ == 0 ) {
+					LOGGER.error( "ElasticsearchMetricSink [" + name + "] failed to index metric [" + lines[i * 2 + 1] + "] due to [" + error + "]" );
+				}
+			}
+
+		}
+
+		if ( failed > 1 ) {
+			LOGGER.error( "ElasticsearchMetricSink [" + name + "] failed to index a further [" + ( failed - 1 ) + "] metrics in the same request" );
+		}
+
+		return rejected.length() == 0 ? null : rejected.toString();
+
+	}
+
+
+	private static String readResponse( InputStream in ) throws IOException {
+		if ( in == null ) {
+			return "";
+		}
+
+		StringBuilder response = new StringBuilder();
+		try ( BufferedReader reader = new BufferedReader( new InputStreamReader( in, StandardCharsets.UTF_8 ) ) ) {
+			char[] chars = new char[8192];
+			int read;
+			while ( ( read = reader.read( chars ) ) != -1 ) {
+				response.append( chars, 0, read );
+			}
+		}
+		return response.toString();
+	}
+
+
+	private void spill( String payload, int count ) throws CandlestackException {
+
+		if ( spillFile.length() + payload.length() > maxSpillBytes ) {
+			LOGGER.error( "ElasticsearchMetricSink [" + name + "] spill file [" + spillFile.getPath() + "] is full, dropping [" + count + "] metrics" );
+			return;
+		}
+
+		try ( Writer writer = new OutputStreamWriter( new FileOutputStream( spillFile, true ), StandardCharsets.UTF_8 ) ) {
+			writer.write( payload );
+		} catch ( IOException e ) {
+			throw new CandlestackException( "ElasticsearchMetricSink [" + name + "] failed to spill [" + count + "] metrics to [" + spillFile.getPath() + "]", e );
+		}
+
+	}
+
+
+	/**
+	 * Once Elasticsearch is reachable again resend whatever was spilled during the outage, the
+	 * spill file is only removed once all of it has been delivered.
+	 */
+	private void replaySpillFile() throws CandlestackException {
+
+		if ( nextAttemptTime != 0 || !spillFile.exists() ) {
+			return;
+		}
+
+		File replayFile = new File( spillFile.getPath() + ".replay" );
+		if ( !replayFile.exists() && !spillFile.renameTo( replayFile ) ) {
+			LOGGER.error( "ElasticsearchMetricSink [" + name + "] failed to move spill file [" + spillFile.getPath() + "] aside for replay" );
+			return;
+		}
+
+		LOGGER.info( "ElasticsearchMetricSink [" + name + "] replaying [" + replayFile.length() + "] bytes of spilled metrics" );
+		try ( BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( replayFile ), StandardCharsets.UTF_8 ) ) ) {
+
+			int count = 0;
+			StringBuilder chunk = new StringBuilder();
+			String actionLine;
+			while ( ( actionLine = reader.readLine() ) != null ) {
+
+				String documentLine = reader.readLine();
+				if ( documentLine == null ) {
+					break;
+				}
+				chunk.append( actionLine ).append( '\n' ).append( documentLine ).append( '\n' );
+				count++;
+
+				if ( chunk.length() >= maxBatchBytes ) {
+					replayChunk( chunk, count );
+					count = 0;
+				}
+
+			}
+			replayChunk( chunk, count );
+
+		} catch ( IOException e ) {
+			throw new CandlestackException( "ElasticsearchMetricSink [" + name + "] failed to read spill file [" + replayFile.getPath() + "]", e );
+		}
+
+		if ( !replayFile.delete() ) {
+			LOGGER.error( "ElasticsearchMetricSink [" + name + "] failed to remove replayed spill file [" + replayFile.getPath() + "]" );
+		}
+
+	}
+
+
+	private void replayChunk( StringBuilder chunk, int count ) throws CandlestackException {
+		if ( chunk.length() == 0 ) {
+			return;
+		}
+
+		// Once Elasticsearch goes away again anything left simply goes back into the spill file
+		if ( nextAttemptTime != 0 ) {
+			spill( chunk.toString(), count );
+		} else {
+			String undelivered = send( chunk.toString() );
+			if ( undelivered != null ) {
+				outageBackoffMs = initialBackoffMs;
+				nextAttemptTime = System.currentTimeMillis() + outageBackoffMs;
+				spill( undelivered, count );
+			}
+		}
+		chunk.setLength( 0 );
+	}
+
+}
@@ -0,0 +1,114 @@
+package io.codearcs.candlestack;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Date;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Writes metrics as lines of JSON to a daily file that is picked up by Filebeat.
+ * This is the sink Candlestack has always written to and is always enabled.
+ */
+public class FileMetricSink implements MetricSink {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger( FileMetricSink.class );
+
+	static final String FILE_PREFIX = "candlestack_metrics_",
+			FILE_SUFFIX = ".log";
+
+	private static final FastDateFormat FILE_DATE_FORMAT = FastDateFormat.getInstance( "yyyy_MM_dd" );
+
+
+	private File dir;
+
+	private String currentFileName;
+
+	private Writer writer;
+
+	private MetricEncoder encoder;
+
+
+	FileMetricSink( File dir, FastDateFormat metricDateFormat ) throws CandlestackException {
+
+		this.dir = dir;
+
+		encoder = new MetricEncoder( metricDateFormat );
+
+		currentFileName = getFileName();
+		try {
+			writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( new File( dir, currentFileName ), true ), "UTF-8" ) );
+		} catch ( IOException e ) {
+			throw new CandlestackException( "MetricsWriter failed to open file writer for file [" + new File( dir, currentFileName ).getPath() + "]", e );
+		}
+
+	}
+
+
+	@Override
+	public void write( MetricRecord record ) throws CandlestackException {
+
+		encoder.encode( record );
+
+		try {
+
+			String fileName = getFileName();
+			if ( writer != null && !currentFileName.equals( fileName ) ) {
+
+				writer.close();
+				writer = null;
+
+				currentFileName = fileName;
+				writer = new FileWriter( new File( dir, currentFileName ), true );
+
+			} else if ( writer == null ) {
+
+				currentFileName = fileName;
+				writer = new FileWriter( new File( dir, currentFileName ), true );
+
+			}
+
+			writer.write( encoder.getBuffer(), 0, encoder.getLength() );
+
+		} catch ( IOException e ) {
+			throw new CandlestackException( "MetricsWriter encountered an error attempting to close and open a new writer", e );
+		}
+
+	}
+
+
+	@Override
+	public void flush() throws CandlestackException {
+		try {
+			writer.flush();
+		} catch ( IOException e ) {
+			throw new CandlestackException( "MetricsWriter encountered an error attempting to flush the writer", e );
+		}
+	}
+
+
+	@Override
+	public void close() {
+		if ( writer != null ) {
+			try {
+				writer.close();
+			} catch ( IOException e ) {
+				LOGGER.error( "MetricsWriter failed to destroy writer", e );
+			}
+		}
+	}
+
+
+	private String getFileName() {
+		return FILE_PREFIX + FILE_DATE_FORMAT.format( new Date() ) + FILE_SUFFIX;
+	}
+
+}
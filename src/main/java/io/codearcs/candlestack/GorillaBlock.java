@@ -0,0 +1,264 @@
+package io.codearcs.candlestack;
+
+import java.util.Arrays;
+
+
+/**
+ * A block of datapoints for a single series compressed using the scheme described in
+ * Facebook's Gorilla paper. Timestamps are stored as a delta of deltas and values as the
+ * XOR with the previous value, so regularly spaced and slowly changing datapoints (which
+ * is what CloudWatch produces) take only a couple of bits each.
+ *
+ * Blocks are appended to by a single thread, readers must synchronize with the writer.
+ */
+class GorillaBlock {
+
+	private static final int INITIAL_WORDS = 16;
+
+
+	private final long startTime, firstValueBits;
+
+	private long[] bits;
+
+	private int bitLength, count;
+
+	private long minTime, maxTime;
+
+	// Encoder state
+	private long previousTimestamp, previousDelta, previousValueBits;
+
+	private int previousLeading, previousTrailing;
+
+
+	GorillaBlock( long timestamp, double value ) {
+		startTime = timestamp;
+		firstValueBits = Double.doubleToRawLongBits( value );
+		bits = new long[INITIAL_WORDS];
+		count = 1;
+		minTime = maxTime = timestamp;
+		previousTimestamp = timestamp;
+		previousValueBits = firstValueBits;
+		previousLeading = -1;
+	}
+
+
+	long getStartTime() {
+		return startTime;
+	}
+
+
+	long getMinTime() {
+		return minTime;
+	}
+
+
+	long getMaxTime() {
+		return maxTime;
+	}
+
+
+	int getCount() {
+		return count;
+	}
+
+
+	long getSizeInBytes() {
+		return bits.length * 8L;
+	}
+
+
+	void append( long timestamp, double value ) {
+
+		// Timestamps
+		long delta = timestamp - previousTimestamp;
+		long deltaOfDelta = delta - previousDelta;
+		if ( deltaOfDelta == 0 ) {
+			writeBits( 0, 1 );
+		} else if ( deltaOfDelta >= -64 && deltaOfDelta <= 63 ) {
+			writeBits( 0b10, 2 );
+			writeBits( deltaOfDelta, 7 );
+		} else if ( deltaOfDelta >= -256 && deltaOfDelta <= 255 ) {
+			writeBits( 0b110, 3 );
+			writeBits( deltaOfDelta, 9 );
+		} else if ( deltaOfDelta >= -2048 && deltaOfDelta <= 2047 ) {
+			writeBits( 0b1110, 4 );
+			writeBits( deltaOfDelta, 12 );
+		} else if ( deltaOfDelta >= Integer.MIN_VALUE && deltaOfDelta <= Integer.MAX_VALUE ) {
+			writeBits( 0b11110, 5 );
+			writeBits( deltaOfDelta, 32 );
+		} else {
+			writeBits( 0b11111, 5 );
+			writeBits( deltaOfDelta, 64 );
+		}
+		previousDelta = delta;
+		previousTimestamp = timestamp;
+
+		// Values
+		long valueBits = Double.doubleToRawLongBits( value );
+		long xor = valueBits ^ previousValueBits;
+		if ( xor == 0 ) {
+			writeBits( 0, 1 );
+		} else {
+
+			int leading = Math.min( Long.numberOfLeadingZeros( xor ), 31 ),
+					trailing = Long.numberOfTrailingZeros( xor );
+
+			if ( previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing ) {
+				writeBits( 0b10, 2 );
+				writeBits( xor >>> previousTrailing, 64 - previousLeading - previousTrailing );
+			} else {
+				int meaningful = 64 - leading - trailing;
+				writeBits( 0b11, 2 );
+				writeBits( leading, 5 );
+				writeBits( meaningful - 1, 6 );
+				writeBits( xor >>> trailing, meaningful );
+				previousLeading = leading;
+				previousTrailing = trailing;
+			}
+
+		}
+		previousValueBits = valueBits;
+
+		minTime = Math.min( minTime, timestamp );
+		maxTime = Math.max( maxTime, timestamp );
+		count++;
+
+	}
+
+
+	/**
+	 * Releases any unused space, called once nothing more will be appended to the block.
+	 */
+	void seal() {
+		bits = Arrays.copyOf( bits, ( bitLength + 63 ) >>> 6 );
+	}
+
+
+	Reader reader() {
+		return new Reader();
+	}
+
+
+	private void writeBits( long value, int length ) {
+
+		if ( ( bitLength + length + 63 ) >>> 6 > bits.length ) {
+			bits = Arrays.copyOf( bits, Math.max( bits.length * 2, ( bitLength + length + 63 ) >>> 6 ) );
+		}
+
+		if ( length < 64 ) {
+			value &= ( 1L << length ) - 1;
+		}
+
+		int wordIndex = bitLength >>> 6,
+				free = 64 - ( bitLength & 63 );
+		if ( length <= free ) {
+			bits[wordIndex] |= value << ( free - length );
+		} else {
+			int overflow = length - free;
+			bits[wordIndex] |= value >>> overflow;
+			bits[wordIndex + 1] |= value << ( 64 - overflow );
+		}
+		bitLength += length;
+
+	}
+
+
+	/**
+	 * Iterates over the datapoints of the block in the order they were appended.
+	 */
+	class Reader {
+
+		private int position, remaining, leading, trailing;
+
+		private long timestamp, delta, valueBits;
+
+		private boolean first;
+
+
+		private Reader() {
+			remaining = count;
+			first = true;
+		}
+
+
+		boolean next() {
+
+			if ( remaining == 0 ) {
+				return false;
+			}
+			remaining--;
+
+			if ( first ) {
+				first = false;
+				timestamp = startTime;
+				valueBits = firstValueBits;
+				return true;
+			}
+
+			// Timestamps
+			long deltaOfDelta;
+			if ( readBits( 1 ) == 0 ) {
+				deltaOfDelta = 0;
+			} else if ( readBits( 1 ) == 0 ) {
+				deltaOfDelta = signExtend( readBits( 7 ), 7 );
+			} else if ( readBits( 1 ) == 0 ) {
+				deltaOfDelta = signExtend( readBits( 9 ), 9 );
+			} else if ( readBits( 1 ) == 0 ) {
+				deltaOfDelta = signExtend( readBits( 12 ), 12 );
+			} else if ( readBits( 1 ) == 0 ) {
+				deltaOfDelta = signExtend( readBits( 32 ), 32 );
+			} else {
+				deltaOfDelta = readBits( 64 );
+			}
+			delta += deltaOfDelta;
+			timestamp += delta;
+
+			// Values
+			if ( readBits( 1 ) == 1 ) {
+				if ( readBits( 1 ) == 1 ) {
+					leading = (int) readBits( 5 );
+					trailing = 64 - leading - ( (int) readBits( 6 ) + 1 );
+				}
+				valueBits ^= readBits( 64 - leading - trailing ) << trailing;
+			}
+
+			return true;
+
+		}
+
+
+		long getTimestamp() {
+			return timestamp;
+		}
+
+
+		double getValue() {
+			return Double.longBitsToDouble( valueBits );
+		}
+
+
+		private long readBits( int length ) {
+
+			int wordIndex = position >>> 6,
+					offset = position & 63,
+					free = 64 - offset;
+			position += length;
+
+			if ( length <= free ) {
+				return ( bits[wordIndex] << offset ) >>> ( 64 - length );
+			}
+
+			int overflow = length - free;
+			long high = bits[wordIndex] & ( ( 1L << free ) - 1 );
+			return ( high << overflow ) | ( bits[wordIndex + 1] >>> ( 64 - overflow ) );
+
+		}
+
+
+		private long signExtend( long value, int length ) {
+			return ( value << ( 64 - length ) ) >> ( 64 - length );
+		}
+
+	}
+
+}
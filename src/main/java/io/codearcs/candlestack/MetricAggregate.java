@@ -0,0 +1,79 @@
+package io.codearcs.candlestack;
+
+/**
+ * Summary of the datapoints of a single series over a time range as computed by the
+ * RecentMetricStore. When no datapoints fall within the range the count is 0 and the
+ * remaining values are NaN.
+ */
+public class MetricAggregate {
+
+	private int count;
+
+	private double min, max, sum;
+
+	private long latestTimestamp;
+
+	private double latestValue;
+
+
+	MetricAggregate() {
+		min = Double.NaN;
+		max = Double.NaN;
+		latestValue = Double.NaN;
+	}
+
+
+	void add( long timestamp, double value ) {
+		if ( count == 0 ) {
+			min = max = value;
+		} else {
+			min = Math.min( min, value );
+			max = Math.max( max, value );
+		}
+		if ( count == 0 || timestamp >= latestTimestamp ) {
+			latestTimestamp = timestamp;
+			latestValue = value;
+		}
+		sum += value;
+		count++;
+	}
+
+
+	public int getCount() {
+		return count;
+	}
+
+
+	public double getMin() {
+		return min;
+	}
+
+
+	public double getMax() {
+		return max;
+	}
+
+
+	public double getSum() {
+		return count == 0 ? Double.NaN : sum;
+	}
+
+
+	public double getAverage() {
+		return count == 0 ? Double.NaN : sum / count;
+	}
+
+
+	/**
+	 * @return the date of the most recent datapoint in the range in milliseconds since the epoch
+	 */
+	public long getLatestTimestamp() {
+		return latestTimestamp;
+	}
+
+
+	public double getLatestValue() {
+		return latestValue;
+	}
+
+}
@@ -0,0 +1,347 @@
+package io.codearcs.candlestack;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+
+
+/**
+ * Encodes metric datapoints into the JSON lines consumed by Filebeat/Logstash
+ * without going through Gson. The output is identical to what Gson produced for
+ * the metric map (same key order and the same HTML safe escaping) but is written
+ * into a reusable buffer. Instances are not thread safe, each writing thread
+ * should use its own.
+ *
+ * Floating point values are written as the shortest plain decimal that parses
+ * back to the same double and always carry a fraction (e.g. 12.0) so they are
+ * never mistaken for whole numbers downstream.
+ */
+class MetricEncoder {
+
+	private static final char[] COMPONENT_PREFIX = "{\"component\":\"candlestack_metric\",\"instanceId\":\"".toCharArray(),
+			TIMESTAMP_PREFIX = "\",\"@timestamp\":\"".toCharArray(),
+			METRIC_NAME_PREFIX = "\",\"metric_name\":\"".toCharArray(),
+			METRIC_VALUE_PREFIX = "\",\"metric_value\":".toCharArray(),
+			TYPE_PREFIX = ",\"type\":\"".toCharArray(),
+			LINE_SUFFIX = "\"}\r\n".toCharArray(),
+			MIN_LONG_VALUE = Long.toString( Long.MIN_VALUE ).toCharArray(),
+			HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private static final char[] ZERO_FRACTION = ".0".toCharArray();
+
+	private static final int MAX_CACHED_NAMES = 10_000,
+			MAX_FAST_PATH_SCALE = 17;
+
+	// Largest whole number below which every long can be exactly represented by a double
+	private static final long MAX_EXACT_LONG = 1L << 53;
+
+	// Every power of ten up to 10^22 is exactly representable as a double
+	private static final double[] DOUBLE_POWERS_OF_TEN = new double[23];
+
+	private static final long[] LONG_POWERS_OF_TEN = new long[19];
+
+	static {
+		DOUBLE_POWERS_OF_TEN[0] = 1;
+		for ( int i = 1; i < DOUBLE_POWERS_OF_TEN.length; i++ ) {
+			DOUBLE_POWERS_OF_TEN[i] = DOUBLE_POWERS_OF_TEN[i - 1] * 10;
+		}
+		LONG_POWERS_OF_TEN[0] = 1;
+		for ( int i = 1; i < LONG_POWERS_OF_TEN.length; i++ ) {
+			LONG_POWERS_OF_TEN[i] = LONG_POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+
+	private final FastDateFormat dateFormat;
+
+	private final Map<String, char[]> encodedNameCache;
+
+	private char[] buffer;
+
+	private int length;
+
+	private long cachedSecond;
+
+	private char[] cachedTimestamp;
+
+	private int cachedMillisIndex;
+
+
+	MetricEncoder( FastDateFormat dateFormat ) {
+		this.dateFormat = dateFormat;
+		encodedNameCache = new HashMap<>();
+		buffer = new char[256];
+		cachedSecond = Long.MIN_VALUE;
+	}
+
+
+	/**
+	 * Encodes the provided metric as a single line, terminated by \r\n, replacing
+	 * whatever was previously held in the buffer.
+	 */
+	void encode( String type, String instanceId, long metricDate, String metricName, long metricValue ) {
+		appendPrefix( instanceId, metricDate, metricName );
+		appendLong( metricValue );
+		appendSuffix( type );
+	}
+
+
+	void encode( MetricRecord record ) {
+		if ( record.decimal ) {
+			encode( record.type, record.instanceId, record.metricDate, record.metricName, record.doubleValue );
+		} else {
+			encode( record.type, record.instanceId, record.metricDate, record.metricName, record.longValue );
+		}
+	}
+
+
+	/**
+	 * Same as the long version but for floating point values, the value must be finite.
+	 */
+	void encode( String type, String instanceId, long metricDate, String metricName, double metricValue ) {
+		appendPrefix( instanceId, metricDate, metricName );
+		appendDouble( metricValue );
+		appendSuffix( type );
+	}
+
+
+	char[] getBuffer() {
+		return buffer;
+	}
+
+
+	int getLength() {
+		return length;
+	}
+
+
+	private void appendPrefix( String instanceId, long metricDate, String metricName ) {
+		length = 0;
+		append( COMPONENT_PREFIX );
+		append( encodedName( instanceId ) );
+		append( TIMESTAMP_PREFIX );
+		appendTimestamp( metricDate );
+		append( METRIC_NAME_PREFIX );
+		append( encodedName( metricName ) );
+		append( METRIC_VALUE_PREFIX );
+	}
+
+
+	private void appendSuffix( String type ) {
+		append( TYPE_PREFIX );
+		append( encodedName( type ) );
+		append( LINE_SUFFIX );
+	}
+
+
+	private char[] encodedName( String name ) {
+		char[] encoded = encodedNameCache.get( name );
+		if ( encoded == null ) {
+			if ( encodedNameCache.size() >= MAX_CACHED_NAMES ) {
+				encodedNameCache.clear();
+			}
+			encoded = escape( MetricsReaderWriter.sanitizeString( name ) );
+			encodedNameCache.put( name, encoded );
+		}
+		return encoded;
+	}
+
+
+	private void appendTimestamp( long metricDate ) {
+
+		// Everything but the millis only changes once a second so format it once and patch in the millis
+		long second = Math.floorDiv( metricDate, 1000L );
+		if ( second != cachedSecond ) {
+			cachedTimestamp = dateFormat.format( second * 1000L ).toCharArray();
+			cachedMillisIndex = indexOf( cachedTimestamp, '.' ) + 1;
+			cachedSecond = second;
+		}
+
+		int millis = (int) Math.floorMod( metricDate, 1000L );
+		cachedTimestamp[cachedMillisIndex] = (char) ( '0' + millis / 100 );
+		cachedTimestamp[cachedMillisIndex + 1] = (char) ( '0' + ( millis / 10 ) % 10 );
+		cachedTimestamp[cachedMillisIndex + 2] = (char) ( '0' + millis % 10 );
+
+		append( cachedTimestamp );
+
+	}
+
+
+	private void appendLong( long value ) {
+
+		if ( value == Long.MIN_VALUE ) {
+			append( MIN_LONG_VALUE );
+			return;
+		}
+
+		ensureCapacity( 20 );
+		if ( value < 0 ) {
+			buffer[length++] = '-';
+			value = -value;
+		}
+
+		int digits = 1;
+		for ( long remaining = value / 10; remaining > 0; remaining /= 10 ) {
+			digits++;
+		}
+
+		int index = length + digits;
+		do {
+			buffer[--index] = (char) ( '0' + ( value % 10 ) );
+			value /= 10;
+		} while ( value > 0 );
+		length += digits;
+
+	}
+
+
+	private void appendDouble( double value ) {
+
+		double magnitude = Math.abs( value );
+
+		// Whole numbers only need the integer digits
+		if ( magnitude < MAX_EXACT_LONG && value == Math.rint( value ) ) {
+			appendLong( (long) value );
+			append( ZERO_FRACTION );
+			return;
+		}
+
+		// Look for the fewest fraction digits that round trip. When both the scaled value and the
+		// power of ten are exact doubles the division is correctly rounded, so comparing it against
+		// the original value is an exact round trip check.
+		if ( magnitude < MAX_EXACT_LONG ) {
+			for ( int scale = 1; scale <= MAX_FAST_PATH_SCALE; scale++ ) {
+				double scaled = Math.rint( magnitude * DOUBLE_POWERS_OF_TEN[scale] );
+				if ( scaled >= MAX_EXACT_LONG ) {
+					break;
+				}
+				if ( scaled / DOUBLE_POWERS_OF_TEN[scale] == magnitude ) {
+					appendScaled( value < 0, (long) scaled, scale );
+					return;
+				}
+			}
+		}
+
+		// Very large, very small or long fraction values are rare enough to let the JDK deal with them
+		String plain = new BigDecimal( Double.toString( value ) ).toPlainString();
+		append( plain.toCharArray() );
+		if ( plain.indexOf( '.' ) < 0 ) {
+			append( ZERO_FRACTION );
+		}
+
+	}
+
+
+	private void appendScaled( boolean negative, long scaled, int scale ) {
+
+		if ( negative ) {
+			ensureCapacity( 1 );
+			buffer[length++] = '-';
+		}
+		appendLong( scaled / LONG_POWERS_OF_TEN[scale] );
+
+		ensureCapacity( scale + 1 );
+		buffer[length++] = '.';
+		long fraction = scaled % LONG_POWERS_OF_TEN[scale];
+		for ( int index = length + scale - 1; index >= length; index-- ) {
+			buffer[index] = (char) ( '0' + ( fraction % 10 ) );
+			fraction /= 10;
+		}
+		length += scale;
+
+	}
+
+
+	private void append( char[] chars ) {
+		ensureCapacity( chars.length );
+		System.arraycopy( chars, 0, buffer, length, chars.length );
+		length += chars.length;
+	}
+
+
+	private void ensureCapacity( int additional ) {
+		if ( length + additional > buffer.length ) {
+			buffer = Arrays.copyOf( buffer, Math.max( buffer.length * 2, length + additional ) );
+		}
+	}
+
+
+	private static int indexOf( char[] chars, char c ) {
+		for ( int i = 0; i < chars.length; i++ ) {
+			if ( chars[i] == c ) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Escapes the string the same way Gson's HTML safe JsonWriter does.
+	 */
+	static char[] escape( String value ) {
+
+		StringBuilder sb = new StringBuilder( value.length() + 8 );
+		for ( int i = 0; i < value.length(); i++ ) {
+
+			char c = value.charAt( i );
+			switch ( c ) {
+				case '"':
+					sb.append( "\\\"" );
+					break;
+				case '\\':
+					sb.append( "\\\\" );
+					break;
+				case '\t':
+					sb.append( "\\t" );
+					break;
+				case '\b':
+					sb.append( "\\b" );
+					break;
+				case '\n':
+					sb.append( "\\n" );
+					break;
+				case '\r':
+					sb.append( "\\r" );
+					break;
+				case '\f':
+					sb.append( "\\f" );
+					break;
+				case '<':
+				case '>':
+				case '&':
+				case '=':
+				case '\'':
+				case '\u2028':
+				case '\u2029':
+					appendUnicodeEscape( sb, c );
+					break;
+				default:
+					if ( c < 0x20 ) {
+						appendUnicodeEscape( sb, c );
+					} else {
+						sb.append( c );
+					}
+			}
+
+		}
+
+		char[] escaped = new char[sb.length()];
+		sb.getChars( 0, sb.length(), escaped, 0 );
+		return escaped;
+
+	}
+
+
+	private static void appendUnicodeEscape( StringBuilder sb, char c ) {
+		sb.append( "\\u" )
+				.append( HEX_DIGITS[( c >> 12 ) & 0xf] )
+				.append( HEX_DIGITS[( c >> 8 ) & 0xf] )
+				.append( HEX_DIGITS[( c >> 4 ) & 0xf] )
+				.append( HEX_DIGITS[c & 0xf] );
+	}
+
+}
@@ -0,0 +1,31 @@
+package io.codearcs.candlestack;
+
+/**
+ * A single timestamped value read back from the RecentMetricStore.
+ */
+public class MetricPoint {
+
+	private final long timestamp;
+
+	private final double value;
+
+
+	public MetricPoint( long timestamp, double value ) {
+		this.timestamp = timestamp;
+		this.value = value;
+	}
+
+
+	/**
+	 * @return the metric date in milliseconds since the epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+
+	public double getValue() {
+		return value;
+	}
+
+}
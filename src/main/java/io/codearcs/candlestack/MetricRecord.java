@@ -0,0 +1,98 @@
+package io.codearcs.candlestack;
+
+/**
+ * A single metric datapoint as handed to a MetricSink. Records passed to a sink
+ * are owned by the sink's queue and reused once the sink returns, so a sink that
+ * needs to hold onto a record past the write call must take a copy of it.
+ */
+public class MetricRecord {
+
+	String type, instanceId, metricName;
+
+	long metricDate, longValue;
+
+	double doubleValue;
+
+	boolean decimal;
+
+
+	MetricRecord() {}
+
+
+	public MetricRecord( String type, String instanceId, long metricDate, String metricName, long longValue, double doubleValue, boolean decimal ) {
+		set( type, instanceId, metricDate, metricName, longValue, doubleValue, decimal );
+	}
+
+
+	void set( String type, String instanceId, long metricDate, String metricName, long longValue, double doubleValue, boolean decimal ) {
+		this.type = type;
+		this.instanceId = instanceId;
+		this.metricDate = metricDate;
+		this.metricName = metricName;
+		this.longValue = longValue;
+		this.doubleValue = doubleValue;
+		this.decimal = decimal;
+	}
+
+
+	void clear() {
+		type = null;
+		instanceId = null;
+		metricName = null;
+	}
+
+
+	public MetricRecord copy() {
+		return new MetricRecord( type, instanceId, metricDate, metricName, longValue, doubleValue, decimal );
+	}
+
+
+	public String getType() {
+		return type;
+	}
+
+
+	public String getInstanceId() {
+		return instanceId;
+	}
+
+
+	public String getMetricName() {
+		return metricName;
+	}
+
+
+	/**
+	 * @return the metric date in milliseconds since the epoch
+	 */
+	public long getMetricDate() {
+		return metricDate;
+	}
+
+
+	/**
+	 * @return true if the value is a floating point value, in which case getDoubleValue should be used
+	 */
+	public boolean isDecimal() {
+		return decimal;
+	}
+
+
+	public long getLongValue() {
+		return longValue;
+	}
+
+
+	public double getDoubleValue() {
+		return doubleValue;
+	}
+
+
+	/**
+	 * @return the value as a double regardless of whether it is a whole number or not
+	 */
+	public double getValue() {
+		return decimal ? doubleValue : longValue;
+	}
+
+}
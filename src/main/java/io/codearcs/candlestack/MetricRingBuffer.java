@@ -0,0 +1,111 @@
+package io.codearcs.candlestack;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Bounded lock-free ring buffer of preallocated metric records that supports
+ * many producers and a single consumer. Each slot carries a sequence number
+ * that tells producers when the slot is free and the consumer when it has
+ * been published, so neither side ever needs to take a lock.
+ */
+class MetricRingBuffer {
+
+	private final MetricRecord[] records;
+
+	private final AtomicLongArray sequences;
+
+	private final AtomicLong tail;
+
+	private final int mask;
+
+	private volatile long head;
+
+
+	MetricRingBuffer( int requestedCapacity ) {
+
+		// Round up to a power of two so the slot index is a simple mask
+		int capacity = Integer.highestOneBit( Math.max( 2, requestedCapacity ) - 1 ) << 1;
+		mask = capacity - 1;
+
+		records = new MetricRecord[capacity];
+		sequences = new AtomicLongArray( capacity );
+		for ( int i = 0; i < capacity; i++ ) {
+			records[i] = new MetricRecord();
+			sequences.set( i, i );
+		}
+
+		tail = new AtomicLong();
+		head = 0;
+
+	}
+
+
+	/**
+	 * Attempts to publish a record, can be called from any thread.
+	 *
+	 * @return false if the buffer is currently full
+	 */
+	boolean offer( String type, String instanceId, long metricDate, String metricName, long longValue, double doubleValue, boolean decimal ) {
+
+		while ( true ) {
+
+			long position = tail.get();
+			int index = (int) position & mask;
+			long difference = sequences.get( index ) - position;
+
+			if ( difference == 0 ) {
+
+				if ( tail.compareAndSet( position, position + 1 ) ) {
+					records[index].set( type, instanceId, metricDate, metricName, longValue, doubleValue, decimal );
+					sequences.lazySet( index, position + 1 );
+					return true;
+				}
+
+			} else if ( difference < 0 ) {
+				return false;
+			}
+
+		}
+
+	}
+
+
+	/**
+	 * Returns the next published record without removing it, must only be
+	 * called from the consumer thread.
+	 *
+	 * @return the next record or null if nothing has been published
+	 */
+	MetricRecord peek() {
+		int index = (int) head & mask;
+		return sequences.get( index ) == head + 1 ? records[index] : null;
+	}
+
+
+	/**
+	 * Hands the record returned by the last peek back to the producers, must
+	 * only be called from the consumer thread.
+	 */
+	void release() {
+		int index = (int) head & mask;
+		records[index].clear();
+		sequences.lazySet( index, head + mask + 1 );
+		head++;
+	}
+
+
+	/**
+	 * @return an approximation of the number of records waiting to be consumed
+	 */
+	int size() {
+		return (int) Math.max( 0, tail.get() - head );
+	}
+
+
+	int capacity() {
+		return mask + 1;
+	}
+
+}
@@ -0,0 +1,39 @@
+package io.codearcs.candlestack;
+
+/**
+ * A destination for the metrics written through the MetricsReaderWriter. Each sink
+ * is fed from its own bounded queue by a dedicated worker thread, so an implementation
+ * only ever sees calls from a single thread and a slow sink can't hold up the fetchers.
+ *
+ * Additional sinks are registered in the ini file by listing a name in
+ * <code>metrics.sinks</code> and providing the implementing class via
+ * <code>metrics.sink.&lt;name&gt;.class</code>. Implementations must provide a public
+ * constructor taking the sink name, which can be used to look up any
+ * <code>metrics.sink.&lt;name&gt;.*</code> properties the sink needs.
+ */
+public interface MetricSink {
+
+	/**
+	 * Writes the provided record, the record must not be held onto after this returns.
+	 *
+	 * @param record
+	 * @throws CandlestackException
+	 */
+	void write( MetricRecord record ) throws CandlestackException;
+
+
+	/**
+	 * Called once a batch of records has been written or the flush interval has elapsed,
+	 * anything the sink has buffered should be made durable or sent on.
+	 *
+	 * @throws CandlestackException
+	 */
+	void flush() throws CandlestackException;
+
+
+	/**
+	 * Called once on shutdown after the final flush.
+	 */
+	void close();
+
+}
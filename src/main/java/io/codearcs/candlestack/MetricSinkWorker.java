@@ -0,0 +1,163 @@
+package io.codearcs.candlestack;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Feeds a single MetricSink from its own bounded ring buffer. Producers publish into
+ * the buffer and the worker drains it in batches, only asking the sink to flush once a
+ * full batch has been written or the flush interval has elapsed. When the buffer is full
+ * producers either wait for room or the metric is dropped, depending on how the worker
+ * was configured.
+ */
+class MetricSinkWorker extends Thread {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger( MetricSinkWorker.class );
+
+	private static final long FULL_BUFFER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos( 100 );
+
+
+	private final String sinkName;
+
+	private final MetricSink sink;
+
+	private final MetricRingBuffer ringBuffer;
+
+	private final int batchSize;
+
+	private final long flushIntervalNanos;
+
+	private final boolean blockWhenFull;
+
+	private final AtomicLong droppedCount;
+
+	private volatile boolean keepRunning;
+
+
+	MetricSinkWorker( String sinkName, MetricSink sink, int bufferSize, int batchSize, long flushIntervalMs, boolean blockWhenFull ) {
+		super( "MetricSinkWorker-" + sinkName );
+		this.sinkName = sinkName;
+		this.sink = sink;
+		this.blockWhenFull = blockWhenFull;
+		ringBuffer = new MetricRingBuffer( bufferSize );
+		this.batchSize = Math.min( batchSize, ringBuffer.capacity() );
+		flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos( flushIntervalMs );
+		droppedCount = new AtomicLong();
+		keepRunning = true;
+	}
+
+
+	String getSinkName() {
+		return sinkName;
+	}
+
+
+	int getCapacity() {
+		return ringBuffer.capacity();
+	}
+
+
+	void offer( String type, String instanceId, long metricDate, String metricName, long longValue, double doubleValue, boolean decimal ) throws CandlestackException {
+
+		while ( !ringBuffer.offer( type, instanceId, metricDate, metricName, longValue, doubleValue, decimal ) ) {
+
+			if ( !blockWhenFull ) {
+				droppedCount.incrementAndGet();
+				return;
+			} else if ( !isAlive() ) {
+				throw new CandlestackException( "MetricSinkWorker for sink [" + sinkName + "] is not running, unable to write metric [" + metricName + "] for [" + instanceId + "]" );
+			}
+
+			// Apply backpressure by parking until the worker frees up some room
+			LockSupport.unpark( this );
+			LockSupport.parkNanos( FULL_BUFFER_PARK_NANOS );
+
+		}
+
+		// Wake the worker early once there is a full batch waiting
+		if ( ringBuffer.size() >= batchSize ) {
+			LockSupport.unpark( this );
+		}
+
+	}
+
+
+	@Override
+	public void run() {
+
+		long lastFlush = System.nanoTime(), reportedDroppedCount = 0;
+		int unflushed = 0;
+
+		while ( true ) {
+
+			// Read this before draining so nothing published prior to shutdown gets left behind
+			boolean stopping = !keepRunning;
+
+			int drained = 0;
+			MetricRecord record;
+			while ( drained < batchSize && ( record = ringBuffer.peek() ) != null ) {
+				try {
+					sink.write( record );
+				} catch ( CandlestackException | RuntimeException e ) {
+					LOGGER.error( "MetricSinkWorker for sink [" + sinkName + "] failed to write metric [" + record.metricName + "] for [" + record.instanceId + "]", e );
+				}
+				ringBuffer.release();
+				drained++;
+			}
+			unflushed += drained;
+
+			long now = System.nanoTime();
+			if ( unflushed > 0 && ( unflushed >= batchSize || now - lastFlush >= flushIntervalNanos || stopping ) ) {
+				try {
+					sink.flush();
+				} catch ( CandlestackException | RuntimeException e ) {
+					LOGGER.error( "MetricSinkWorker for sink [" + sinkName + "] failed to flush metrics", e );
+				}
+				unflushed = 0;
+				lastFlush = now;
+
+				long currentDroppedCount = droppedCount.get();
+				if ( currentDroppedCount != reportedDroppedCount ) {
+					LOGGER.warn( "MetricSinkWorker for sink [" + sinkName + "] has dropped [" + ( currentDroppedCount - reportedDroppedCount ) + "] metrics due to a full buffer" );
+					reportedDroppedCount = currentDroppedCount;
+				}
+			}
+
+			if ( drained == 0 ) {
+				if ( stopping ) {
+					break;
+				}
+				LockSupport.parkNanos( this, unflushed > 0 ? Math.max( 1, lastFlush + flushIntervalNanos - now ) : flushIntervalNanos );
+			}
+
+		}
+
+	}
+
+
+	/**
+	 * Closes the sink, should only be called once the worker has finished.
+	 */
+	void closeSink() {
+		try {
+			sink.close();
+		} catch ( RuntimeException e ) {
+			LOGGER.error( "MetricSinkWorker failed to close sink [" + sinkName + "]", e );
+		}
+	}
+
+
+	/**
+	 * Stops the worker once everything already queued has been handed to the sink.
+	 */
+	void shutdown() {
+		keepRunning = false;
+		LockSupport.unpark( this );
+	}
+
+}
@@ -1,31 +1,39 @@
 package io.codearcs.candlestack;
 
-import java.util.concurrent.TimeUnit;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-
-public abstract class MetricsFetcher extends Thread {
-
-	private static final Logger LOGGER = LoggerFactory.getLogger( MetricsFetcher.class );
+/**
+ * Fetches metrics on a fixed interval, run by the {@link MetricsFetcherScheduler}.
+ */
+public abstract class MetricsFetcher {
 
 	protected MetricsReaderWriter metricsReaderWriter;
 
 	protected int sleepIntervalMinutes;
 
-	private boolean keepAlive;
+	private String name;
 
 
 	public MetricsFetcher( String name, int sleepIntervalMinutes ) throws CandlestackException {
-		super( "MetricsFetcher_" + name );
+		this.name = "MetricsFetcher_" + name;
 
+		if ( sleepIntervalMinutes < 1 ) {
+			throw new CandlestackPropertiesException( this.name + " was provided an invalid sleep interval [" + sleepIntervalMinutes + "], must be greater than 0" );
+		}
 		this.sleepIntervalMinutes = sleepIntervalMinutes;
 
 		metricsReaderWriter = MetricsReaderWriter.getInstance();
 	}
 
 
+	public String getName() {
+		return name;
+	}
+
+
+	public int getSleepIntervalMinutes() {
+		return sleepIntervalMinutes;
+	}
+
+
 	/**
 	 * This method will be routinely called based off of the sleep interval and
 	 * it is up to the implementer to fetch and any metric data and save it via
@@ -35,51 +43,9 @@ public abstract class MetricsFetcher extends Thread {
 
 
 	/**
-	 * This method will be called with the MetricsFetcher thread is shutting down
+	 * This method will be called once the MetricsFetcher will no longer be run
 	 * and the implementer should immediately close any open resources when called.
 	 */
 	protected abstract void close();
 
-
-	public final void shutdown() {
-		keepAlive = false;
-
-		// Wake it up if it is sleeping
-		interrupt();
-	}
-
-
-	@Override
-	public final void run() {
-
-		keepAlive = true;
-		while ( keepAlive ) {
-
-			try {
-				fetchMetrics();
-			} catch ( Throwable t ) {
-				LOGGER.error( getName() + " encountered an unexpected error while performing fetch", t );
-			}
-
-			waitForNextFetch();
-
-		}
-
-		close();
-
-	}
-
-
-	private void waitForNextFetch() {
-		if ( keepAlive ) {
-			try {
-				TimeUnit.MINUTES.sleep( sleepIntervalMinutes );
-			} catch ( InterruptedException e ) {
-				if ( keepAlive ) {
-					LOGGER.warn( getName() + " was interrupted during the sleep interval between fetches", e );
-				}
-			}
-		}
-	}
-
 }
@@ -0,0 +1,186 @@
+package io.codearcs.candlestack;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Runs each MetricsFetcher at a fixed rate of its sleep interval. Runs are aligned to
+ * multiples of the interval since the epoch, which lines them up with the CloudWatch period
+ * boundaries, and offset by a random jitter picked once per fetcher so they don't all
+ * call AWS at the same moment. A run that overruns its interval is logged and the cycles
+ * it missed are either skipped or run once straight away depending on the policy.
+ */
+public class MetricsFetcherScheduler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger( MetricsFetcherScheduler.class );
+
+	private static final long DEFAULT_JITTER_SEC = 15,
+			SHUTDOWN_TIMEOUT_SEC = 60;
+
+	private static final String MISSED_CYCLE_POLICY_SKIP = "skip",
+			MISSED_CYCLE_POLICY_RUN = "run";
+
+	private static final String JITTER_PROPERTY_KEY = "metrics.fetcher.jitter.sec",
+			MISSED_CYCLE_POLICY_PROPERTY_KEY = "metrics.fetcher.missed.cycle.policy";
+
+
+	private final List<MetricsFetcher> metricsFetchers;
+
+	private final long jitterMs;
+
+	private final boolean runMissedCycle;
+
+	private ScheduledExecutorService executor;
+
+	private volatile boolean keepAlive;
+
+
+	public MetricsFetcherScheduler( List<MetricsFetcher> metricsFetchers ) throws CandlestackPropertiesException {
+
+		this.metricsFetchers = metricsFetchers;
+
+		long jitterSec = GlobalCandlestackProperties.getLongProperty( JITTER_PROPERTY_KEY, DEFAULT_JITTER_SEC );
+		if ( jitterSec < 0 ) {
+			throw new CandlestackPropertiesException( "MetricsFetcherScheduler property [" + JITTER_PROPERTY_KEY + "] must not be negative" );
+		}
+		jitterMs = TimeUnit.SECONDS.toMillis( jitterSec );
+
+		String missedCyclePolicy = GlobalCandlestackProperties.getStringProperty( MISSED_CYCLE_POLICY_PROPERTY_KEY, MISSED_CYCLE_POLICY_SKIP ).trim();
+		if ( missedCyclePolicy.isEmpty() || missedCyclePolicy.equals( MISSED_CYCLE_POLICY_SKIP ) ) {
+			runMissedCycle = false;
+		} else if ( missedCyclePolicy.equals( MISSED_CYCLE_POLICY_RUN ) ) {
+			runMissedCycle = true;
+		} else {
+			throw new CandlestackPropertiesException( "MetricsFetcherScheduler property [" + MISSED_CYCLE_POLICY_PROPERTY_KEY + "] has invalid value [" + missedCyclePolicy + "], must be one of [" + MISSED_CYCLE_POLICY_SKIP + ", " + MISSED_CYCLE_POLICY_RUN + "]" );
+		}
+
+	}
+
+
+	public void start() {
+
+		if ( metricsFetchers.isEmpty() ) {
+			return;
+		}
+
+		// A thread per fetcher so a slow fetcher never holds up the others
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = Executors.newScheduledThreadPool( metricsFetchers.size(), runnable -> {
+			Thread thread = new Thread( runnable, "MetricsFetcherScheduler-" + threadCount.incrementAndGet() );
+			thread.setDaemon( true );
+			return thread;
+		} );
+
+		keepAlive = true;
+		Random random = new Random();
+		for ( MetricsFetcher metricsFetcher : metricsFetchers ) {
+			long offsetMs = jitterMs > 0 ? (long) ( random.nextDouble() * jitterMs ) : 0;
+			ScheduledFetch scheduledFetch = new ScheduledFetch( metricsFetcher, offsetMs );
+
+			// Fetch straight away on start up, as of the most recent run time so the next run is aligned
+			scheduledFetch.scheduleNext( getNextRunTime( System.currentTimeMillis(), scheduledFetch.intervalMs, offsetMs ) - scheduledFetch.intervalMs );
+			LOGGER.info( "MetricsFetcherScheduler will run " + metricsFetcher.getName() + " every " + metricsFetcher.getSleepIntervalMinutes() + " minute(s) offset by " + offsetMs + " ms" );
+		}
+
+	}
+
+
+	public void shutdown() {
+
+		keepAlive = false;
+		if ( executor != null ) {
+
+			// Interrupt any fetches in progress the same way the fetcher threads used to be
+			executor.shutdownNow();
+			try {
+				if ( !executor.awaitTermination( SHUTDOWN_TIMEOUT_SEC, TimeUnit.SECONDS ) ) {
+					LOGGER.error( "MetricsFetcherScheduler timed out waiting for the fetches in progress to complete" );
+				}
+			} catch ( InterruptedException e ) {
+				LOGGER.error( "MetricsFetcherScheduler got interrupted while waiting for the fetches in progress to complete" );
+			}
+
+		}
+
+		for ( MetricsFetcher metricsFetcher : metricsFetchers ) {
+			metricsFetcher.close();
+		}
+
+	}
+
+
+	/**
+	 * @return the first time after now that is a multiple of the interval plus the offset
+	 */
+	private static long getNextRunTime( long now, long intervalMs, long offsetMs ) {
+		return ( Math.floorDiv( now - offsetMs, intervalMs ) + 1 ) * intervalMs + offsetMs;
+	}
+
+
+	private class ScheduledFetch implements Runnable {
+
+		private final MetricsFetcher metricsFetcher;
+
+		private final long intervalMs, offsetMs;
+
+		private long scheduledTime;
+
+
+		private ScheduledFetch( MetricsFetcher metricsFetcher, long offsetMs ) {
+			this.metricsFetcher = metricsFetcher;
+			this.offsetMs = offsetMs;
+			intervalMs = TimeUnit.MINUTES.toMillis( metricsFetcher.getSleepIntervalMinutes() );
+		}
+
+
+		@Override
+		public void run() {
+
+			long startTime = System.currentTimeMillis();
+			try {
+				metricsFetcher.fetchMetrics();
+			} catch ( Throwable t ) {
+				LOGGER.error( metricsFetcher.getName() + " encountered an unexpected error while performing fetch", t );
+			}
+
+			if ( !keepAlive ) {
+				return;
+			}
+
+			long endTime = System.currentTimeMillis(),
+					nextRunTime = scheduledTime + intervalMs;
+			if ( nextRunTime <= endTime ) {
+
+				long missedCycles = ( endTime - scheduledTime ) / intervalMs;
+				LOGGER.warn( metricsFetcher.getName() + " took " + ( endTime - startTime ) + " ms which overran its interval of " + intervalMs + " ms, "
+						+ ( runMissedCycle ? "running it again now" : "skipping " + missedCycles + " missed cycle(s)" ) );
+
+				// Running the most recent missed cycle as of its run time keeps the runs after it aligned
+				nextRunTime = getNextRunTime( endTime, intervalMs, offsetMs );
+				if ( runMissedCycle ) {
+					nextRunTime -= intervalMs;
+				}
+
+			}
+
+			scheduleNext( nextRunTime );
+
+		}
+
+
+		private void scheduleNext( long runTime ) {
+			scheduledTime = runTime;
+			executor.schedule( this, Math.max( 0, runTime - System.currentTimeMillis() ), TimeUnit.MILLISECONDS );
+		}
+
+	}
+
+}
@@ -0,0 +1,267 @@
+package io.codearcs.candlestack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Shared pool the MetricsFetchers use to fan out the work for individual resources
+ * rather than making their blocking calls one at a time. The pool is bounded and on top
+ * of that the number of calls in flight to each AWS service is limited across all of the
+ * fetchers, so that adding workers doesn't just get the account throttled.
+ *
+ * The thread handing out the work always takes part in it, so it completes even when
+ * every worker is busy.
+ */
+public class MetricsFetcherWorkerPool {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger( MetricsFetcherWorkerPool.class );
+
+	public static final String SERVICE_CLOUDWATCH = "cloudwatch",
+			SERVICE_LAMBDA = "lambda",
+			SERVICE_S3 = "s3",
+			SERVICE_SQS = "sqs";
+
+	private static final int DEFAULT_WORKERS = 8,
+			DEFAULT_CONCURRENCY = 4;
+
+	private static final String WORKERS_PROPERTY_KEY = "metrics.fetcher.workers",
+			CONCURRENCY_PROPERTY_KEY_PREFIX = "metrics.fetcher.concurrency.";
+
+
+	private static MetricsFetcherWorkerPool instance = null;
+
+
+	private ExecutorService executor;
+
+	private Map<String, Semaphore> serviceLimits;
+
+	private Map<String, Integer> serviceConcurrency;
+
+
+	private MetricsFetcherWorkerPool() throws CandlestackPropertiesException {
+
+		int workers = GlobalCandlestackProperties.getIntProperty( WORKERS_PROPERTY_KEY, DEFAULT_WORKERS );
+		if ( workers < 0 ) {
+			throw new CandlestackPropertiesException( "MetricsFetcherWorkerPool property [" + WORKERS_PROPERTY_KEY + "] must not be negative" );
+		}
+
+		// Each service gets its own limit, a limit of 1 brings back the sequential behaviour
+		serviceLimits = new ConcurrentHashMap<>();
+		serviceConcurrency = new ConcurrentHashMap<>();
+		for ( String service : Arrays.asList( SERVICE_CLOUDWATCH, SERVICE_LAMBDA, SERVICE_S3, SERVICE_SQS ) ) {
+			int concurrency = GlobalCandlestackProperties.getIntProperty( CONCURRENCY_PROPERTY_KEY_PREFIX + service, DEFAULT_CONCURRENCY );
+			if ( concurrency < 1 ) {
+				throw new CandlestackPropertiesException( "MetricsFetcherWorkerPool property [" + CONCURRENCY_PROPERTY_KEY_PREFIX + service + "] must be greater than 0" );
+			}
+			serviceLimits.put( service, new Semaphore( concurrency, true ) );
+			serviceConcurrency.put( service, concurrency );
+		}
+
+		// With no workers everything simply runs on the calling thread
+		if ( workers > 0 ) {
+			AtomicInteger threadCount = new AtomicInteger();
+			executor = new ThreadPoolExecutor( workers, workers, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+				Thread thread = new Thread( runnable, "MetricsFetcherWorkerPool-" + threadCount.incrementAndGet() );
+				thread.setDaemon( true );
+				return thread;
+			} );
+		}
+
+		LOGGER.info( "MetricsFetcherWorkerPool started with [" + workers + "] workers" );
+
+	}
+
+
+	public synchronized static MetricsFetcherWorkerPool getInstance() throws CandlestackException {
+		if ( instance == null ) {
+			instance = new MetricsFetcherWorkerPool();
+		}
+		return instance;
+	}
+
+
+	public synchronized static void destroy() {
+		if ( instance != null ) {
+			if ( instance.executor != null ) {
+				instance.executor.shutdownNow();
+			}
+			instance = null;
+		}
+	}
+
+
+	/**
+	 * Runs the task for every item, at most the service's limit at a time, and waits for
+	 * all of them to finish. A failing item doesn't stop the others from being worked on,
+	 * once they are all done the first failure is thrown with the rest attached to it.
+	 */
+	public <T> void forEach( String service, List<T> items, Task<T> task ) throws CandlestackException {
+		map( service, items, item -> {
+			task.run( item );
+			return null;
+		} );
+	}
+
+
+	/**
+	 * Same as {@link #forEach(String, List, Task)} but collects the result of each item,
+	 * returned in the same order as the items.
+	 *
+	 * @return the results of all of the items, null for any item that failed
+	 */
+	public <T, R> List<R> map( String service, List<T> items, Mapper<T, R> mapper ) throws CandlestackException {
+
+		Semaphore serviceLimit = serviceLimits.get( service );
+		if ( serviceLimit == null ) {
+			throw new CandlestackException( "MetricsFetcherWorkerPool has no concurrency limit for service [" + service + "]" );
+		}
+
+		List<R> results = new ArrayList<>( items.size() );
+		for ( int i = 0; i < items.size(); i++ ) {
+			results.add( null );
+		}
+		if ( items.isEmpty() ) {
+			return results;
+		}
+
+		// Rather than a task per item, a few drainers pull from the shared list of items
+		Drainer<T, R> drainer = new Drainer<>( items, results, mapper, serviceLimit );
+		int extraDrainers = Math.min( items.size(), serviceConcurrency.get( service ) ) - 1;
+		List<Future<?>> futures = new ArrayList<>();
+		if ( executor != null ) {
+			try {
+				for ( int i = 0; i < extraDrainers; i++ ) {
+					futures.add( executor.submit( drainer ) );
+				}
+			} catch ( RejectedExecutionException e ) {
+				// Shutting down, whatever is left is handled by the calling thread
+			}
+		}
+
+		drainer.run();
+
+		for ( Future<?> future : futures ) {
+			try {
+				future.get();
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new CandlestackException( "MetricsFetcherWorkerPool was interrupted while waiting on [" + service + "] work", e );
+			} catch ( ExecutionException e ) {
+				// Drainers catch the failures of the items themselves, so this is unexpected
+				drainer.fail( e.getCause() );
+			}
+		}
+
+		drainer.throwFailure();
+
+		return results;
+
+	}
+
+
+	public interface Task<T> {
+
+		void run( T item ) throws CandlestackException;
+
+	}
+
+
+	public interface Mapper<T, R> {
+
+		R map( T item ) throws CandlestackException;
+
+	}
+
+
+	private static class Drainer<T, R> implements Runnable {
+
+		private final List<T> items;
+
+		private final List<R> results;
+
+		private final Mapper<T, R> mapper;
+
+		private final Semaphore serviceLimit;
+
+		private final AtomicInteger nextIndex;
+
+		private Throwable failure;
+
+
+		private Drainer( List<T> items, List<R> results, Mapper<T, R> mapper, Semaphore serviceLimit ) {
+			this.items = items;
+			this.results = results;
+			this.mapper = mapper;
+			this.serviceLimit = serviceLimit;
+			nextIndex = new AtomicInteger();
+		}
+
+
+		@Override
+		public void run() {
+
+			int index;
+			while ( ( index = nextIndex.getAndIncrement() ) < items.size() ) {
+
+				try {
+					serviceLimit.acquire();
+				} catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+					fail( e );
+					return;
+				}
+
+				try {
+					R result = mapper.map( items.get( index ) );
+					synchronized ( results ) {
+						results.set( index, result );
+					}
+				} catch ( CandlestackException | RuntimeException e ) {
+					fail( e );
+				} finally {
+					serviceLimit.release();
+				}
+
+			}
+
+		}
+
+
+		private synchronized void fail( Throwable t ) {
+			if ( failure == null ) {
+				failure = t;
+			} else {
+				failure.addSuppressed( t );
+			}
+		}
+
+
+		private synchronized void throwFailure() throws CandlestackException {
+			if ( failure instanceof CandlestackException ) {
+				throw (CandlestackException) failure;
+			} else if ( failure instanceof RuntimeException ) {
+				throw (RuntimeException) failure;
+			} else if ( failure != null ) {
+				throw new CandlestackException( "MetricsFetcherWorkerPool encountered an unexpected error", failure );
+			}
+		}
+
+	}
+
+}
@@ -1,19 +1,19 @@
 package io.codearcs.candlestack;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileFilter;
-import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.time.FastDateFormat;
 import org.slf4j.Logger;
@@ -24,7 +24,14 @@ import com.google.gson.Gson;
 
 /**
  * Singleton object for managing the writing of the metrics
- * data to the file system.
+ * data. Metrics are always written to the daily metric files,
+ * by default each metric is written and flushed by the calling
+ * thread while in async mode they are queued and written out in
+ * batches by a dedicated worker. Any additional sinks registered
+ * via the <code>metrics.sinks</code> property are each fed from
+ * their own queue and worker. Unless disabled, the most recent
+ * window of every series is also kept in memory by the
+ * RecentMetricStore.
  *
  */
 public class MetricsReaderWriter {
@@ -32,27 +39,51 @@ public class MetricsReaderWriter {
 	private static final Logger LOGGER = LoggerFactory.getLogger( MetricsReaderWriter.class );
 
 	private static final String DIR_PROPERTY_KEY = "metrics.writer.dir",
-			COMPONENT = "candlestack_metric",
-			FILE_PREFIX = "candlestack_metrics_",
-			FILE_SUFFIX = ".log",
+			ASYNC_ENABLED_PROPERTY_KEY = "metrics.writer.async.enabled",
+			ASYNC_BUFFER_SIZE_PROPERTY_KEY = "metrics.writer.async.buffer.size",
+			ASYNC_BATCH_SIZE_PROPERTY_KEY = "metrics.writer.async.batch.size",
+			ASYNC_FLUSH_INTERVAL_MS_PROPERTY_KEY = "metrics.writer.async.flush.interval.ms",
+			SINKS_PROPERTY_KEY = "metrics.sinks",
+			SINK_PROPERTY_KEY_PREFIX = "metrics.sink.",
+			SINK_CLASS_PROPERTY_KEY_SUFFIX = ".class",
+			SINK_BUFFER_SIZE_PROPERTY_KEY_SUFFIX = ".buffer.size",
+			SINK_BATCH_SIZE_PROPERTY_KEY_SUFFIX = ".batch.size",
+			SINK_FLUSH_INTERVAL_MS_PROPERTY_KEY_SUFFIX = ".flush.interval.ms",
+			SINK_BLOCK_WHEN_FULL_PROPERTY_KEY_SUFFIX = ".block.when.full",
+			STORE_ENABLED_PROPERTY_KEY = "metrics.store.enabled",
+			STORE_RETENTION_HOURS_PROPERTY_KEY = "metrics.store.retention.hours",
+			FILE_SINK_NAME = "file",
+			STORE_SINK_NAME = "store",
 			TIMESTAMP_KEY = "@timestamp",
-			COMPONENT_KEY = "component",
 			TYPE_KEY = "type",
 			INSTANCE_ID_KEY = "instanceId",
 			METRIC_NAME_KEY = "metric_name",
-			METRIC_VALUE_KEY = "metric_value";
+			METRIC_VALUE_KEY = "metric_value",
+			SERIES_KEY_SEPARATOR = "\u0000";
 
-	private static final FastDateFormat FILE_DATE_FORMAT = FastDateFormat.getInstance( "yyyy_MM_dd" ),
-			METRIC_DATE_FORMAT = FastDateFormat.getInstance( "yyyy-MM-dd'T'HH:mm:ss.SSSZZ" );
+	private static final int DEFAULT_ASYNC_BUFFER_SIZE = 65_536,
+			DEFAULT_ASYNC_BATCH_SIZE = 1_024;
+
+	private static final long DEFAULT_ASYNC_FLUSH_INTERVAL_MS = 100,
+			DEFAULT_STORE_RETENTION_HOURS = 24,
+			SINK_SHUTDOWN_TIMEOUT_MS = 30_000;
+
+	private static final FastDateFormat METRIC_DATE_FORMAT = FastDateFormat.getInstance( "yyyy-MM-dd'T'HH:mm:ss.SSSZZ" );
 
 
 	private static MetricsReaderWriter instance = null;
 
 	private File dir;
 
-	private String currentFileName;
+	private Map<String, Long> mostRecentMetricDateIndex;
+
+	private FileMetricSink fileSink;
 
-	private Writer writer;
+	private ThreadLocal<MetricRecord> inlineRecord;
+
+	private List<MetricSinkWorker> sinkWorkers;
+
+	private RecentMetricStore recentMetricStore;
 
 
 	private MetricsReaderWriter() throws CandlestackException {
@@ -64,11 +95,56 @@ public class MetricsReaderWriter {
 			dir.mkdirs();
 		}
 
-		currentFileName = getFileName();
-		try {
-			writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( new File( dir, currentFileName ), true ), "UTF-8" ) );
-		} catch ( IOException e ) {
-			throw new CandlestackException( "MetricsWriter failed to open file writer for file [" + new File( dir, currentFileName ).getPath() + "]", e );
+		if ( GlobalCandlestackProperties.getBooleanProperty( STORE_ENABLED_PROPERTY_KEY, true ) ) {
+			long retentionHours = GlobalCandlestackProperties.getLongProperty( STORE_RETENTION_HOURS_PROPERTY_KEY, DEFAULT_STORE_RETENTION_HOURS );
+			if ( retentionHours < 1 ) {
+				throw new CandlestackPropertiesException( "MetricsWriter property [" + STORE_RETENTION_HOURS_PROPERTY_KEY + "] must be greater than 0" );
+			}
+			recentMetricStore = new RecentMetricStore( TimeUnit.HOURS.toMillis( retentionHours ) );
+		}
+
+		mostRecentMetricDateIndex = new ConcurrentHashMap<>();
+		indexMostRecentMetricDates();
+
+		fileSink = new FileMetricSink( dir, METRIC_DATE_FORMAT );
+
+		sinkWorkers = new ArrayList<>();
+		if ( GlobalCandlestackProperties.getBooleanProperty( ASYNC_ENABLED_PROPERTY_KEY, false ) ) {
+
+			// The metric files are what the checks rely on so wait for room rather than dropping metrics
+			sinkWorkers.add( createSinkWorker( FILE_SINK_NAME, fileSink,
+					GlobalCandlestackProperties.getIntProperty( ASYNC_BUFFER_SIZE_PROPERTY_KEY, DEFAULT_ASYNC_BUFFER_SIZE ),
+					GlobalCandlestackProperties.getIntProperty( ASYNC_BATCH_SIZE_PROPERTY_KEY, DEFAULT_ASYNC_BATCH_SIZE ),
+					GlobalCandlestackProperties.getLongProperty( ASYNC_FLUSH_INTERVAL_MS_PROPERTY_KEY, DEFAULT_ASYNC_FLUSH_INTERVAL_MS ),
+					true ) );
+			fileSink = null;
+
+		} else {
+			inlineRecord = ThreadLocal.withInitial( MetricRecord::new );
+		}
+
+		// Queries rely on the store matching the metric files so wait for room here as well
+		if ( recentMetricStore != null ) {
+			sinkWorkers.add( createSinkWorker( STORE_SINK_NAME, recentMetricStore, DEFAULT_ASYNC_BUFFER_SIZE, DEFAULT_ASYNC_BATCH_SIZE, DEFAULT_ASYNC_FLUSH_INTERVAL_MS, true ) );
+		}
+
+		for ( String sinkName : GlobalCandlestackProperties.getStringProperty( SINKS_PROPERTY_KEY, "" ).split( "," ) ) {
+			sinkName = sinkName.trim();
+			if ( sinkName.isEmpty() ) {
+				continue;
+			}
+
+			String propertyKeyPrefix = SINK_PROPERTY_KEY_PREFIX + sinkName;
+			sinkWorkers.add( createSinkWorker( sinkName, createSink( sinkName ),
+					GlobalCandlestackProperties.getIntProperty( propertyKeyPrefix + SINK_BUFFER_SIZE_PROPERTY_KEY_SUFFIX, DEFAULT_ASYNC_BUFFER_SIZE ),
+					GlobalCandlestackProperties.getIntProperty( propertyKeyPrefix + SINK_BATCH_SIZE_PROPERTY_KEY_SUFFIX, DEFAULT_ASYNC_BATCH_SIZE ),
+					GlobalCandlestackProperties.getLongProperty( propertyKeyPrefix + SINK_FLUSH_INTERVAL_MS_PROPERTY_KEY_SUFFIX, DEFAULT_ASYNC_FLUSH_INTERVAL_MS ),
+					GlobalCandlestackProperties.getBooleanProperty( propertyKeyPrefix + SINK_BLOCK_WHEN_FULL_PROPERTY_KEY_SUFFIX, false ) ) );
+		}
+
+		for ( MetricSinkWorker sinkWorker : sinkWorkers ) {
+			sinkWorker.start();
+			LOGGER.info( "MetricsWriter will write metrics to sink [" + sinkWorker.getSinkName() + "] asynchronously using a buffer of [" + sinkWorker.getCapacity() + "] metrics" );
 		}
 
 	}
@@ -91,41 +167,134 @@ public class MetricsReaderWriter {
 	}
 
 
-	public synchronized Date readMostRecentMetricDate( String type, String instanceId, String metricName ) throws CandlestackException {
+	/**
+	 * Looks up the date of the most recent metric written for the provided series. This is
+	 * served from an in-memory index so it doesn't touch the file system or block writers.
+	 *
+	 * @return the most recent metric date or null if no metric has been seen for the series
+	 */
+	public Date readMostRecentMetricDate( String type, String instanceId, String metricName ) {
+		Long mostRecentMetricDate = mostRecentMetricDateIndex.get( getSeriesKey( sanitizeString( type ), sanitizeString( instanceId ), sanitizeString( metricName ) ) );
+		return mostRecentMetricDate == null ? null : new Date( mostRecentMetricDate );
+	}
+
+
+	/**
+	 * @return the in-memory store of recent metrics or null if it has been disabled
+	 */
+	public RecentMetricStore getRecentMetricStore() {
+		return recentMetricStore;
+	}
+
+
+	/**
+	 * Makes a single pass over the most recently modified metric file recording the latest
+	 * metric date for every series found in it, the datapoints are also used to seed the
+	 * RecentMetricStore so it doesn't start out empty after a restart.
+	 */
+	private void indexMostRecentMetricDates() throws CandlestackException {
 
 		File lastModifiedFile = lastFileModified();
+		if ( lastModifiedFile == null ) {
+			return;
+		}
+
+		long startTime = System.currentTimeMillis();
+		try ( BufferedReader br = new BufferedReader( new FileReader( lastModifiedFile ) ) ) {
 
-		Date mostRecentMetricDate = null;
-		if ( lastModifiedFile != null ) {
-			try ( BufferedReader br = new BufferedReader( new FileReader( lastModifiedFile ) ) ) {
+			String line;
+			while ( ( line = br.readLine() ) != null ) {
 
-				String sanitizedType = sanitizeString( type );
-				String sanitedInstanceId = sanitizeString( instanceId );
-				String sanitizedMetricName = sanitizeString( metricName );
+				String type = extractStringValue( line, TYPE_KEY ),
+						instanceId = extractStringValue( line, INSTANCE_ID_KEY ),
+						metricName = extractStringValue( line, METRIC_NAME_KEY ),
+						timestamp = extractStringValue( line, TIMESTAMP_KEY );
 
-				String line;
-				while ( ( line = br.readLine() ) != null ) {
+				// Values containing escape sequences are rare enough to just let Gson deal with them
+				if ( isEscaped( type ) || isEscaped( instanceId ) || isEscaped( metricName ) ) {
+					Map<?, ?> metric = new Gson().fromJson( line, Map.class );
+					type = (String) metric.get( TYPE_KEY );
+					instanceId = (String) metric.get( INSTANCE_ID_KEY );
+					metricName = (String) metric.get( METRIC_NAME_KEY );
+				}
 
-					if ( line.contains( sanitizedType ) && line.contains( sanitedInstanceId ) && line.contains( sanitizedMetricName ) ) {
+				if ( type == null || instanceId == null || metricName == null || timestamp == null ) {
+					continue;
+				}
 
-						int colonIndex = line.indexOf( ":", line.indexOf( TIMESTAMP_KEY ) );
-						String timestamp = line.substring( colonIndex + 2, line.indexOf( '"', colonIndex + 2 ) );
-						Date currentDate = METRIC_DATE_FORMAT.parse( timestamp );
-						if ( mostRecentMetricDate == null || currentDate.after( mostRecentMetricDate ) ) {
-							mostRecentMetricDate = currentDate;
-						}
+				long metricDate = METRIC_DATE_FORMAT.parse( timestamp ).getTime();
+				updateMostRecentMetricDate( getSeriesKey( type, instanceId, metricName ), metricDate );
 
+				if ( recentMetricStore != null ) {
+					String value = extractNumberValue( line, METRIC_VALUE_KEY );
+					if ( value != null ) {
+						boolean decimal = value.indexOf( '.' ) >= 0;
+						recentMetricStore.write( new MetricRecord( type, instanceId, metricDate, metricName, decimal ? 0 : Long.parseLong( value ), decimal ? Double.parseDouble( value ) : 0, decimal ) );
 					}
-
 				}
 
-			} catch ( IOException | ParseException e ) {
-				throw new CandlestackException( "Encountered an error attempting to read file [" + lastModifiedFile.getAbsolutePath() + "]", e );
 			}
+
+		} catch ( IOException | ParseException | RuntimeException e ) {
+			throw new CandlestackException( "Encountered an error attempting to read file [" + lastModifiedFile.getAbsolutePath() + "]", e );
+		}
+
+		LOGGER.info( "MetricsReaderWriter indexed [" + mostRecentMetricDateIndex.size() + "] series from [" + lastModifiedFile.getName() + "] in [" + ( System.currentTimeMillis() - startTime ) + "] ms" );
+
+	}
+
+
+	private static String extractStringValue( String line, String key ) {
+
+		String keyPrefix = "\"" + key + "\":\"";
+		int startIndex = line.indexOf( keyPrefix );
+		if ( startIndex < 0 ) {
+			return null;
+		}
+		startIndex += keyPrefix.length();
+
+		// Gson escapes any embedded quotes so the first unescaped quote closes the value
+		int endIndex = startIndex;
+		while ( endIndex < line.length() && line.charAt( endIndex ) != '"' ) {
+			endIndex += line.charAt( endIndex ) == '\\' ? 2 : 1;
+		}
+
+		return endIndex < line.length() ? line.substring( startIndex, endIndex ) : null;
+
+	}
+
+
+	private static String extractNumberValue( String line, String key ) {
+
+		String keyPrefix = "\"" + key + "\":";
+		int startIndex = line.indexOf( keyPrefix );
+		if ( startIndex < 0 ) {
+			return null;
+		}
+		startIndex += keyPrefix.length();
+
+		int endIndex = startIndex;
+		while ( endIndex < line.length() && line.charAt( endIndex ) != ',' && line.charAt( endIndex ) != '}' ) {
+			endIndex++;
 		}
 
-		return mostRecentMetricDate;
+		return endIndex > startIndex && endIndex < line.length() ? line.substring( startIndex, endIndex ) : null;
+
+	}
+
+
+	private static boolean isEscaped( String value ) {
+		return value != null && value.indexOf( '\\' ) >= 0;
+	}
+
+
+	private void updateMostRecentMetricDate( String seriesKey, long metricDate ) {
+		mostRecentMetricDateIndex.merge( seriesKey, metricDate, Math::max );
+	}
+
 
+	static String getSeriesKey( String sanitizedType, String sanitizedInstanceId, String sanitizedMetricName ) {
+		return sanitizedType + SERIES_KEY_SEPARATOR + sanitizedInstanceId + SERIES_KEY_SEPARATOR + sanitizedMetricName;
 	}
 
 
@@ -158,22 +327,52 @@ public class MetricsReaderWriter {
 	}
 
 
+	/**
+	 * Writes a metric, floating point values (Double, Float and BigDecimal) are written
+	 * with full precision and everything else is written as a whole number.
+	 */
 	public void writeMetric( String type, String instanceId, Date metricDate, String metricName, Number metricValue ) throws CandlestackException {
-		writeMetric( convertMetricData( type, instanceId, metricDate, metricName, metricValue ) );
+		if ( metricValue instanceof Double || metricValue instanceof Float || metricValue instanceof BigDecimal ) {
+			writeMetric( type, instanceId, metricDate, metricName, metricValue.doubleValue() );
+		} else {
+			writeMetric( type, instanceId, metricDate, metricName, metricValue.longValue() );
+		}
+	}
+
+
+	public void writeMetric( String type, String instanceId, Date metricDate, String metricName, long metricValue ) throws CandlestackException {
+		writeMetric( type, instanceId, metricDate, metricName, metricValue, 0, false );
 	}
 
 
-	private String convertMetricData( String type, String instanceId, Date metricDate, String metricName, Number metricValue ) {
+	public void writeMetric( String type, String instanceId, Date metricDate, String metricName, double metricValue ) throws CandlestackException {
 
-		Map<String, Object> map = new HashMap<>();
-		map.put( COMPONENT_KEY, COMPONENT );
-		map.put( TYPE_KEY, sanitizeString( type ) );
-		map.put( INSTANCE_ID_KEY, sanitizeString( instanceId ) );
-		map.put( TIMESTAMP_KEY, METRIC_DATE_FORMAT.format( metricDate ) );
-		map.put( METRIC_NAME_KEY, sanitizeString( metricName ) );
-		map.put( METRIC_VALUE_KEY, metricValue.longValue() );
+		// NaN and Infinity have no JSON representation
+		if ( Double.isNaN( metricValue ) || Double.isInfinite( metricValue ) ) {
+			LOGGER.warn( "MetricsWriter skipping non-finite value [" + metricValue + "] for metric [" + metricName + "] of [" + instanceId + "]" );
+			return;
+		}
 
-		return new Gson().toJson( map );
+		writeMetric( type, instanceId, metricDate, metricName, 0, metricValue, true );
+
+	}
+
+
+	private void writeMetric( String type, String instanceId, Date metricDate, String metricName, long longValue, double doubleValue, boolean decimal ) throws CandlestackException {
+
+		long metricTime = metricDate.getTime();
+		if ( fileSink != null ) {
+			MetricRecord record = inlineRecord.get();
+			record.set( type, instanceId, metricTime, metricName, longValue, doubleValue, decimal );
+			writeMetric( record );
+			record.clear();
+		}
+
+		for ( MetricSinkWorker sinkWorker : sinkWorkers ) {
+			sinkWorker.offer( type, instanceId, metricTime, metricName, longValue, doubleValue, decimal );
+		}
+
+		updateMostRecentMetricDate( getSeriesKey( sanitizeString( type ), sanitizeString( instanceId ), sanitizeString( metricName ) ), metricTime );
 
 	}
 
@@ -183,50 +382,68 @@ public class MetricsReaderWriter {
 	}
 
 
-	private void close() {
-		if ( writer != null ) {
-			try {
-				writer.close();
-			} catch ( IOException e ) {
-				LOGGER.error( "MetricsWriter failed to destroy writer", e );
-			}
+	private synchronized void writeMetric( MetricRecord record ) throws CandlestackException {
+		fileSink.write( record );
+		fileSink.flush();
+	}
+
+
+	private MetricSinkWorker createSinkWorker( String sinkName, MetricSink sink, int bufferSize, int batchSize, long flushIntervalMs, boolean blockWhenFull ) throws CandlestackPropertiesException {
+		if ( bufferSize < 1 || batchSize < 1 || flushIntervalMs < 1 ) {
+			throw new CandlestackPropertiesException( "MetricsWriter buffer size, batch size and flush interval for sink [" + sinkName + "] must all be greater than 0" );
 		}
+		return new MetricSinkWorker( sinkName, sink, bufferSize, batchSize, flushIntervalMs, blockWhenFull );
 	}
 
 
-	private synchronized void writeMetric( String metricData ) throws CandlestackException {
+	private MetricSink createSink( String sinkName ) throws CandlestackException {
 
+		String className = GlobalCandlestackProperties.getStringProperty( SINK_PROPERTY_KEY_PREFIX + sinkName + SINK_CLASS_PROPERTY_KEY_SUFFIX );
 		try {
 
-			String fileName = getFileName();
-			if ( writer != null && !currentFileName.equals( fileName ) ) {
-
-				writer.close();
-				writer = null;
+			Class<?> sinkClass = Class.forName( className );
+			if ( !MetricSink.class.isAssignableFrom( sinkClass ) ) {
+				throw new CandlestackPropertiesException( "MetricsWriter sink class [" + className + "] for sink [" + sinkName + "] does not implement MetricSink" );
+			}
 
-				currentFileName = fileName;
-				writer = new FileWriter( new File( dir, currentFileName ), true );
+			return (MetricSink) sinkClass.getConstructor( String.class ).newInstance( sinkName );
 
-			} else if ( writer == null ) {
+		} catch ( InvocationTargetException e ) {
+			if ( e.getCause() instanceof CandlestackException ) {
+				throw (CandlestackException) e.getCause();
+			}
+			throw new CandlestackException( "MetricsWriter failed to create sink [" + sinkName + "] of class [" + className + "]", e.getCause() );
+		} catch ( ReflectiveOperationException e ) {
+			throw new CandlestackException( "MetricsWriter failed to create sink [" + sinkName + "] of class [" + className + "]", e );
+		}
 
-				currentFileName = fileName;
-				writer = new FileWriter( new File( dir, currentFileName ), true );
+	}
 
-			}
 
-			writer.write( metricData );
-			writer.write( "\r\n" );
-			writer.flush();
+	private void close() {
 
-		} catch ( IOException e ) {
-			throw new CandlestackException( "MetricsWriter encountered an error attempting to close and open a new writer", e );
+		for ( MetricSinkWorker sinkWorker : sinkWorkers ) {
+			sinkWorker.shutdown();
 		}
 
-	}
+		for ( MetricSinkWorker sinkWorker : sinkWorkers ) {
+			try {
+				sinkWorker.join( SINK_SHUTDOWN_TIMEOUT_MS );
+			} catch ( InterruptedException e ) {
+				LOGGER.error( "MetricsWriter got interrupted while waiting for the worker of sink [" + sinkWorker.getSinkName() + "] to finish" );
+			}
 
+			if ( sinkWorker.isAlive() ) {
+				LOGGER.error( "MetricsWriter gave up waiting for the worker of sink [" + sinkWorker.getSinkName() + "] to finish, any remaining metrics for it will be lost" );
+			} else {
+				sinkWorker.closeSink();
+			}
+		}
+
+		if ( fileSink != null ) {
+			fileSink.close();
+		}
 
-	private String getFileName() {
-		return FILE_PREFIX + FILE_DATE_FORMAT.format( new Date() ) + FILE_SUFFIX;
 	}
 
 }
@@ -0,0 +1,263 @@
+package io.codearcs.candlestack;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Keeps the most recent window of every series written through the MetricsReaderWriter
+ * in memory so it can be queried without going back to Elasticsearch. Each series is held
+ * as a chain of Gorilla compressed blocks, with regular CloudWatch datapoints this comes
+ * to a couple of bytes per datapoint so 10k series over 24 hours fits in a few tens of MB.
+ *
+ * Series are looked up by the same type, instance id and metric name used when writing
+ * the metric. Writes come from a single sink worker while queries may come from any thread.
+ */
+public class RecentMetricStore implements MetricSink {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger( RecentMetricStore.class );
+
+	private static final long MAX_BLOCK_SPAN_MS = TimeUnit.HOURS.toMillis( 2 ),
+			MIN_BLOCK_SPAN_MS = TimeUnit.MINUTES.toMillis( 1 ),
+			SWEEP_INTERVAL_MS = TimeUnit.MINUTES.toMillis( 1 );
+
+
+	private final long retentionMs, blockSpanMs;
+
+	private final Map<String, Series> seriesMap;
+
+	private long lastSweep;
+
+
+	RecentMetricStore( long retentionMs ) {
+		this.retentionMs = retentionMs;
+
+		// Blocks are evicted whole so keep them small relative to the retention window
+		blockSpanMs = Math.max( MIN_BLOCK_SPAN_MS, Math.min( MAX_BLOCK_SPAN_MS, retentionMs / 8 ) );
+
+		seriesMap = new ConcurrentHashMap<>();
+		lastSweep = System.currentTimeMillis();
+	}
+
+
+	public long getRetentionMs() {
+		return retentionMs;
+	}
+
+
+	@Override
+	public void write( MetricRecord record ) {
+
+		long evictBefore = System.currentTimeMillis() - retentionMs;
+		if ( record.metricDate < evictBefore ) {
+			return;
+		}
+
+		double value = record.decimal ? record.doubleValue : record.longValue;
+		Series series = seriesMap.computeIfAbsent( getSeriesKey( record.type, record.instanceId, record.metricName ), key -> new Series() );
+		synchronized ( series ) {
+			series.append( record.metricDate, value, blockSpanMs );
+			series.evict( evictBefore );
+		}
+
+	}
+
+
+	@Override
+	public void flush() {
+
+		// Series that are no longer being written to only get cleaned up here
+		long now = System.currentTimeMillis();
+		if ( now - lastSweep < SWEEP_INTERVAL_MS ) {
+			return;
+		}
+		lastSweep = now;
+
+		long evictBefore = now - retentionMs;
+		for ( Iterator<Series> iter = seriesMap.values().iterator(); iter.hasNext(); ) {
+			Series series = iter.next();
+			synchronized ( series ) {
+				series.evict( evictBefore );
+				if ( series.blocks.isEmpty() ) {
+					iter.remove();
+				}
+			}
+		}
+
+		if ( LOGGER.isDebugEnabled() ) {
+			LOGGER.debug( "RecentMetricStore is holding [" + seriesMap.size() + "] series using [" + getSizeInBytes() + "] bytes" );
+		}
+
+	}
+
+
+	@Override
+	public void close() {
+		seriesMap.clear();
+	}
+
+
+	/**
+	 * @return the most recent datapoint for the series or null if none is held
+	 */
+	public MetricPoint getLatest( String type, String instanceId, String metricName ) {
+
+		Series series = seriesMap.get( getSeriesKey( type, instanceId, metricName ) );
+		if ( series == null ) {
+			return null;
+		}
+
+		synchronized ( series ) {
+			return series.blocks.isEmpty() ? null : new MetricPoint( series.latestTimestamp, series.latestValue );
+		}
+
+	}
+
+
+	/**
+	 * Looks up the datapoints for the series between the provided times (inclusive),
+	 * ordered by timestamp.
+	 */
+	public List<MetricPoint> getRange( String type, String instanceId, String metricName, long fromTime, long toTime ) {
+
+		List<MetricPoint> points = new ArrayList<>();
+
+		Series series = seriesMap.get( getSeriesKey( type, instanceId, metricName ) );
+		if ( series == null ) {
+			return points;
+		}
+
+		boolean ordered = true;
+		synchronized ( series ) {
+			for ( GorillaBlock block : series.blocks ) {
+				if ( block.getMaxTime() < fromTime || block.getMinTime() > toTime ) {
+					continue;
+				}
+
+				GorillaBlock.Reader reader = block.reader();
+				while ( reader.next() ) {
+					long timestamp = reader.getTimestamp();
+					if ( timestamp >= fromTime && timestamp <= toTime ) {
+						ordered &= points.isEmpty() || points.get( points.size() - 1 ).getTimestamp() <= timestamp;
+						points.add( new MetricPoint( timestamp, reader.getValue() ) );
+					}
+				}
+			}
+		}
+
+		// Datapoints are almost always written in order, only pay for the sort when they weren't
+		if ( !ordered ) {
+			points.sort( ( a, b ) -> Long.compare( a.getTimestamp(), b.getTimestamp() ) );
+		}
+
+		return points;
+
+	}
+
+
+	/**
+	 * Computes the count, min, max, sum, average and latest value of the series between
+	 * the provided times (inclusive) without materializing the datapoints.
+	 */
+	public MetricAggregate getAggregate( String type, String instanceId, String metricName, long fromTime, long toTime ) {
+
+		MetricAggregate aggregate = new MetricAggregate();
+
+		Series series = seriesMap.get( getSeriesKey( type, instanceId, metricName ) );
+		if ( series == null ) {
+			return aggregate;
+		}
+
+		synchronized ( series ) {
+			for ( GorillaBlock block : series.blocks ) {
+				if ( block.getMaxTime() < fromTime || block.getMinTime() > toTime ) {
+					continue;
+				}
+
+				GorillaBlock.Reader reader = block.reader();
+				while ( reader.next() ) {
+					long timestamp = reader.getTimestamp();
+					if ( timestamp >= fromTime && timestamp <= toTime ) {
+						aggregate.add( timestamp, reader.getValue() );
+					}
+				}
+			}
+		}
+
+		return aggregate;
+
+	}
+
+
+	public int getSeriesCount() {
+		return seriesMap.size();
+	}
+
+
+	/**
+	 * @return the approximate number of bytes used by the compressed datapoints
+	 */
+	public long getSizeInBytes() {
+		long size = 0;
+		for ( Series series : seriesMap.values() ) {
+			synchronized ( series ) {
+				for ( GorillaBlock block : series.blocks ) {
+					size += block.getSizeInBytes();
+				}
+			}
+		}
+		return size;
+	}
+
+
+	private static String getSeriesKey( String type, String instanceId, String metricName ) {
+		return MetricsReaderWriter.getSeriesKey( MetricsReaderWriter.sanitizeString( type ), MetricsReaderWriter.sanitizeString( instanceId ), MetricsReaderWriter.sanitizeString( metricName ) );
+	}
+
+
+	private static class Series {
+
+		private final ArrayDeque<GorillaBlock> blocks = new ArrayDeque<>();
+
+		private long latestTimestamp = Long.MIN_VALUE;
+
+		private double latestValue;
+
+
+		private void append( long timestamp, double value, long blockSpanMs ) {
+
+			GorillaBlock current = blocks.peekLast();
+			if ( current == null || timestamp - current.getStartTime() >= blockSpanMs ) {
+				if ( current != null ) {
+					current.seal();
+				}
+				blocks.addLast( new GorillaBlock( timestamp, value ) );
+			} else {
+				current.append( timestamp, value );
+			}
+
+			if ( timestamp >= latestTimestamp ) {
+				latestTimestamp = timestamp;
+				latestValue = value;
+			}
+
+		}
+
+
+		private void evict( long evictBefore ) {
+			while ( !blocks.isEmpty() && blocks.peekFirst().getMaxTime() < evictBefore ) {
+				blocks.pollFirst();
+			}
+		}
+
+	}
+
+}
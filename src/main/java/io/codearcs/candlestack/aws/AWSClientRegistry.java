@@ -0,0 +1,155 @@
+package io.codearcs.candlestack.aws;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.AmazonWebServiceClient;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.client.builder.AwsClientBuilder;
+
+import io.codearcs.candlestack.CandlestackPropertiesException;
+
+
+/**
+ * Hands out a single shared client per service, region and credentials rather than every
+ * fetcher and lookup building its own. Clients are thread safe and each one holds its own
+ * connection pool, so sharing them means fewer sockets and TLS handshakes, and the pools
+ * are tuned through a common ClientConfiguration. Every client goes through the
+ * {@link AWSRateLimiter}.
+ */
+public class AWSClientRegistry {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger( AWSClientRegistry.class );
+
+
+	private static AWSClientRegistry instance = null;
+
+
+	private AWSRateLimiter rateLimiter;
+
+	private ClientConfiguration clientConfiguration;
+
+	private AWSCredentialsProvider defaultCredentials;
+
+	private Map<ClientKey, Object> clients;
+
+
+	private AWSClientRegistry() throws CandlestackPropertiesException {
+
+		rateLimiter = AWSRateLimiter.getInstance();
+
+		clientConfiguration = new ClientConfiguration()
+				.withMaxConnections( GlobalAWSProperties.getClientMaxConnections() )
+				.withTcpKeepAlive( GlobalAWSProperties.isClientTcpKeepAliveEnabled() )
+				.withConnectionTTL( GlobalAWSProperties.getClientConnectionTTLMs() )
+				.withGzip( GlobalAWSProperties.isClientGzipEnabled() )
+				.withRetryPolicy( rateLimiter.getRetryPolicy() );
+
+		defaultCredentials = DefaultAWSCredentialsProviderChain.getInstance();
+
+		clients = new HashMap<>();
+
+	}
+
+
+	public synchronized static AWSClientRegistry getInstance() throws CandlestackPropertiesException {
+		if ( instance == null ) {
+			instance = new AWSClientRegistry();
+		}
+		return instance;
+	}
+
+
+	public synchronized static void destroy() {
+		if ( instance != null ) {
+			for ( Object client : instance.clients.values() ) {
+				if ( client instanceof AmazonWebServiceClient ) {
+					( (AmazonWebServiceClient) client ).shutdown();
+				}
+			}
+			instance = null;
+		}
+	}
+
+
+	/**
+	 * @return the shared client for the service in the region using the default credentials
+	 */
+	public <B extends AwsClientBuilder<B, T>, T> T getClient( Supplier<B> builderSupplier, String region ) {
+		return getClient( builderSupplier, region, defaultCredentials );
+	}
+
+
+	/**
+	 * @param builderSupplier
+	 *          creates a builder for the service, e.g. AmazonEC2ClientBuilder::standard
+	 * @param region
+	 *          the region of the client, null to use the default region lookup
+	 * @return the shared client, built the first time it is asked for
+	 */
+	@SuppressWarnings( "unchecked" )
+	public synchronized <B extends AwsClientBuilder<B, T>, T> T getClient( Supplier<B> builderSupplier, String region, AWSCredentialsProvider credentials ) {
+
+		B builder = builderSupplier.get();
+		ClientKey key = new ClientKey( builder.getClass().getSimpleName().replaceFirst( "ClientBuilder$", "" ), region, credentials );
+
+		Object client = clients.get( key );
+		if ( client == null ) {
+
+			rateLimiter.configure( builder )
+					.withClientConfiguration( new ClientConfiguration( clientConfiguration ) )
+					.withCredentials( credentials );
+			if ( region != null ) {
+				builder.withRegion( region );
+			}
+			client = builder.build();
+			clients.put( key, client );
+
+			LOGGER.info( "AWSClientRegistry built a client for [" + key.service + "] in region [" + ( region == null ? "default" : region ) + "]" );
+
+		}
+
+		return (T) client;
+
+	}
+
+
+	private static class ClientKey {
+
+		private final String service, region;
+
+		private final AWSCredentialsProvider credentials;
+
+
+		private ClientKey( String service, String region, AWSCredentialsProvider credentials ) {
+			this.service = service;
+			this.region = region;
+			this.credentials = credentials;
+		}
+
+
+		@Override
+		public boolean equals( Object obj ) {
+			if ( !( obj instanceof ClientKey ) ) {
+				return false;
+			}
+			ClientKey other = (ClientKey) obj;
+			return service.equals( other.service ) && Objects.equals( region, other.region ) && credentials == other.credentials;
+		}
+
+
+		@Override
+		public int hashCode() {
+			return Objects.hash( service, region, System.identityHashCode( credentials ) );
+		}
+
+	}
+
+}
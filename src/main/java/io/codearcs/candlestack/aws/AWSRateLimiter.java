@@ -0,0 +1,229 @@
+package io.codearcs.candlestack.aws;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.SdkBaseException;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.handlers.HandlerAfterAttemptContext;
+import com.amazonaws.handlers.HandlerBeforeAttemptContext;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryUtils;
+
+import io.codearcs.candlestack.CandlestackPropertiesException;
+
+
+/**
+ * Limits the rate of requests made to each AWS API across all of the clients, so that
+ * parallel fetches stay under the account level limits rather than relying on being
+ * throttled. Each API gets a token bucket whose rate is adjusted AIMD style, halved when
+ * a request is throttled and raised a step at a time while requests keep succeeding.
+ *
+ * Every attempt goes through the limiter, including the retries the SDK makes, which are
+ * allowed more attempts for throttling errors than for other errors.
+ */
+public class AWSRateLimiter extends RequestHandler2 {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger( AWSRateLimiter.class );
+
+	private static final double DECREASE_FACTOR = 0.5,
+			INCREASE_STEP_TPS = 1;
+
+	// How often the rate can be adjusted, so a burst of throttled requests only halves it once
+	private static final long ADJUST_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos( 1 );
+
+
+	private static AWSRateLimiter instance = null;
+
+
+	private final boolean enabled;
+
+	private final int initialTPS, minTPS, maxTPS, maxThrottleRetries;
+
+	private final RetryPolicy retryPolicy;
+
+	private final Map<String, ApiLimiter> apiLimiters;
+
+
+	private AWSRateLimiter() throws CandlestackPropertiesException {
+
+		enabled = GlobalAWSProperties.isThrottleEnabled();
+		initialTPS = GlobalAWSProperties.getThrottleInitialTPS();
+		minTPS = GlobalAWSProperties.getThrottleMinTPS();
+		maxTPS = GlobalAWSProperties.getThrottleMaxTPS();
+		maxThrottleRetries = GlobalAWSProperties.getThrottleMaxRetries();
+
+		if ( minTPS > initialTPS || initialTPS > maxTPS ) {
+			throw new CandlestackPropertiesException( "AWSRateLimiter requires the min tps [" + minTPS + "] <= the initial tps [" + initialTPS + "] <= the max tps [" + maxTPS + "]" );
+		}
+
+		retryPolicy = new RetryPolicy( this::shouldRetry, PredefinedRetryPolicies.DEFAULT_BACKOFF_STRATEGY,
+				Math.max( maxThrottleRetries, PredefinedRetryPolicies.DEFAULT_MAX_ERROR_RETRY ), false );
+
+		apiLimiters = new ConcurrentHashMap<>();
+
+	}
+
+
+	public synchronized static AWSRateLimiter getInstance() throws CandlestackPropertiesException {
+		if ( instance == null ) {
+			instance = new AWSRateLimiter();
+		}
+		return instance;
+	}
+
+
+	/**
+	 * Sets up the client being built to go through the limiter.
+	 *
+	 * @return the provided builder
+	 */
+	public <B extends AwsClientBuilder<B, ?>> B configure( B builder ) {
+		if ( enabled ) {
+			builder.withRequestHandlers( this );
+		}
+		return builder;
+	}
+
+
+	/**
+	 * @return the retry policy clients should use, which retries throttled requests more often than other errors
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+
+	@Override
+	public void beforeAttempt( HandlerBeforeAttemptContext context ) {
+
+		long waitNanos = getApiLimiter( context.getRequest() ).reserve();
+		if ( waitNanos > 0 ) {
+			try {
+				TimeUnit.NANOSECONDS.sleep( waitNanos );
+			} catch ( InterruptedException e ) {
+				// Let the SDK notice the interrupt and abort the request
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+
+	@Override
+	public void afterAttempt( HandlerAfterAttemptContext context ) {
+
+		ApiLimiter apiLimiter = getApiLimiter( context.getRequest() );
+		Exception exception = context.getException();
+		if ( exception == null ) {
+			apiLimiter.increase();
+		} else if ( exception instanceof SdkBaseException && RetryUtils.isThrottlingException( (SdkBaseException) exception ) ) {
+			apiLimiter.decrease();
+		}
+
+	}
+
+
+	private boolean shouldRetry( AmazonWebServiceRequest request, AmazonClientException exception, int retriesAttempted ) {
+		if ( RetryUtils.isThrottlingException( exception ) ) {
+			return retriesAttempted < maxThrottleRetries;
+		}
+		return retriesAttempted < PredefinedRetryPolicies.DEFAULT_MAX_ERROR_RETRY && PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION.shouldRetry( request, exception, retriesAttempted );
+	}
+
+
+	private ApiLimiter getApiLimiter( Request<?> request ) {
+
+		// Limits apply per operation so key on the request type, e.g. AmazonCloudWatch.GetMetricData
+		String api = request.getServiceName();
+		AmazonWebServiceRequest originalRequest = request.getOriginalRequest();
+		if ( originalRequest != null ) {
+			api += "." + originalRequest.getClass().getSimpleName().replaceFirst( "Request$", "" );
+		}
+
+		return apiLimiters.computeIfAbsent( api, ApiLimiter::new );
+
+	}
+
+
+	/**
+	 * Token bucket for a single API, tokens are handed out ahead of time so callers only
+	 * hold the lock long enough to work out how long to wait.
+	 */
+	private class ApiLimiter {
+
+		private final String api;
+
+		private double rate, tokens;
+
+		private long lastRefillNanos, lastAdjustNanos;
+
+
+		private ApiLimiter( String api ) {
+			this.api = api;
+			rate = initialTPS;
+			tokens = rate;
+			lastRefillNanos = lastAdjustNanos = System.nanoTime();
+		}
+
+
+		/**
+		 * @return how long the caller needs to wait before making its request in nanoseconds
+		 */
+		private synchronized long reserve() {
+			refill();
+			tokens--;
+			return tokens >= 0 ? 0 : (long) ( -tokens / rate * TimeUnit.SECONDS.toNanos( 1 ) );
+		}
+
+
+		private synchronized void decrease() {
+
+			long now = System.nanoTime();
+			if ( now - lastAdjustNanos < ADJUST_INTERVAL_NANOS || rate <= minTPS ) {
+				return;
+			}
+
+			refill();
+			rate = Math.max( minTPS, rate * DECREASE_FACTOR );
+			tokens = Math.min( tokens, rate );
+			lastAdjustNanos = now;
+
+			LOGGER.info( "AWSRateLimiter was throttled on [" + api + "], lowering the rate to [" + rate + "] requests per second" );
+
+		}
+
+
+		private synchronized void increase() {
+
+			long now = System.nanoTime();
+			if ( now - lastAdjustNanos < ADJUST_INTERVAL_NANOS || rate >= maxTPS ) {
+				return;
+			}
+
+			refill();
+			rate = Math.min( maxTPS, rate + INCREASE_STEP_TPS );
+			lastAdjustNanos = now;
+
+		}
+
+
+		private void refill() {
+			long now = System.nanoTime();
+			// Allow up to a second worth of requests to build up
+			tokens = Math.min( rate, tokens + ( now - lastRefillNanos ) * rate / TimeUnit.SECONDS.toNanos( 1 ) );
+			lastRefillNanos = now;
+		}
+
+	}
+
+}
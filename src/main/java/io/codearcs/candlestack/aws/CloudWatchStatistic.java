@@ -12,20 +12,37 @@ public enum CloudWatchStatistic {
 	SampleCount;
 
 
+	/**
+	 * @return the full precision value of this statistic from the provided datapoint
+	 * @throws CandlestackAWSException
+	 *           if the datapoint doesn't contain a value for this statistic
+	 */
 	public double getValueFromDatapoint( Datapoint datapoint ) throws CandlestackAWSException {
+		Double value;
 		switch ( this ) {
 			case Minimum :
-				return datapoint.getMinimum();
+				value = datapoint.getMinimum();
+				break;
 			case Maximum :
-				return datapoint.getMaximum();
+				value = datapoint.getMaximum();
+				break;
 			case Sum :
-				return datapoint.getSum();
+				value = datapoint.getSum();
+				break;
 			case Average :
-				return datapoint.getAverage();
+				value = datapoint.getAverage();
+				break;
 			case SampleCount :
-				return datapoint.getSampleCount();
+				value = datapoint.getSampleCount();
+				break;
 			default :
 				throw new CandlestackAWSException( "Unsupported CloudWatchStatistic [" + name() + "]" );
 		}
+
+		if ( value == null ) {
+			throw new CandlestackAWSException( "Datapoint did not contain a value for CloudWatchStatistic [" + name() + "]" );
+		}
+
+		return value.doubleValue();
 	}
 }
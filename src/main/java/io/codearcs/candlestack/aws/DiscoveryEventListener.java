@@ -0,0 +1,364 @@
+package io.codearcs.candlestack.aws;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
+import com.amazonaws.services.ec2.model.Filter;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import io.codearcs.candlestack.CandlestackException;
+import io.codearcs.candlestack.CandlestackPropertiesException;
+import io.codearcs.candlestack.aws.ec2.EC2Inventory;
+import io.codearcs.candlestack.aws.ec2.EC2Util;
+import io.codearcs.candlestack.aws.elasticbeanstalk.EBInventory;
+import io.codearcs.candlestack.aws.rds.RDSInventory;
+
+
+/**
+ * Consumes the EventBridge state change events for EC2, Elastic Beanstalk and RDS from an
+ * SQS queue and applies them to the inventories as they arrive, so new and removed hosts
+ * are picked up within seconds. EC2 instance changes are applied as deltas, describing
+ * only the instances that changed, while RDS and Elastic Beanstalk events just mark the
+ * inventory to be described again. The inventories are still fully described on the
+ * reconcile interval in case an event is missed.
+ *
+ * Messages are only deleted once their changes have been applied, anything that fails is
+ * redelivered by SQS once its visibility timeout expires.
+ *
+ * The host monitor lookups skip resources younger than their new resource monitor delay, so
+ * besides the check requested straight away another is scheduled for when the resources
+ * that changed become old enough to be monitored.
+ */
+public class DiscoveryEventListener extends Thread {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger( DiscoveryEventListener.class );
+
+	private static final int MAX_MESSAGES = 10,
+			WAIT_TIME_SEC = 20;
+
+	private static final long ERROR_BACKOFF_MS = TimeUnit.SECONDS.toMillis( 5 ),
+			SCHEDULED_CHECK_ROUNDING_MS = TimeUnit.MINUTES.toMillis( 1 );
+
+	private static final String SOURCE_EC2 = "aws.ec2",
+			SOURCE_EB = "aws.elasticbeanstalk",
+			SOURCE_RDS = "aws.rds";
+
+	// A pending instance isn't running yet, it is picked up by its running event
+	private static final String EC2_STATE_PENDING = "pending";
+
+
+	private String queueUrl;
+
+	private AmazonSQS sqsClient;
+
+	private AmazonEC2 ec2Client;
+
+	private boolean ec2Enabled, ebEnabled, rdsEnabled;
+
+	private long ec2NewResourceDelayMs, ebNewResourceDelayMs, rdsNewResourceDelayMs;
+
+	private Runnable changeListener;
+
+	private ScheduledExecutorService checkScheduler;
+
+	// The times checks are scheduled for, so resources changing around the same time share one
+	private Set<Long> scheduledCheckTimes;
+
+	private volatile boolean keepAlive;
+
+
+	/**
+	 * @param changeListener
+	 *          called after changes from the events have been applied to the inventories
+	 */
+	public DiscoveryEventListener( Runnable changeListener ) throws CandlestackPropertiesException {
+		this( changeListener,
+				AWSClientRegistry.getInstance().getClient( AmazonSQSClientBuilder::standard, GlobalAWSProperties.getRegion() ),
+				AWSClientRegistry.getInstance().getClient( AmazonEC2ClientBuilder::standard, GlobalAWSProperties.getRegion() ) );
+	}
+
+
+	DiscoveryEventListener( Runnable changeListener, AmazonSQS sqsClient, AmazonEC2 ec2Client ) throws CandlestackPropertiesException {
+		super( "DiscoveryEventListener" );
+		setDaemon( true );
+
+		this.changeListener = changeListener;
+
+		queueUrl = GlobalAWSProperties.getDiscoveryQueueUrl();
+
+		ec2Enabled = GlobalAWSProperties.isEC2Enabled();
+		ebEnabled = GlobalAWSProperties.isEBEnabled();
+		rdsEnabled = GlobalAWSProperties.isRDSEnabled();
+
+		ec2NewResourceDelayMs = TimeUnit.MINUTES.toMillis( GlobalAWSProperties.getEC2NewResourceMonitorDelay() );
+		ebNewResourceDelayMs = TimeUnit.MINUTES.toMillis( GlobalAWSProperties.getEBNewResourceMonitorDelay() );
+		rdsNewResourceDelayMs = TimeUnit.MINUTES.toMillis( GlobalAWSProperties.getRDSNewResourceMonitorDelay() );
+
+		checkScheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+			Thread thread = new Thread( runnable, "DiscoveryEventListener-scheduler" );
+			thread.setDaemon( true );
+			return thread;
+		} );
+		scheduledCheckTimes = ConcurrentHashMap.newKeySet();
+
+		this.sqsClient = sqsClient;
+		this.ec2Client = ec2Client;
+
+		LOGGER.info( "DiscoveryEventListener will consume state change events from [" + queueUrl + "]" );
+	}
+
+
+	public void shutdown() {
+		keepAlive = false;
+
+		checkScheduler.shutdownNow();
+
+		// Wake it up if it is waiting on a backoff
+		interrupt();
+	}
+
+
+	@Override
+	public void run() {
+
+		ReceiveMessageRequest request = new ReceiveMessageRequest()
+				.withQueueUrl( queueUrl )
+				.withMaxNumberOfMessages( MAX_MESSAGES )
+				.withWaitTimeSeconds( WAIT_TIME_SEC );
+
+		keepAlive = true;
+		while ( keepAlive ) {
+
+			try {
+				List<Message> messages = sqsClient.receiveMessage( request ).getMessages();
+				if ( !messages.isEmpty() ) {
+					handleMessages( messages );
+				}
+			} catch ( CandlestackException | RuntimeException e ) {
+
+				if ( !keepAlive ) {
+					break;
+				}
+
+				LOGGER.error( "DiscoveryEventListener encountered an error while consuming events from [" + queueUrl + "]", e );
+				try {
+					TimeUnit.MILLISECONDS.sleep( ERROR_BACKOFF_MS );
+				} catch ( InterruptedException ie ) {
+					// Shutting down
+				}
+
+			}
+
+		}
+
+	}
+
+
+	private void handleMessages( List<Message> messages ) throws CandlestackException {
+
+		// Collect the changes of all of the messages so they can be applied together
+		Set<String> changedInstanceIds = new HashSet<>();
+		boolean ebChanged = false, rdsChanged = false;
+
+		for ( Message message : messages ) {
+
+			JsonObject event = parseEvent( message.getBody() );
+			if ( event == null ) {
+				LOGGER.warn( "DiscoveryEventListener is discarding message [" + message.getMessageId() + "] as it is not a state change event" );
+				continue;
+			}
+
+			String source = getString( event, "source" );
+			JsonObject detail = event.has( "detail" ) && event.get( "detail" ).isJsonObject() ? event.getAsJsonObject( "detail" ) : new JsonObject();
+			if ( SOURCE_EC2.equals( source ) ) {
+				String instanceId = getString( detail, "instance-id" ),
+						state = getString( detail, "state" );
+				if ( instanceId != null && !EC2_STATE_PENDING.equals( state ) ) {
+					changedInstanceIds.add( instanceId );
+				}
+			} else if ( SOURCE_EB.equals( source ) ) {
+				ebChanged = true;
+				if ( ebEnabled ) {
+					scheduleCheck( getEventTime( event ), ebNewResourceDelayMs );
+				}
+			} else if ( SOURCE_RDS.equals( source ) ) {
+				rdsChanged = true;
+				if ( rdsEnabled ) {
+					scheduleCheck( getEventTime( event ), rdsNewResourceDelayMs );
+				}
+			} else {
+				LOGGER.debug( "DiscoveryEventListener is ignoring an event from source [" + source + "]" );
+			}
+
+		}
+
+		boolean changed = applyInstanceChanges( changedInstanceIds );
+		if ( ebChanged && ebEnabled ) {
+			EBInventory.getInstance().invalidateEnvironments();
+			changed = true;
+		}
+		if ( rdsChanged && rdsEnabled ) {
+			RDSInventory.getInstance().invalidate();
+			changed = true;
+		}
+
+		// Everything has been applied so the messages are no longer needed
+		List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>( messages.size() );
+		for ( int i = 0; i < messages.size(); i++ ) {
+			entries.add( new DeleteMessageBatchRequestEntry().withId( String.valueOf( i ) ).withReceiptHandle( messages.get( i ).getReceiptHandle() ) );
+		}
+		sqsClient.deleteMessageBatch( new DeleteMessageBatchRequest().withQueueUrl( queueUrl ).withEntries( entries ) );
+
+		if ( changed ) {
+			changeListener.run();
+		}
+
+	}
+
+
+	/**
+	 * Describes only the instances that changed and applies them to the inventories.
+	 *
+	 * @return true if any changes were applied
+	 */
+	private boolean applyInstanceChanges( Set<String> changedInstanceIds ) throws CandlestackException {
+
+		if ( changedInstanceIds.isEmpty() || ( !ec2Enabled && !ebEnabled ) ) {
+			return false;
+		}
+
+		List<Filter> filters = Arrays.asList(
+				new Filter().withName( "instance-id" ).withValues( changedInstanceIds ),
+				new Filter().withName( "instance-state-name" ).withValues( "running" ) );
+		List<Instance> runningInstances = new ArrayList<>();
+		EC2Util.describeInstances( ec2Client, filters, runningInstances::add );
+
+		LOGGER.info( "DiscoveryEventListener is applying state changes of [" + changedInstanceIds.size() + "] EC2 instances, [" + runningInstances.size() + "] of which are running" );
+
+		if ( ec2Enabled ) {
+			EC2Inventory.getInstance().applyInstanceChanges( changedInstanceIds, runningInstances );
+		}
+		if ( ebEnabled ) {
+			EBInventory.getInstance().applyInstanceChanges( changedInstanceIds, runningInstances );
+		}
+
+		for ( Instance instance : runningInstances ) {
+			if ( instance.getLaunchTime() == null ) {
+				continue;
+			}
+			if ( EC2Util.hasTag( instance, "elasticbeanstalk:environment-name" ) ) {
+				if ( ebEnabled ) {
+					scheduleCheck( instance.getLaunchTime().getTime(), ebNewResourceDelayMs );
+				}
+			} else if ( ec2Enabled ) {
+				scheduleCheck( instance.getLaunchTime().getTime(), ec2NewResourceDelayMs );
+			}
+		}
+
+		return true;
+
+	}
+
+
+	/**
+	 * Schedules a check for when a resource created at the given time is old enough to be
+	 * monitored, unless it already is in which case the check requested straight away covers it.
+	 */
+	private void scheduleCheck( long createdTime, long newResourceDelayMs ) {
+
+		long now = System.currentTimeMillis(), monitoredTime = createdTime + newResourceDelayMs;
+		if ( monitoredTime < now ) {
+			return;
+		}
+
+		// Rounded up to the next minute so the lookups see the resource as strictly older than the delay
+		long checkTime = ( monitoredTime / SCHEDULED_CHECK_ROUNDING_MS + 1 ) * SCHEDULED_CHECK_ROUNDING_MS;
+		if ( !scheduledCheckTimes.add( checkTime ) ) {
+			return;
+		}
+
+		try {
+			checkScheduler.schedule( () -> {
+				scheduledCheckTimes.remove( checkTime );
+				changeListener.run();
+			}, checkTime - now, TimeUnit.MILLISECONDS );
+			LOGGER.info( "DiscoveryEventListener scheduled a check in [" + ( checkTime - now ) + "] ms for when new resources can be monitored" );
+		} catch ( RejectedExecutionException e ) {
+			// Shutting down
+			scheduledCheckTimes.remove( checkTime );
+		}
+
+	}
+
+
+	/**
+	 * @return the time the event happened, or now if it doesn't say
+	 */
+	private static long getEventTime( JsonObject event ) {
+		String time = getString( event, "time" );
+		if ( time != null ) {
+			try {
+				return Instant.parse( time ).toEpochMilli();
+			} catch ( DateTimeParseException e ) {
+				LOGGER.debug( "DiscoveryEventListener found an invalid event time [" + time + "]" );
+			}
+		}
+		return System.currentTimeMillis();
+	}
+
+
+	/**
+	 * @return the event in the message body, unwrapping it when delivered through SNS, or
+	 *         null if the body isn't an event
+	 */
+	private static JsonObject parseEvent( String body ) {
+		try {
+
+			JsonElement element = new JsonParser().parse( body );
+			if ( !element.isJsonObject() ) {
+				return null;
+			}
+
+			JsonObject event = element.getAsJsonObject();
+			if ( !event.has( "source" ) && getString( event, "Message" ) != null ) {
+				return parseEvent( getString( event, "Message" ) );
+			}
+			return event.has( "source" ) ? event : null;
+
+		} catch ( JsonParseException e ) {
+			return null;
+		}
+	}
+
+
+	private static String getString( JsonObject object, String member ) {
+		JsonElement element = object.get( member );
+		return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+	}
+
+}
@@ -30,11 +30,34 @@ public class GlobalAWSProperties extends GlobalCandlestackProperties {
 	private static final int DEFAULT_METRICS_FETCHER_SLEEP_MIN = 5,
 			DEFAULT_NEW_RESOURCE_MONITOR_DELAY_MIN = 30;
 
+	private static final long DEFAULT_INVENTORY_CACHE_TTL_SEC = 240;
+
+	private static final int DEFAULT_THROTTLE_INITIAL_TPS = 20,
+			DEFAULT_THROTTLE_MIN_TPS = 1,
+			DEFAULT_THROTTLE_MAX_TPS = 100,
+			DEFAULT_THROTTLE_MAX_RETRIES = 6,
+			DEFAULT_CLIENT_MAX_CONNECTIONS = 100;
+
+	private static final long DEFAULT_CLIENT_CONNECTION_TTL_MS = 60000,
+			DEFAULT_DISCOVERY_RECONCILE_INTERVAL_SEC = 3600;
+
 	private static final String DEFAULT_SERVICE_NOTIFICATION_TIME_PERIOD = TimePeriod.getTwentyFourSevenName();
 
 	private static final String REGION_PROPERTY_KEY = "aws.region",
 			LOGS_HOST = "aws.logs.host",
-			LOGS_AUTH_TOKEN = "aws.logs.authtoken";
+			LOGS_AUTH_TOKEN = "aws.logs.authtoken",
+			INVENTORY_CACHE_TTL_SEC = "aws.inventory.cache.ttl.sec",
+			THROTTLE_ENABLED = "aws.throttle.enabled",
+			THROTTLE_INITIAL_TPS = "aws.throttle.initial.tps",
+			THROTTLE_MIN_TPS = "aws.throttle.min.tps",
+			THROTTLE_MAX_TPS = "aws.throttle.max.tps",
+			THROTTLE_MAX_RETRIES = "aws.throttle.max.retries",
+			CLIENT_MAX_CONNECTIONS = "aws.client.max.connections",
+			CLIENT_TCP_KEEPALIVE = "aws.client.tcp.keepalive",
+			CLIENT_CONNECTION_TTL_MS = "aws.client.connection.ttl.ms",
+			CLIENT_GZIP = "aws.client.gzip",
+			DISCOVERY_QUEUE_URL = "aws.discovery.queue.url",
+			DISCOVERY_RECONCILE_INTERVAL_SEC = "aws.discovery.reconcile.interval.sec";
 
 
 	public static String getRegion() throws CandlestackPropertiesException {
@@ -52,12 +75,124 @@ public class GlobalAWSProperties extends GlobalCandlestackProperties {
 	}
 
 
+	public static long getInventoryCacheTTLSec() throws CandlestackPropertiesException {
+		long ttlSec = getLongProperty( INVENTORY_CACHE_TTL_SEC, DEFAULT_INVENTORY_CACHE_TTL_SEC );
+		if ( ttlSec < 0 ) {
+			throw new CandlestackPropertiesException( "GlobalAWSProperties found invalid value [" + ttlSec + "] for property key [" + INVENTORY_CACHE_TTL_SEC + "], must not be negative" );
+		}
+		return ttlSec;
+	}
+
+
+	public static String getDiscoveryQueueUrl() throws CandlestackPropertiesException {
+		return getStringProperty( DISCOVERY_QUEUE_URL, "" ).trim();
+	}
+
+
+	public static boolean isDiscoveryEnabled() throws CandlestackPropertiesException {
+		return !getDiscoveryQueueUrl().isEmpty();
+	}
+
+
+	/**
+	 * @return the number of seconds the inventories kept up to date by discovery events are
+	 *         reused for before they are fully described again, which falls back to the
+	 *         regular inventory TTL when discovery is disabled
+	 */
+	public static long getDiscoveredInventoryTTLSec() throws CandlestackPropertiesException {
+		if ( !isDiscoveryEnabled() ) {
+			return getInventoryCacheTTLSec();
+		}
+
+		long intervalSec = getLongProperty( DISCOVERY_RECONCILE_INTERVAL_SEC, DEFAULT_DISCOVERY_RECONCILE_INTERVAL_SEC );
+		if ( intervalSec < 0 ) {
+			throw new CandlestackPropertiesException( "GlobalAWSProperties found invalid value [" + intervalSec + "] for property key [" + DISCOVERY_RECONCILE_INTERVAL_SEC + "], must not be negative" );
+		}
+		return intervalSec;
+	}
+
+
+	public static boolean isThrottleEnabled() throws CandlestackPropertiesException {
+		return getBooleanProperty( THROTTLE_ENABLED, true );
+	}
+
+
+	public static int getThrottleInitialTPS() throws CandlestackPropertiesException {
+		return getPositiveIntProperty( THROTTLE_INITIAL_TPS, DEFAULT_THROTTLE_INITIAL_TPS );
+	}
+
+
+	public static int getThrottleMinTPS() throws CandlestackPropertiesException {
+		return getPositiveIntProperty( THROTTLE_MIN_TPS, DEFAULT_THROTTLE_MIN_TPS );
+	}
+
+
+	public static int getThrottleMaxTPS() throws CandlestackPropertiesException {
+		return getPositiveIntProperty( THROTTLE_MAX_TPS, DEFAULT_THROTTLE_MAX_TPS );
+	}
+
+
+	public static int getThrottleMaxRetries() throws CandlestackPropertiesException {
+		int maxRetries = getIntProperty( THROTTLE_MAX_RETRIES, DEFAULT_THROTTLE_MAX_RETRIES );
+		if ( maxRetries < 0 ) {
+			throw new CandlestackPropertiesException( "GlobalAWSProperties found invalid value [" + maxRetries + "] for property key [" + THROTTLE_MAX_RETRIES + "], must not be negative" );
+		}
+		return maxRetries;
+	}
+
+
+	public static int getClientMaxConnections() throws CandlestackPropertiesException {
+		return getPositiveIntProperty( CLIENT_MAX_CONNECTIONS, DEFAULT_CLIENT_MAX_CONNECTIONS );
+	}
+
+
+	public static boolean isClientTcpKeepAliveEnabled() throws CandlestackPropertiesException {
+		return getBooleanProperty( CLIENT_TCP_KEEPALIVE, true );
+	}
+
+
+	/**
+	 * @return how long a pooled connection may be reused for, -1 for as long as it stays open
+	 */
+	public static long getClientConnectionTTLMs() throws CandlestackPropertiesException {
+		long ttlMs = getLongProperty( CLIENT_CONNECTION_TTL_MS, DEFAULT_CLIENT_CONNECTION_TTL_MS );
+		if ( ttlMs < -1 || ttlMs == 0 ) {
+			throw new CandlestackPropertiesException( "GlobalAWSProperties found invalid value [" + ttlMs + "] for property key [" + CLIENT_CONNECTION_TTL_MS + "], must be greater than 0 or -1" );
+		}
+		return ttlMs;
+	}
+
+
+	public static boolean isClientGzipEnabled() throws CandlestackPropertiesException {
+		return getBooleanProperty( CLIENT_GZIP, true );
+	}
+
+
+	private static int getPositiveIntProperty( String propertyKey, int defaultVal ) throws CandlestackPropertiesException {
+		int val = getIntProperty( propertyKey, defaultVal );
+		if ( val < 1 ) {
+			throw new CandlestackPropertiesException( "GlobalAWSProperties found invalid value [" + val + "] for property key [" + propertyKey + "], must be greater than 0" );
+		}
+		return val;
+	}
+
+
 	/*
 	 * ---------------------------------------
 	 * Properties related to CloudWatch
 	 * ---------------------------------------
 	 */
-	private static final String CLOUDWATCH_DETAILED_MONITORING_ENABLED = "aws.cloudwatch.detailed.monitoring.enabled";
+	private static final int DEFAULT_CLOUDWATCH_BATCH_MAX_QUERIES = 500;
+
+	private static final long DEFAULT_CLOUDWATCH_CURSOR_CHECKPOINT_INTERVAL_SEC = 60;
+
+	private static final String DEFAULT_CLOUDWATCH_CURSOR_FILE = "/var/tmp/candlestack/cloudwatch_cursors.dat";
+
+	private static final String CLOUDWATCH_DETAILED_MONITORING_ENABLED = "aws.cloudwatch.detailed.monitoring.enabled",
+			CLOUDWATCH_BATCH_ENABLED = "aws.cloudwatch.batch.enabled",
+			CLOUDWATCH_BATCH_MAX_QUERIES = "aws.cloudwatch.batch.max.queries",
+			CLOUDWATCH_CURSOR_FILE = "aws.cloudwatch.cursor.file",
+			CLOUDWATCH_CURSOR_CHECKPOINT_INTERVAL_SEC = "aws.cloudwatch.cursor.checkpoint.interval.sec";
 
 
 	public static boolean isCloudWatchDetailedMonitoringEnabled() throws CandlestackPropertiesException {
@@ -65,6 +200,35 @@ public class GlobalAWSProperties extends GlobalCandlestackProperties {
 	}
 
 
+	public static boolean isCloudWatchBatchEnabled() throws CandlestackPropertiesException {
+		return getBooleanProperty( CLOUDWATCH_BATCH_ENABLED, false );
+	}
+
+
+	public static int getCloudWatchBatchMaxQueries() throws CandlestackPropertiesException {
+		int maxQueries = getIntProperty( CLOUDWATCH_BATCH_MAX_QUERIES, DEFAULT_CLOUDWATCH_BATCH_MAX_QUERIES );
+		if ( maxQueries < 1 || maxQueries > DEFAULT_CLOUDWATCH_BATCH_MAX_QUERIES ) {
+			throw new CandlestackPropertiesException( "GlobalAWSProperties found invalid value [" + maxQueries + "] for property key [" + CLOUDWATCH_BATCH_MAX_QUERIES + "], must be between 1 and " + DEFAULT_CLOUDWATCH_BATCH_MAX_QUERIES );
+		}
+		return maxQueries;
+	}
+
+
+	public static String getCloudWatchCursorFile() throws CandlestackPropertiesException {
+		String cursorFile = getStringProperty( CLOUDWATCH_CURSOR_FILE, DEFAULT_CLOUDWATCH_CURSOR_FILE ).trim();
+		return cursorFile.isEmpty() ? DEFAULT_CLOUDWATCH_CURSOR_FILE : cursorFile;
+	}
+
+
+	public static long getCloudWatchCursorCheckpointIntervalSec() throws CandlestackPropertiesException {
+		long intervalSec = getLongProperty( CLOUDWATCH_CURSOR_CHECKPOINT_INTERVAL_SEC, DEFAULT_CLOUDWATCH_CURSOR_CHECKPOINT_INTERVAL_SEC );
+		if ( intervalSec < 1 ) {
+			throw new CandlestackPropertiesException( "GlobalAWSProperties found invalid value [" + intervalSec + "] for property key [" + CLOUDWATCH_CURSOR_CHECKPOINT_INTERVAL_SEC + "], must be greater than 0" );
+		}
+		return intervalSec;
+	}
+
+
 	/*
 	 * ---------------------------------------
 	 * Properties related to ElasticBeanstalk
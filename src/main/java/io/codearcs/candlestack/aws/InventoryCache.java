@@ -0,0 +1,88 @@
+package io.codearcs.candlestack.aws;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.codearcs.candlestack.CandlestackException;
+import io.codearcs.candlestack.CandlestackPropertiesException;
+
+
+/**
+ * Holds the result of describing one kind of AWS resource so that the MetricsFetcher and
+ * the HostMonitorLookup for it read the same snapshot instead of each describing the
+ * resources on their own schedule. The inventory is reloaded once it is older than the
+ * TTL, anyone asking for it during a reload waits for that reload rather than starting
+ * another. A failed reload is not cached so the next caller tries again.
+ */
+public class InventoryCache<T> {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger( InventoryCache.class );
+
+
+	@FunctionalInterface
+	public interface Loader<T> {
+
+		public T load() throws CandlestackException;
+
+	}
+
+
+	private final String name;
+
+	private final Loader<T> loader;
+
+	private final long ttlMs;
+
+	private T inventory;
+
+	private long loadTime;
+
+
+	public InventoryCache( String name, Loader<T> loader ) throws CandlestackPropertiesException {
+		this( name, GlobalAWSProperties.getInventoryCacheTTLSec(), loader );
+	}
+
+
+	public InventoryCache( String name, long ttlSec, Loader<T> loader ) {
+		this.name = name;
+		this.loader = loader;
+		ttlMs = TimeUnit.SECONDS.toMillis( ttlSec );
+	}
+
+
+	public synchronized T get() throws CandlestackException {
+
+		long now = System.currentTimeMillis();
+		if ( inventory == null || now - loadTime >= ttlMs ) {
+			inventory = loader.load();
+			loadTime = now;
+			LOGGER.debug( "InventoryCache reloaded the inventory of [" + name + "]" );
+		}
+
+		return inventory;
+
+	}
+
+
+	/**
+	 * Applies a change to the inventory without describing all of the resources again. The
+	 * change is skipped if the inventory hasn't been loaded yet, it will be up to date once it is.
+	 */
+	public synchronized void update( UnaryOperator<T> change ) {
+		if ( inventory != null ) {
+			inventory = change.apply( inventory );
+		}
+	}
+
+
+	/**
+	 * Forces the inventory to be reloaded the next time it is asked for.
+	 */
+	public synchronized void invalidate() {
+		inventory = null;
+	}
+
+}
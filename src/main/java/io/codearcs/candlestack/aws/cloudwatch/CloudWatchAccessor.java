@@ -1,28 +1,45 @@
 package io.codearcs.candlestack.aws.cloudwatch;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.amazonaws.services.cloudwatch.AmazonCloudWatch;
 import com.amazonaws.services.cloudwatch.AmazonCloudWatchClientBuilder;
 import com.amazonaws.services.cloudwatch.model.Datapoint;
+import com.amazonaws.services.cloudwatch.model.GetMetricDataRequest;
+import com.amazonaws.services.cloudwatch.model.GetMetricDataResult;
 import com.amazonaws.services.cloudwatch.model.GetMetricStatisticsRequest;
 import com.amazonaws.services.cloudwatch.model.GetMetricStatisticsResult;
+import com.amazonaws.services.cloudwatch.model.Metric;
+import com.amazonaws.services.cloudwatch.model.MetricDataQuery;
+import com.amazonaws.services.cloudwatch.model.MetricDataResult;
+import com.amazonaws.services.cloudwatch.model.MetricStat;
 
 import io.codearcs.candlestack.CandlestackException;
+import io.codearcs.candlestack.MetricsFetcherWorkerPool;
 import io.codearcs.candlestack.MetricsReaderWriter;
+import io.codearcs.candlestack.aws.AWSClientRegistry;
 import io.codearcs.candlestack.aws.CandlestackAWSException;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
+import io.codearcs.candlestack.aws.cloudwatch.CloudWatchLookupBatch.CloudWatchLookup;
 
 
 public class CloudWatchAccessor {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger( CloudWatchAccessor.class );
+
 	private static final int DETAILED_REQUEST_PERIOD = 60,
 			NON_DETAILED_REQUEST_PERIOD = 300,
-			MAX_DATA_POINTS = 1_440;
+			MAX_DATA_POINTS = 1_440,
+			MAX_DATA_POINTS_PER_METRIC_DATA_REQUEST = 100_800;
+
+	private static final String METRIC_DATA_QUERY_ID_PREFIX = "q";
 
 
 	private static CloudWatchAccessor instance = null;
@@ -32,11 +49,13 @@ public class CloudWatchAccessor {
 
 	private MetricsReaderWriter metricsReaderWriter;
 
-	private Map<String, Date> lastDatapointDateMap;
+	private CloudWatchCursorStore cursorStore;
+
+	private MetricsFetcherWorkerPool workerPool;
 
-	private boolean detailedMonitoringEnabled;
+	private boolean detailedMonitoringEnabled, batchEnabled;
 
-	private int requestPeriod;
+	private int requestPeriod, batchMaxQueries;
 
 	private long maxTimeDifference;
 
@@ -45,15 +64,21 @@ public class CloudWatchAccessor {
 
 		metricsReaderWriter = MetricsReaderWriter.getInstance();
 
+		workerPool = MetricsFetcherWorkerPool.getInstance();
+
 		detailedMonitoringEnabled = GlobalAWSProperties.isCloudWatchDetailedMonitoringEnabled();
 
 		requestPeriod = detailedMonitoringEnabled ? DETAILED_REQUEST_PERIOD : NON_DETAILED_REQUEST_PERIOD;
 
 		maxTimeDifference = 1000 * requestPeriod * MAX_DATA_POINTS;
 
-		cloudWatchClient = AmazonCloudWatchClientBuilder.standard().withRegion( GlobalAWSProperties.getRegion() ).build();
+		batchEnabled = GlobalAWSProperties.isCloudWatchBatchEnabled();
+
+		batchMaxQueries = GlobalAWSProperties.getCloudWatchBatchMaxQueries();
+
+		cloudWatchClient = AWSClientRegistry.getInstance().getClient( AmazonCloudWatchClientBuilder::standard, GlobalAWSProperties.getRegion() );
 
-		lastDatapointDateMap = new HashMap<>();
+		cursorStore = new CloudWatchCursorStore( new File( GlobalAWSProperties.getCloudWatchCursorFile() ), GlobalAWSProperties.getCloudWatchCursorCheckpointIntervalSec() );
 
 	}
 
@@ -67,15 +92,18 @@ public class CloudWatchAccessor {
 	}
 
 
-	public void lookupAndSaveMetricData( CloudWatchMetric metric, CloudWatchDimensions dimensions, String instanceId, String type ) throws CandlestackAWSException, CandlestackException {
+	public synchronized static void destroy() {
+		if ( instance != null ) {
+			instance.cursorStore.close();
+			instance = null;
+		}
+	}
 
-		String datapointDateMapKey = getDatapointDateMapKey( metric, instanceId );
+
+	public void lookupAndSaveMetricData( CloudWatchMetric metric, CloudWatchDimensions dimensions, String instanceId, String type ) throws CandlestackAWSException, CandlestackException {
 
 		// Determine the last time we fetched datapoints for this metric and dimension
-		Date lastDatapointDate = lastDatapointDateMap.get( datapointDateMapKey );
-		if ( lastDatapointDate == null ) {
-			lastDatapointDate = metricsReaderWriter.readMostRecentMetricDate( type, instanceId, metric.getName() );
-		}
+		Date lastDatapointDate = lookupLastDatapointDate( metric, instanceId, type );
 
 		// Build the request and execute it
 		GetMetricStatisticsRequest request = cloudWatchRequest( metric, dimensions, lastDatapointDate );
@@ -96,21 +124,143 @@ public class CloudWatchAccessor {
 
 		}
 
-		// Update the date map
-		lastDatapointDateMap.put( datapointDateMapKey, lastDatapointDate );
+		// Move the cursor forward
+		cursorStore.advance( type, instanceId, metric.getName(), lastDatapointDate );
 
 	}
 
 
-	private String getDatapointDateMapKey( CloudWatchMetric metric, String dimensionValue ) {
-		return metric.getName() + "_" + dimensionValue;
+	/**
+	 * Resolves all of the lookups queued in the provided batch. When batching is enabled
+	 * the lookups are grouped into as few GetMetricData requests as the API limits allow,
+	 * otherwise each lookup is resolved individually via GetMetricStatistics. Either way
+	 * the requests are spread over the worker pool, each metric is handled by a single
+	 * request so its datapoints are written in order before its cursor is moved forward.
+	 *
+	 * @param batch
+	 *          the lookups collected by a fetcher during its fetch cycle
+	 * @throws CandlestackException
+	 */
+	public void lookupAndSaveMetricData( CloudWatchLookupBatch batch ) throws CandlestackAWSException, CandlestackException {
+
+		if ( batch.isEmpty() ) {
+			return;
+		}
+
+		if ( !batchEnabled ) {
+			workerPool.forEach( MetricsFetcherWorkerPool.SERVICE_CLOUDWATCH, batch.getLookups(),
+					lookup -> lookupAndSaveMetricData( lookup.getMetric(), lookup.getDimensions(), lookup.getInstanceId(), lookup.getType() ) );
+			return;
+		}
+
+		// Work out where each lookup needs to start from
+		Date endDate = new Date();
+		List<PendingLookup> pendingLookups = new ArrayList<>( batch.size() );
+		for ( CloudWatchLookup lookup : batch.getLookups() ) {
+			Date lastDatapointDate = lookupLastDatapointDate( lookup.getMetric(), lookup.getInstanceId(), lookup.getType() );
+			pendingLookups.add( new PendingLookup( lookup, lastDatapointDate, determineStartDate( lastDatapointDate, endDate ) ) );
+		}
+
+		// Order by start date so lookups with a similar amount of catching up to do end up in the same request
+		pendingLookups.sort( new PendingLookupComparator() );
+
+		// Split the lookups into requests that respect both the query and the datapoint limits of GetMetricData
+		List<List<PendingLookup>> requests = new ArrayList<>();
+		int index = 0;
+		while ( index < pendingLookups.size() ) {
+
+			Date startDate = pendingLookups.get( index ).startDate;
+			long datapointsPerQuery = ( ( endDate.getTime() - startDate.getTime() ) / ( 1000L * requestPeriod ) ) + 1;
+			int maxQueries = (int) Math.max( 1, Math.min( batchMaxQueries, MAX_DATA_POINTS_PER_METRIC_DATA_REQUEST / datapointsPerQuery ) );
+
+			int endIndex = Math.min( pendingLookups.size(), index + maxQueries );
+			requests.add( pendingLookups.subList( index, endIndex ) );
+			index = endIndex;
+
+		}
+
+		workerPool.forEach( MetricsFetcherWorkerPool.SERVICE_CLOUDWATCH, requests, request -> lookupAndSaveMetricData( request, request.get( 0 ).startDate, endDate ) );
+
 	}
 
 
-	private GetMetricStatisticsRequest cloudWatchRequest( CloudWatchMetric metric, CloudWatchDimensions dimensions, Date lastDatapointDate ) {
+	private void lookupAndSaveMetricData( List<PendingLookup> pendingLookups, Date startDate, Date endDate ) throws CandlestackAWSException, CandlestackException {
+
+		// Build a query per lookup, the query id is simply the index of the lookup
+		List<MetricDataQuery> queries = new ArrayList<>( pendingLookups.size() );
+		for ( int i = 0; i < pendingLookups.size(); i++ ) {
+			CloudWatchLookup lookup = pendingLookups.get( i ).lookup;
+			Metric metric = new Metric()
+					.withNamespace( lookup.getMetric().getNamespace() )
+					.withMetricName( lookup.getMetric().getName() )
+					.withDimensions( lookup.getDimensions().getDimensions() );
+			queries.add( new MetricDataQuery()
+					.withId( METRIC_DATA_QUERY_ID_PREFIX + i )
+					.withMetricStat( new MetricStat().withMetric( metric ).withPeriod( requestPeriod ).withStat( lookup.getMetric().getStatistic().name() ) )
+					.withReturnData( true ) );
+		}
+
+		GetMetricDataRequest request = new GetMetricDataRequest()
+				.withStartTime( startDate )
+				.withEndTime( endDate )
+				.withMetricDataQueries( queries );
+
+		// Page through the results collecting the datapoints for each query
+		String nextToken = null;
+		do {
+
+			GetMetricDataResult result = cloudWatchClient.getMetricData( request.withNextToken( nextToken ) );
+			for ( MetricDataResult metricDataResult : result.getMetricDataResults() ) {
+
+				PendingLookup pendingLookup = pendingLookups.get( Integer.parseInt( metricDataResult.getId().substring( METRIC_DATA_QUERY_ID_PREFIX.length() ) ) );
+				pendingLookup.addDatapoints( metricDataResult.getTimestamps(), metricDataResult.getValues() );
+
+				if ( "InternalError".equals( metricDataResult.getStatusCode() ) ) {
+					LOGGER.warn( "CloudWatchAccessor received an internal error status for metric [" + pendingLookup.lookup.getMetric().getName() + "] of [" + pendingLookup.lookup.getInstanceId() + "]" );
+				}
+
+			}
+			nextToken = result.getNextToken();
+
+		} while ( nextToken != null );
+
+		// Write out the data points and move the cursors forward
+		for ( PendingLookup pendingLookup : pendingLookups ) {
+
+			CloudWatchLookup lookup = pendingLookup.lookup;
+			Date lastDatapointDate = pendingLookup.lastDatapointDate;
+
+			pendingLookup.datapoints.sort( new TimestampedValueComparator() );
+			for ( TimestampedValue datapoint : pendingLookup.datapoints ) {
+
+				// Only care about data points that have happened after the last one
+				if ( lastDatapointDate == null || datapoint.timestamp.after( lastDatapointDate ) ) {
+					lastDatapointDate = datapoint.timestamp;
+					metricsReaderWriter.writeMetric( lookup.getType(), lookup.getInstanceId(), datapoint.timestamp, lookup.getMetric().getName(), datapoint.value );
+				}
+
+			}
+
+			cursorStore.advance( lookup.getType(), lookup.getInstanceId(), lookup.getMetric().getName(), lastDatapointDate );
+
+		}
+
+	}
+
+
+	private Date lookupLastDatapointDate( CloudWatchMetric metric, String instanceId, String type ) throws CandlestackException {
+		Date lastDatapointDate = cursorStore.get( type, instanceId, metric.getName() );
+		if ( lastDatapointDate == null ) {
+			// Nothing checkpointed for this metric so fall back to what has been written out
+			lastDatapointDate = metricsReaderWriter.readMostRecentMetricDate( type, instanceId, metric.getName() );
+			cursorStore.advance( type, instanceId, metric.getName(), lastDatapointDate );
+		}
+		return lastDatapointDate;
+	}
+
+
+	private Date determineStartDate( Date lastDatapointDate, Date endDate ) {
 
-		// Work out the start and end time
-		Date endDate = new Date();
 		Date startDate = lastDatapointDate;
 		if ( startDate == null || ( endDate.getTime() - startDate.getTime() ) > maxTimeDifference ) {
 
@@ -124,6 +274,17 @@ public class CloudWatchAccessor {
 
 		}
 
+		return startDate;
+
+	}
+
+
+	private GetMetricStatisticsRequest cloudWatchRequest( CloudWatchMetric metric, CloudWatchDimensions dimensions, Date lastDatapointDate ) {
+
+		// Work out the start and end time
+		Date endDate = new Date();
+		Date startDate = determineStartDate( lastDatapointDate, endDate );
+
 		return new GetMetricStatisticsRequest()
 				.withStartTime( startDate )
 				.withEndTime( endDate )
@@ -144,5 +305,70 @@ public class CloudWatchAccessor {
 		}
 
 
+	}
+
+
+	private static class PendingLookup {
+
+		private final CloudWatchLookup lookup;
+
+		private final Date lastDatapointDate, startDate;
+
+		private final List<TimestampedValue> datapoints;
+
+
+		private PendingLookup( CloudWatchLookup lookup, Date lastDatapointDate, Date startDate ) {
+			this.lookup = lookup;
+			this.lastDatapointDate = lastDatapointDate;
+			this.startDate = startDate;
+			datapoints = new ArrayList<>();
+		}
+
+
+		private void addDatapoints( List<Date> timestamps, List<Double> values ) {
+			for ( int i = 0; i < timestamps.size(); i++ ) {
+				datapoints.add( new TimestampedValue( timestamps.get( i ), values.get( i ) ) );
+			}
+		}
+
+	}
+
+
+	private static class TimestampedValue {
+
+		private final Date timestamp;
+
+		private final double value;
+
+
+		private TimestampedValue( Date timestamp, double value ) {
+			this.timestamp = timestamp;
+			this.value = value;
+		}
+
+	}
+
+
+	private static class PendingLookupComparator implements Comparator<PendingLookup> {
+
+
+		@Override
+		public int compare( PendingLookup pendingLookup1, PendingLookup pendingLookup2 ) {
+			return pendingLookup1.startDate.compareTo( pendingLookup2.startDate );
+		}
+
+
+	}
+
+
+	private static class TimestampedValueComparator implements Comparator<TimestampedValue> {
+
+
+		@Override
+		public int compare( TimestampedValue value1, TimestampedValue value2 ) {
+			return value1.timestamp.compareTo( value2.timestamp );
+		}
+
+
 	}
 }
@@ -0,0 +1,240 @@
+package io.codearcs.candlestack.aws.cloudwatch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.codearcs.candlestack.CandlestackException;
+
+
+/**
+ * Thread safe store of the most recent CloudWatch datapoint date seen
+ * for each (type, instanceId, metric). The cursors are periodically
+ * checkpointed to a small binary file so that a restart can pick up
+ * where it left off without having to scan the metric logs.
+ */
+public class CloudWatchCursorStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger( CloudWatchCursorStore.class );
+
+	private static final int FILE_MAGIC = 0x43574353, // "CWCS"
+			FILE_VERSION = 1;
+
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+
+	private Map<CursorKey, Long> cursors;
+
+	private AtomicBoolean dirty;
+
+	private File file;
+
+	private ScheduledExecutorService checkpointExecutor;
+
+
+	CloudWatchCursorStore( File file, long checkpointIntervalSec ) throws CandlestackException {
+
+		this.file = file;
+
+		File dir = file.getAbsoluteFile().getParentFile();
+		if ( dir.exists() && !dir.isDirectory() ) {
+			throw new CandlestackException( "CloudWatchCursorStore location [" + dir.getPath() + "] is not a directory" );
+		} else if ( !dir.exists() ) {
+			dir.mkdirs();
+		}
+
+		cursors = new ConcurrentHashMap<>();
+		dirty = new AtomicBoolean( false );
+
+		load();
+
+		checkpointExecutor = Executors.newSingleThreadScheduledExecutor( runnable -> {
+			Thread thread = new Thread( runnable, "CloudWatchCursorStore-checkpoint" );
+			thread.setDaemon( true );
+			return thread;
+		} );
+		checkpointExecutor.scheduleWithFixedDelay( this::checkpoint, checkpointIntervalSec, checkpointIntervalSec, TimeUnit.SECONDS );
+
+	}
+
+
+	/**
+	 * @return the most recent datapoint date recorded for the provided key or null if there is none
+	 */
+	public Date get( String type, String instanceId, String metricName ) {
+		Long timestamp = cursors.get( new CursorKey( type, instanceId, metricName ) );
+		return timestamp == null ? null : new Date( timestamp );
+	}
+
+
+	/**
+	 * Moves the cursor for the provided key forward to the given date, a date
+	 * older than the currently recorded one is ignored.
+	 */
+	public void advance( String type, String instanceId, String metricName, Date datapointDate ) {
+		if ( datapointDate == null ) {
+			return;
+		}
+
+		CursorKey key = new CursorKey( type, instanceId, metricName );
+		long timestamp = datapointDate.getTime();
+		Long previous = cursors.get( key );
+		if ( previous == null || previous < timestamp ) {
+			cursors.merge( key, timestamp, Math::max );
+			dirty.set( true );
+		}
+	}
+
+
+	/**
+	 * Writes the cursors to disk if they have changed since the last checkpoint. The
+	 * file is written to a temporary file first and then moved into place so a crash
+	 * part way through never leaves behind a truncated store.
+	 */
+	public synchronized void checkpoint() {
+
+		if ( !dirty.getAndSet( false ) ) {
+			return;
+		}
+
+		File tempFile = new File( file.getPath() + TEMP_FILE_SUFFIX );
+		try {
+
+			try ( FileOutputStream fos = new FileOutputStream( tempFile );
+					DataOutputStream out = new DataOutputStream( new BufferedOutputStream( fos ) ) ) {
+
+				// Take a snapshot so the count matches the entries written
+				Map<CursorKey, Long> snapshot = new HashMap<>( cursors );
+
+				out.writeInt( FILE_MAGIC );
+				out.writeInt( FILE_VERSION );
+				out.writeInt( snapshot.size() );
+				for ( Entry<CursorKey, Long> entry : snapshot.entrySet() ) {
+					out.writeUTF( entry.getKey().type );
+					out.writeUTF( entry.getKey().instanceId );
+					out.writeUTF( entry.getKey().metricName );
+					out.writeLong( entry.getValue() );
+				}
+
+				out.flush();
+				fos.getFD().sync();
+
+			}
+
+			try {
+				Files.move( tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+			} catch ( AtomicMoveNotSupportedException e ) {
+				Files.move( tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+			}
+
+		} catch ( IOException e ) {
+			dirty.set( true );
+			LOGGER.error( "CloudWatchCursorStore failed to checkpoint cursors to [" + file.getPath() + "]", e );
+		}
+
+	}
+
+
+	/**
+	 * Stops the periodic checkpoint and writes out a final one.
+	 */
+	public void close() {
+		checkpointExecutor.shutdown();
+		try {
+			checkpointExecutor.awaitTermination( 10, TimeUnit.SECONDS );
+		} catch ( InterruptedException e ) {
+			LOGGER.error( "CloudWatchCursorStore got interrupted while waiting for the checkpoint thread to stop" );
+		}
+		checkpoint();
+	}
+
+
+	private void load() {
+
+		if ( !file.exists() ) {
+			LOGGER.info( "CloudWatchCursorStore found no cursor file at [" + file.getPath() + "], cursors will be rebuilt from the metric logs" );
+			return;
+		}
+
+		try ( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) ) ) {
+
+			if ( in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION ) {
+				LOGGER.warn( "CloudWatchCursorStore ignoring unrecognized cursor file [" + file.getPath() + "]" );
+				return;
+			}
+
+			int count = in.readInt();
+			for ( int i = 0; i < count; i++ ) {
+				CursorKey key = new CursorKey( in.readUTF(), in.readUTF(), in.readUTF() );
+				cursors.put( key, in.readLong() );
+			}
+
+			LOGGER.info( "CloudWatchCursorStore loaded [" + count + "] cursors from [" + file.getPath() + "]" );
+
+		} catch ( IOException e ) {
+			cursors.clear();
+			LOGGER.warn( "CloudWatchCursorStore failed to read cursor file [" + file.getPath() + "], cursors will be rebuilt from the metric logs", e );
+		}
+
+	}
+
+
+	private static class CursorKey {
+
+		private final String type, instanceId, metricName;
+
+		private final int hashCode;
+
+
+		private CursorKey( String type, String instanceId, String metricName ) {
+			this.type = type;
+			this.instanceId = instanceId;
+			this.metricName = metricName;
+
+			int hash = type.hashCode();
+			hash = 31 * hash + instanceId.hashCode();
+			hashCode = 31 * hash + metricName.hashCode();
+		}
+
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+
+		@Override
+		public boolean equals( Object obj ) {
+			if ( this == obj ) {
+				return true;
+			} else if ( !( obj instanceof CursorKey ) ) {
+				return false;
+			}
+
+			CursorKey other = (CursorKey) obj;
+			return hashCode == other.hashCode && type.equals( other.type ) && instanceId.equals( other.instanceId ) && metricName.equals( other.metricName );
+		}
+
+	}
+
+}
@@ -0,0 +1,80 @@
+package io.codearcs.candlestack.aws.cloudwatch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Collects the CloudWatch metric lookups a fetcher needs to perform
+ * during a single fetch cycle so they can be resolved together
+ * by the CloudWatchAccessor.
+ */
+public class CloudWatchLookupBatch {
+
+	private List<CloudWatchLookup> lookups;
+
+
+	public CloudWatchLookupBatch() {
+		lookups = new ArrayList<>();
+	}
+
+
+	public void add( CloudWatchMetric metric, CloudWatchDimensions dimensions, String instanceId, String type ) {
+		lookups.add( new CloudWatchLookup( metric, dimensions, instanceId, type ) );
+	}
+
+
+	public List<CloudWatchLookup> getLookups() {
+		return lookups;
+	}
+
+
+	public boolean isEmpty() {
+		return lookups.isEmpty();
+	}
+
+
+	public int size() {
+		return lookups.size();
+	}
+
+
+	public static class CloudWatchLookup {
+
+		private final CloudWatchMetric metric;
+
+		private final CloudWatchDimensions dimensions;
+
+		private final String instanceId, type;
+
+
+		private CloudWatchLookup( CloudWatchMetric metric, CloudWatchDimensions dimensions, String instanceId, String type ) {
+			this.metric = metric;
+			this.dimensions = dimensions;
+			this.instanceId = instanceId;
+			this.type = type;
+		}
+
+
+		public CloudWatchMetric getMetric() {
+			return metric;
+		}
+
+
+		public CloudWatchDimensions getDimensions() {
+			return dimensions;
+		}
+
+
+		public String getInstanceId() {
+			return instanceId;
+		}
+
+
+		public String getType() {
+			return type;
+		}
+
+	}
+
+}
@@ -8,6 +8,9 @@ import io.codearcs.candlestack.MetricsReaderWriter;
 import io.codearcs.candlestack.aws.CloudWatchStatistic;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
 import io.codearcs.candlestack.aws.cloudwatch.CloudWatchMetric;
+import io.codearcs.candlestack.nagios.GlobalNagiosProperties;
+import io.codearcs.candlestack.nagios.check.CheckServer;
+import io.codearcs.candlestack.nagios.check.MetricCheck;
 import io.codearcs.candlestack.nagios.object.commands.Command;
 import io.codearcs.candlestack.nagios.object.services.Service;
 
@@ -18,37 +21,52 @@ public enum EC2CloudWatchMetric implements CloudWatchMetric {
 			"check-cpu-cw",
 			"check-aws-ec2-cpu-cw",
 			"check-aws-ec2-cpu-via-es-cw.sh",
-			"Checks to see if the EC2 instance is experiencing heavy CPU load. In the event an alert is triggered check the EC2 instance for processing consuming large amount of CPU or potentially a noisy neighbor stealing resources." ),
+			"Checks to see if the EC2 instance is experiencing heavy CPU load. In the event an alert is triggered check the EC2 instance for processing consuming large amount of CPU or potentially a noisy neighbor stealing resources.",
+			MetricCheck.Evaluation.AVERAGE,
+			MetricCheck.Threshold.ABOVE ),
 
 	NetworkIn( CloudWatchStatistic.Maximum,
 			"check-network-in-cw",
 			"check-aws-ec2-network-in-cw",
 			"check-aws-ec2-network-in-via-es-cw.sh",
-			"Checks to see if the EC2 instance has network traffice flowing into the system. In the event an alert is triggered check the EC2 instance for network issues that would prevent other systems from connecting." ),
+			"Checks to see if the EC2 instance has network traffice flowing into the system. In the event an alert is triggered check the EC2 instance for network issues that would prevent other systems from connecting.",
+			MetricCheck.Evaluation.EACH,
+			MetricCheck.Threshold.BELOW ),
 
 	NetworkOut( CloudWatchStatistic.Maximum,
 			"check-network-out-cw",
 			"check-aws-ec2-network-out-cw",
 			"check-aws-ec2-network-out-via-es-cw.sh",
-			"Checks to see if the EC2 instance has network traffice flowing out of the system. In the event an alert is triggered check the EC2 instance for network issues that would prevent it from sending out data." );
+			"Checks to see if the EC2 instance has network traffice flowing out of the system. In the event an alert is triggered check the EC2 instance for network issues that would prevent it from sending out data.",
+			MetricCheck.Evaluation.EACH,
+			MetricCheck.Threshold.BELOW );
 
 	private static final String NAMESPACE = "AWS/EC2";
 
 	private String serviceName, commandName, scriptFileName, notes, logsHost, logsAuthToken;
 
+	private MetricCheck.Evaluation evaluation;
+
+	private MetricCheck.Threshold threshold;
+
+	private boolean checkServerEnabled;
+
 	private CloudWatchStatistic statistic;
 
 
-	private EC2CloudWatchMetric( CloudWatchStatistic statistic, String serviceName, String commandName, String scriptFileName, String notes ) {
+	private EC2CloudWatchMetric( CloudWatchStatistic statistic, String serviceName, String commandName, String scriptFileName, String notes, MetricCheck.Evaluation evaluation, MetricCheck.Threshold threshold ) {
 		this.statistic = statistic;
 		this.serviceName = serviceName;
 		this.commandName = commandName;
 		this.scriptFileName = scriptFileName;
 		this.notes = notes;
+		this.evaluation = evaluation;
+		this.threshold = threshold;
 
 		try {
 			logsHost = GlobalAWSProperties.getLogsHost();
 			logsAuthToken = GlobalAWSProperties.getLogsAuthToken();
+			checkServerEnabled = GlobalNagiosProperties.isCheckServerEnabled();
 		} catch ( CandlestackPropertiesException ignore ) {
 			// We will see this error else where if this is the case
 		}
@@ -75,7 +93,7 @@ public enum EC2CloudWatchMetric implements CloudWatchMetric {
 
 	@Override
 	public String getScriptFileName() {
-		return scriptFileName;
+		return checkServerEnabled ? CheckServer.CLIENT_SCRIPT_FILE_NAME : scriptFileName;
 	}
 
 
@@ -91,7 +109,12 @@ public enum EC2CloudWatchMetric implements CloudWatchMetric {
 
 		String command = commandName + commanNameSuffix + "!" + MetricsReaderWriter.sanitizeString( instanceId ) + "!" + warning + "!" + critical;
 
-		return new Service( serviceName, instanceId, command, notes, notificationPeriod, contactGroups );
+		Service service = new Service( serviceName, instanceId, command, notes, notificationPeriod, contactGroups );
+		if ( GlobalNagiosProperties.isCheckEngineEnabled() ) {
+			service.setMetricCheck( new MetricCheck( EC2Util.TYPE_NAME, instanceId, name(), evaluation, threshold, warning, critical ), GlobalNagiosProperties.getCheckEngineFreshnessThreshold() );
+		}
+
+		return service;
 	}
 
 
@@ -102,6 +125,10 @@ public enum EC2CloudWatchMetric implements CloudWatchMetric {
 
 
 	public Command getMonitorCommand( String commandNameSuffix, String relativePathToMonitorResource ) {
+		if ( checkServerEnabled ) {
+			return new Command( commandName + commandNameSuffix, relativePathToMonitorResource + CheckServer.CLIENT_SCRIPT_FILE_NAME + " " + CheckServer.getClientArguments( EC2Util.TYPE_NAME, name(), evaluation, threshold ) );
+		}
+
 		return new Command( commandName + commandNameSuffix, relativePathToMonitorResource + scriptFileName + " " + logsHost + " " + logsAuthToken + " $ARG1$ $ARG2$ $ARG3$" );
 	}
 
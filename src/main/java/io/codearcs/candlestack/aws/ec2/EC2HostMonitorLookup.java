@@ -9,8 +9,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
-import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
 import com.amazonaws.services.ec2.model.Instance;
 
 import io.codearcs.candlestack.CandlestackException;
@@ -25,12 +23,10 @@ import io.codearcs.candlestack.nagios.object.hosts.HostGroup;
 
 public class EC2HostMonitorLookup implements HostMonitorLookup {
 
-	private AmazonEC2 ec2Client;
+	private EC2Inventory ec2Inventory;
 
 	private Set<String> contactGroups;
 
-	private String namePrefix, nameRegex;
-
 	private Set<EC2CloudWatchMetric> ec2CloudWatchMetrics;
 
 	private Set<EC2MetricbeatMetric> ec2MetricbeatMetrics;
@@ -42,15 +38,12 @@ public class EC2HostMonitorLookup implements HostMonitorLookup {
 
 		this.contactGroups = contactGroups;
 
-		namePrefix = GlobalAWSProperties.getEC2NamePrefix();
-		nameRegex = GlobalAWSProperties.getEC2NameRegex();
-
 		newResourceMonitorDelayMillis = TimeUnit.MINUTES.toMillis( GlobalAWSProperties.getEC2NewResourceMonitorDelay() );
 
 		ec2CloudWatchMetrics = GlobalAWSProperties.getEC2CloudwatchMetricsToMonitor();
 		ec2MetricbeatMetrics = GlobalAWSProperties.getEC2MetricbeatMetricsToMonitor();
 
-		ec2Client = AmazonEC2ClientBuilder.standard().withRegion( GlobalAWSProperties.getRegion() ).build();
+		ec2Inventory = EC2Inventory.getInstance();
 
 	}
 
@@ -108,7 +101,7 @@ public class EC2HostMonitorLookup implements HostMonitorLookup {
 		Date minLaunchAge = new Date( System.currentTimeMillis() - newResourceMonitorDelayMillis );
 
 		// Lookup the EC2 instances and define the necessary hosts adding them to the host group
-		List<Instance> instances = EC2Util.lookupElligibleInstances( ec2Client, namePrefix, nameRegex );
+		List<Instance> instances = ec2Inventory.getEligibleInstances();
 		for ( Instance instance : instances ) {
 
 			// Make sure the instance is old enough to be monitored
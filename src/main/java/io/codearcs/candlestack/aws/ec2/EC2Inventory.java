@@ -0,0 +1,92 @@
+package io.codearcs.candlestack.aws.ec2;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
+import com.amazonaws.services.ec2.model.Instance;
+
+import io.codearcs.candlestack.CandlestackException;
+import io.codearcs.candlestack.CandlestackPropertiesException;
+import io.codearcs.candlestack.aws.AWSClientRegistry;
+import io.codearcs.candlestack.aws.GlobalAWSProperties;
+import io.codearcs.candlestack.aws.InventoryCache;
+
+
+/**
+ * The standalone EC2 instances shared by the EC2MetricsFetcher and EC2HostMonitorLookup.
+ */
+public class EC2Inventory {
+
+	private static EC2Inventory instance;
+
+
+	private AmazonEC2 ec2Client;
+
+	private InventoryCache<List<Instance>> eligibleInstances;
+
+	private String namePrefix, nameRegex;
+
+
+	private EC2Inventory() throws CandlestackPropertiesException {
+
+		namePrefix = GlobalAWSProperties.getEC2NamePrefix();
+		nameRegex = GlobalAWSProperties.getEC2NameRegex();
+
+		ec2Client = AWSClientRegistry.getInstance().getClient( AmazonEC2ClientBuilder::standard, GlobalAWSProperties.getRegion() );
+
+		// Kept up to date by discovery events when enabled so it only needs to be described on the reconcile interval
+		eligibleInstances = new InventoryCache<>( EC2Util.TYPE_NAME, GlobalAWSProperties.getDiscoveredInventoryTTLSec(), () -> Collections.unmodifiableList( EC2Util.lookupElligibleInstances( ec2Client, namePrefix, nameRegex ) ) );
+
+	}
+
+
+	public synchronized static EC2Inventory getInstance() throws CandlestackPropertiesException {
+		if ( instance == null ) {
+			instance = new EC2Inventory();
+		}
+
+		return instance;
+	}
+
+
+	public synchronized static void destroy() {
+		instance = null;
+	}
+
+
+	public List<Instance> getEligibleInstances() throws CandlestackException {
+		return eligibleInstances.get();
+	}
+
+
+	/**
+	 * Applies EC2 instance state changes to the eligible instances without describing all
+	 * of them again.
+	 *
+	 * @param changedInstanceIds
+	 *          the ids of all of the instances that changed state
+	 * @param runningInstances
+	 *          those of the changed instances that are now running
+	 */
+	public void applyInstanceChanges( Set<String> changedInstanceIds, List<Instance> runningInstances ) {
+		eligibleInstances.update( current -> {
+
+			List<Instance> updated = current.stream().filter( instance -> !changedInstanceIds.contains( instance.getInstanceId() ) ).collect( Collectors.toList() );
+
+			// Same rules as when describing them all, Elastic Beanstalk instances are left to the EBInventory
+			for ( Instance instance : runningInstances ) {
+				if ( EC2Util.isStandaloneInstanceEligible( instance, namePrefix, nameRegex ) ) {
+					updated.add( instance );
+				}
+			}
+
+			return Collections.unmodifiableList( updated );
+
+		} );
+	}
+
+}
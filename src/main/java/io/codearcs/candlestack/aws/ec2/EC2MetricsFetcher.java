@@ -6,23 +6,20 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
 import com.amazonaws.services.ec2.model.Instance;
 
 import io.codearcs.candlestack.CandlestackException;
 import io.codearcs.candlestack.MetricsFetcher;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
 import io.codearcs.candlestack.aws.cloudwatch.CloudWatchAccessor;
+import io.codearcs.candlestack.aws.cloudwatch.CloudWatchLookupBatch;
 
 
 public class EC2MetricsFetcher extends MetricsFetcher {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger( EC2MetricsFetcher.class );
 
-	private AmazonEC2 ec2Client;
-
-	private String namePrefix, nameRegex;
+	private EC2Inventory ec2Inventory;
 
 	private Set<EC2CloudWatchMetric> ec2CloudWatchMetrics;
 
@@ -32,12 +29,9 @@ public class EC2MetricsFetcher extends MetricsFetcher {
 	public EC2MetricsFetcher() throws CandlestackException {
 		super( EC2Util.TYPE_NAME, GlobalAWSProperties.getEC2MetricsFetcherSleep() );
 
-		namePrefix = GlobalAWSProperties.getEC2NamePrefix();
-		nameRegex = GlobalAWSProperties.getEC2NameRegex();
-
 		ec2CloudWatchMetrics = GlobalAWSProperties.getEC2CloudwatchMetricsToFetch();
 
-		ec2Client = AmazonEC2ClientBuilder.standard().withRegion( GlobalAWSProperties.getRegion() ).build();
+		ec2Inventory = EC2Inventory.getInstance();
 
 		cloudWatchAccessor = CloudWatchAccessor.getInstance();
 	}
@@ -48,8 +42,9 @@ public class EC2MetricsFetcher extends MetricsFetcher {
 
 		try {
 
-			// For each instance fetch the ec2 cloud watch metrics
-			List<Instance> instances = EC2Util.lookupElligibleInstances( ec2Client, namePrefix, nameRegex );
+			// For each instance queue up the ec2 cloud watch metrics
+			CloudWatchLookupBatch lookupBatch = new CloudWatchLookupBatch();
+			List<Instance> instances = ec2Inventory.getEligibleInstances();
 			for ( Instance instance : instances ) {
 
 				String instanceId = instance.getInstanceId();
@@ -58,11 +53,14 @@ public class EC2MetricsFetcher extends MetricsFetcher {
 				dimensions.setInstanceIdDimension( instanceId );
 				
 				for ( EC2CloudWatchMetric cloudWatchMetric : ec2CloudWatchMetrics ) {
-					cloudWatchAccessor.lookupAndSaveMetricData( cloudWatchMetric, dimensions, instanceId, EC2Util.TYPE_NAME );
+					lookupBatch.add( cloudWatchMetric, dimensions, instanceId, EC2Util.TYPE_NAME );
 				}
 
 			}
 
+			// Fetch all of the queued metrics
+			cloudWatchAccessor.lookupAndSaveMetricData( lookupBatch );
+
 		} catch ( CandlestackException e ) {
 			LOGGER.error( "EC2MetricsFetcher encountered an error while trying to fetch metrics", e );
 		}
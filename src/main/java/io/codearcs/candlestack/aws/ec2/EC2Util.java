@@ -2,6 +2,7 @@ package io.codearcs.candlestack.aws.ec2;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.amazonaws.services.ec2.AmazonEC2;
 import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
@@ -16,6 +17,8 @@ public class EC2Util {
 
 	public static final String TYPE_NAME = "aws_ec2";
 
+	private static final int DESCRIBE_INSTANCES_PAGE_SIZE = 1000;
+
 
 	public static boolean isInstanceEligible( Instance instance, String namePrefix, String nameRegex ) {
 
@@ -37,37 +40,91 @@ public class EC2Util {
 	}
 
 
-	public static List<Instance> lookupElligibleInstances( AmazonEC2 ec2Client, String namePrefix, String nameRegex ) {
+	/**
+	 * The rules an instance has to meet to be monitored as a standalone EC2 instance, the
+	 * describe filters used by {@link #lookupElligibleInstances(AmazonEC2, String, String)}
+	 * only narrow down the instances these are applied to.
+	 */
+	public static boolean isStandaloneInstanceEligible( Instance instance, String namePrefix, String nameRegex ) {
+
+		// We only care about instances with a Name tag
+		if ( !hasTag( instance, "Name" ) ) {
+			return false;
+		}
 
-		// We only care about those EC2 instance that have a Name tag
-		DescribeInstancesRequest request = new DescribeInstancesRequest().withFilters( new Filter().withName( "tag-key" ).withValues( "Name" ) );
+		// We don't want EC2 instances that are part of Elastic Beanstalk since they fall under the Elastic Beanstalk logic
+		if ( !getTagValue( instance, "elasticbeanstalk:environment-name" ).isEmpty() ) {
+			return false;
+		}
+
+		return isInstanceEligible( instance, namePrefix, nameRegex );
+
+	}
 
-		// Make the request
-		DescribeInstancesResult result = ec2Client.describeInstances( request );
+
+	public static List<Instance> lookupElligibleInstances( AmazonEC2 ec2Client, String namePrefix, String nameRegex ) {
+
+		// We only care about running EC2 instances that have a Name tag, narrowed down by the name prefix where there is one
+		List<Filter> filters = new ArrayList<>();
+		filters.add( new Filter().withName( "instance-state-name" ).withValues( "running" ) );
+		if ( namePrefix.isEmpty() ) {
+			filters.add( new Filter().withName( "tag-key" ).withValues( "Name" ) );
+		} else {
+			filters.add( new Filter().withName( "tag:Name" ).withValues( getPrefixFilterValue( namePrefix ) ) );
+		}
 
 		// Process the results building up a list of EC2 instances that match the criteria
 		List<Instance> instances = new ArrayList<>();
-		for ( Reservation reservation : result.getReservations() ) {
+		describeInstances( ec2Client, filters, instance -> {
+
+			// Check to see if the instance is eligible and add it to the list if so
+			if ( isStandaloneInstanceEligible( instance, namePrefix, nameRegex ) ) {
+				instances.add( instance );
+			}
+
+		} );
+
+		return instances;
+
+	}
 
-			for ( Instance instance : reservation.getInstances() ) {
 
-				// We don't want EC2 instances that are part of Elastic Beanstalk since they fall under the Elastic Beanstalk logic
-				String environmentName = EC2Util.getTagValue( instance, "elasticbeanstalk:environment-name" );
-				if ( !environmentName.isEmpty() ) {
-					continue;
-				}
+	/**
+	 * Describes the instances matching the filters a page at a time, passing each instance
+	 * to the consumer so that only a single page of reservations is held in memory.
+	 */
+	public static void describeInstances( AmazonEC2 ec2Client, List<Filter> filters, Consumer<Instance> consumer ) {
 
-				// Check to see if the instance is eligible and add it to the list if so
-				if ( EC2Util.isInstanceEligible( instance, namePrefix, nameRegex ) ) {
-					instances.add( instance );
-				}
+		DescribeInstancesRequest request = new DescribeInstancesRequest().withFilters( filters ).withMaxResults( DESCRIBE_INSTANCES_PAGE_SIZE );
+		do {
 
+			DescribeInstancesResult result = ec2Client.describeInstances( request );
+			for ( Reservation reservation : result.getReservations() ) {
+				reservation.getInstances().forEach( consumer );
 			}
+			request.setNextToken( result.getNextToken() );
 
-		}
+		} while ( request.getNextToken() != null && !request.getNextToken().isEmpty() );
+
+	}
 
-		return instances;
 
+	/**
+	 * @return a filter value matching any value that starts with the prefix, escaping the
+	 *         characters EC2 would otherwise treat as wildcards
+	 */
+	public static String getPrefixFilterValue( String prefix ) {
+		return prefix.replace( "\\", "\\\\" ).replace( "*", "\\*" ).replace( "?", "\\?" ) + "*";
+	}
+
+
+	public static boolean hasTag( Instance instance, String tagKey ) {
+		for ( Tag tag : instance.getTags() ) {
+			if ( tag.getKey().equals( tagKey ) ) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 
@@ -7,6 +7,9 @@ import io.codearcs.candlestack.MetricsReaderWriter;
 import io.codearcs.candlestack.aws.CloudWatchStatistic;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
 import io.codearcs.candlestack.aws.cloudwatch.CloudWatchMetric;
+import io.codearcs.candlestack.nagios.GlobalNagiosProperties;
+import io.codearcs.candlestack.nagios.check.CheckServer;
+import io.codearcs.candlestack.nagios.check.MetricCheck;
 import io.codearcs.candlestack.nagios.object.commands.Command;
 import io.codearcs.candlestack.nagios.object.services.Service;
 
@@ -17,25 +20,36 @@ public enum EBCloudWatchMetric implements CloudWatchMetric {
 			"check-environment-health",
 			"check-aws-eb-environment-health",
 			"check-aws-eb-environment-health-via-es.sh",
-			"Checks to see if the Elastic Beanstalk environemnt is unhealthy. In the event an alert is triggered check the Elastic Beanstalk environment for issues causing the instances to be considered unhealthy." );
+			"Checks to see if the Elastic Beanstalk environemnt is unhealthy. In the event an alert is triggered check the Elastic Beanstalk environment for issues causing the instances to be considered unhealthy.",
+			MetricCheck.Evaluation.AVERAGE,
+			MetricCheck.Threshold.ABOVE );
 
 	private static final String NAMESPACE = "AWS/ElasticBeanstalk";
 
 	private String serviceName, commandName, scriptFileName, notes, logsHost, logsAuthToken;
 
+	private MetricCheck.Evaluation evaluation;
+
+	private MetricCheck.Threshold threshold;
+
+	private boolean checkServerEnabled;
+
 	private CloudWatchStatistic statistic;
 
 
-	private EBCloudWatchMetric( CloudWatchStatistic statistic, String serviceName, String commandName, String scriptFileName, String notes ) {
+	private EBCloudWatchMetric( CloudWatchStatistic statistic, String serviceName, String commandName, String scriptFileName, String notes, MetricCheck.Evaluation evaluation, MetricCheck.Threshold threshold ) {
 		this.statistic = statistic;
 		this.serviceName = serviceName;
 		this.commandName = commandName;
 		this.scriptFileName = scriptFileName;
 		this.notes = notes;
+		this.evaluation = evaluation;
+		this.threshold = threshold;
 
 		try {
 			logsHost = GlobalAWSProperties.getLogsHost();
 			logsAuthToken = GlobalAWSProperties.getLogsAuthToken();
+			checkServerEnabled = GlobalNagiosProperties.isCheckServerEnabled();
 		} catch ( CandlestackPropertiesException ignore ) {
 			// We will see this error else where if this is the case
 		}
@@ -62,7 +76,7 @@ public enum EBCloudWatchMetric implements CloudWatchMetric {
 
 	@Override
 	public String getScriptFileName() {
-		return scriptFileName;
+		return checkServerEnabled ? CheckServer.CLIENT_SCRIPT_FILE_NAME : scriptFileName;
 	}
 
 
@@ -74,12 +88,21 @@ public enum EBCloudWatchMetric implements CloudWatchMetric {
 
 		String notificationPeriod = GlobalAWSProperties.getEBServiceNotificationPeriod( instanceId );
 
-		return new Service( serviceName, instanceId, command, notes, notificationPeriod, contactGroups );
+		Service service = new Service( serviceName, instanceId, command, notes, notificationPeriod, contactGroups );
+		if ( GlobalNagiosProperties.isCheckEngineEnabled() ) {
+			service.setMetricCheck( new MetricCheck( EBUtil.TYPE_NAME, instanceId, name(), evaluation, threshold, warning, critical ), GlobalNagiosProperties.getCheckEngineFreshnessThreshold() );
+		}
+
+		return service;
 	}
 
 
 	@Override
 	public Command getMonitorCommand( String relativePathToMonitorResource ) {
+		if ( checkServerEnabled ) {
+			return new Command( commandName, relativePathToMonitorResource + CheckServer.CLIENT_SCRIPT_FILE_NAME + " " + CheckServer.getClientArguments( EBUtil.TYPE_NAME, name(), evaluation, threshold ) );
+		}
+
 		return new Command( commandName, relativePathToMonitorResource + scriptFileName + " " + logsHost + " " + logsAuthToken + " $ARG1$ $ARG2$ $ARG3$" );
 	}
 
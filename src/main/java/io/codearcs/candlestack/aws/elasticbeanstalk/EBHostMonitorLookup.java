@@ -9,11 +9,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
-import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
 import com.amazonaws.services.ec2.model.Instance;
-import com.amazonaws.services.elasticbeanstalk.AWSElasticBeanstalk;
-import com.amazonaws.services.elasticbeanstalk.AWSElasticBeanstalkClientBuilder;
 import com.amazonaws.services.elasticbeanstalk.model.EnvironmentDescription;
 
 import io.codearcs.candlestack.CandlestackException;
@@ -33,9 +29,7 @@ public class EBHostMonitorLookup implements HostMonitorLookup {
 
 	private static final String EC2_COMMAND_SUFFIX = "-eb";
 
-	private AWSElasticBeanstalk beanstalkClient;
-
-	private AmazonEC2 ec2Client;
+	private EBInventory ebInventory;
 
 	private Set<String> contactGroups;
 
@@ -63,9 +57,7 @@ public class EBHostMonitorLookup implements HostMonitorLookup {
 		ec2MetricbeatMetrics = GlobalAWSProperties.getEC2MetricbeatMetricsToMonitor();
 		ebCloudWatchMetrics = GlobalAWSProperties.getEBCloudwatchMetricsToMonitor();
 
-		String region = GlobalAWSProperties.getRegion();
-		beanstalkClient = AWSElasticBeanstalkClientBuilder.standard().withRegion( region ).build();
-		ec2Client = AmazonEC2ClientBuilder.standard().withRegion( region ).build();
+		ebInventory = EBInventory.getInstance();
 
 	}
 
@@ -121,7 +113,7 @@ public class EBHostMonitorLookup implements HostMonitorLookup {
 
 
 	@Override
-	public List<HostGroup> lookupHostsToMonitor() throws CandlestackPropertiesException {
+	public List<HostGroup> lookupHostsToMonitor() throws CandlestackException {
 
 		List<HostGroup> hostGroups = new ArrayList<>();
 
@@ -129,10 +121,10 @@ public class EBHostMonitorLookup implements HostMonitorLookup {
 		Date minLaunchAge = new Date( System.currentTimeMillis() - newResourceMonitorDelayMillis );
 
 		// Go ahead and fetch the EC2 instances in bulk rather than making calls for the individual environments
-		Map<String, List<Instance>> environmentInstanceMap = EBUtil.lookupInstances( ec2Client, environmentNamePrefix, environmentNameRegex );
+		Map<String, List<Instance>> environmentInstanceMap = ebInventory.getEnvironmentInstances();
 
 		// Look through the environments for eligible ones
-		for ( EnvironmentDescription environment : beanstalkClient.describeEnvironments().getEnvironments() ) {
+		for ( EnvironmentDescription environment : ebInventory.getEnvironments() ) {
 
 			// Skip over ineligible environments
 			if ( !EBUtil.isEnvironmentEligible( environment, environmentNamePrefix, environmentNameRegex ) ) {
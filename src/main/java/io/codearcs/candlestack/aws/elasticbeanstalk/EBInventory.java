@@ -0,0 +1,133 @@
+package io.codearcs.candlestack.aws.elasticbeanstalk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.elasticbeanstalk.AWSElasticBeanstalk;
+import com.amazonaws.services.elasticbeanstalk.AWSElasticBeanstalkClientBuilder;
+import com.amazonaws.services.elasticbeanstalk.model.EnvironmentDescription;
+
+import io.codearcs.candlestack.CandlestackException;
+import io.codearcs.candlestack.CandlestackPropertiesException;
+import io.codearcs.candlestack.aws.AWSClientRegistry;
+import io.codearcs.candlestack.aws.GlobalAWSProperties;
+import io.codearcs.candlestack.aws.InventoryCache;
+
+
+/**
+ * The Elastic Beanstalk environments and their EC2 instances shared by the EBMetricsFetcher
+ * and EBHostMonitorLookup.
+ */
+public class EBInventory {
+
+	private static EBInventory instance;
+
+
+	private AWSElasticBeanstalk beanstalkClient;
+
+	private AmazonEC2 ec2Client;
+
+	private InventoryCache<List<EnvironmentDescription>> environments;
+
+	private InventoryCache<Map<String, List<Instance>>> environmentInstances;
+
+	private String environmentNamePrefix, environmentNameRegex;
+
+
+	private EBInventory() throws CandlestackPropertiesException {
+
+		environmentNamePrefix = GlobalAWSProperties.getEBEnvrionmentNamePrefix();
+		environmentNameRegex = GlobalAWSProperties.getEBEnvrionmentNameRegex();
+
+		String region = GlobalAWSProperties.getRegion();
+		beanstalkClient = AWSClientRegistry.getInstance().getClient( AWSElasticBeanstalkClientBuilder::standard, region );
+		ec2Client = AWSClientRegistry.getInstance().getClient( AmazonEC2ClientBuilder::standard, region );
+
+		// Kept up to date by discovery events when enabled so they only need to be described on the reconcile interval
+		long ttlSec = GlobalAWSProperties.getDiscoveredInventoryTTLSec();
+		environments = new InventoryCache<>( EBUtil.TYPE_NAME + " environments", ttlSec, () -> Collections.unmodifiableList( beanstalkClient.describeEnvironments().getEnvironments() ) );
+		environmentInstances = new InventoryCache<>( EBUtil.TYPE_NAME + " instances", ttlSec, () -> Collections.unmodifiableMap( EBUtil.lookupInstances( ec2Client, environmentNamePrefix, environmentNameRegex ) ) );
+
+	}
+
+
+	public synchronized static EBInventory getInstance() throws CandlestackPropertiesException {
+		if ( instance == null ) {
+			instance = new EBInventory();
+		}
+
+		return instance;
+	}
+
+
+	public synchronized static void destroy() {
+		instance = null;
+	}
+
+
+	/**
+	 * @return all of the environments, eligible or not
+	 */
+	public List<EnvironmentDescription> getEnvironments() throws CandlestackException {
+		return environments.get();
+	}
+
+
+	/**
+	 * @return the running instances of each eligible environment keyed by environment name
+	 */
+	public Map<String, List<Instance>> getEnvironmentInstances() throws CandlestackException {
+		return environmentInstances.get();
+	}
+
+
+	/**
+	 * Called when an environment has changed, the environments are described again the next
+	 * time they are needed.
+	 */
+	public void invalidateEnvironments() {
+		environments.invalidate();
+	}
+
+
+	/**
+	 * Applies EC2 instance state changes to the environment instances without describing
+	 * all of them again.
+	 *
+	 * @param changedInstanceIds
+	 *          the ids of all of the instances that changed state
+	 * @param runningInstances
+	 *          those of the changed instances that are now running
+	 */
+	public void applyInstanceChanges( Set<String> changedInstanceIds, List<Instance> runningInstances ) {
+		environmentInstances.update( current -> {
+
+			Map<String, List<Instance>> updated = new HashMap<>();
+			current.forEach( ( environmentName, instances ) -> {
+				List<Instance> unchanged = instances.stream().filter( instance -> !changedInstanceIds.contains( instance.getInstanceId() ) ).collect( Collectors.toList() );
+				if ( !unchanged.isEmpty() ) {
+					updated.put( environmentName, unchanged );
+				}
+			} );
+
+			for ( Instance instance : runningInstances ) {
+				String environmentName = EBUtil.getEligibleEnvironmentName( instance, environmentNamePrefix, environmentNameRegex );
+				if ( environmentName != null ) {
+					updated.computeIfAbsent( environmentName, key -> new ArrayList<>() ).add( instance );
+				}
+			}
+
+			return Collections.unmodifiableMap( updated );
+
+		} );
+	}
+
+}
@@ -7,17 +7,14 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.AmazonEC2ClientBuilder;
 import com.amazonaws.services.ec2.model.Instance;
-import com.amazonaws.services.elasticbeanstalk.AWSElasticBeanstalk;
-import com.amazonaws.services.elasticbeanstalk.AWSElasticBeanstalkClientBuilder;
 import com.amazonaws.services.elasticbeanstalk.model.EnvironmentDescription;
 
 import io.codearcs.candlestack.CandlestackException;
 import io.codearcs.candlestack.MetricsFetcher;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
 import io.codearcs.candlestack.aws.cloudwatch.CloudWatchAccessor;
+import io.codearcs.candlestack.aws.cloudwatch.CloudWatchLookupBatch;
 import io.codearcs.candlestack.aws.ec2.EC2CloudWatchDimensions;
 import io.codearcs.candlestack.aws.ec2.EC2CloudWatchMetric;
 import io.codearcs.candlestack.aws.ec2.EC2Util;
@@ -27,9 +24,7 @@ public class EBMetricsFetcher extends MetricsFetcher {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger( EBMetricsFetcher.class );
 
-	private AWSElasticBeanstalk beanstalkClient;
-
-	private AmazonEC2 ec2Client;
+	private EBInventory ebInventory;
 
 	private String environmentNamePrefix, environmentNameRegex;
 
@@ -49,9 +44,7 @@ public class EBMetricsFetcher extends MetricsFetcher {
 		ec2CloudWatchMetrics = GlobalAWSProperties.getEC2CloudwatchMetricsToFetch();
 		ebCloudWatchMetrics = GlobalAWSProperties.getEBCloudwatchMetricsToFetch();
 
-		String region = GlobalAWSProperties.getRegion();
-		beanstalkClient = AWSElasticBeanstalkClientBuilder.standard().withRegion( region ).build();
-		ec2Client = AmazonEC2ClientBuilder.standard().withRegion( region ).build();
+		ebInventory = EBInventory.getInstance();
 
 		cloudWatchAccessor = CloudWatchAccessor.getInstance();
 	}
@@ -63,10 +56,11 @@ public class EBMetricsFetcher extends MetricsFetcher {
 		try {
 
 			// Go ahead and fetch the EC2 instances in bulk rather than making calls for the individual environments
-			Map<String, List<Instance>> environmentInstanceMap = EBUtil.lookupInstances( ec2Client, environmentNamePrefix, environmentNameRegex );
+			Map<String, List<Instance>> environmentInstanceMap = ebInventory.getEnvironmentInstances();
 
 			// Look through the environments for eligible ones
-			for ( EnvironmentDescription environment : beanstalkClient.describeEnvironments().getEnvironments() ) {
+			CloudWatchLookupBatch lookupBatch = new CloudWatchLookupBatch();
+			for ( EnvironmentDescription environment : ebInventory.getEnvironments() ) {
 				
 				// Skip over ineligible environments
 				if ( !EBUtil.isEnvironmentEligible( environment, environmentNamePrefix, environmentNameRegex ) ) {
@@ -76,12 +70,12 @@ public class EBMetricsFetcher extends MetricsFetcher {
 				EBCloudWatchDimensions ebdimensions = new EBCloudWatchDimensions();
 				ebdimensions.setEnvironmentNameDimension( environment.getEnvironmentName() );
 
-				// Retrieve the EB cloud watch metrics
+				// Queue up the EB cloud watch metrics
 				for ( EBCloudWatchMetric cloudWatchMetric : ebCloudWatchMetrics ) {
-					cloudWatchAccessor.lookupAndSaveMetricData( cloudWatchMetric, ebdimensions, environment.getEnvironmentName(), EBUtil.TYPE_NAME );
+					lookupBatch.add( cloudWatchMetric, ebdimensions, environment.getEnvironmentName(), EBUtil.TYPE_NAME );
 				}
 
-				// For each instance fetch the ec2 cloud watch metrics
+				// For each instance queue up the ec2 cloud watch metrics
 				List<Instance> instances = environmentInstanceMap.get( environment.getEnvironmentName() );
 				if ( instances != null ) {
 					for ( Instance instance : instances ) {
@@ -89,13 +83,16 @@ public class EBMetricsFetcher extends MetricsFetcher {
 						EC2CloudWatchDimensions ec2dimensions = new EC2CloudWatchDimensions();
 						ec2dimensions.setInstanceIdDimension( instanceId );
 						for ( EC2CloudWatchMetric cloudWatchMetric : ec2CloudWatchMetrics ) {
-							cloudWatchAccessor.lookupAndSaveMetricData( cloudWatchMetric, ec2dimensions, instanceId, EC2Util.TYPE_NAME );
+							lookupBatch.add( cloudWatchMetric, ec2dimensions, instanceId, EC2Util.TYPE_NAME );
 						}
 					}
 				}
 
 			}
 
+			// Fetch all of the queued metrics
+			cloudWatchAccessor.lookupAndSaveMetricData( lookupBatch );
+
 		} catch ( CandlestackException e ) {
 			LOGGER.error( "EBMetricsFetcher encountered an error while trying to fetch metrics", e );
 		}
@@ -6,11 +6,8 @@ import java.util.List;
 import java.util.Map;
 
 import com.amazonaws.services.ec2.AmazonEC2;
-import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
-import com.amazonaws.services.ec2.model.DescribeInstancesResult;
 import com.amazonaws.services.ec2.model.Filter;
 import com.amazonaws.services.ec2.model.Instance;
-import com.amazonaws.services.ec2.model.Reservation;
 import com.amazonaws.services.elasticbeanstalk.model.EnvironmentDescription;
 
 import io.codearcs.candlestack.aws.ec2.EC2Util;
@@ -43,42 +40,49 @@ public class EBUtil {
 	}
 
 
-	public static Map<String, List<Instance>> lookupInstances( AmazonEC2 ec2Client, String environmentNamePrefix, String environmentNameRegex ) {
-
-		// We only care about those EC2 instance created by ElasticBeanstalk
-		DescribeInstancesRequest request = new DescribeInstancesRequest().withFilters( new Filter().withName( "tag-key" ).withValues( "elasticbeanstalk:environment-name" ) );
-
-		// Make the request
-		DescribeInstancesResult result = ec2Client.describeInstances( request );
-
-		// Process the results building up a Map of environment names to instances
-		Map<String, List<Instance>> environmentInstanceMap = new HashMap<>();
-		for ( Reservation reservation : result.getReservations() ) {
+	/**
+	 * The rules an instance has to meet to be monitored as part of an Elastic Beanstalk
+	 * environment, the describe filters used by
+	 * {@link #lookupInstances(AmazonEC2, String, String)} only narrow down the instances these
+	 * are applied to.
+	 *
+	 * @return the name of the environment the instance belongs to, null if it isn't eligible
+	 */
+	static String getEligibleEnvironmentName( Instance instance, String environmentNamePrefix, String environmentNameRegex ) {
+
+		int stateCode = instance.getState().getCode().intValue();
+		if ( stateCode != 16 || !EC2Util.hasTag( instance, "elasticbeanstalk:environment-name" ) ) {
+			// TODO only care about running instances for now but need to come back and re-evaluate this
+			return null;
+		}
 
-			for ( Instance instance : reservation.getInstances() ) {
+		String environmentName = EC2Util.getTagValue( instance, "elasticbeanstalk:environment-name" );
+		return isEnvironmentEligible( environmentName, environmentNamePrefix, environmentNameRegex ) ? environmentName : null;
 
-				int stateCode = instance.getState().getCode().intValue();
-				if ( stateCode != 16 ) {
-					// TODO only care about running instances for now but need to come back and re-evaluate this
-					continue;
-				}
+	}
 
-				String environmentName = EC2Util.getTagValue( instance, "elasticbeanstalk:environment-name" );
-				if ( EBUtil.isEnvironmentEligible( environmentName, environmentNamePrefix, environmentNameRegex ) ) {
 
-					List<Instance> instances = environmentInstanceMap.get( environmentName );
-					if ( instances == null ) {
-						instances = new ArrayList<>();
-						environmentInstanceMap.put( environmentName, instances );
-					}
+	public static Map<String, List<Instance>> lookupInstances( AmazonEC2 ec2Client, String environmentNamePrefix, String environmentNameRegex ) {
 
-					instances.add( instance );
+		// We only care about running EC2 instances created by ElasticBeanstalk, narrowed down by the environment name prefix where there is one
+		List<Filter> filters = new ArrayList<>();
+		filters.add( new Filter().withName( "instance-state-name" ).withValues( "running" ) );
+		if ( environmentNamePrefix.isEmpty() ) {
+			filters.add( new Filter().withName( "tag-key" ).withValues( "elasticbeanstalk:environment-name" ) );
+		} else {
+			filters.add( new Filter().withName( "tag:elasticbeanstalk:environment-name" ).withValues( EC2Util.getPrefixFilterValue( environmentNamePrefix ) ) );
+		}
 
-				}
+		// Process the results building up a Map of environment names to instances
+		Map<String, List<Instance>> environmentInstanceMap = new HashMap<>();
+		EC2Util.describeInstances( ec2Client, filters, instance -> {
 
+			String environmentName = getEligibleEnvironmentName( instance, environmentNamePrefix, environmentNameRegex );
+			if ( environmentName != null ) {
+				environmentInstanceMap.computeIfAbsent( environmentName, key -> new ArrayList<>() ).add( instance );
 			}
 
-		}
+		} );
 
 		return environmentInstanceMap;
 
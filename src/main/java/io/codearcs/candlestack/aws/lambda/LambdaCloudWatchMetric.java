@@ -7,6 +7,9 @@ import io.codearcs.candlestack.MetricsReaderWriter;
 import io.codearcs.candlestack.aws.CloudWatchStatistic;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
 import io.codearcs.candlestack.aws.cloudwatch.CloudWatchMetric;
+import io.codearcs.candlestack.nagios.GlobalNagiosProperties;
+import io.codearcs.candlestack.nagios.check.CheckServer;
+import io.codearcs.candlestack.nagios.check.MetricCheck;
 import io.codearcs.candlestack.nagios.object.commands.Command;
 import io.codearcs.candlestack.nagios.object.services.Service;
 
@@ -22,19 +25,25 @@ public enum LambdaCloudWatchMetric implements CloudWatchMetric {
 			"check-lambda-invocations",
 			"check-aws-lambda-invocations",
 			"check-aws-lambda-invocations-via-es-cw.sh",
-			"Checks to see if the Lambda function has been invoked at least a minimum number of times." ),
+			"Checks to see if the Lambda function has been invoked at least a minimum number of times.",
+			MetricCheck.Evaluation.EACH,
+			MetricCheck.Threshold.BELOW ),
 
 	Errors ( CloudWatchStatistic.Maximum,
 			"check-lambda-errors",
 			"check-aws-lambda-errors",
 			"check-aws-lambda-errors-via-es-cw.sh",
-			"Checks to se if the Lambda function has generated more errors than expected" ),
+			"Checks to se if the Lambda function has generated more errors than expected",
+			MetricCheck.Evaluation.EACH,
+			MetricCheck.Threshold.ABOVE ),
 
 	Duration ( CloudWatchStatistic.Maximum,
 			"check-lambda-duration",
 			"check-aws-lambda-duration",
 			"check-aws-lambda-duration-via-es-cw.sh",
-			"Checks that the Lambda function has not taken longer than expected to execute. " );
+			"Checks that the Lambda function has not taken longer than expected to execute. ",
+			MetricCheck.Evaluation.EACH,
+			MetricCheck.Threshold.ABOVE );
 
 	
 	// Lambda Namespace
@@ -43,19 +52,28 @@ public enum LambdaCloudWatchMetric implements CloudWatchMetric {
 
 	private String serviceName, commandName, scriptFileName, notes, logsHost, logsAuthToken;
 
+	private MetricCheck.Evaluation evaluation;
+
+	private MetricCheck.Threshold threshold;
+
+	private boolean checkServerEnabled;
+
 	private CloudWatchStatistic statistic;
 
 	
-	private LambdaCloudWatchMetric( CloudWatchStatistic statistic, String serviceName, String commandName, String scriptFileName, String notes ) {
+	private LambdaCloudWatchMetric( CloudWatchStatistic statistic, String serviceName, String commandName, String scriptFileName, String notes, MetricCheck.Evaluation evaluation, MetricCheck.Threshold threshold ) {
 		this.statistic = statistic;
 		this.serviceName = serviceName;
 		this.commandName = commandName;
 		this.scriptFileName = scriptFileName;
 		this.notes = notes;
+		this.evaluation = evaluation;
+		this.threshold = threshold;
 		
 		try {
 			logsHost = GlobalAWSProperties.getLogsHost();
 			logsAuthToken = GlobalAWSProperties.getLogsAuthToken();
+			checkServerEnabled = GlobalNagiosProperties.isCheckServerEnabled();
 		} catch ( CandlestackPropertiesException ignore ) {
 			// We will see this error else where if this is the case
 		}
@@ -74,7 +92,7 @@ public enum LambdaCloudWatchMetric implements CloudWatchMetric {
 
 	@Override
 	public String getScriptFileName() {
-		return scriptFileName;
+		return checkServerEnabled ? CheckServer.CLIENT_SCRIPT_FILE_NAME : scriptFileName;
 	}
 
 	@Override
@@ -86,11 +104,20 @@ public enum LambdaCloudWatchMetric implements CloudWatchMetric {
 
 		String notificationPeriod = GlobalAWSProperties.getLambdaServiceNotificationPeriod( instanceId );
 
-		return new Service( serviceName, instanceId, command, notes, notificationPeriod, contactGroups );
+		Service service = new Service( serviceName, instanceId, command, notes, notificationPeriod, contactGroups );
+		if ( GlobalNagiosProperties.isCheckEngineEnabled() ) {
+			service.setMetricCheck( new MetricCheck( LambdaUtil.TYPE_NAME, instanceId, name(), evaluation, threshold, warning, critical ), GlobalNagiosProperties.getCheckEngineFreshnessThreshold() );
+		}
+
+		return service;
 	}
 
 	@Override
 	public Command getMonitorCommand(String relativePathToMonitorResource) {
+		if ( checkServerEnabled ) {
+			return new Command( commandName, relativePathToMonitorResource + CheckServer.CLIENT_SCRIPT_FILE_NAME + " " + CheckServer.getClientArguments( LambdaUtil.TYPE_NAME, name(), evaluation, threshold ) );
+		}
+
 		return new Command( commandName, relativePathToMonitorResource + scriptFileName + " " + logsHost + " " + logsAuthToken + " $ARG1$ $ARG2$ $ARG3$" );
 	}
 
@@ -7,8 +7,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import com.amazonaws.services.lambda.AWSLambda;
-
 import io.codearcs.candlestack.CandlestackException;
 import io.codearcs.candlestack.CandlestackPropertiesException;
 import io.codearcs.candlestack.ScriptFetcher;
@@ -28,7 +26,7 @@ public class LambdaHostMonitorLookup implements HostMonitorLookup {
 
 	private Set<LambdaCloudWatchMetric> lambdaCloudWatchMetrics;
 
-	private AWSLambda lambdaClient;
+	private LambdaInventory lambdaInventory;
 	
 	private Set<String> contactGroups;
 
@@ -39,6 +37,8 @@ public class LambdaHostMonitorLookup implements HostMonitorLookup {
 
 		lambdaCloudWatchMetrics = GlobalAWSProperties.getLambdaCloudwatchMetricsToMonitor();
 
+		lambdaInventory = LambdaInventory.getInstance();
+
 	}
 	
 	@Override
@@ -75,7 +75,7 @@ public class LambdaHostMonitorLookup implements HostMonitorLookup {
 		HostGroup hostGroup = new HostGroup( LambdaUtil.TYPE_NAME, "Lambda Functions" );
 
 		// Lookup the Functions and define the necessary hosts adding them to the host group
-		List<LambdaFunctionSpec> functions = LambdaUtil.lookupFunctions( lambdaClient );
+		List<LambdaFunctionSpec> functions = lambdaInventory.getFunctions();
 		for ( LambdaFunctionSpec function : functions ) {
 				hostGroup.addHost( createHostFromFunction( function ) );
 		}
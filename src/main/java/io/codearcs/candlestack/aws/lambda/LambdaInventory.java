@@ -0,0 +1,60 @@
+package io.codearcs.candlestack.aws.lambda;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.amazonaws.services.lambda.AWSLambda;
+import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
+
+import io.codearcs.candlestack.CandlestackException;
+import io.codearcs.candlestack.CandlestackPropertiesException;
+import io.codearcs.candlestack.MetricsFetcherWorkerPool;
+import io.codearcs.candlestack.aws.AWSClientRegistry;
+import io.codearcs.candlestack.aws.GlobalAWSProperties;
+import io.codearcs.candlestack.aws.InventoryCache;
+
+
+/**
+ * The Lambda function aliases shared by the LambdaMetricsFetcher and LambdaHostMonitorLookup.
+ */
+public class LambdaInventory {
+
+	private static LambdaInventory instance;
+
+
+	private AWSLambda lambdaClient;
+
+	private InventoryCache<List<LambdaFunctionSpec>> functions;
+
+
+	private LambdaInventory() throws CandlestackPropertiesException {
+
+		lambdaClient = AWSClientRegistry.getInstance().getClient( AWSLambdaClientBuilder::standard, GlobalAWSProperties.getRegion() );
+
+		functions = new InventoryCache<>( LambdaUtil.TYPE_NAME, () -> Collections.unmodifiableList( LambdaUtil.lookupFunctions( lambdaClient, MetricsFetcherWorkerPool.getInstance() ) ) );
+
+	}
+
+
+	public synchronized static LambdaInventory getInstance() throws CandlestackPropertiesException {
+		if ( instance == null ) {
+			instance = new LambdaInventory();
+		}
+
+		return instance;
+	}
+
+
+	public synchronized static void destroy() {
+		instance = null;
+	}
+
+
+	/**
+	 * @return the eligible function aliases
+	 */
+	public List<LambdaFunctionSpec> getFunctions() throws CandlestackException {
+		return functions.get();
+	}
+
+}
@@ -6,13 +6,11 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.amazonaws.services.lambda.AWSLambda;
-import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
-
 import io.codearcs.candlestack.CandlestackException;
 import io.codearcs.candlestack.MetricsFetcher;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
 import io.codearcs.candlestack.aws.cloudwatch.CloudWatchAccessor;
+import io.codearcs.candlestack.aws.cloudwatch.CloudWatchLookupBatch;
 
 /**
  * Class responsible for fetching the Lambda metrics from cloudwatch and saving this data.
@@ -28,7 +26,7 @@ public class LambdaMetricsFetcher extends MetricsFetcher {
 	
 	private CloudWatchAccessor cloudWatchAccessor;
 	
-	private AWSLambda lambdaClient;
+	private LambdaInventory lambdaInventory;
 	
 	public LambdaMetricsFetcher() throws CandlestackException {
 		super( LambdaUtil.TYPE_NAME, GlobalAWSProperties.getLambdaMetricsFetcherSleep() );
@@ -37,7 +35,7 @@ public class LambdaMetricsFetcher extends MetricsFetcher {
 		
 		cloudWatchAccessor = CloudWatchAccessor.getInstance();
 		
-		lambdaClient = AWSLambdaClientBuilder.standard().withRegion( GlobalAWSProperties.getRegion() ).build();
+		lambdaInventory = LambdaInventory.getInstance();
 	}
 	
 	@Override
@@ -45,8 +43,9 @@ public class LambdaMetricsFetcher extends MetricsFetcher {
 
 		try {
 			
-			List<LambdaFunctionSpec> functionList = LambdaUtil.lookupFunctions( lambdaClient );
+			List<LambdaFunctionSpec> functionList = lambdaInventory.getFunctions();
 			
+			CloudWatchLookupBatch lookupBatch = new CloudWatchLookupBatch();
 			for ( LambdaFunctionSpec lambdaFunction : functionList ) {
 
 				// Construct the Dimensions
@@ -56,10 +55,12 @@ public class LambdaMetricsFetcher extends MetricsFetcher {
 				
 				for ( LambdaCloudWatchMetric cloudWatchMetric : lambdaCloudWatchMetrics ) {
 					
-					cloudWatchAccessor.lookupAndSaveMetricData( cloudWatchMetric, dimensions, lambdaFunction.getArn(), LambdaUtil.TYPE_NAME );
+					lookupBatch.add( cloudWatchMetric, dimensions, lambdaFunction.getArn(), LambdaUtil.TYPE_NAME );
 				}							
 			}
 			
+			cloudWatchAccessor.lookupAndSaveMetricData( lookupBatch );
+			
 		} catch( CandlestackException e ) {
 			LOGGER.error( "LambdaMetricsFetcher encountered an error while trying to fetch metrics", e );
 		}
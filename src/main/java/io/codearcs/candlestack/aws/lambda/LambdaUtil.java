@@ -7,10 +7,10 @@ import com.amazonaws.services.lambda.AWSLambda;
 import com.amazonaws.services.lambda.model.AliasConfiguration;
 import com.amazonaws.services.lambda.model.FunctionConfiguration;
 import com.amazonaws.services.lambda.model.ListAliasesRequest;
-import com.amazonaws.services.lambda.model.ListAliasesResult;
 import com.amazonaws.services.lambda.model.ListFunctionsResult;
 
-import io.codearcs.candlestack.CandlestackPropertiesException;
+import io.codearcs.candlestack.CandlestackException;
+import io.codearcs.candlestack.MetricsFetcherWorkerPool;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
 
 /**
@@ -35,27 +35,30 @@ public class LambdaUtil {
 	}
 	
 	/**
-	 * Retrieves the list of Lambda Functions 
+	 * Retrieves the list of Lambda Functions, listing the aliases of the functions
+	 * in parallel over the worker pool
 	 * 
 	 * @param lambdaClient
+	 * @param workerPool
 	 * @return
 	 */
-	public static List<LambdaFunctionSpec> lookupFunctions( AWSLambda lambdaClient ) throws CandlestackPropertiesException {
+	public static List<LambdaFunctionSpec> lookupFunctions( AWSLambda lambdaClient, MetricsFetcherWorkerPool workerPool ) throws CandlestackException {
 		
-		List<LambdaFunctionSpec> elligibleFunctions = new ArrayList<LambdaFunctionSpec>();
+		String functionRegex = GlobalAWSProperties.getLambdaFunctionRegex();
 		
 		// Create a request to list the functions
 		ListFunctionsResult functionResult = lambdaClient.listFunctions();
 
-		for ( FunctionConfiguration function: functionResult.getFunctions() ) {
+		// Create a request per function to list the alias, the results come back in the same order as the functions
+		List<List<AliasConfiguration>> functionAliases = workerPool.map( MetricsFetcherWorkerPool.SERVICE_LAMBDA, functionResult.getFunctions(), 
+				function -> lambdaClient.listAliases( new ListAliasesRequest().withFunctionName( function.getFunctionName() ) ).getAliases() );
+
+		List<LambdaFunctionSpec> elligibleFunctions = new ArrayList<LambdaFunctionSpec>();
+		for ( int i = 0; i < functionResult.getFunctions().size(); i++ ) {
 
-			// Create a request to list the alias
-			ListAliasesRequest aliasrequest = new ListAliasesRequest();
-			aliasrequest.withFunctionName( function.getFunctionName() );
-			ListAliasesResult aliasresult = lambdaClient.listAliases( aliasrequest );
-			
-			for ( AliasConfiguration alias : aliasresult.getAliases() ) {
-				if ( isFunctionElligible( alias.getAliasArn(), GlobalAWSProperties.getLambdaFunctionRegex() ) ) {
+			FunctionConfiguration function = functionResult.getFunctions().get( i );
+			for ( AliasConfiguration alias : functionAliases.get( i ) ) {
+				if ( isFunctionElligible( alias.getAliasArn(), functionRegex ) ) {
 					LambdaFunctionSpec functionSpec = new LambdaFunctionSpec();
 					functionSpec.setArn( alias.getAliasArn() );
 					functionSpec.setName( function.getFunctionName() );
@@ -9,6 +9,9 @@ import io.codearcs.candlestack.MetricsReaderWriter;
 import io.codearcs.candlestack.aws.CloudWatchStatistic;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
 import io.codearcs.candlestack.aws.cloudwatch.CloudWatchMetric;
+import io.codearcs.candlestack.nagios.GlobalNagiosProperties;
+import io.codearcs.candlestack.nagios.check.CheckServer;
+import io.codearcs.candlestack.nagios.check.MetricCheck;
 import io.codearcs.candlestack.nagios.object.commands.Command;
 import io.codearcs.candlestack.nagios.object.services.Service;
 
@@ -22,7 +25,9 @@ public enum RDSCloudWatchMetric implements CloudWatchMetric {
 			"Checks to see if the RDS instance is experiencing heavy CPU load. In the event an alert is triggered check the RDS instance for potential query issues causing the heavy CPU load.",
 			new HashSet<>( Arrays.asList( RDSType.AURORA, RDSType.AURORA_MYSQL, RDSType.MARIADB ) ),
 			false,
-			false ),
+			false,
+			MetricCheck.Evaluation.AVERAGE,
+			MetricCheck.Threshold.ABOVE ),
 
 	DatabaseConnections( CloudWatchStatistic.Maximum,
 			"check-db-connections",
@@ -31,7 +36,9 @@ public enum RDSCloudWatchMetric implements CloudWatchMetric {
 			"Checks to see if the RDS instance is experiencing high number of database connections. In the event an alert is triggered check the users of the RDS instance for potential connection leaks.",
 			new HashSet<>( Arrays.asList( RDSType.AURORA, RDSType.AURORA_MYSQL, RDSType.MARIADB ) ),
 			false,
-			false ),
+			false,
+			MetricCheck.Evaluation.LATEST,
+			MetricCheck.Threshold.ABOVE ),
 
 	FreeStorageSpace( CloudWatchStatistic.Minimum,
 			"check-free-storage",
@@ -40,7 +47,9 @@ public enum RDSCloudWatchMetric implements CloudWatchMetric {
 			"Checks to see if the RDS instance is running low on available storage space. In the event an alert is triggered check the RDS instance for potential issues causing a spike in data usage.",
 			new HashSet<>( Arrays.asList( RDSType.MARIADB ) ),
 			false,
-			false ),
+			false,
+			MetricCheck.Evaluation.LATEST,
+			MetricCheck.Threshold.BELOW ),
 
 	VolumeBytesUsed( CloudWatchStatistic.Average,
 			"check-storage-used",
@@ -49,7 +58,9 @@ public enum RDSCloudWatchMetric implements CloudWatchMetric {
 			"Checks to see if the RDS instance has used more storage space than has been specified. In the event an alert is triggered check the RDS instance for potential issues causing a spike in data usage.",
 			new HashSet<>( Arrays.asList( RDSType.AURORA, RDSType.AURORA_MYSQL ) ),
 			false,
-			true ),
+			true,
+			MetricCheck.Evaluation.LATEST,
+			MetricCheck.Threshold.ABOVE ),
 
 	AuroraReplicaLag( CloudWatchStatistic.Maximum,
 			"check-replica-lag",
@@ -58,7 +69,9 @@ public enum RDSCloudWatchMetric implements CloudWatchMetric {
 			"Checks to see if the Aurora read replica is experiencing a high replication lag. In the event an alert is triggered check the Aurora cluster for potential issues causing the lag.",
 			new HashSet<>( Arrays.asList( RDSType.AURORA, RDSType.AURORA_MYSQL ) ),
 			true,
-			false ),
+			false,
+			MetricCheck.Evaluation.LATEST,
+			MetricCheck.Threshold.ABOVE ),
 
 	ActiveTransactions( CloudWatchStatistic.Maximum,
 			"check-active-transactions",
@@ -67,13 +80,21 @@ public enum RDSCloudWatchMetric implements CloudWatchMetric {
 			"Checks to see if the RDS instance is experiencing a large number of active transactions. In the event an alert is triggered check the RDS instance for potential query issues causing the transaction build up.",
 			new HashSet<>( Arrays.asList( RDSType.AURORA, RDSType.AURORA_MYSQL ) ),
 			false,
-			false );
+			false,
+			MetricCheck.Evaluation.LATEST,
+			MetricCheck.Threshold.ABOVE );
 
 
 	private static final String NAMESPACE = "AWS/RDS";
 
 	private String serviceName, commandName, scriptFileName, notes, logsHost, logsAuthToken;
 
+	private MetricCheck.Evaluation evaluation;
+
+	private MetricCheck.Threshold threshold;
+
+	private boolean checkServerEnabled;
+
 	private CloudWatchStatistic statistic;
 
 	private Set<RDSType> supportedRDSTypes;
@@ -81,7 +102,7 @@ public enum RDSCloudWatchMetric implements CloudWatchMetric {
 	private boolean replicaOnly, clusterOnly;
 
 
-	private RDSCloudWatchMetric( CloudWatchStatistic statistic, String serviceName, String commandName, String scriptFileName, String notes, Set<RDSType> supportedRDSTypes, boolean replicaOnly, boolean clusterOnly ) {
+	private RDSCloudWatchMetric( CloudWatchStatistic statistic, String serviceName, String commandName, String scriptFileName, String notes, Set<RDSType> supportedRDSTypes, boolean replicaOnly, boolean clusterOnly, MetricCheck.Evaluation evaluation, MetricCheck.Threshold threshold ) {
 		this.statistic = statistic;
 		this.serviceName = serviceName;
 		this.commandName = commandName;
@@ -90,10 +111,13 @@ public enum RDSCloudWatchMetric implements CloudWatchMetric {
 		this.supportedRDSTypes = supportedRDSTypes;
 		this.replicaOnly = replicaOnly;
 		this.clusterOnly = clusterOnly;
+		this.evaluation = evaluation;
+		this.threshold = threshold;
 
 		try {
 			logsHost = GlobalAWSProperties.getLogsHost();
 			logsAuthToken = GlobalAWSProperties.getLogsAuthToken();
+			checkServerEnabled = GlobalNagiosProperties.isCheckServerEnabled();
 		} catch ( CandlestackPropertiesException ignore ) {
 			// We will see this error else where if this is the case
 		}
@@ -120,7 +144,7 @@ public enum RDSCloudWatchMetric implements CloudWatchMetric {
 
 	@Override
 	public String getScriptFileName() {
-		return scriptFileName;
+		return checkServerEnabled ? CheckServer.CLIENT_SCRIPT_FILE_NAME : scriptFileName;
 	}
 
 
@@ -146,12 +170,21 @@ public enum RDSCloudWatchMetric implements CloudWatchMetric {
 		String command = commandName + "!" + MetricsReaderWriter.sanitizeString( dbInstanceId ) + "!" + warning + "!" + critical;
 
 		String notificationPeriod = GlobalAWSProperties.getRDSServiceNotificationPeriod( dbInstanceId );
-		return new Service( serviceName, dbInstanceId, command, notes, notificationPeriod, contactGroups );
+		Service service = new Service( serviceName, dbInstanceId, command, notes, notificationPeriod, contactGroups );
+		if ( GlobalNagiosProperties.isCheckEngineEnabled() ) {
+			service.setMetricCheck( new MetricCheck( RDSUtil.TYPE_NAME, dbInstanceId, name(), evaluation, threshold, warning, critical ), GlobalNagiosProperties.getCheckEngineFreshnessThreshold() );
+		}
+
+		return service;
 	}
 
 
 	@Override
 	public Command getMonitorCommand( String relativePathToMonitorResource ) {
+		if ( checkServerEnabled ) {
+			return new Command( commandName, relativePathToMonitorResource + CheckServer.CLIENT_SCRIPT_FILE_NAME + " " + CheckServer.getClientArguments( RDSUtil.TYPE_NAME, name(), evaluation, threshold ) );
+		}
+
 		return new Command( commandName, relativePathToMonitorResource + scriptFileName + " " + logsHost + " " + logsAuthToken + " $ARG1$ $ARG2$ $ARG3$" );
 	}
 
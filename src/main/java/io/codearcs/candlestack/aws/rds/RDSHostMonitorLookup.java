@@ -9,13 +9,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
-import com.amazonaws.services.rds.AmazonRDS;
-import com.amazonaws.services.rds.AmazonRDSClientBuilder;
 import com.amazonaws.services.rds.model.DBCluster;
 import com.amazonaws.services.rds.model.DBClusterMember;
 import com.amazonaws.services.rds.model.DBInstance;
-import com.amazonaws.services.rds.model.DescribeDBClustersResult;
-import com.amazonaws.services.rds.model.DescribeDBInstancesResult;
 
 import io.codearcs.candlestack.CandlestackException;
 import io.codearcs.candlestack.CandlestackPropertiesException;
@@ -33,7 +29,7 @@ public class RDSHostMonitorLookup implements HostMonitorLookup {
 
 	private Set<RDSCloudWatchMetric> cloudWatchMetrics;
 
-	private AmazonRDS rdsClient;
+	private RDSInventory rdsInventory;
 
 	private String dbClusterPrefix, dbClusterRegex, dbInstancePrefix, dbInstanceRegex;
 
@@ -53,7 +49,7 @@ public class RDSHostMonitorLookup implements HostMonitorLookup {
 
 		cloudWatchMetrics = GlobalAWSProperties.getRDSCloudwatchMetricsToMonitor();
 
-		rdsClient = AmazonRDSClientBuilder.standard().withRegion( GlobalAWSProperties.getRegion() ).build();
+		rdsInventory = RDSInventory.getInstance();
 
 	}
 
@@ -98,8 +94,7 @@ public class RDSHostMonitorLookup implements HostMonitorLookup {
 
 		// Get the DB instances and see if any of them are not part of a cluster but should be monitored
 		HostGroup nonClusterHostGroup = new HostGroup( "aws_rds_non_cluster", "AWS RDS Non-Clustered Instances" );
-		DescribeDBInstancesResult dbInstanceResults = rdsClient.describeDBInstances();
-		for ( DBInstance dbInstance : dbInstanceResults.getDBInstances() ) {
+		for ( DBInstance dbInstance : rdsInventory.getDBInstances() ) {
 
 			// Make sure the DB instance is eligible
 			RDSType rdsType = RDSType.getTypeFromEngine( dbInstance.getEngine() );
@@ -127,11 +122,10 @@ public class RDSHostMonitorLookup implements HostMonitorLookup {
 	}
 
 
-	private List<HostGroup> lookupClusterGroups() throws CandlestackPropertiesException {
+	private List<HostGroup> lookupClusterGroups() throws CandlestackException {
 
-		DescribeDBClustersResult dbClusterResults = rdsClient.describeDBClusters();
 		List<HostGroup> clusterGroups = new ArrayList<>();
-		for ( DBCluster dbCluster : dbClusterResults.getDBClusters() ) {
+		for ( DBCluster dbCluster : rdsInventory.getDBClusters() ) {
 
 			// Validate the cluster is eligible for monitoring
 			RDSType rdsType = RDSType.getTypeFromEngine( dbCluster.getEngine() );
@@ -0,0 +1,84 @@
+package io.codearcs.candlestack.aws.rds;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.amazonaws.services.rds.AmazonRDS;
+import com.amazonaws.services.rds.AmazonRDSClientBuilder;
+import com.amazonaws.services.rds.model.DBCluster;
+import com.amazonaws.services.rds.model.DBInstance;
+
+import io.codearcs.candlestack.CandlestackException;
+import io.codearcs.candlestack.CandlestackPropertiesException;
+import io.codearcs.candlestack.aws.AWSClientRegistry;
+import io.codearcs.candlestack.aws.GlobalAWSProperties;
+import io.codearcs.candlestack.aws.InventoryCache;
+
+
+/**
+ * The RDS clusters and instances shared by the RDSMetricsFetcher and RDSHostMonitorLookup.
+ */
+public class RDSInventory {
+
+	private static RDSInventory instance;
+
+
+	private AmazonRDS rdsClient;
+
+	private InventoryCache<List<DBCluster>> dbClusters;
+
+	private InventoryCache<List<DBInstance>> dbInstances;
+
+
+	private RDSInventory() throws CandlestackPropertiesException {
+
+		rdsClient = AWSClientRegistry.getInstance().getClient( AmazonRDSClientBuilder::standard, GlobalAWSProperties.getRegion() );
+
+		// Kept up to date by discovery events when enabled so they only need to be described on the reconcile interval
+		long ttlSec = GlobalAWSProperties.getDiscoveredInventoryTTLSec();
+		dbClusters = new InventoryCache<>( RDSUtil.TYPE_NAME + " clusters", ttlSec, () -> Collections.unmodifiableList( rdsClient.describeDBClusters().getDBClusters() ) );
+		dbInstances = new InventoryCache<>( RDSUtil.TYPE_NAME + " instances", ttlSec, () -> Collections.unmodifiableList( rdsClient.describeDBInstances().getDBInstances() ) );
+
+	}
+
+
+	public synchronized static RDSInventory getInstance() throws CandlestackPropertiesException {
+		if ( instance == null ) {
+			instance = new RDSInventory();
+		}
+
+		return instance;
+	}
+
+
+	public synchronized static void destroy() {
+		instance = null;
+	}
+
+
+	/**
+	 * @return all of the DB clusters, eligible or not
+	 */
+	public List<DBCluster> getDBClusters() throws CandlestackException {
+		return dbClusters.get();
+	}
+
+
+	/**
+	 * @return all of the DB instances, eligible or not
+	 */
+	public List<DBInstance> getDBInstances() throws CandlestackException {
+		return dbInstances.get();
+	}
+
+
+	/**
+	 * Called when the DB clusters or instances have changed, RDS events don't describe the
+	 * resource so both are described again the next time they are needed.
+	 */
+	public void invalidate() {
+		dbClusters.invalidate();
+		dbInstances.invalidate();
+	}
+
+}
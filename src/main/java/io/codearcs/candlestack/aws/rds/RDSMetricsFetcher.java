@@ -5,19 +5,15 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.amazonaws.services.rds.AmazonRDS;
-import com.amazonaws.services.rds.AmazonRDSClientBuilder;
 import com.amazonaws.services.rds.model.DBCluster;
 import com.amazonaws.services.rds.model.DBClusterMember;
 import com.amazonaws.services.rds.model.DBInstance;
-import com.amazonaws.services.rds.model.DescribeDBClustersResult;
-import com.amazonaws.services.rds.model.DescribeDBInstancesResult;
 
 import io.codearcs.candlestack.CandlestackException;
 import io.codearcs.candlestack.MetricsFetcher;
-import io.codearcs.candlestack.aws.CandlestackAWSException;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
 import io.codearcs.candlestack.aws.cloudwatch.CloudWatchAccessor;
+import io.codearcs.candlestack.aws.cloudwatch.CloudWatchLookupBatch;
 
 
 public class RDSMetricsFetcher extends MetricsFetcher {
@@ -26,7 +22,7 @@ public class RDSMetricsFetcher extends MetricsFetcher {
 
 	private Set<RDSCloudWatchMetric> cloudWatchMetrics;
 
-	private AmazonRDS rdsClient;
+	private RDSInventory rdsInventory;
 
 	private String dbClusterPrefix, dbClusterRegex, dbInstancePrefix, dbInstanceRegex;
 
@@ -43,7 +39,7 @@ public class RDSMetricsFetcher extends MetricsFetcher {
 
 		cloudWatchMetrics = GlobalAWSProperties.getRDSCloudwatchMetricsToFetch();
 
-		rdsClient = AmazonRDSClientBuilder.standard().withRegion( GlobalAWSProperties.getRegion() ).build();
+		rdsInventory = RDSInventory.getInstance();
 
 		cloudWatchAccessor = CloudWatchAccessor.getInstance();
 	}
@@ -53,8 +49,10 @@ public class RDSMetricsFetcher extends MetricsFetcher {
 	public void fetchMetrics() {
 
 		try {
-			fetchClusterMetrics();
-			fetchInstanceMetrics();
+			CloudWatchLookupBatch lookupBatch = new CloudWatchLookupBatch();
+			fetchClusterMetrics( lookupBatch );
+			fetchInstanceMetrics( lookupBatch );
+			cloudWatchAccessor.lookupAndSaveMetricData( lookupBatch );
 		} catch ( CandlestackException e ) {
 			LOGGER.error( "RDSMetricsFetcher encountered an error while trying to fetch metrics", e );
 		}
@@ -62,9 +60,8 @@ public class RDSMetricsFetcher extends MetricsFetcher {
 	}
 
 
-	private void fetchClusterMetrics() throws CandlestackAWSException, CandlestackException {
-		DescribeDBClustersResult dbClusterResults = rdsClient.describeDBClusters();
-		for ( DBCluster dbCluster : dbClusterResults.getDBClusters() ) {
+	private void fetchClusterMetrics( CloudWatchLookupBatch lookupBatch ) throws CandlestackException {
+		for ( DBCluster dbCluster : rdsInventory.getDBClusters() ) {
 
 			// Do some initial validation to ensure we should be fetching metrics for this cluster
 			String dbClusterId = dbCluster.getDBClusterIdentifier();
@@ -83,7 +80,7 @@ public class RDSMetricsFetcher extends MetricsFetcher {
 					if ( cloudWatchMetric == RDSCloudWatchMetric.VolumeBytesUsed ) {
 						clusterDimension.setEngineDimension( rdsType.name().toLowerCase() );
 					}
-					cloudWatchAccessor.lookupAndSaveMetricData( cloudWatchMetric, clusterDimension, dbClusterId, RDSUtil.TYPE_NAME );
+					lookupBatch.add( cloudWatchMetric, clusterDimension, dbClusterId, RDSUtil.TYPE_NAME );
 
 
 				} else if ( cloudWatchMetric.isRDSTypeSupported( rdsType ) ) { // Instance level metric
@@ -93,7 +90,7 @@ public class RDSMetricsFetcher extends MetricsFetcher {
 						if ( !cloudWatchMetric.isReplicaOnlyMetric() || !clusterMember.isClusterWriter() ) {
 							RDSCloudWatchDimensions clusterMemberDimension = new RDSCloudWatchDimensions();
 							clusterMemberDimension.setInstanceDimension( clusterMember.getDBInstanceIdentifier() );
-							cloudWatchAccessor.lookupAndSaveMetricData( cloudWatchMetric, clusterMemberDimension, clusterMember.getDBInstanceIdentifier(), RDSUtil.TYPE_NAME );
+							lookupBatch.add( cloudWatchMetric, clusterMemberDimension, clusterMember.getDBInstanceIdentifier(), RDSUtil.TYPE_NAME );
 						}
 
 					}
@@ -106,10 +103,9 @@ public class RDSMetricsFetcher extends MetricsFetcher {
 	}
 
 
-	private void fetchInstanceMetrics() throws CandlestackAWSException, CandlestackException {
+	private void fetchInstanceMetrics( CloudWatchLookupBatch lookupBatch ) throws CandlestackException {
 
-		DescribeDBInstancesResult dbInstanceResults = rdsClient.describeDBInstances();
-		for ( DBInstance dbInstance : dbInstanceResults.getDBInstances() ) {
+		for ( DBInstance dbInstance : rdsInventory.getDBInstances() ) {
 
 			String dbInstanceId = dbInstance.getDBInstanceIdentifier();
 			RDSType rdsType = RDSType.getTypeFromEngine( dbInstance.getEngine() );
@@ -122,7 +118,7 @@ public class RDSMetricsFetcher extends MetricsFetcher {
 
 			for ( RDSCloudWatchMetric cloudWatchMetric : cloudWatchMetrics ) {
 				if ( cloudWatchMetric.isRDSTypeSupported( rdsType ) && !cloudWatchMetric.isClusterOnlyMetric() && !cloudWatchMetric.isReplicaOnlyMetric() ) {
-					cloudWatchAccessor.lookupAndSaveMetricData( cloudWatchMetric, dimensions, dbInstanceId, RDSUtil.TYPE_NAME );
+					lookupBatch.add( cloudWatchMetric, dimensions, dbInstanceId, RDSUtil.TYPE_NAME );
 				}
 			}
 
@@ -5,6 +5,9 @@ import java.util.Set;
 import io.codearcs.candlestack.CandlestackPropertiesException;
 import io.codearcs.candlestack.aws.AWSMetric;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
+import io.codearcs.candlestack.nagios.GlobalNagiosProperties;
+import io.codearcs.candlestack.nagios.check.CheckServer;
+import io.codearcs.candlestack.nagios.check.MetricCheck;
 import io.codearcs.candlestack.nagios.object.commands.Command;
 import io.codearcs.candlestack.nagios.object.services.Service;
 
@@ -14,21 +17,32 @@ public enum S3MetadataMetric implements AWSMetric {
 	LastModified( "check-last-modified",
 			"check-aws-s3-last-modified",
 			"check-aws-s3-last-modified-via-es.sh",
-			"Checks to see if the S3 file has been recenetly modified. In the event an alert is triggered ensure processes that should be modifying the S3 file are healthy." );
+			"Checks to see if the S3 file has been recenetly modified. In the event an alert is triggered ensure processes that should be modifying the S3 file are healthy.",
+			MetricCheck.Evaluation.LATEST,
+			MetricCheck.Threshold.ABOVE );
 
 
 	private String serviceName, commandName, scriptFileName, notes, logsHost, logsAuthToken;
 
+	private MetricCheck.Evaluation evaluation;
 
-	private S3MetadataMetric( String serviceName, String commandName, String scriptFileName, String notes ) {
+	private MetricCheck.Threshold threshold;
+
+	private boolean checkServerEnabled;
+
+
+	private S3MetadataMetric( String serviceName, String commandName, String scriptFileName, String notes, MetricCheck.Evaluation evaluation, MetricCheck.Threshold threshold ) {
 		this.serviceName = serviceName;
 		this.commandName = commandName;
 		this.scriptFileName = scriptFileName;
 		this.notes = notes;
+		this.evaluation = evaluation;
+		this.threshold = threshold;
 
 		try {
 			logsHost = GlobalAWSProperties.getLogsHost();
 			logsAuthToken = GlobalAWSProperties.getLogsAuthToken();
+			checkServerEnabled = GlobalNagiosProperties.isCheckServerEnabled();
 		} catch ( CandlestackPropertiesException ignore ) {
 			// We will see this error else where if this is the case
 		}
@@ -49,7 +63,7 @@ public enum S3MetadataMetric implements AWSMetric {
 
 	@Override
 	public String getScriptFileName() {
-		return scriptFileName;
+		return checkServerEnabled ? CheckServer.CLIENT_SCRIPT_FILE_NAME : scriptFileName;
 	}
 
 
@@ -61,12 +75,21 @@ public enum S3MetadataMetric implements AWSMetric {
 
 		String notificationPeriod = GlobalAWSProperties.getS3ServiceNotificationPeriod( instanceId );
 
-		return new Service( serviceName, instanceId, command, notes, notificationPeriod, contactGroups );
+		Service service = new Service( serviceName, instanceId, command, notes, notificationPeriod, contactGroups );
+		if ( GlobalNagiosProperties.isCheckEngineEnabled() ) {
+			service.setMetricCheck( new MetricCheck( S3Util.TYPE_NAME, instanceId, name(), evaluation, threshold, warning, critical ), GlobalNagiosProperties.getCheckEngineFreshnessThreshold() );
+		}
+
+		return service;
 	}
 
 
 	@Override
 	public Command getMonitorCommand( String relativePathToMonitorResource ) {
+		if ( checkServerEnabled ) {
+			return new Command( commandName, relativePathToMonitorResource + CheckServer.CLIENT_SCRIPT_FILE_NAME + " " + CheckServer.getClientArguments( S3Util.TYPE_NAME, name(), evaluation, threshold ) );
+		}
+
 		return new Command( commandName, relativePathToMonitorResource + scriptFileName + " " + logsHost + " " + logsAuthToken + " $ARG1$ $ARG2$ $ARG3$" );
 	}
 
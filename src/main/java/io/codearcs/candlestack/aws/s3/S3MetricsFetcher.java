@@ -1,5 +1,6 @@
 package io.codearcs.candlestack.aws.s3;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Set;
 
@@ -13,7 +14,9 @@ import com.amazonaws.services.s3.model.ObjectMetadata;
 
 import io.codearcs.candlestack.CandlestackException;
 import io.codearcs.candlestack.MetricsFetcher;
+import io.codearcs.candlestack.MetricsFetcherWorkerPool;
 import io.codearcs.candlestack.MetricsReaderWriter;
+import io.codearcs.candlestack.aws.AWSClientRegistry;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
 
 
@@ -29,17 +32,21 @@ public class S3MetricsFetcher extends MetricsFetcher {
 
 	private MetricsReaderWriter metricsReaderWriter;
 
+	private MetricsFetcherWorkerPool workerPool;
+
 
 	public S3MetricsFetcher() throws CandlestackException {
 		super( S3Util.TYPE_NAME, GlobalAWSProperties.getS3MetricsFetcherSleep() );
 
 		metadataMetrics = GlobalAWSProperties.getS3MetadataMetricsToFetch();
 
-		s3Client = AmazonS3ClientBuilder.defaultClient();
+		s3Client = AWSClientRegistry.getInstance().getClient( AmazonS3ClientBuilder::standard, null );
 
 		s3Locations = S3Util.getS3Locations();
 
 		metricsReaderWriter = MetricsReaderWriter.getInstance();
+
+		workerPool = MetricsFetcherWorkerPool.getInstance();
 	}
 
 
@@ -47,28 +54,33 @@ public class S3MetricsFetcher extends MetricsFetcher {
 	public void fetchMetrics() {
 
 		try {
+			workerPool.forEach( MetricsFetcherWorkerPool.SERVICE_S3, Arrays.asList( s3Locations ), this::fetchLocationMetrics );
+		} catch ( SdkClientException | CandlestackException e ) {
+			LOGGER.error( "S3MetricsFetcher encountered an error while trying to fetch metrics", e );
+		}
+
+	}
+
+
+	private void fetchLocationMetrics( S3Location s3Location ) throws CandlestackException {
 
-			for ( S3Location s3Location : s3Locations ) {
-				for ( S3MetadataMetric metadataMetric : metadataMetrics ) {
-
-					ObjectMetadata metadata = s3Client.getObjectMetadata( s3Location.getBucket(), s3Location.getKey() );
-					switch ( metadataMetric ) {
-						case LastModified :
-							Date lastModified = metadata.getLastModified();
-							if ( lastModified == null ) {
-								continue;
-							}
-							metricsReaderWriter.writeMetric( S3Util.TYPE_NAME, s3Location.getId(), new Date(), metadataMetric.name(), System.currentTimeMillis() - lastModified.getTime() );
-							break;
-						default :
-							LOGGER.error( "S3MetricsFetcher encountered an unsupported metadata metric [" + metadataMetric + "] while trying to fetch metrics" );
-							break;
+		// The metadata is the same for all of the metrics so only look it up once
+		ObjectMetadata metadata = s3Client.getObjectMetadata( s3Location.getBucket(), s3Location.getKey() );
+		for ( S3MetadataMetric metadataMetric : metadataMetrics ) {
+
+			switch ( metadataMetric ) {
+				case LastModified :
+					Date lastModified = metadata.getLastModified();
+					if ( lastModified == null ) {
+						continue;
 					}
-				}
+					metricsReaderWriter.writeMetric( S3Util.TYPE_NAME, s3Location.getId(), new Date(), metadataMetric.name(), System.currentTimeMillis() - lastModified.getTime() );
+					break;
+				default :
+					LOGGER.error( "S3MetricsFetcher encountered an unsupported metadata metric [" + metadataMetric + "] while trying to fetch metrics" );
+					break;
 			}
 
-		} catch ( SdkClientException | CandlestackException e ) {
-			LOGGER.error( "S3MetricsFetcher encountered an error while trying to fetch metrics", e );
 		}
 
 	}
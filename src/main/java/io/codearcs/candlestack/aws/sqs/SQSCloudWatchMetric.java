@@ -7,6 +7,9 @@ import io.codearcs.candlestack.MetricsReaderWriter;
 import io.codearcs.candlestack.aws.CloudWatchStatistic;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
 import io.codearcs.candlestack.aws.cloudwatch.CloudWatchMetric;
+import io.codearcs.candlestack.nagios.GlobalNagiosProperties;
+import io.codearcs.candlestack.nagios.check.CheckServer;
+import io.codearcs.candlestack.nagios.check.MetricCheck;
 import io.codearcs.candlestack.nagios.object.commands.Command;
 import io.codearcs.candlestack.nagios.object.services.Service;
 
@@ -17,38 +20,53 @@ public enum SQSCloudWatchMetric implements CloudWatchMetric {
 			"check-queue-message-age",
 			"check-aws-sqs-queue-message-age",
 			"check-aws-sqs-queue-message-age-via-es.sh",
-			"Checks to see if the queue has pending messages that have been sitting on the queue for long period of time. In the event an alert is triggered ensure messages on the queue are being consumed and the relevant message consumers are healthy." ),
+			"Checks to see if the queue has pending messages that have been sitting on the queue for long period of time. In the event an alert is triggered ensure messages on the queue are being consumed and the relevant message consumers are healthy.",
+			MetricCheck.Evaluation.LATEST,
+			MetricCheck.Threshold.ABOVE ),
 
 	NumberOfMessagesReceived( CloudWatchStatistic.Maximum,
 			"check-queue-messages-received",
 			"check-aws-sqs-queue-messages-received",
 			"check-aws-sqs-queue-messages-received-via-es.sh",
-			"Checks to see if the queue has messages that have been recently consumed. In the event an alert is triggered ensure messages on the queue are being consumed and the relevant message consumers are healthy." ),
+			"Checks to see if the queue has messages that have been recently consumed. In the event an alert is triggered ensure messages on the queue are being consumed and the relevant message consumers are healthy.",
+			MetricCheck.Evaluation.LATEST,
+			MetricCheck.Threshold.BELOW ),
 
 	NumberOfMessagesSent( CloudWatchStatistic.Maximum,
 			"check-queue-messages-sent",
 			"check-aws-sqs-queue-messages-sent",
 			"check-aws-sqs-queue-messages-sent-via-es.sh",
-			"Checks to see if the queue has messages that have been recently produced. In the event an alert is triggered ensure messages are being put on the queue and the relevant message producers are healthy." );
+			"Checks to see if the queue has messages that have been recently produced. In the event an alert is triggered ensure messages are being put on the queue and the relevant message producers are healthy.",
+			MetricCheck.Evaluation.LATEST,
+			MetricCheck.Threshold.BELOW );
 
 
 	private static final String NAMESPACE = "AWS/SQS";
 
 	private String serviceName, commandName, scriptFileName, notes, logsHost, logsAuthToken;
 
+	private MetricCheck.Evaluation evaluation;
+
+	private MetricCheck.Threshold threshold;
+
+	private boolean checkServerEnabled;
+
 	private CloudWatchStatistic statistic;
 
 
-	private SQSCloudWatchMetric( CloudWatchStatistic statistic, String serviceName, String commandName, String scriptFileName, String notes ) {
+	private SQSCloudWatchMetric( CloudWatchStatistic statistic, String serviceName, String commandName, String scriptFileName, String notes, MetricCheck.Evaluation evaluation, MetricCheck.Threshold threshold ) {
 		this.statistic = statistic;
 		this.serviceName = serviceName;
 		this.commandName = commandName;
 		this.scriptFileName = scriptFileName;
 		this.notes = notes;
+		this.evaluation = evaluation;
+		this.threshold = threshold;
 
 		try {
 			logsHost = GlobalAWSProperties.getLogsHost();
 			logsAuthToken = GlobalAWSProperties.getLogsAuthToken();
+			checkServerEnabled = GlobalNagiosProperties.isCheckServerEnabled();
 		} catch ( CandlestackPropertiesException ignore ) {
 			// We will see this error else where if this is the case
 		}
@@ -75,7 +93,7 @@ public enum SQSCloudWatchMetric implements CloudWatchMetric {
 
 	@Override
 	public String getScriptFileName() {
-		return scriptFileName;
+		return checkServerEnabled ? CheckServer.CLIENT_SCRIPT_FILE_NAME : scriptFileName;
 	}
 
 
@@ -87,12 +105,21 @@ public enum SQSCloudWatchMetric implements CloudWatchMetric {
 
 		String notificationPeriod = GlobalAWSProperties.getSQSServiceNotificationPeriod( queueName );
 
-		return new Service( serviceName, queueName, command, notes, notificationPeriod, contactGroups );
+		Service service = new Service( serviceName, queueName, command, notes, notificationPeriod, contactGroups );
+		if ( GlobalNagiosProperties.isCheckEngineEnabled() ) {
+			service.setMetricCheck( new MetricCheck( SQSUtil.TYPE_NAME, queueName, name(), evaluation, threshold, warning, critical ), GlobalNagiosProperties.getCheckEngineFreshnessThreshold() );
+		}
+
+		return service;
 	}
 
 
 	@Override
 	public Command getMonitorCommand( String relativePathToMonitorResource ) {
+		if ( checkServerEnabled ) {
+			return new Command( commandName, relativePathToMonitorResource + CheckServer.CLIENT_SCRIPT_FILE_NAME + " " + CheckServer.getClientArguments( SQSUtil.TYPE_NAME, name(), evaluation, threshold ) );
+		}
+
 		return new Command( commandName, relativePathToMonitorResource + scriptFileName + " " + logsHost + " " + logsAuthToken + " $ARG1$ $ARG2$ $ARG3$" );
 	}
 
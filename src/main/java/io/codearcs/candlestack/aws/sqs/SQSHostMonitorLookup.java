@@ -7,8 +7,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 
 import io.codearcs.candlestack.CandlestackException;
 import io.codearcs.candlestack.CandlestackPropertiesException;
@@ -22,7 +20,7 @@ import io.codearcs.candlestack.nagios.object.hosts.HostGroup;
 
 public class SQSHostMonitorLookup implements HostMonitorLookup {
 
-	private AmazonSQS sqsClient;
+	private SQSInventory sqsInventory;
 
 	private Set<String> contactGroups;
 
@@ -48,7 +46,7 @@ public class SQSHostMonitorLookup implements HostMonitorLookup {
 
 		queueAttributes = GlobalAWSProperties.getSQSQueueAttributesToMonitor();
 
-		sqsClient = AmazonSQSClientBuilder.standard().withRegion( GlobalAWSProperties.getRegion() ).build();
+		sqsInventory = SQSInventory.getInstance();
 
 	}
 
@@ -92,14 +90,14 @@ public class SQSHostMonitorLookup implements HostMonitorLookup {
 
 
 	@Override
-	public List<HostGroup> lookupHostsToMonitor() throws CandlestackPropertiesException {
+	public List<HostGroup> lookupHostsToMonitor() throws CandlestackException {
 
 		List<HostGroup> hostGroups = new ArrayList<>();
 		HostGroup sqsHostGroup = new HostGroup( SQSUtil.TYPE_NAME, "AWS SQS Queues" );
 		hostGroups.add( sqsHostGroup );
 
 		// First fetch the list of queue URLs
-		List<String> queueUrls = sqsClient.listQueues().getQueueUrls();
+		List<String> queueUrls = sqsInventory.getQueueUrls();
 
 		for ( String sqsQueueUrl : queueUrls ) {
 
@@ -0,0 +1,59 @@
+package io.codearcs.candlestack.aws.sqs;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
+
+import io.codearcs.candlestack.CandlestackException;
+import io.codearcs.candlestack.CandlestackPropertiesException;
+import io.codearcs.candlestack.aws.AWSClientRegistry;
+import io.codearcs.candlestack.aws.GlobalAWSProperties;
+import io.codearcs.candlestack.aws.InventoryCache;
+
+
+/**
+ * The SQS queue URLs shared by the SQSMetricsFetcher and SQSHostMonitorLookup.
+ */
+public class SQSInventory {
+
+	private static SQSInventory instance;
+
+
+	private AmazonSQS sqsClient;
+
+	private InventoryCache<List<String>> queueUrls;
+
+
+	private SQSInventory() throws CandlestackPropertiesException {
+
+		sqsClient = AWSClientRegistry.getInstance().getClient( AmazonSQSClientBuilder::standard, GlobalAWSProperties.getRegion() );
+
+		queueUrls = new InventoryCache<>( SQSUtil.TYPE_NAME, () -> Collections.unmodifiableList( sqsClient.listQueues().getQueueUrls() ) );
+
+	}
+
+
+	public synchronized static SQSInventory getInstance() throws CandlestackPropertiesException {
+		if ( instance == null ) {
+			instance = new SQSInventory();
+		}
+
+		return instance;
+	}
+
+
+	public synchronized static void destroy() {
+		instance = null;
+	}
+
+
+	/**
+	 * @return the URLs of all of the queues, eligible or not
+	 */
+	public List<String> getQueueUrls() throws CandlestackException {
+		return queueUrls.get();
+	}
+
+}
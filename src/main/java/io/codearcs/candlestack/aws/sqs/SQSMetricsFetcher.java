@@ -1,7 +1,9 @@
 package io.codearcs.candlestack.aws.sqs;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -10,13 +12,17 @@ import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.amazonaws.SdkClientException;
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 
 import io.codearcs.candlestack.CandlestackException;
 import io.codearcs.candlestack.MetricsFetcher;
+import io.codearcs.candlestack.MetricsFetcherWorkerPool;
+import io.codearcs.candlestack.aws.AWSClientRegistry;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
 import io.codearcs.candlestack.aws.cloudwatch.CloudWatchAccessor;
+import io.codearcs.candlestack.aws.cloudwatch.CloudWatchLookupBatch;
 
 
 public class SQSMetricsFetcher extends MetricsFetcher {
@@ -25,6 +31,8 @@ public class SQSMetricsFetcher extends MetricsFetcher {
 
 	private AmazonSQS sqsClient;
 
+	private SQSInventory sqsInventory;
+
 	private String queueNamePrefix, queueNameRegex;
 
 	private boolean monitorDeadLetter;
@@ -35,6 +43,8 @@ public class SQSMetricsFetcher extends MetricsFetcher {
 
 	private CloudWatchAccessor cloudWatchAccessor;
 
+	private MetricsFetcherWorkerPool workerPool;
+
 
 	public SQSMetricsFetcher() throws CandlestackException {
 		super( SQSUtil.TYPE_NAME, GlobalAWSProperties.getSQSMetricsFetcherSleep() );
@@ -48,9 +58,12 @@ public class SQSMetricsFetcher extends MetricsFetcher {
 
 		cloudWatchMetrics = GlobalAWSProperties.getSQSCloudwatchMetricsToFetch();
 
-		sqsClient = AmazonSQSClientBuilder.standard().withRegion( GlobalAWSProperties.getRegion() ).build();
+		sqsClient = AWSClientRegistry.getInstance().getClient( AmazonSQSClientBuilder::standard, GlobalAWSProperties.getRegion() );
+		sqsInventory = SQSInventory.getInstance();
 
 		cloudWatchAccessor = CloudWatchAccessor.getInstance();
+
+		workerPool = MetricsFetcherWorkerPool.getInstance();
 	}
 
 
@@ -60,8 +73,10 @@ public class SQSMetricsFetcher extends MetricsFetcher {
 		try {
 
 			// First fetch the list of queue URLs
-			List<String> queueUrls = sqsClient.listQueues().getQueueUrls();
+			List<String> queueUrls = sqsInventory.getQueueUrls();
 
+			CloudWatchLookupBatch lookupBatch = new CloudWatchLookupBatch();
+			List<String> eligibleQueueUrls = new ArrayList<>();
 			for ( String sqsQueueUrl : queueUrls ) {
 
 				// Extract the queue name from the URL and see if we want to monitor it
@@ -69,21 +84,8 @@ public class SQSMetricsFetcher extends MetricsFetcher {
 				if ( !SQSUtil.isQueueEligible( queueName, queueNamePrefix, queueNameRegex, monitorDeadLetter ) ) {
 					continue;
 				}
+				eligibleQueueUrls.add( sqsQueueUrl );
 
-				// Check to see if we should fetch some queue attribute metrics
-				if ( !queueAttributes.isEmpty() ) {
-
-					Date now = new Date();
-					for ( Entry<String, String> queueAttribute : sqsClient.getQueueAttributes( sqsQueueUrl, queueAttributes ).getAttributes().entrySet() ) {
-						if ( NumberUtils.isNumber( queueAttribute.getValue() ) ) {
-							metricsReaderWriter.writeMetric( SQSUtil.TYPE_NAME, queueName, now, queueAttribute.getKey(), NumberUtils.createNumber( queueAttribute.getValue() ) );
-						} else {
-							LOGGER.error( "SQSMetricsFetcher was unable to handle queue attribute [" + queueAttribute.getKey() + "] for queue [" + queueName + "] due to it having a non-number value [" + queueAttribute.getValue() + "]" );
-						}
-					}
-
-				}
-				
 				// Check to see if we should fetch some CloudWatch metrics
 				if ( !cloudWatchMetrics.isEmpty() ) {
 					
@@ -92,11 +94,19 @@ public class SQSMetricsFetcher extends MetricsFetcher {
 					dimensions.setQueueNameDimension( queueName );
 					
 					for ( SQSCloudWatchMetric cloudWatchMetric : cloudWatchMetrics ) {
-						cloudWatchAccessor.lookupAndSaveMetricData( cloudWatchMetric, dimensions, queueName, SQSUtil.TYPE_NAME );
+						lookupBatch.add( cloudWatchMetric, dimensions, queueName, SQSUtil.TYPE_NAME );
 					}
 				}
 			}
 
+			// Check to see if we should fetch some queue attribute metrics, a call per queue so spread them over the worker pool
+			if ( !queueAttributes.isEmpty() ) {
+				workerPool.forEach( MetricsFetcherWorkerPool.SERVICE_SQS, eligibleQueueUrls, this::fetchQueueAttributes );
+			}
+
+			// Fetch all of the queued CloudWatch metrics
+			cloudWatchAccessor.lookupAndSaveMetricData( lookupBatch );
+
 		} catch ( CandlestackException e ) {
 			LOGGER.error( "SQSMetricsFetcher encountered an error while trying to fetch metrics", e );
 		}
@@ -104,6 +114,31 @@ public class SQSMetricsFetcher extends MetricsFetcher {
 	}
 
 
+	private void fetchQueueAttributes( String sqsQueueUrl ) throws CandlestackException {
+
+		String queueName = SQSUtil.getQueueNameFromURL( sqsQueueUrl );
+
+		Map<String, String> attributes;
+		try {
+			attributes = sqsClient.getQueueAttributes( sqsQueueUrl, queueAttributes ).getAttributes();
+		} catch ( SdkClientException e ) {
+			// Only this queue misses out, the rest of the queues are still fetched
+			LOGGER.error( "SQSMetricsFetcher encountered an error while trying to fetch the attributes of queue [" + queueName + "]", e );
+			return;
+		}
+
+		Date now = new Date();
+		for ( Entry<String, String> queueAttribute : attributes.entrySet() ) {
+			if ( NumberUtils.isNumber( queueAttribute.getValue() ) ) {
+				metricsReaderWriter.writeMetric( SQSUtil.TYPE_NAME, queueName, now, queueAttribute.getKey(), NumberUtils.createNumber( queueAttribute.getValue() ) );
+			} else {
+				LOGGER.error( "SQSMetricsFetcher was unable to handle queue attribute [" + queueAttribute.getKey() + "] for queue [" + queueName + "] due to it having a non-number value [" + queueAttribute.getValue() + "]" );
+			}
+		}
+
+	}
+
+
 	@Override
 	public void close() {}
 
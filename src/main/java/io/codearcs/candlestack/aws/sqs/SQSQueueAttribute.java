@@ -6,6 +6,9 @@ import io.codearcs.candlestack.CandlestackPropertiesException;
 import io.codearcs.candlestack.MetricsReaderWriter;
 import io.codearcs.candlestack.aws.AWSMetric;
 import io.codearcs.candlestack.aws.GlobalAWSProperties;
+import io.codearcs.candlestack.nagios.GlobalNagiosProperties;
+import io.codearcs.candlestack.nagios.check.CheckServer;
+import io.codearcs.candlestack.nagios.check.MetricCheck;
 import io.codearcs.candlestack.nagios.object.commands.Command;
 import io.codearcs.candlestack.nagios.object.services.Service;
 
@@ -15,26 +18,39 @@ public enum SQSQueueAttribute implements AWSMetric {
 	ApproximateNumberOfMessages( "check-queue-size",
 			"check-aws-sqs-queue-size",
 			"check-aws-sqs-queue-size-via-es.sh",
-			"Checks to see if the queue has grown larger than a specified threshold. In the event an alert is triggered ensure messages on the queue are being consumed and the relevant message consumers are healthy." ),
+			"Checks to see if the queue has grown larger than a specified threshold. In the event an alert is triggered ensure messages on the queue are being consumed and the relevant message consumers are healthy.",
+			MetricCheck.Evaluation.LATEST,
+			MetricCheck.Threshold.ABOVE ),
 
 	LastModifiedTimestamp( "check-queue-last-modified",
 			"check-aws-sqs-queue-last-modified",
 			"check-aws-sqs-queue-last-modified-via-es.sh",
-			"Checks to see if the queue has been recently modified. In the event an alert is triggered ensure messages are being put on the queue and the relevant message producers are healthy." );
+			"Checks to see if the queue has been recently modified. In the event an alert is triggered ensure messages are being put on the queue and the relevant message producers are healthy.",
+			MetricCheck.Evaluation.AGE_OF_LATEST,
+			MetricCheck.Threshold.ABOVE );
 
 
 	private String serviceName, commandName, scriptFileName, notes, logsHost, logsAuthToken;
 
+	private MetricCheck.Evaluation evaluation;
 
-	private SQSQueueAttribute( String serviceName, String commandName, String scriptFileName, String notes ) {
+	private MetricCheck.Threshold threshold;
+
+	private boolean checkServerEnabled;
+
+
+	private SQSQueueAttribute( String serviceName, String commandName, String scriptFileName, String notes, MetricCheck.Evaluation evaluation, MetricCheck.Threshold threshold ) {
 		this.serviceName = serviceName;
 		this.commandName = commandName;
 		this.scriptFileName = scriptFileName;
 		this.notes = notes;
+		this.evaluation = evaluation;
+		this.threshold = threshold;
 
 		try {
 			logsHost = GlobalAWSProperties.getLogsHost();
 			logsAuthToken = GlobalAWSProperties.getLogsAuthToken();
+			checkServerEnabled = GlobalNagiosProperties.isCheckServerEnabled();
 		} catch ( CandlestackPropertiesException ignore ) {
 			// We will see this error else where if this is the case
 		}
@@ -55,7 +71,7 @@ public enum SQSQueueAttribute implements AWSMetric {
 
 	@Override
 	public String getScriptFileName() {
-		return scriptFileName;
+		return checkServerEnabled ? CheckServer.CLIENT_SCRIPT_FILE_NAME : scriptFileName;
 	}
 
 
@@ -67,12 +83,21 @@ public enum SQSQueueAttribute implements AWSMetric {
 
 		String notificationPeriod = GlobalAWSProperties.getSQSServiceNotificationPeriod( queueName );
 
-		return new Service( serviceName, queueName, command, notes, notificationPeriod, contactGroups );
+		Service service = new Service( serviceName, queueName, command, notes, notificationPeriod, contactGroups );
+		if ( GlobalNagiosProperties.isCheckEngineEnabled() ) {
+			service.setMetricCheck( new MetricCheck( SQSUtil.TYPE_NAME, queueName, name(), evaluation, threshold, warning, critical ), GlobalNagiosProperties.getCheckEngineFreshnessThreshold() );
+		}
+
+		return service;
 	}
 
 
 	@Override
 	public Command getMonitorCommand( String relativePathToMonitorResource ) {
+		if ( checkServerEnabled ) {
+			return new Command( commandName, relativePathToMonitorResource + CheckServer.CLIENT_SCRIPT_FILE_NAME + " " + CheckServer.getClientArguments( SQSUtil.TYPE_NAME, name(), evaluation, threshold ) );
+		}
+
 		return new Command( commandName, relativePathToMonitorResource + scriptFileName + " " + logsHost + " " + logsAuthToken + " $ARG1$ $ARG2$ $ARG3$" );
 	}
 
@@ -273,4 +273,166 @@ public class GlobalNagiosProperties extends GlobalCandlestackProperties {
 		return new Command( commandName, getStringProperty( COMMANDS_PROPERTY_KEY_PREFIX + commandName ).replace( "\n", "\\n" ) );
 	}
 
+
+	/*
+	 * ----------------------------------
+	 * Properties related to the Check Engine
+	 * ----------------------------------
+	 */
+	private static final String CHECK_ENGINE_ENABLED_PROPERTY_KEY = "nagios.check.engine.enabled",
+			CHECK_ENGINE_COMMAND_FILE_PROPERTY_KEY = "nagios.check.engine.command.file",
+			CHECK_ENGINE_INTERVAL_PROPERTY_KEY = "nagios.check.engine.interval.sec",
+			CHECK_ENGINE_WINDOW_PROPERTY_KEY = "nagios.check.engine.window.min",
+			CHECK_ENGINE_FRESHNESS_THRESHOLD_PROPERTY_KEY = "nagios.check.engine.freshness.threshold.sec";
+
+	private static final String DEFAULT_CHECK_ENGINE_COMMAND_FILE = "/opt/nagios/var/rw/nagios.cmd";
+
+	private static final int DEFAULT_CHECK_ENGINE_INTERVAL_SEC = 60,
+			DEFAULT_CHECK_ENGINE_WINDOW_MIN = 20,
+			DEFAULT_CHECK_ENGINE_FRESHNESS_THRESHOLD_SEC = 900;
+
+
+	public static boolean isCheckEngineEnabled() throws CandlestackPropertiesException {
+		return getBooleanProperty( CHECK_ENGINE_ENABLED_PROPERTY_KEY, false );
+	}
+
+
+	public static String getCheckEngineCommandFile() throws CandlestackPropertiesException {
+		String commandFile = getStringProperty( CHECK_ENGINE_COMMAND_FILE_PROPERTY_KEY, DEFAULT_CHECK_ENGINE_COMMAND_FILE ).trim();
+		return commandFile.isEmpty() ? DEFAULT_CHECK_ENGINE_COMMAND_FILE : commandFile;
+	}
+
+
+	public static int getCheckEngineInterval() throws CandlestackPropertiesException {
+		return getPositiveIntProperty( CHECK_ENGINE_INTERVAL_PROPERTY_KEY, DEFAULT_CHECK_ENGINE_INTERVAL_SEC );
+	}
+
+
+	public static int getCheckEngineWindow() throws CandlestackPropertiesException {
+		return getPositiveIntProperty( CHECK_ENGINE_WINDOW_PROPERTY_KEY, DEFAULT_CHECK_ENGINE_WINDOW_MIN );
+	}
+
+
+	public static int getCheckEngineFreshnessThreshold() throws CandlestackPropertiesException {
+		return getPositiveIntProperty( CHECK_ENGINE_FRESHNESS_THRESHOLD_PROPERTY_KEY, DEFAULT_CHECK_ENGINE_FRESHNESS_THRESHOLD_SEC );
+	}
+
+
+	/*
+	 * ----------------------------------
+	 * Properties related to the Check Server
+	 * ----------------------------------
+	 */
+	private static final String CHECK_SERVER_ENABLED_PROPERTY_KEY = "nagios.check.server.enabled",
+			CHECK_SERVER_ADDRESS_PROPERTY_KEY = "nagios.check.server.address",
+			CHECK_SERVER_PORT_PROPERTY_KEY = "nagios.check.server.port",
+			CHECK_SERVER_THREADS_PROPERTY_KEY = "nagios.check.server.threads";
+
+	private static final String DEFAULT_CHECK_SERVER_ADDRESS = "127.0.0.1";
+
+	private static final int DEFAULT_CHECK_SERVER_PORT = 8091,
+			DEFAULT_CHECK_SERVER_THREADS = 4;
+
+
+	public static boolean isCheckServerEnabled() throws CandlestackPropertiesException {
+		return getBooleanProperty( CHECK_SERVER_ENABLED_PROPERTY_KEY, false );
+	}
+
+
+	public static String getCheckServerAddress() throws CandlestackPropertiesException {
+		String address = getStringProperty( CHECK_SERVER_ADDRESS_PROPERTY_KEY, DEFAULT_CHECK_SERVER_ADDRESS ).trim();
+		return address.isEmpty() ? DEFAULT_CHECK_SERVER_ADDRESS : address;
+	}
+
+
+	public static int getCheckServerPort() throws CandlestackPropertiesException {
+		int port = getPositiveIntProperty( CHECK_SERVER_PORT_PROPERTY_KEY, DEFAULT_CHECK_SERVER_PORT );
+		if ( port > 65535 ) {
+			throw new CandlestackPropertiesException( "GlobalNagiosProperties found invalid value [" + port + "] for property key [" + CHECK_SERVER_PORT_PROPERTY_KEY + "], must be a valid port" );
+		}
+		return port;
+	}
+
+
+	public static int getCheckServerThreads() throws CandlestackPropertiesException {
+		return getPositiveIntProperty( CHECK_SERVER_THREADS_PROPERTY_KEY, DEFAULT_CHECK_SERVER_THREADS );
+	}
+
+
+	/*
+	 * ----------------------------------
+	 * Properties related to the Check Source
+	 * ----------------------------------
+	 */
+	private static final String CHECK_SOURCE_PROPERTY_KEY = "nagios.check.source",
+			CHECK_ELASTICSEARCH_URL_PROPERTY_KEY = "nagios.check.elasticsearch.url",
+			CHECK_ELASTICSEARCH_AUTH_TOKEN_PROPERTY_KEY = "nagios.check.elasticsearch.authtoken",
+			CHECK_ELASTICSEARCH_CACHE_PROPERTY_KEY = "nagios.check.elasticsearch.cache.sec",
+			CHECK_ELASTICSEARCH_TIMEOUT_PROPERTY_KEY = "nagios.check.elasticsearch.timeout.ms",
+			CHECK_ELASTICSEARCH_MAX_INSTANCES_PROPERTY_KEY = "nagios.check.elasticsearch.max.instances",
+			CHECK_ELASTICSEARCH_MAX_DATAPOINTS_PROPERTY_KEY = "nagios.check.elasticsearch.max.datapoints";
+
+	public static final String CHECK_SOURCE_STORE = "store",
+			CHECK_SOURCE_ELASTICSEARCH = "elasticsearch";
+
+	private static final int DEFAULT_CHECK_ELASTICSEARCH_TIMEOUT_MS = 30_000,
+			DEFAULT_CHECK_ELASTICSEARCH_MAX_INSTANCES = 10_000,
+			DEFAULT_CHECK_ELASTICSEARCH_MAX_DATAPOINTS = 100;
+
+
+	public static String getCheckSource() throws CandlestackPropertiesException {
+		String source = getStringProperty( CHECK_SOURCE_PROPERTY_KEY, CHECK_SOURCE_STORE ).trim();
+		if ( source.isEmpty() ) {
+			return CHECK_SOURCE_STORE;
+		} else if ( !source.equals( CHECK_SOURCE_STORE ) && !source.equals( CHECK_SOURCE_ELASTICSEARCH ) ) {
+			throw new CandlestackPropertiesException( "GlobalNagiosProperties found invalid value [" + source + "] for property key [" + CHECK_SOURCE_PROPERTY_KEY + "], must be one of [" + CHECK_SOURCE_STORE + ", " + CHECK_SOURCE_ELASTICSEARCH + "]" );
+		}
+		return source;
+	}
+
+
+	/**
+	 * @return the configured url or an empty string if the aws.logs.host should be used
+	 */
+	public static String getCheckElasticsearchUrl() throws CandlestackPropertiesException {
+		return getStringProperty( CHECK_ELASTICSEARCH_URL_PROPERTY_KEY, "" ).trim();
+	}
+
+
+	/**
+	 * @return the configured authtoken or an empty string if the aws.logs.authtoken should be used
+	 */
+	public static String getCheckElasticsearchAuthToken() throws CandlestackPropertiesException {
+		return getStringProperty( CHECK_ELASTICSEARCH_AUTH_TOKEN_PROPERTY_KEY, "" ).trim();
+	}
+
+
+	public static int getCheckElasticsearchCache() throws CandlestackPropertiesException {
+		return getPositiveIntProperty( CHECK_ELASTICSEARCH_CACHE_PROPERTY_KEY, getCheckEngineInterval() );
+	}
+
+
+	public static int getCheckElasticsearchTimeout() throws CandlestackPropertiesException {
+		return getPositiveIntProperty( CHECK_ELASTICSEARCH_TIMEOUT_PROPERTY_KEY, DEFAULT_CHECK_ELASTICSEARCH_TIMEOUT_MS );
+	}
+
+
+	public static int getCheckElasticsearchMaxInstances() throws CandlestackPropertiesException {
+		return getPositiveIntProperty( CHECK_ELASTICSEARCH_MAX_INSTANCES_PROPERTY_KEY, DEFAULT_CHECK_ELASTICSEARCH_MAX_INSTANCES );
+	}
+
+
+	public static int getCheckElasticsearchMaxDatapoints() throws CandlestackPropertiesException {
+		return getPositiveIntProperty( CHECK_ELASTICSEARCH_MAX_DATAPOINTS_PROPERTY_KEY, DEFAULT_CHECK_ELASTICSEARCH_MAX_DATAPOINTS );
+	}
+
+
+	private static int getPositiveIntProperty( String propertyKey, int defaultVal ) throws CandlestackPropertiesException {
+		int value = getIntProperty( propertyKey, defaultVal );
+		if ( value < 1 ) {
+			throw new CandlestackPropertiesException( "GlobalNagiosProperties found invalid value [" + value + "] for property key [" + propertyKey + "], must be greater than 0" );
+		}
+		return value;
+	}
+
 }
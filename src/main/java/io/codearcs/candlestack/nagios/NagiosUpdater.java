@@ -1,26 +1,45 @@
 package io.codearcs.candlestack.nagios;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.codearcs.candlestack.CandlestackException;
 import io.codearcs.candlestack.CandlestackPropertiesException;
+import io.codearcs.candlestack.nagios.check.CheckEngine;
+import io.codearcs.candlestack.nagios.object.Fingerprint;
 import io.codearcs.candlestack.nagios.object.NagiosObject;
 import io.codearcs.candlestack.nagios.object.NagiosObjectWriter;
+import io.codearcs.candlestack.nagios.object.commands.Command;
+import io.codearcs.candlestack.nagios.object.hosts.Host;
 import io.codearcs.candlestack.nagios.object.hosts.HostGroup;
+import io.codearcs.candlestack.nagios.object.services.Service;
 import io.codearcs.candlestack.nagios.object.timeperiod.TimePeriod;
 
 
@@ -35,6 +54,24 @@ public class NagiosUpdater extends Thread {
 
 	private static final String DEFAULT_OBJECT_DEFINITION_DIR = "/var/tmp/nagios/objects/";
 
+	private static final String OBJECT_DEFINITION_FILE_SUFFIX = ".cfg";
+
+	private static final String DEFAULT_RELOAD_PID_FILE = "/opt/nagios/var/nagios.lock",
+			DEFAULT_RELOAD_COMMAND_FILE = "/opt/nagios/var/rw/nagios.cmd";
+
+	private static final int DEFAULT_RELOAD_DEBOUNCE = 0,
+			DEFAULT_RELOAD_MIN_INTERVAL = 0;
+
+	private static final int DEFAULT_LOOKUP_THREADS = 6,
+			DEFAULT_LOOKUP_TIMEOUT = 300;
+
+	/*
+	 * Reload Modes
+	 */
+	private static final String RELOAD_MODE_RESTART = "restart",
+			RELOAD_MODE_SIGNAL = "signal",
+			RELOAD_MODE_COMMAND = "command";
+
 
 	/*
 	 * Property Keys
@@ -43,7 +80,15 @@ public class NagiosUpdater extends Thread {
 			PROPERTY_KEY_OBJECT_DEFINITION_DIR = "nagios.object.definition.dir",
 			PROPERTY_KEY_OBJECT_DEFINITION_USER_TIMEPERIODS = "nagios.object.definition.user.timeperiods",
 			PROPERTY_KEY_OBJECT_DEFINITION_USER_CHECKS = "nagios.object.definition.user.checks",
-			PROPERTY_KEY_RESTART_CMD = "nagios.updater.restart.cmd";
+			PROPERTY_KEY_RESTART_CMD = "nagios.updater.restart.cmd",
+			PROPERTY_KEY_RELOAD_MODE = "nagios.updater.reload.mode",
+			PROPERTY_KEY_RELOAD_PID_FILE = "nagios.updater.reload.pid.file",
+			PROPERTY_KEY_RELOAD_COMMAND_FILE = "nagios.updater.reload.command.file",
+			PROPERTY_KEY_RELOAD_DEBOUNCE = "nagios.updater.reload.debounce.sec",
+			PROPERTY_KEY_RELOAD_MIN_INTERVAL = "nagios.updater.reload.min.interval.sec",
+			PROPERTY_KEY_VERIFY_CMD = "nagios.updater.verify.cmd",
+			PROPERTY_KEY_LOOKUP_THREADS = "nagios.updater.lookup.threads",
+			PROPERTY_KEY_LOOKUP_TIMEOUT = "nagios.updater.lookup.timeout.sec";
 
 	/*
 	 * Fields
@@ -58,16 +103,100 @@ public class NagiosUpdater extends Thread {
 
 	private Map<HostMonitorLookup, List<HostGroup>> previousHostGroupsPerMonitorLookup;
 
-	private String restartCmd;
+	// The host groups of the configuration Nagios was last reloaded with, which passed verification
+	private Map<HostMonitorLookup, List<HostGroup>> verifiedHostGroupsPerMonitorLookup;
+
+	private Map<HostMonitorLookup, Map<File, Long>> writtenFilesPerMonitorLookup;
+
+	private Long writtenTemplatesFingerprint;
+
+	private String restartCmd, reloadMode, verifyCmd;
+
+	private File reloadPidFile, reloadCommandFile;
+
+	private long reloadDebounceMs, reloadMinIntervalMs;
+
+	// When the first change still waiting on a reload was written, 0 if there is none
+	private long pendingReloadSince, lastReloadTime;
+
+	private boolean reloadFailed;
+
+	private CheckEngine checkEngine;
+
+	private ExecutorService lookupExecutor;
+
+	private long lookupTimeoutMs;
+
+	// The most recent lookup started for each HostMonitorLookup, which may still be running
+	private Map<HostMonitorLookup, Future<List<HostGroup>>> lookupFutures;
+
+	// Set when something outside has seen the infrastructure change, guarded by itself
+	private final Object checkRequestLock = new Object();
+
+	private boolean checkRequested;
 
 
 	public NagiosUpdater( List<HostMonitorLookup> hostMonitorLookups ) throws CandlestackNagiosException, CandlestackPropertiesException {
+		this( hostMonitorLookups, null );
+	}
+
+
+	/**
+	 * @param checkEngine
+	 *          if not null it is kept up to date with the services being monitored
+	 */
+	public NagiosUpdater( List<HostMonitorLookup> hostMonitorLookups, CheckEngine checkEngine ) throws CandlestackNagiosException, CandlestackPropertiesException {
 
 		this.hostMonitorLookups = hostMonitorLookups;
+		this.checkEngine = checkEngine;
 		previousHostGroupsPerMonitorLookup = new HashMap<>();
+		verifiedHostGroupsPerMonitorLookup = new HashMap<>();
+		writtenFilesPerMonitorLookup = new HashMap<>();
+
+		reloadMode = GlobalNagiosProperties.getStringProperty( PROPERTY_KEY_RELOAD_MODE, RELOAD_MODE_RESTART ).trim();
+		if ( reloadMode.isEmpty() || reloadMode.equals( RELOAD_MODE_RESTART ) ) {
+			reloadMode = RELOAD_MODE_RESTART;
+			restartCmd = GlobalNagiosProperties.getStringProperty( PROPERTY_KEY_RESTART_CMD, "" ).trim();
+			if ( restartCmd.isEmpty() ) {
+				throw new CandlestackNagiosException( "Missing required property [" + PROPERTY_KEY_RESTART_CMD + "]" );
+			}
+			LOGGER.info( "NagiosUpdater will use the restart cmd [" + restartCmd + "] for Nagios" );
+		} else if ( reloadMode.equals( RELOAD_MODE_SIGNAL ) ) {
+			reloadPidFile = new File( getNonEmptyStringProperty( PROPERTY_KEY_RELOAD_PID_FILE, DEFAULT_RELOAD_PID_FILE ) );
+			LOGGER.info( "NagiosUpdater will reload Nagios by sending SIGHUP to the pid in [" + reloadPidFile.getAbsolutePath() + "]" );
+		} else if ( reloadMode.equals( RELOAD_MODE_COMMAND ) ) {
+			reloadCommandFile = new File( getNonEmptyStringProperty( PROPERTY_KEY_RELOAD_COMMAND_FILE, DEFAULT_RELOAD_COMMAND_FILE ) );
+			LOGGER.info( "NagiosUpdater will reload Nagios by submitting RESTART_PROGRAM to [" + reloadCommandFile.getAbsolutePath() + "]" );
+		} else {
+			throw new CandlestackNagiosException( "Invalid property [" + PROPERTY_KEY_RELOAD_MODE + "] value [" + reloadMode + "], must be one of [" + RELOAD_MODE_RESTART + ", " + RELOAD_MODE_SIGNAL + ", " + RELOAD_MODE_COMMAND + "]" );
+		}
+
+		verifyCmd = GlobalNagiosProperties.getStringProperty( PROPERTY_KEY_VERIFY_CMD, "" ).trim();
+		if ( !verifyCmd.isEmpty() ) {
+			LOGGER.info( "NagiosUpdater will verify the Nagios configuration with [" + verifyCmd + "] before each reload" );
+		}
+
+		reloadDebounceMs = TimeUnit.SECONDS.toMillis( GlobalNagiosProperties.getIntProperty( PROPERTY_KEY_RELOAD_DEBOUNCE, DEFAULT_RELOAD_DEBOUNCE ) );
+		reloadMinIntervalMs = TimeUnit.SECONDS.toMillis( GlobalNagiosProperties.getIntProperty( PROPERTY_KEY_RELOAD_MIN_INTERVAL, DEFAULT_RELOAD_MIN_INTERVAL ) );
+		if ( reloadDebounceMs < 0 || reloadMinIntervalMs < 0 ) {
+			throw new CandlestackNagiosException( "Invalid properties [" + PROPERTY_KEY_RELOAD_DEBOUNCE + "] and [" + PROPERTY_KEY_RELOAD_MIN_INTERVAL + "], must not be negative" );
+		}
+		LOGGER.info( "NagiosUpdater will wait " + reloadDebounceMs + " ms after a change, and at least " + reloadMinIntervalMs + " ms between reloads, before reloading Nagios" );
 
-		restartCmd = GlobalNagiosProperties.getStringProperty( PROPERTY_KEY_RESTART_CMD, null );
-		LOGGER.info( "NagiosUpdater will use the restart cmd [" + restartCmd + "] for Nagios" );
+		int lookupThreads = GlobalNagiosProperties.getIntProperty( PROPERTY_KEY_LOOKUP_THREADS, DEFAULT_LOOKUP_THREADS );
+		lookupTimeoutMs = TimeUnit.SECONDS.toMillis( GlobalNagiosProperties.getIntProperty( PROPERTY_KEY_LOOKUP_TIMEOUT, DEFAULT_LOOKUP_TIMEOUT ) );
+		if ( lookupThreads < 1 || lookupTimeoutMs < 1 ) {
+			throw new CandlestackNagiosException( "Invalid properties [" + PROPERTY_KEY_LOOKUP_THREADS + "] and [" + PROPERTY_KEY_LOOKUP_TIMEOUT + "], must be greater than 0" );
+		}
+
+		AtomicInteger threadCount = new AtomicInteger();
+		lookupExecutor = Executors.newFixedThreadPool( lookupThreads, runnable -> {
+			Thread thread = new Thread( runnable, "NagiosUpdater-lookup-" + threadCount.incrementAndGet() );
+			thread.setDaemon( true );
+			return thread;
+		} );
+		lookupFutures = new HashMap<>();
+		LOGGER.info( "NagiosUpdater will run up to " + lookupThreads + " lookups at once, waiting at most " + lookupTimeoutMs + " ms for them to complete" );
 
 		sleepIntervalMinutes = GlobalNagiosProperties.getIntProperty( PROPERTY_KEY_SLEEP_INTERVAL, DEFAULT_SLEEP_INTERVAL );
 		LOGGER.info( "NagiosUpdater will use a sleep interval of " + sleepIntervalMinutes + " minute(s)" );
@@ -95,11 +224,25 @@ public class NagiosUpdater extends Thread {
 	public void shutdown() {
 		keepAlive = false;
 
+		lookupExecutor.shutdownNow();
+
 		// Wake it up if it is sleeping
 		interrupt();
 	}
 
 
+	/**
+	 * Asks for the infrastructure to be checked again straight away rather than at the end
+	 * of the sleep interval, requests made while a check is running result in one more check.
+	 */
+	public void requestCheck() {
+		synchronized ( checkRequestLock ) {
+			checkRequested = true;
+			checkRequestLock.notifyAll();
+		}
+	}
+
+
 	@Override
 	public void run() {
 
@@ -119,82 +262,308 @@ public class NagiosUpdater extends Thread {
 	}
 
 
+	/**
+	 * Sleeps until the next check period, waking up in between to reload Nagios once a
+	 * pending reload becomes due or to check early when a check has been requested.
+	 */
 	private void waitForNextCheckPeriod() {
-		if ( keepAlive ) {
+
+		long nextCheckTime = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis( sleepIntervalMinutes );
+		while ( keepAlive ) {
+
+			reloadNagiosIfDue();
+
+			long now = System.currentTimeMillis();
+			if ( now >= nextCheckTime ) {
+				break;
+			}
+
+			long wakeTime = nextCheckTime;
+			if ( pendingReloadSince > 0 && !reloadFailed ) {
+				wakeTime = Math.min( wakeTime, getReloadDueTime() );
+			}
+
 			try {
-				TimeUnit.MINUTES.sleep( sleepIntervalMinutes );
+				synchronized ( checkRequestLock ) {
+					if ( checkRequested ) {
+						checkRequested = false;
+						LOGGER.info( "NagiosUpdater is checking early due to a requested check" );
+						break;
+					}
+					checkRequestLock.wait( Math.max( 1, wakeTime - now ) );
+				}
 			} catch ( InterruptedException e ) {
 				if ( keepAlive ) {
 					LOGGER.warn( "NagiosUpdater was interrupted during the sleep interval between checks", e );
 				}
 			}
+
 		}
+
 	}
 
 
 	private void performChecksAndUpdates() {
 
-		try {
+		// Give a reload that failed another go now there may be a new configuration
+		reloadFailed = false;
+
+		Map<HostMonitorLookup, List<HostGroup>> currentHostGroupsPerMonitorLookup = lookupHostsToMonitor();
+
+		boolean restartNagios = false;
+		for ( Entry<HostMonitorLookup, List<HostGroup>> lookupResult : currentHostGroupsPerMonitorLookup.entrySet() ) {
 
-			boolean restartNagios = false;
-			for ( HostMonitorLookup hostMonitorLookup : hostMonitorLookups ) {
+			HostMonitorLookup hostMonitorLookup = lookupResult.getKey();
+			List<HostGroup> previousHostGroups = previousHostGroupsPerMonitorLookup.getOrDefault( hostMonitorLookup, new ArrayList<>() );
+			List<HostGroup> currentHostGroups = lookupResult.getValue();
 
-				List<HostGroup> previousHostGroups = previousHostGroupsPerMonitorLookup.getOrDefault( hostMonitorLookup, new ArrayList<>() );
-				List<HostGroup> currentHostGroups = hostMonitorLookup.lookupHostsToMonitor();
+			if ( !HostGroup.areEquivalent( previousHostGroups, currentHostGroups ) ) {
 
-				if ( !HostGroup.areEquivalent( previousHostGroups, currentHostGroups ) ) {
+				LOGGER.info( "NagiosUpdater has detected a change for host groups related to [" + hostMonitorLookup.getName() + "]" );
 
-					LOGGER.info( "NagiosUpdater has detected a change for host groups related to [" + hostMonitorLookup.getName() + "]" );
+				try {
+
+					// Only rewrite what changed rather than recreating the whole dir for this resource monitor
+					File resourceMonitorDir = new File( dynamicDir, hostMonitorLookup.getName() );
+					resourceMonitorDir.mkdirs();
+
+					updateResourceFiles( hostMonitorLookup, resourceMonitorDir );
+					updateTemplatesFile( currentHostGroups );
+					updateObjectDefinitionFiles( hostMonitorLookup, resourceMonitorDir, currentHostGroups );
+
+					previousHostGroupsPerMonitorLookup.put( hostMonitorLookup, currentHostGroups );
 					restartNagios = true;
 
-					// Create the dir for this resource monitor
-					File resourceMonitorDir = createFreshDir( dynamicDir, hostMonitorLookup.getName() );
+				} catch ( CandlestackException e ) {
+					// Its previous host groups are kept so the update is attempted again on the next check
+					LOGGER.error( "NagiosUpdater encountered an error trying to update Nagios configuration related to [" + hostMonitorLookup.getName() + "]", e );
+				}
 
-					// Save the resource files
-					try {
-						Map<String, InputStream> resourcesMap = hostMonitorLookup.getMonitorResources();
-						for ( Entry<String, InputStream> resource : resourcesMap.entrySet() ) {
+			} else {
 
-							File resourceFile = new File( resourceMonitorDir, resource.getKey() );
-							Files.copy( resource.getValue(), resourceFile.toPath() );
+				LOGGER.info( "NagiosUpdater has detected NO change for host groups related to [" + hostMonitorLookup.getName() + "]" );
 
-							// TODO for now assume they need to be executable but down the road will likely need to do an extension check
-							resourceFile.setExecutable( true, false );
+			}
 
-						}
-					} catch ( IOException e ) {
-						throw new CandlestackNagiosException( "Encountered an error trying to save resourcs files for resource monitor lookup [" + hostMonitorLookup.getName() + "]", e );
-					}
+		}
 
-					// Save the command object definition file
-					NagiosObjectWriter.writeToFile( new File( resourceMonitorDir, "commands.cfg" ), hostMonitorLookup.getMonitorCommands( getPath( resourceMonitorDir ) ) );
+		// Coalesce this with any other changes made before the reload is due
+		if ( restartNagios && pendingReloadSince == 0 ) {
+			pendingReloadSince = System.currentTimeMillis();
+			LOGGER.info( "NagiosUpdater will reload Nagios in " + Math.max( 0, getReloadDueTime() - pendingReloadSince ) + " ms" );
+		}
 
-					// Save the files for the different host groups
-					for ( HostGroup hostGroup : currentHostGroups ) {
-						NagiosObjectWriter.writeToFile( new File( resourceMonitorDir, hostGroup.getName() + ".cfg" ), hostGroup );
-					}
+		updateCheckEngine();
 
-					previousHostGroupsPerMonitorLookup.put( hostMonitorLookup, currentHostGroups );
+	}
 
-				} else {
 
-					LOGGER.info( "NagiosUpdater has detected NO change for host groups related to [" + hostMonitorLookup.getName() + "]" );
+	private void updateCheckEngine() {
+		if ( checkEngine != null ) {
+			List<HostGroup> allHostGroups = new ArrayList<>();
+			previousHostGroupsPerMonitorLookup.values().forEach( allHostGroups::addAll );
+			checkEngine.updateServices( allHostGroups );
+		}
+	}
+
+
+	/**
+	 * Runs all of the lookups at once, waiting until the lookup timeout from now for them to
+	 * complete. Lookups that fail or don't complete in time are left out of the results so
+	 * they keep their previous host groups. A lookup that is still running from a previous
+	 * check is not started again until it completes.
+	 *
+	 * @return the host groups of each lookup that completed, in the order of the lookups
+	 */
+	private Map<HostMonitorLookup, List<HostGroup>> lookupHostsToMonitor() {
+
+		Map<HostMonitorLookup, Future<List<HostGroup>>> startedLookups = new LinkedHashMap<>();
+		for ( HostMonitorLookup hostMonitorLookup : hostMonitorLookups ) {
+
+			Future<List<HostGroup>> previousFuture = lookupFutures.get( hostMonitorLookup );
+			if ( previousFuture != null && !previousFuture.isDone() ) {
+				LOGGER.warn( "NagiosUpdater is still waiting on the previous lookup of host groups related to [" + hostMonitorLookup.getName() + "], keeping its previous host groups" );
+				continue;
+			}
 
+			Future<List<HostGroup>> future = lookupExecutor.submit( hostMonitorLookup::lookupHostsToMonitor );
+			lookupFutures.put( hostMonitorLookup, future );
+			startedLookups.put( hostMonitorLookup, future );
+
+		}
+
+		long deadline = System.currentTimeMillis() + lookupTimeoutMs;
+
+		Map<HostMonitorLookup, List<HostGroup>> currentHostGroupsPerMonitorLookup = new LinkedHashMap<>();
+		for ( Entry<HostMonitorLookup, Future<List<HostGroup>>> startedLookup : startedLookups.entrySet() ) {
+
+			String name = startedLookup.getKey().getName();
+			try {
+				currentHostGroupsPerMonitorLookup.put( startedLookup.getKey(), startedLookup.getValue().get( Math.max( 0, deadline - System.currentTimeMillis() ), TimeUnit.MILLISECONDS ) );
+			} catch ( TimeoutException e ) {
+				// Left running rather than cancelled, its result is discarded when it does complete
+				LOGGER.warn( "NagiosUpdater timed out looking up host groups related to [" + name + "], keeping its previous host groups" );
+			} catch ( ExecutionException e ) {
+				LOGGER.error( "NagiosUpdater encountered an error looking up host groups related to [" + name + "], keeping its previous host groups", e.getCause() );
+			} catch ( InterruptedException e ) {
+				LOGGER.warn( "NagiosUpdater was interrupted while looking up host groups, keeping the previous host groups of any lookups yet to complete" );
+				break;
+			}
+
+		}
+
+		return currentHostGroupsPerMonitorLookup;
+
+	}
+
+
+	/**
+	 * Saves the resource files whose content differs from what is already on disk and
+	 * removes those that are no longer needed.
+	 */
+	private void updateResourceFiles( HostMonitorLookup hostMonitorLookup, File resourceMonitorDir ) throws CandlestackException {
+
+		Map<String, InputStream> resourcesMap = hostMonitorLookup.getMonitorResources();
+		try {
+
+			for ( Entry<String, InputStream> resource : resourcesMap.entrySet() ) {
+
+				File resourceFile = new File( resourceMonitorDir, resource.getKey() );
+				byte[] content;
+				try ( InputStream in = resource.getValue() ) {
+					content = IOUtils.toByteArray( in );
+				}
+				if ( resourceFile.isFile() && Arrays.equals( content, Files.readAllBytes( resourceFile.toPath() ) ) ) {
+					continue;
 				}
 
+				// TODO for now assume they need to be executable but down the road will likely need to do an extension check
+				NagiosObjectWriter.writeToFile( resourceFile, new ByteArrayInputStream( content ), true );
+
 			}
 
-			if ( restartNagios ) {
-				restartNagios();
+		} catch ( IOException e ) {
+			throw new CandlestackNagiosException( "Encountered an error trying to save resourcs files for resource monitor lookup [" + hostMonitorLookup.getName() + "]", e );
+		}
+
+		File[] existingFiles = resourceMonitorDir.listFiles();
+		if ( existingFiles != null ) {
+			for ( File existingFile : existingFiles ) {
+				if ( existingFile.isFile() && !existingFile.getName().endsWith( OBJECT_DEFINITION_FILE_SUFFIX ) && !resourcesMap.containsKey( existingFile.getName() ) ) {
+					existingFile.delete();
+				}
 			}
+		}
 
-		} catch ( CandlestackException e ) {
-			LOGGER.error( "NagiosUpdater encountered an error trying to check and update Nagios configuration", e );
+	}
+
+
+	/**
+	 * Writes the host and service templates used by every resource monitor to a single file,
+	 * so each template is only defined once however many lookups share it. It is written
+	 * before the object definitions using the templates, and keeps the templates of the
+	 * previous host groups until the next update in case those are not all replaced.
+	 */
+	private void updateTemplatesFile( List<HostGroup> currentHostGroups ) throws CandlestackException {
+
+		List<List<HostGroup>> allHostGroups = new ArrayList<>( previousHostGroupsPerMonitorLookup.values() );
+		allHostGroups.add( currentHostGroups );
+
+		// Sorted so the same templates are always written in the same order
+		Map<String, NagiosObject> templates = new TreeMap<>();
+		for ( List<HostGroup> hostGroups : allHostGroups ) {
+			for ( HostGroup hostGroup : hostGroups ) {
+				for ( Host host : hostGroup.getHosts() ) {
+					templates.putIfAbsent( host.getTemplateName(), host::writeTemplateDefinition );
+					for ( Service service : host.getServices() ) {
+						templates.putIfAbsent( service.getTemplateName(), service::writeTemplateDefinition );
+					}
+				}
+			}
+		}
+
+		NagiosObject templatesFile = out -> {
+			for ( NagiosObject template : templates.values() ) {
+				template.writeObjectDefinitions( out );
+			}
+		};
+
+		long fingerprint = Fingerprint.of( templatesFile );
+		if ( writtenTemplatesFingerprint == null || writtenTemplatesFingerprint != fingerprint ) {
+			writtenTemplatesFingerprint = null;
+			NagiosObjectWriter.writeToFile( new File( dynamicDir, "templates" + OBJECT_DEFINITION_FILE_SUFFIX ), templatesFile );
+			writtenTemplatesFingerprint = fingerprint;
+			LOGGER.info( "NagiosUpdater wrote [" + templates.size() + "] host and service templates" );
 		}
 
 	}
 
 
+	/**
+	 * Writes the commands, each host group and each of their hosts to their own file, only
+	 * touching the files whose content changed since the last update so a change to a handful
+	 * of hosts doesn't rewrite the definitions of every other host.
+	 */
+	private void updateObjectDefinitionFiles( HostMonitorLookup hostMonitorLookup, File resourceMonitorDir, List<HostGroup> currentHostGroups ) throws CandlestackException {
+
+		List<Command> monitorCommands = hostMonitorLookup.getMonitorCommands( getPath( resourceMonitorDir ) );
+
+		Map<File, NagiosObject> currentFiles = new HashMap<>();
+		currentFiles.put( new File( resourceMonitorDir, "commands" + OBJECT_DEFINITION_FILE_SUFFIX ), out -> NagiosObjectWriter.writeObjectDefinitions( out, monitorCommands ) );
+		for ( HostGroup hostGroup : currentHostGroups ) {
+			currentFiles.put( new File( resourceMonitorDir, hostGroup.getName() + OBJECT_DEFINITION_FILE_SUFFIX ), hostGroup::writeHostGroupDefinition );
+
+			File hostGroupDir = new File( resourceMonitorDir, hostGroup.getName() );
+			for ( Host host : hostGroup.getHosts() ) {
+				currentFiles.put( new File( hostGroupDir, host.getName() + OBJECT_DEFINITION_FILE_SUFFIX ), host );
+			}
+		}
+
+		// Only the fingerprint of what was written is kept, the definitions are streamed to disk. It
+		// is updated as each file is written or removed so that if this fails part way through
+		// the files already written are still tracked, and cleaned up once no longer needed.
+		Map<File, Long> writtenFingerprints = writtenFilesPerMonitorLookup.computeIfAbsent( hostMonitorLookup, key -> new HashMap<>() );
+
+		int writtenCount = 0;
+		for ( Entry<File, NagiosObject> currentFile : currentFiles.entrySet() ) {
+			long fingerprint = Fingerprint.of( currentFile.getValue() );
+
+			Long previousFingerprint = writtenFingerprints.get( currentFile.getKey() );
+			if ( previousFingerprint == null || previousFingerprint != fingerprint ) {
+				// Forget the old content first, a failed write leaves the file in an unknown state
+				writtenFingerprints.remove( currentFile.getKey() );
+				currentFile.getKey().getParentFile().mkdirs();
+				NagiosObjectWriter.writeToFile( currentFile.getKey(), currentFile.getValue() );
+				writtenFingerprints.put( currentFile.getKey(), fingerprint );
+				writtenCount++;
+			}
+		}
+
+		int removedCount = 0;
+		for ( File previousFile : new ArrayList<>( writtenFingerprints.keySet() ) ) {
+			if ( !currentFiles.containsKey( previousFile ) ) {
+				if ( !previousFile.delete() && previousFile.exists() ) {
+					// Still tracked so it is removed by the next update
+					LOGGER.warn( "NagiosUpdater failed to remove object definition file [" + previousFile.getAbsolutePath() + "]" );
+					continue;
+				}
+				writtenFingerprints.remove( previousFile );
+				removedCount++;
+
+				// Clean up the dir of a host group that no longer exists
+				File parentDir = previousFile.getParentFile();
+				String[] remainingFiles = parentDir.list();
+				if ( !parentDir.equals( resourceMonitorDir ) && remainingFiles != null && remainingFiles.length == 0 ) {
+					parentDir.delete();
+				}
+			}
+		}
+
+		LOGGER.info( "NagiosUpdater wrote [" + writtenCount + "] and removed [" + removedCount + "] object definition files related to [" + hostMonitorLookup.getName() + "]" );
+
+	}
+
+
 	private String getPath( File dir ) {
 		String path = dir.getPath().replace( '\\', '/' );
 		if ( !path.endsWith( "/" ) ) {
@@ -264,6 +633,170 @@ public class NagiosUpdater extends Thread {
 	}
 
 
+	private long getReloadDueTime() {
+		return Math.max( pendingReloadSince + reloadDebounceMs, lastReloadTime + reloadMinIntervalMs );
+	}
+
+
+	private void reloadNagiosIfDue() {
+
+		if ( pendingReloadSince == 0 || reloadFailed || System.currentTimeMillis() < getReloadDueTime() ) {
+			return;
+		}
+
+		try {
+
+			if ( !verifyCmd.isEmpty() ) {
+				try {
+					verifyNagiosConfiguration();
+				} catch ( CandlestackNagiosException e ) {
+					rollBackToVerifiedConfiguration();
+					throw e;
+				}
+			}
+
+			if ( reloadMode.equals( RELOAD_MODE_SIGNAL ) ) {
+				signalNagios();
+			} else if ( reloadMode.equals( RELOAD_MODE_COMMAND ) ) {
+				submitRestartCommand();
+			} else {
+				restartNagios();
+			}
+
+			lastReloadTime = System.currentTimeMillis();
+			pendingReloadSince = 0;
+			verifiedHostGroupsPerMonitorLookup = new HashMap<>( previousHostGroupsPerMonitorLookup );
+
+		} catch ( CandlestackNagiosException | RuntimeException e ) {
+			// Leave Nagios running with what it has and try again after the next check
+			LOGGER.error( "NagiosUpdater failed to reload Nagios, will try again after the next check for changes", e );
+			reloadFailed = true;
+		}
+
+	}
+
+
+	/**
+	 * Runs the verify command, normally nagios -v, against the configuration that has just been
+	 * written. Nagios only reads the object definition files when it is reloaded, so a
+	 * configuration that fails verification is never loaded while it is running.
+	 */
+	private void verifyNagiosConfiguration() throws CandlestackNagiosException {
+
+		try {
+
+			LOGGER.info( "Attempting to verify Nagios configuration" );
+			Process process = new ProcessBuilder( verifyCmd.split( "\\s+" ) ).redirectErrorStream( true ).start();
+			String output;
+			try ( InputStream in = process.getInputStream() ) {
+				output = IOUtils.toString( in, "UTF-8" );
+			}
+
+			int exitCode = process.waitFor();
+			if ( exitCode != 0 ) {
+				throw new CandlestackNagiosException( "Nagios configuration failed verification with exit code [" + exitCode + "] and output [" + output.trim() + "]" );
+			}
+			LOGGER.info( "Finished verifying Nagios configuration" );
+
+		} catch ( IOException e ) {
+			throw new CandlestackNagiosException( "Encountered an error attempting to verify Nagios configuration", e );
+		} catch ( InterruptedException e ) {
+			throw new CandlestackNagiosException( "Was interrupted while waiting for Nagios configuration to be verified", e );
+		}
+
+	}
+
+
+	/**
+	 * Rewrites the object definition files of every resource monitor that changed since the
+	 * last reload with the host groups Nagios was reloaded with, so a configuration that failed
+	 * verification doesn't stay on disk for Nagios to load the next time it is restarted by
+	 * something else. The changes are written again, and verified again, after the next check.
+	 */
+	private void rollBackToVerifiedConfiguration() {
+
+		LOGGER.warn( "NagiosUpdater is rolling the object definition files back to the last configuration that passed verification" );
+
+		for ( HostMonitorLookup hostMonitorLookup : hostMonitorLookups ) {
+
+			List<HostGroup> verifiedHostGroups = verifiedHostGroupsPerMonitorLookup.getOrDefault( hostMonitorLookup, new ArrayList<>() );
+			if ( HostGroup.areEquivalent( previousHostGroupsPerMonitorLookup.getOrDefault( hostMonitorLookup, new ArrayList<>() ), verifiedHostGroups ) ) {
+				continue;
+			}
+
+			try {
+				File resourceMonitorDir = new File( dynamicDir, hostMonitorLookup.getName() );
+				resourceMonitorDir.mkdirs();
+				updateObjectDefinitionFiles( hostMonitorLookup, resourceMonitorDir, verifiedHostGroups );
+				previousHostGroupsPerMonitorLookup.put( hostMonitorLookup, verifiedHostGroups );
+			} catch ( CandlestackException e ) {
+				LOGGER.error( "NagiosUpdater encountered an error trying to roll back Nagios configuration related to [" + hostMonitorLookup.getName() + "]", e );
+			}
+
+		}
+
+		// The previous host groups are now the verified ones, so this drops templates only the rejected configuration used
+		try {
+			updateTemplatesFile( new ArrayList<>() );
+		} catch ( CandlestackException e ) {
+			LOGGER.error( "NagiosUpdater encountered an error trying to roll back the host and service templates", e );
+		}
+
+		updateCheckEngine();
+
+	}
+
+
+	private void signalNagios() throws CandlestackNagiosException {
+
+		try {
+
+			String pid = new String( Files.readAllBytes( reloadPidFile.toPath() ), StandardCharsets.UTF_8 ).trim();
+			if ( !pid.matches( "\\d+" ) ) {
+				throw new CandlestackNagiosException( "Found invalid pid [" + pid + "] in [" + reloadPidFile.getAbsolutePath() + "]" );
+			}
+
+			LOGGER.info( "Attempting to reload Nagios by sending SIGHUP to pid [" + pid + "]" );
+			Process process = new ProcessBuilder( "kill", "-HUP", pid ).start();
+			int exitCode = process.waitFor();
+			if ( exitCode != 0 ) {
+				throw new CandlestackNagiosException( "Failed to send SIGHUP to pid [" + pid + "], kill exited with [" + exitCode + "]" );
+			}
+			LOGGER.info( "Finished reloading Nagios" );
+
+		} catch ( IOException e ) {
+			throw new CandlestackNagiosException( "Encountered an error attempting to reload Nagios", e );
+		} catch ( InterruptedException e ) {
+			throw new CandlestackNagiosException( "Was interrupted while waiting for Nagios to reload", e );
+		}
+
+	}
+
+
+	private void submitRestartCommand() throws CandlestackNagiosException {
+
+		if ( !reloadCommandFile.exists() ) {
+			throw new CandlestackNagiosException( "Command file [" + reloadCommandFile.getAbsolutePath() + "] does not exist, Nagios may not be running" );
+		}
+
+		LOGGER.info( "Attempting to reload Nagios by submitting RESTART_PROGRAM" );
+		String command = "[" + TimeUnit.MILLISECONDS.toSeconds( System.currentTimeMillis() ) + "] RESTART_PROGRAM\n";
+		try ( OutputStream out = new FileOutputStream( reloadCommandFile, true ) ) {
+			out.write( command.getBytes( StandardCharsets.UTF_8 ) );
+		} catch ( IOException e ) {
+			throw new CandlestackNagiosException( "Encountered an error attempting to submit RESTART_PROGRAM to [" + reloadCommandFile.getAbsolutePath() + "]", e );
+		}
+		LOGGER.info( "Finished reloading Nagios" );
+
+	}
+
+
+	private String getNonEmptyStringProperty( String propertyKey, String defaultVal ) throws CandlestackPropertiesException {
+		String value = GlobalNagiosProperties.getStringProperty( propertyKey, defaultVal ).trim();
+		return value.isEmpty() ? defaultVal : value;
+	}
+
+
 	private void restartNagios() throws CandlestackNagiosException {
 
 		try {
@@ -0,0 +1,211 @@
+package io.codearcs.candlestack.nagios.check;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.codearcs.candlestack.CandlestackException;
+import io.codearcs.candlestack.nagios.GlobalNagiosProperties;
+import io.codearcs.candlestack.nagios.object.hosts.Host;
+import io.codearcs.candlestack.nagios.object.hosts.HostGroup;
+import io.codearcs.candlestack.nagios.object.services.Service;
+
+
+/**
+ * Evaluates the services that have a MetricCheck attached against the MetricCheckSource
+ * and submits the results to Nagios as passive check results through its external command
+ * file. This replaces running a check script, and the processes and Elasticsearch query
+ * that come with it, for every service on every check interval.
+ */
+public class CheckEngine extends Thread {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger( CheckEngine.class );
+
+	// Writes to a FIFO no larger than this are atomic so our lines never interleave with other writers
+	private static final int PIPE_BUF = 4096;
+
+
+	private final File commandFile;
+
+	private final long intervalMs;
+
+	private final MetricCheckSource checkSource;
+
+	private volatile List<Service> services;
+
+	private volatile boolean keepAlive;
+
+	private OutputStream commandStream;
+
+
+	public CheckEngine( MetricCheckSource checkSource ) throws CandlestackException {
+
+		super( "CheckEngine" );
+
+		// Opening the command file blocks while Nagios isn't reading it, don't let that hold up the JVM exiting
+		setDaemon( true );
+
+		this.checkSource = checkSource;
+
+		commandFile = new File( GlobalNagiosProperties.getCheckEngineCommandFile() );
+		intervalMs = TimeUnit.SECONDS.toMillis( GlobalNagiosProperties.getCheckEngineInterval() );
+
+		services = Collections.emptyList();
+		keepAlive = true;
+
+		LOGGER.info( "CheckEngine will submit passive check results to [" + commandFile.getAbsolutePath() + "] every [" + intervalMs + "] ms" );
+
+	}
+
+
+	/**
+	 * Replaces the set of services being checked with those in the provided host groups
+	 * that have a MetricCheck attached.
+	 */
+	public void updateServices( List<HostGroup> hostGroups ) {
+
+		List<Service> checkedServices = new ArrayList<>();
+		for ( HostGroup hostGroup : hostGroups ) {
+			for ( Host host : hostGroup.getHosts() ) {
+				for ( Service service : host.getServices() ) {
+					if ( service.getMetricCheck() != null ) {
+						checkedServices.add( service );
+					}
+				}
+			}
+		}
+
+		services = checkedServices;
+
+	}
+
+
+	public void shutdown() {
+		keepAlive = false;
+
+		// Wake it up if it is sleeping
+		interrupt();
+	}
+
+
+	@Override
+	public void run() {
+
+		while ( keepAlive ) {
+
+			try {
+				runChecks();
+			} catch ( Throwable t ) {
+				LOGGER.error( "CheckEngine encountered an unexpected error while running checks", t );
+			}
+
+			try {
+				TimeUnit.MILLISECONDS.sleep( intervalMs );
+			} catch ( InterruptedException e ) {
+				if ( keepAlive ) {
+					LOGGER.warn( "CheckEngine was interrupted during the sleep interval between checks", e );
+				}
+			}
+
+		}
+
+		closeCommandStream();
+
+	}
+
+
+	private void runChecks() {
+
+		List<Service> currentServices = services;
+		if ( currentServices.isEmpty() ) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		String timestamp = "[" + TimeUnit.MILLISECONDS.toSeconds( now ) + "] ";
+
+		StringBuilder commands = new StringBuilder( currentServices.size() * 128 );
+		for ( Service service : currentServices ) {
+			CheckResult result = checkSource.evaluate( service.getMetricCheck(), now );
+			commands.append( timestamp )
+					.append( "PROCESS_SERVICE_CHECK_RESULT;" )
+					.append( service.getHostName() ).append( ';' )
+					.append( service.getDescription() ).append( ';' )
+					.append( result.getState().getReturnCode() ).append( ';' )
+					.append( result.getOutput().replace( '\n', ' ' ) )
+					.append( '\n' );
+		}
+
+		byte[] bytes = commands.toString().getBytes( StandardCharsets.UTF_8 );
+		try {
+			submit( bytes );
+		} catch ( IOException e ) {
+
+			// A restart of Nagios replaces the command file leaving us with a broken pipe, so reopen it and try once more
+			closeCommandStream();
+			try {
+				submit( bytes );
+			} catch ( IOException retryException ) {
+				LOGGER.error( "CheckEngine failed to submit passive check results to [" + commandFile.getAbsolutePath() + "]", retryException );
+				closeCommandStream();
+				return;
+			}
+
+		}
+		LOGGER.debug( "CheckEngine submitted [" + currentServices.size() + "] passive check results" );
+
+	}
+
+
+	private void submit( byte[] commands ) throws IOException {
+
+		if ( commandStream == null ) {
+			if ( !commandFile.exists() ) {
+				throw new IOException( "Command file does not exist, Nagios may not be running" );
+			}
+
+			commandStream = new FileOutputStream( commandFile, true );
+		}
+
+		// Batch as many whole lines as fit into each write
+		int start = 0;
+		while ( start < commands.length ) {
+			int end = Math.min( start + PIPE_BUF, commands.length );
+			if ( end < commands.length ) {
+				int lastNewline = end - 1;
+				while ( lastNewline > start && commands[lastNewline] != '\n' ) {
+					lastNewline--;
+				}
+				if ( lastNewline > start ) {
+					end = lastNewline + 1;
+				}
+			}
+			commandStream.write( commands, start, end - start );
+			start = end;
+		}
+		commandStream.flush();
+
+	}
+
+
+	private void closeCommandStream() {
+		if ( commandStream != null ) {
+			try {
+				commandStream.close();
+			} catch ( IOException e ) {
+				LOGGER.warn( "CheckEngine failed to close the command file", e );
+			}
+			commandStream = null;
+		}
+	}
+
+}
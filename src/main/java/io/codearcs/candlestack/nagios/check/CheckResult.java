@@ -0,0 +1,29 @@
+package io.codearcs.candlestack.nagios.check;
+
+/**
+ * The outcome of evaluating a MetricCheck, equivalent to the exit code
+ * and output of a check script.
+ */
+public class CheckResult {
+
+	private final CheckState state;
+
+	private final String output;
+
+
+	public CheckResult( CheckState state, String output ) {
+		this.state = state;
+		this.output = output;
+	}
+
+
+	public CheckState getState() {
+		return state;
+	}
+
+
+	public String getOutput() {
+		return output;
+	}
+
+}
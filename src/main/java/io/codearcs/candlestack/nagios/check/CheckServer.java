@@ -0,0 +1,176 @@
+package io.codearcs.candlestack.nagios.check;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import io.codearcs.candlestack.CandlestackException;
+import io.codearcs.candlestack.CandlestackPropertiesException;
+import io.codearcs.candlestack.nagios.CandlestackNagiosException;
+import io.codearcs.candlestack.nagios.GlobalNagiosProperties;
+
+
+/**
+ * Small HTTP server answering check requests from the MetricCheckSource so Nagios can
+ * run a tiny client rather than a script querying Elasticsearch itself. Requests take the form
+ * <code>/check/{type}/{instanceId}/{metric}?warning=&amp;critical=&amp;evaluation=&amp;threshold=</code>
+ * and the response body holds the exit code on the first line followed by the status line.
+ */
+public class CheckServer implements HttpHandler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger( CheckServer.class );
+
+	public static final String CLIENT_SCRIPT_FILE_NAME = "check-candlestack.sh";
+
+	private static final String CONTEXT_PATH = "/check/";
+
+
+	private final MetricCheckSource checkSource;
+
+	private final HttpServer server;
+
+	private final ExecutorService executor;
+
+
+	public CheckServer( MetricCheckSource checkSource ) throws CandlestackException {
+
+		this.checkSource = checkSource;
+
+		String address = GlobalNagiosProperties.getCheckServerAddress();
+		int port = GlobalNagiosProperties.getCheckServerPort();
+		try {
+			server = HttpServer.create( new InetSocketAddress( address, port ), 0 );
+		} catch ( IOException e ) {
+			throw new CandlestackNagiosException( "CheckServer failed to bind to [" + address + ":" + port + "]", e );
+		}
+
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = Executors.newFixedThreadPool( GlobalNagiosProperties.getCheckServerThreads(), runnable -> {
+			Thread thread = new Thread( runnable, "CheckServer-" + threadCount.incrementAndGet() );
+			thread.setDaemon( true );
+			return thread;
+		} );
+
+		server.createContext( CONTEXT_PATH, this );
+		server.setExecutor( executor );
+
+		LOGGER.info( "CheckServer will listen for check requests on [" + address + ":" + port + "]" );
+
+	}
+
+
+	/**
+	 * Builds the arguments passed to the client script for a check, the instance id and
+	 * the warning and critical levels are left as the usual $ARG1$, $ARG2$ and $ARG3$ macros.
+	 */
+	public static String getClientArguments( String type, String metricName, MetricCheck.Evaluation evaluation, MetricCheck.Threshold threshold ) {
+		int port;
+		try {
+			port = GlobalNagiosProperties.getCheckServerPort();
+		} catch ( CandlestackPropertiesException ignore ) {
+			// We will see this error else where if this is the case
+			port = -1;
+		}
+		return port + " " + type + " $ARG1$ " + metricName + " $ARG2$ $ARG3$ " + evaluation + " " + threshold;
+	}
+
+
+	public void start() {
+		server.start();
+	}
+
+
+	public void shutdown() {
+		server.stop( 1 );
+		executor.shutdownNow();
+	}
+
+
+	@Override
+	public void handle( HttpExchange exchange ) throws IOException {
+
+		CheckResult result;
+		int statusCode = 200;
+		try {
+
+			// Expecting {type}/{instanceId}/{metric}
+			String[] pathParts = exchange.getRequestURI().getRawPath().substring( CONTEXT_PATH.length() ).split( "/" );
+			if ( pathParts.length != 3 ) {
+				throw new IllegalArgumentException( "expected path of the form " + CONTEXT_PATH + "{type}/{instanceId}/{metric}" );
+			}
+
+			Map<String, String> params = parseQuery( exchange.getRequestURI().getRawQuery() );
+			MetricCheck metricCheck = new MetricCheck( decode( pathParts[0] ), decode( pathParts[1] ), decode( pathParts[2] ),
+					MetricCheck.Evaluation.valueOf( params.getOrDefault( "evaluation", MetricCheck.Evaluation.EACH.name() ) ),
+					MetricCheck.Threshold.valueOf( params.getOrDefault( "threshold", MetricCheck.Threshold.ABOVE.name() ) ),
+					Long.parseLong( getRequiredParam( params, "warning" ) ),
+					Long.parseLong( getRequiredParam( params, "critical" ) ) );
+
+			result = checkSource.evaluate( metricCheck, System.currentTimeMillis() );
+
+		} catch ( IllegalArgumentException e ) {
+			statusCode = 400;
+			result = new CheckResult( CheckState.UNKNOWN, "UNKNOWN: Invalid check request, " + e.getMessage() );
+		} catch ( RuntimeException e ) {
+			LOGGER.error( "CheckServer encountered an unexpected error handling [" + exchange.getRequestURI() + "]", e );
+			statusCode = 500;
+			result = new CheckResult( CheckState.UNKNOWN, "UNKNOWN: Candlestack failed to evaluate the check" );
+		}
+
+		byte[] body = ( result.getState().getReturnCode() + "\n" + result.getOutput() + "\n" ).getBytes( StandardCharsets.UTF_8 );
+		exchange.getResponseHeaders().set( "Content-Type", "text/plain; charset=UTF-8" );
+		exchange.sendResponseHeaders( statusCode, body.length );
+		try ( OutputStream os = exchange.getResponseBody() ) {
+			os.write( body );
+		}
+
+	}
+
+
+	private static Map<String, String> parseQuery( String rawQuery ) {
+		Map<String, String> params = new HashMap<>();
+		if ( rawQuery != null ) {
+			for ( String pair : rawQuery.split( "&" ) ) {
+				int equalsIndex = pair.indexOf( '=' );
+				if ( equalsIndex > 0 ) {
+					params.put( decode( pair.substring( 0, equalsIndex ) ), decode( pair.substring( equalsIndex + 1 ) ) );
+				}
+			}
+		}
+		return params;
+	}
+
+
+	private static String getRequiredParam( Map<String, String> params, String name ) {
+		String value = params.get( name );
+		if ( value == null || value.isEmpty() ) {
+			throw new IllegalArgumentException( "missing required parameter [" + name + "]" );
+		}
+		return value;
+	}
+
+
+	private static String decode( String value ) {
+		try {
+			return URLDecoder.decode( value, "UTF-8" );
+		} catch ( UnsupportedEncodingException e ) {
+			throw new IllegalStateException( e );
+		}
+	}
+
+}
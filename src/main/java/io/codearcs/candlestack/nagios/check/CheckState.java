@@ -0,0 +1,39 @@
+package io.codearcs.candlestack.nagios.check;
+
+/**
+ * The service states Nagios understands along with the return code
+ * a check plugin would exit with to report them.
+ */
+public enum CheckState {
+
+	OK( 0, 0 ),
+
+	WARNING( 1, 2 ),
+
+	CRITICAL( 2, 3 ),
+
+	UNKNOWN( 3, 1 );
+
+
+	private int returnCode, severity;
+
+
+	private CheckState( int returnCode, int severity ) {
+		this.returnCode = returnCode;
+		this.severity = severity;
+	}
+
+
+	public int getReturnCode() {
+		return returnCode;
+	}
+
+
+	/**
+	 * @return the more severe of the two states, matching the order the check scripts use
+	 */
+	public CheckState worst( CheckState other ) {
+		return other.severity > severity ? other : this;
+	}
+
+}
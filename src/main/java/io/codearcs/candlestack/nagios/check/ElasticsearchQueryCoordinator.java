@@ -0,0 +1,301 @@
+package io.codearcs.candlestack.nagios.check;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import io.codearcs.candlestack.CandlestackException;
+import io.codearcs.candlestack.CandlestackPropertiesException;
+import io.codearcs.candlestack.MetricPoint;
+import io.codearcs.candlestack.MetricsReaderWriter;
+import io.codearcs.candlestack.aws.GlobalAWSProperties;
+import io.codearcs.candlestack.nagios.CandlestackNagiosException;
+import io.codearcs.candlestack.nagios.GlobalNagiosProperties;
+
+
+/**
+ * Evaluates checks against the metrics indexed in Elasticsearch, but rather than querying
+ * once per check it issues a single terms aggregation per type and metric name that returns
+ * the datapoints of every instance. The per instance results are cached for the check
+ * interval so all of the checks for the same kind of metric are served from one query.
+ */
+public class ElasticsearchQueryCoordinator implements MetricCheckSource {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger( ElasticsearchQueryCoordinator.class );
+
+	private static final String INDEX_PREFIX = "candlestack-",
+			SEARCH_PATH = "/_search?ignore_unavailable=true";
+
+	private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis( 1 );
+
+	// Logstash names the daily indices using the UTC date of the event
+	private static final FastDateFormat INDEX_DATE_FORMAT = FastDateFormat.getInstance( "yyyy.MM.dd", TimeZone.getTimeZone( "UTC" ) );
+
+
+	private final String baseUrl, authorization;
+
+	private final long windowMs, cacheMs;
+
+	private final int timeoutMs, maxInstances, maxDatapoints;
+
+	private final Map<String, MetricQuery> queries;
+
+
+	public ElasticsearchQueryCoordinator() throws CandlestackException {
+
+		String url = GlobalNagiosProperties.getCheckElasticsearchUrl();
+		if ( url.isEmpty() ) {
+			url = "https://" + GlobalAWSProperties.getLogsHost();
+		}
+		baseUrl = url.endsWith( "/" ) ? url.substring( 0, url.length() - 1 ) : url;
+		try {
+			new URL( baseUrl );
+		} catch ( IOException e ) {
+			throw new CandlestackPropertiesException( "ElasticsearchQueryCoordinator was provided an invalid url [" + url + "]", e );
+		}
+
+		String authToken = GlobalNagiosProperties.getCheckElasticsearchAuthToken();
+		if ( authToken.isEmpty() ) {
+			authToken = GlobalAWSProperties.getLogsAuthToken().trim();
+		}
+		authorization = authToken.isEmpty() ? null : "Basic " + authToken;
+
+		windowMs = TimeUnit.MINUTES.toMillis( GlobalNagiosProperties.getCheckEngineWindow() );
+		cacheMs = TimeUnit.SECONDS.toMillis( GlobalNagiosProperties.getCheckElasticsearchCache() );
+		timeoutMs = GlobalNagiosProperties.getCheckElasticsearchTimeout();
+		maxInstances = GlobalNagiosProperties.getCheckElasticsearchMaxInstances();
+		maxDatapoints = GlobalNagiosProperties.getCheckElasticsearchMaxDatapoints();
+
+		queries = new ConcurrentHashMap<>();
+
+		LOGGER.info( "ElasticsearchQueryCoordinator will query [" + baseUrl + "] caching results for [" + cacheMs + "] ms" );
+
+	}
+
+
+	@Override
+	public CheckResult evaluate( MetricCheck metricCheck, long now ) {
+
+		MetricQuery query = queries.computeIfAbsent( metricCheck.getType() + '\u0000' + metricCheck.getMetricName(),
+				key -> new MetricQuery( metricCheck.getType(), metricCheck.getMetricName() ) );
+
+		QueryResult result = query.getResult( now );
+		if ( result.datapointsPerInstance == null ) {
+			return new CheckResult( CheckState.UNKNOWN, "UNKNOWN: Failed to query Elasticsearch for " + metricCheck.getMetricName() );
+		}
+
+		// Instance ids are indexed sanitized, the same as the check scripts are passed them
+		List<MetricPoint> points = result.datapointsPerInstance.getOrDefault( MetricsReaderWriter.sanitizeString( metricCheck.getInstanceId() ), Collections.emptyList() );
+
+		// Evaluate as of when the query ran so the window lines up with the datapoints retrieved
+		return metricCheck.evaluate( points, result.queryTime, windowMs );
+
+	}
+
+
+	private String buildQuery( String type, String metricName, long fromTime, long toTime ) {
+		return "{\"size\":0,"
+				+ "\"query\":{\"bool\":{\"filter\":["
+				+ "{\"range\":{\"@timestamp\":{\"gte\":" + fromTime + ",\"lt\":" + toTime + ",\"format\":\"epoch_millis\"}}},"
+				+ "{\"term\":{\"type\":" + new JsonPrimitive( MetricsReaderWriter.sanitizeString( type ) ) + "}},"
+				+ "{\"term\":{\"metric_name\":" + new JsonPrimitive( MetricsReaderWriter.sanitizeString( metricName ) ) + "}}"
+				+ "]}},"
+				+ "\"aggs\":{\"instances\":{"
+				+ "\"terms\":{\"field\":\"instanceId\",\"size\":" + maxInstances + "},"
+				+ "\"aggs\":{\"datapoints\":{\"top_hits\":{"
+				+ "\"size\":" + maxDatapoints + ","
+				+ "\"sort\":[{\"@timestamp\":{\"order\":\"desc\"}}],"
+				+ "\"_source\":[\"metric_value\"]"
+				+ "}}}}}}";
+	}
+
+
+	private Map<String, List<MetricPoint>> runQuery( String type, String metricName, long now ) throws CandlestackException {
+
+		// Same range as the check scripts query, gte now-window and lt now
+		long fromTime = now - windowMs;
+
+		StringBuilder indices = new StringBuilder();
+		for ( long day = now / MILLIS_PER_DAY; day >= fromTime / MILLIS_PER_DAY; day-- ) {
+			if ( indices.length() > 0 ) {
+				indices.append( ',' );
+			}
+			indices.append( INDEX_PREFIX ).append( INDEX_DATE_FORMAT.format( day * MILLIS_PER_DAY ) );
+		}
+
+		String response;
+		try {
+			response = post( baseUrl + "/" + indices + SEARCH_PATH, buildQuery( type, metricName, fromTime, now ) );
+		} catch ( IOException e ) {
+			throw new CandlestackNagiosException( "ElasticsearchQueryCoordinator failed to query [" + metricName + "] for type [" + type + "]", e );
+		}
+
+		Map<String, List<MetricPoint>> datapointsPerInstance = new HashMap<>();
+		JsonObject aggregations = new JsonParser().parse( response ).getAsJsonObject().getAsJsonObject( "aggregations" );
+		if ( aggregations == null ) {
+			return datapointsPerInstance;
+		}
+
+		JsonObject instances = aggregations.getAsJsonObject( "instances" );
+		for ( JsonElement bucketElement : instances.getAsJsonArray( "buckets" ) ) {
+
+			JsonObject bucket = bucketElement.getAsJsonObject();
+			JsonArray hits = bucket.getAsJsonObject( "datapoints" ).getAsJsonObject( "hits" ).getAsJsonArray( "hits" );
+
+			// Hits come back newest first, checks expect them in timestamp order
+			List<MetricPoint> points = new ArrayList<>( hits.size() );
+			for ( int i = hits.size() - 1; i >= 0; i-- ) {
+				JsonObject hit = hits.get( i ).getAsJsonObject();
+				JsonElement value = hit.getAsJsonObject( "_source" ).get( "metric_value" );
+				if ( value != null && !value.isJsonNull() ) {
+					points.add( new MetricPoint( hit.getAsJsonArray( "sort" ).get( 0 ).getAsLong(), value.getAsDouble() ) );
+				}
+			}
+
+			datapointsPerInstance.put( bucket.get( "key" ).getAsString(), points );
+
+		}
+
+		if ( instances.has( "sum_other_doc_count" ) && instances.get( "sum_other_doc_count" ).getAsLong() > 0 ) {
+			LOGGER.warn( "ElasticsearchQueryCoordinator found more than [" + maxInstances + "] instances for [" + metricName + "] of type [" + type + "], some checks will have no datapoints" );
+		}
+
+		return datapointsPerInstance;
+
+	}
+
+
+	private String post( String url, String query ) throws IOException {
+
+		byte[] body = query.getBytes( StandardCharsets.UTF_8 );
+
+		HttpURLConnection connection = (HttpURLConnection) new URL( url ).openConnection();
+		try {
+
+			connection.setRequestMethod( "POST" );
+			connection.setDoOutput( true );
+			connection.setConnectTimeout( timeoutMs );
+			connection.setReadTimeout( timeoutMs );
+			connection.setFixedLengthStreamingMode( body.length );
+			connection.setRequestProperty( "Content-Type", "application/json;charset=UTF-8" );
+			if ( authorization != null ) {
+				connection.setRequestProperty( "Authorization", authorization );
+			}
+
+			try ( OutputStream out = connection.getOutputStream() ) {
+				out.write( body );
+			}
+
+			int statusCode = connection.getResponseCode();
+			String response = readResponse( statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream() );
+			if ( statusCode >= 400 ) {
+				throw new IOException( "received status code [" + statusCode + "] and response [" + response + "]" );
+			}
+
+			return response;
+
+		} finally {
+			connection.disconnect();
+		}
+
+	}
+
+
+	private static String readResponse( InputStream in ) throws IOException {
+		if ( in == null ) {
+			return "";
+		}
+
+		StringBuilder response = new StringBuilder();
+		try ( BufferedReader reader = new BufferedReader( new InputStreamReader( in, StandardCharsets.UTF_8 ) ) ) {
+			char[] chars = new char[8192];
+			int read;
+			while ( ( read = reader.read( chars ) ) != -1 ) {
+				response.append( chars, 0, read );
+			}
+		}
+		return response.toString();
+	}
+
+
+	/**
+	 * The datapoints of every instance as of when the query ran, null if the query failed.
+	 */
+	private static class QueryResult {
+
+		private final long queryTime;
+
+		private final Map<String, List<MetricPoint>> datapointsPerInstance;
+
+
+		private QueryResult( long queryTime, Map<String, List<MetricPoint>> datapointsPerInstance ) {
+			this.queryTime = queryTime;
+			this.datapointsPerInstance = datapointsPerInstance;
+		}
+
+	}
+
+
+	/**
+	 * The cached query for a single type and metric name. Checks arriving while the query
+	 * is being refreshed wait for it rather than issuing their own.
+	 */
+	private class MetricQuery {
+
+		private final String type, metricName;
+
+		private QueryResult result;
+
+
+		private MetricQuery( String type, String metricName ) {
+			this.type = type;
+			this.metricName = metricName;
+		}
+
+
+		private synchronized QueryResult getResult( long now ) {
+
+			if ( result == null || now - result.queryTime >= cacheMs ) {
+
+				Map<String, List<MetricPoint>> datapointsPerInstance;
+				try {
+					datapointsPerInstance = runQuery( type, metricName, now );
+				} catch ( CandlestackException | RuntimeException e ) {
+					// Cache the failure too, otherwise every check would retry against an unhealthy cluster
+					LOGGER.error( "ElasticsearchQueryCoordinator failed to retrieve datapoints for [" + metricName + "] of type [" + type + "]", e );
+					datapointsPerInstance = null;
+				}
+				result = new QueryResult( now, datapointsPerInstance );
+
+			}
+
+			return result;
+
+		}
+
+	}
+
+}
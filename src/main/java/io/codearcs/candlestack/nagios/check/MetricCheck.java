@@ -0,0 +1,246 @@
+package io.codearcs.candlestack.nagios.check;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+
+import io.codearcs.candlestack.MetricAggregate;
+import io.codearcs.candlestack.MetricPoint;
+import io.codearcs.candlestack.RecentMetricStore;
+
+
+/**
+ * Describes how the warning and critical levels of a service are evaluated against
+ * the metrics of a single series, mirroring what the corresponding check script does
+ * with the results of its Elasticsearch query.
+ */
+public class MetricCheck {
+
+	/**
+	 * How the datapoints within the check window are evaluated.
+	 */
+	public enum Evaluation {
+
+		/**
+		 * The average of the datapoints is compared against the levels.
+		 */
+		AVERAGE,
+
+		/**
+		 * Every datapoint is compared against the levels and the worst state wins.
+		 */
+		EACH,
+
+		/**
+		 * Every datapoint is an epoch time in seconds, its age is compared against
+		 * the levels as a number of minutes and the worst state wins.
+		 */
+		AGE_OF_EACH,
+
+		/**
+		 * Only the most recent datapoint is compared against the levels, the same as the
+		 * scripts that query for a single datapoint.
+		 */
+		LATEST,
+
+		/**
+		 * The most recent datapoint is an epoch time in seconds, its age is compared
+		 * against the levels as a number of minutes.
+		 */
+		AGE_OF_LATEST
+
+	}
+
+	/**
+	 * Which side of the levels is considered a problem.
+	 */
+	public enum Threshold {
+
+		/**
+		 * Values greater than the levels are a problem.
+		 */
+		ABOVE,
+
+		/**
+		 * Values less than the levels are a problem.
+		 */
+		BELOW
+
+	}
+
+
+	private static final FastDateFormat DATE_FORMAT = FastDateFormat.getInstance( "yyyy-MM-dd'T'HH:mm:ssZZ" );
+
+
+	private final String type, instanceId, metricName;
+
+	private final Evaluation evaluation;
+
+	private final Threshold threshold;
+
+	private final long warning, critical;
+
+
+	public MetricCheck( String type, String instanceId, String metricName, Evaluation evaluation, Threshold threshold, long warning, long critical ) {
+		this.type = type;
+		this.instanceId = instanceId;
+		this.metricName = metricName;
+		this.evaluation = evaluation;
+		this.threshold = threshold;
+		this.warning = warning;
+		this.critical = critical;
+	}
+
+
+	public String getType() {
+		return type;
+	}
+
+
+	public String getInstanceId() {
+		return instanceId;
+	}
+
+
+	public String getMetricName() {
+		return metricName;
+	}
+
+
+	public Evaluation getEvaluation() {
+		return evaluation;
+	}
+
+
+	public Threshold getThreshold() {
+		return threshold;
+	}
+
+
+	public long getWarning() {
+		return warning;
+	}
+
+
+	public long getCritical() {
+		return critical;
+	}
+
+
+	/**
+	 * Evaluates the datapoints written within the window ending now.
+	 */
+	public CheckResult evaluate( RecentMetricStore store, long now, long windowMs ) {
+
+		// Same range as the check scripts query, gte now-window and lt now
+		long fromTime = now - windowMs, toTime = now - 1;
+
+		if ( evaluation == Evaluation.AVERAGE ) {
+			MetricAggregate aggregate = store.getAggregate( type, instanceId, metricName, fromTime, toTime );
+			return evaluateAverage( aggregate.getCount(), aggregate.getSum(), windowMs );
+		}
+
+		return evaluateEach( store.getRange( type, instanceId, metricName, fromTime, toTime ), now, windowMs );
+
+	}
+
+
+	/**
+	 * Evaluates datapoints that have already been retrieved for the window ending now,
+	 * they are expected to be in timestamp order.
+	 */
+	public CheckResult evaluate( List<MetricPoint> points, long now, long windowMs ) {
+
+		if ( evaluation == Evaluation.AVERAGE ) {
+			double sum = 0;
+			for ( MetricPoint point : points ) {
+				sum += point.getValue();
+			}
+			return evaluateAverage( points.size(), sum, windowMs );
+		}
+
+		return evaluateEach( points, now, windowMs );
+
+	}
+
+
+	private CheckResult evaluateAverage( long count, double sum, long windowMs ) {
+
+		if ( count == 0 ) {
+			return getNoDatapointsResult( windowMs );
+		}
+
+		// The scripts truncate the average to two decimal places before comparing it
+		double average = new BigDecimal( sum ).divide( BigDecimal.valueOf( count ), 2, RoundingMode.DOWN ).doubleValue();
+		CheckState state = getState( average, warning, critical );
+		return new CheckResult( state, state + ": " + metricName + " = average of " + format( average ) + " over " + formatWindow( windowMs ) );
+
+	}
+
+
+	private CheckResult evaluateEach( List<MetricPoint> points, long now, long windowMs ) {
+
+		if ( points.isEmpty() ) {
+			return getNoDatapointsResult( windowMs );
+		}
+
+		if ( evaluation == Evaluation.LATEST || evaluation == Evaluation.AGE_OF_LATEST ) {
+			points = points.subList( points.size() - 1, points.size() );
+		}
+
+		// Report the most recent of the datapoints in the worst state
+		boolean age = evaluation == Evaluation.AGE_OF_EACH || evaluation == Evaluation.AGE_OF_LATEST;
+		CheckState worstState = null;
+		MetricPoint worstPoint = null;
+		for ( MetricPoint point : points ) {
+			CheckState state = age ?
+					getState( TimeUnit.MILLISECONDS.toSeconds( now ) - point.getValue(), TimeUnit.MINUTES.toSeconds( warning ), TimeUnit.MINUTES.toSeconds( critical ) ) :
+					getState( point.getValue(), warning, critical );
+			if ( worstState == null || state.worst( worstState ) == state ) {
+				worstState = state;
+				worstPoint = point;
+			}
+		}
+
+		String value = age ? DATE_FORMAT.format( new Date( (long) worstPoint.getValue() * 1000 ) ) : format( worstPoint.getValue() );
+		String output = worstState + ": " + metricName + " = " + value;
+		if ( points.size() > 1 ) {
+			output += " (worst of " + points.size() + " datapoints over " + formatWindow( windowMs ) + ")";
+		}
+
+		return new CheckResult( worstState, output );
+
+	}
+
+
+	private CheckResult getNoDatapointsResult( long windowMs ) {
+		return new CheckResult( CheckState.UNKNOWN, "UNKNOWN: No datapoints for " + metricName + " over " + formatWindow( windowMs ) );
+	}
+
+
+	private CheckState getState( double value, double warning, double critical ) {
+		if ( threshold == Threshold.ABOVE ) {
+			return value <= warning ? CheckState.OK : value <= critical ? CheckState.WARNING : CheckState.CRITICAL;
+		} else {
+			return value >= warning ? CheckState.OK : value >= critical ? CheckState.WARNING : CheckState.CRITICAL;
+		}
+	}
+
+
+	private static String formatWindow( long windowMs ) {
+		return TimeUnit.MILLISECONDS.toMinutes( windowMs ) + " minutes";
+	}
+
+
+	private static String format( double value ) {
+		if ( value == Math.rint( value ) && Math.abs( value ) < 1e15 ) {
+			return Long.toString( (long) value );
+		}
+		return BigDecimal.valueOf( value ).toPlainString();
+	}
+
+}
@@ -0,0 +1,14 @@
+package io.codearcs.candlestack.nagios.check;
+
+/**
+ * Provides the datapoints a MetricCheck is evaluated against, the same source is shared
+ * by the CheckEngine and the CheckServer.
+ */
+public interface MetricCheckSource {
+
+	/**
+	 * Evaluates the check against the datapoints within the check window ending now.
+	 */
+	public CheckResult evaluate( MetricCheck metricCheck, long now );
+
+}
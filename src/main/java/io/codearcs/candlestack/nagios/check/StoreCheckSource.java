@@ -0,0 +1,43 @@
+package io.codearcs.candlestack.nagios.check;
+
+import java.util.concurrent.TimeUnit;
+
+import io.codearcs.candlestack.CandlestackException;
+import io.codearcs.candlestack.CandlestackPropertiesException;
+import io.codearcs.candlestack.MetricsReaderWriter;
+import io.codearcs.candlestack.RecentMetricStore;
+import io.codearcs.candlestack.nagios.GlobalNagiosProperties;
+
+
+/**
+ * Evaluates checks against the metrics Candlestack has written to its in-memory
+ * RecentMetricStore, no external queries are needed.
+ */
+public class StoreCheckSource implements MetricCheckSource {
+
+	private final RecentMetricStore recentMetricStore;
+
+	private final long windowMs;
+
+
+	public StoreCheckSource() throws CandlestackException {
+
+		recentMetricStore = MetricsReaderWriter.getInstance().getRecentMetricStore();
+		if ( recentMetricStore == null ) {
+			throw new CandlestackPropertiesException( "StoreCheckSource requires the in-memory metric store, property [metrics.store.enabled] must not be false" );
+		}
+
+		windowMs = TimeUnit.MINUTES.toMillis( GlobalNagiosProperties.getCheckEngineWindow() );
+		if ( windowMs > recentMetricStore.getRetentionMs() ) {
+			throw new CandlestackPropertiesException( "StoreCheckSource window must not be longer than the retention of the in-memory metric store" );
+		}
+
+	}
+
+
+	@Override
+	public CheckResult evaluate( MetricCheck metricCheck, long now ) {
+		return metricCheck.evaluate( recentMetricStore, now, windowMs );
+	}
+
+}
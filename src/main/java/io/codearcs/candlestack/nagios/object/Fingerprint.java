@@ -0,0 +1,172 @@
+package io.codearcs.candlestack.nagios.object;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+
+/**
+ * Builds a stable 64 bit fingerprint of the content of a Nagios object, used to tell
+ * whether two objects would produce the same object definitions without comparing them
+ * field by field. Based on FNV-1a with a final avalanche step so that fingerprints can
+ * also be combined with each other.
+ *
+ * It can also be appended to, so the object definitions can be streamed into it to
+ * fingerprint their exact text without holding it in memory.
+ */
+public class Fingerprint implements Appendable {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L,
+			FNV_PRIME = 0x100000001b3L;
+
+
+	private long hash;
+
+
+	public Fingerprint() {
+		hash = FNV_OFFSET_BASIS;
+	}
+
+
+	public Fingerprint add( String value ) {
+		// Include the length so consecutive values can't run into each other
+		add( value.length() );
+		for ( int i = 0; i < value.length(); i++ ) {
+			mix( value.charAt( i ) );
+		}
+		return this;
+	}
+
+
+	public Fingerprint add( long value ) {
+		for ( int shift = 0; shift < 64; shift += 16 ) {
+			mix( (int) ( value >>> shift ) & 0xFFFF );
+		}
+		return this;
+	}
+
+
+	public Fingerprint add( boolean value ) {
+		mix( value ? 1 : 0 );
+		return this;
+	}
+
+
+	/**
+	 * Adds the values without regard to their order, matching how sets of values are compared.
+	 */
+	public Fingerprint addUnordered( Collection<String> values ) {
+		String[] sorted = values.toArray( new String[values.size()] );
+		Arrays.sort( sorted );
+		add( sorted.length );
+		for ( String value : sorted ) {
+			add( value );
+		}
+		return this;
+	}
+
+
+	/**
+	 * Adds the fingerprints of nested objects without regard to their order, matching how
+	 * lists of nested objects are compared.
+	 */
+	public <T> Fingerprint addUnordered( List<T> objects, ToLongFunction<T> fingerprinter ) {
+		long[] fingerprints = objects.stream().mapToLong( fingerprinter ).sorted().distinct().toArray();
+		add( objects.size() );
+		for ( long fingerprint : fingerprints ) {
+			add( fingerprint );
+		}
+		return this;
+	}
+
+
+	@Override
+	public Fingerprint append( CharSequence csq ) {
+		return append( csq, 0, csq.length() );
+	}
+
+
+	@Override
+	public Fingerprint append( CharSequence csq, int start, int end ) {
+		// No length prefix, the same text gives the same fingerprint however it is split up
+		for ( int i = start; i < end; i++ ) {
+			mix( csq.charAt( i ) );
+		}
+		return this;
+	}
+
+
+	@Override
+	public Fingerprint append( char c ) {
+		mix( c );
+		return this;
+	}
+
+
+	public long get() {
+		// Murmur3 finalizer so every input bit affects every output bit
+		long h = hash;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+
+	private void mix( int value ) {
+		hash ^= value;
+		hash *= FNV_PRIME;
+	}
+
+
+	/**
+	 * @return the fingerprint of the text the object definitions would be written as
+	 */
+	public static long of( NagiosObject nagiosObject ) {
+		Fingerprint fingerprint = new Fingerprint();
+		try {
+			nagiosObject.writeObjectDefinitions( fingerprint );
+		} catch ( IOException e ) {
+			// Appending to a Fingerprint never fails
+			throw new UncheckedIOException( e );
+		}
+		return fingerprint.get();
+	}
+
+
+	/**
+	 * Helper method for determining if two lists of objects are equivalent to each other
+	 * ignoring their order, in linear time.
+	 *
+	 * @return true if both lists are the same size and every object in the first list has
+	 *         an object with the same fingerprint in the second list, false otherwise
+	 */
+	public static <T> boolean areEquivalent( List<T> objects1, List<T> objects2, ToLongFunction<T> fingerprinter ) {
+
+		if ( objects1.size() != objects2.size() ) {
+			return false;
+		}
+
+		Set<Long> fingerprints2 = new HashSet<>( objects2.size() * 2 );
+		for ( T object2 : objects2 ) {
+			fingerprints2.add( fingerprinter.applyAsLong( object2 ) );
+		}
+
+		for ( T object1 : objects1 ) {
+			if ( !fingerprints2.contains( fingerprinter.applyAsLong( object1 ) ) ) {
+				return false;
+			}
+		}
+
+		return true;
+
+	}
+
+}
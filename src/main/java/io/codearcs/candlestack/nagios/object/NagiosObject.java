@@ -1,5 +1,8 @@
 package io.codearcs.candlestack.nagios.object;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * Interface to represent a Nagios Configuration Object,
  * {@link https://assets.nagios.com/downloads/nagioscore/docs/nagioscore/4/en/configobject.html}
@@ -17,6 +20,23 @@ public interface NagiosObject {
 	 *         of the Nagios Configuration Object based off of the Nagios
 	 *         specification
 	 */
-	public String getObjectDefinitions();
+	public default String getObjectDefinitions() {
+		StringBuilder sb = new StringBuilder();
+		try {
+			writeObjectDefinitions( sb );
+		} catch ( IOException e ) {
+			// Appending to a StringBuilder never fails
+			throw new UncheckedIOException( e );
+		}
+		return sb.toString();
+	}
+
+
+	/**
+	 * Writes the same representation as {@link #getObjectDefinitions()}
+	 * directly to the given output, so large configurations can be
+	 * streamed to a file without being built up in memory first.
+	 */
+	public void writeObjectDefinitions( Appendable out ) throws IOException;
 
 }
@@ -1,8 +1,16 @@
 package io.codearcs.candlestack.nagios.object;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 
 import io.codearcs.candlestack.nagios.CandlestackNagiosException;
@@ -10,14 +18,19 @@ import io.codearcs.candlestack.nagios.CandlestackNagiosException;
 
 public class NagiosObjectWriter {
 
+	// Nagios only reads files ending in .cfg so it never sees a partially written file
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+
 	private NagiosObjectWriter() {};
 
 
 	public static void writeToFile( File file, NagiosObject nagiosObject ) throws CandlestackNagiosException {
 
-		try ( FileWriter fw = new FileWriter( file ); ) {
-			fw.write( nagiosObject.getObjectDefinitions() );
-			fw.flush();
+		try {
+			writeAtomically( file, nagiosObject );
 		} catch ( IOException e ) {
 			throw new CandlestackNagiosException( "Encountered an error attempting to write NagiosObject of type [" + nagiosObject.getClass().getName() + "] to file [" + file.getAbsolutePath() + "]", e );
 		}
@@ -27,18 +40,79 @@ public class NagiosObjectWriter {
 
 	public static void writeToFile( File file, List<? extends NagiosObject> nagiosObjects ) throws CandlestackNagiosException {
 
-		try ( FileWriter fw = new FileWriter( file ); ) {
+		try {
+			writeAtomically( file, out -> writeObjectDefinitions( out, nagiosObjects ) );
+		} catch ( IOException e ) {
+			throw new CandlestackNagiosException( "Encountered an error attempting to write NagiosObjects to file [" + file.getAbsolutePath() + "]", e );
+		}
+
+	}
+
 
-			for ( NagiosObject nagiosObject : nagiosObjects ) {
-				fw.write( nagiosObject.getObjectDefinitions() );
-				fw.write( "\n\n" );
-				fw.flush();
+	/**
+	 * Copies the resource to the file, replacing it in a single step.
+	 */
+	public static void writeToFile( File file, InputStream resource, boolean executable ) throws CandlestackNagiosException {
+
+		File tempFile = getTempFile( file );
+		try {
+
+			Files.copy( resource, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+			if ( executable ) {
+				tempFile.setExecutable( true, false );
 			}
+			move( tempFile, file );
 
 		} catch ( IOException e ) {
-			throw new CandlestackNagiosException( "Encountered an error attempting to write NagiosObjects to file [" + file.getAbsolutePath() + "]", e );
+			tempFile.delete();
+			throw new CandlestackNagiosException( "Encountered an error attempting to write resource to file [" + file.getAbsolutePath() + "]", e );
 		}
 
 	}
 
+
+	/**
+	 * Writes the definitions of all of the objects as they are written to a single file.
+	 */
+	public static void writeObjectDefinitions( Appendable out, List<? extends NagiosObject> nagiosObjects ) throws IOException {
+		for ( NagiosObject nagiosObject : nagiosObjects ) {
+			nagiosObject.writeObjectDefinitions( out );
+			out.append( "\n\n" );
+		}
+	}
+
+
+	private static void writeAtomically( File file, NagiosObject nagiosObject ) throws IOException {
+
+		File tempFile = getTempFile( file );
+		try {
+
+			// Objects are streamed into the buffer, which is only flushed to disk as it fills up
+			try ( OutputStream out = Files.newOutputStream( tempFile.toPath() );
+					Writer writer = new BufferedWriter( new OutputStreamWriter( out, StandardCharsets.UTF_8 ), WRITE_BUFFER_SIZE ) ) {
+				nagiosObject.writeObjectDefinitions( writer );
+			}
+			move( tempFile, file );
+
+		} catch ( IOException e ) {
+			tempFile.delete();
+			throw e;
+		}
+
+	}
+
+
+	private static File getTempFile( File file ) {
+		return new File( file.getParentFile(), file.getName() + TEMP_FILE_SUFFIX );
+	}
+
+
+	private static void move( File source, File target ) throws IOException {
+		try {
+			Files.move( source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+		} catch ( AtomicMoveNotSupportedException e ) {
+			Files.move( source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING );
+		}
+	}
+
 }
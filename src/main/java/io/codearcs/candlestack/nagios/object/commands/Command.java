@@ -1,5 +1,7 @@
 package io.codearcs.candlestack.nagios.object.commands;
 
+import java.io.IOException;
+
 import io.codearcs.candlestack.nagios.object.NagiosObject;
 
 
@@ -29,22 +31,19 @@ public class Command implements NagiosObject {
 
 
 	@Override
-	public String getObjectDefinitions() {
-
-		StringBuilder sb = new StringBuilder( "define command{\n" );
-
-		sb.append( "\tcommand_name\t" );
-		sb.append( name );
-		sb.append( "\n" );
+	public void writeObjectDefinitions( Appendable out ) throws IOException {
 
-		sb.append( "\tcommand_line\t" );
-		sb.append( line );
-		sb.append( "\n" );
+		out.append( "define command{\n" );
 
-		sb.append( "}\n\n" );
+		out.append( "\tcommand_name\t" );
+		out.append( name );
+		out.append( "\n" );
 
-		return sb.toString();
+		out.append( "\tcommand_line\t" );
+		out.append( line );
+		out.append( "\n" );
 
+		out.append( "}\n\n" );
 	}
 
 }
@@ -1,5 +1,6 @@
 package io.codearcs.candlestack.nagios.object.contacts;
 
+import java.io.IOException;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -102,58 +103,55 @@ public class Contact implements NagiosObject {
 
 
 	@Override
-	public String getObjectDefinitions() {
+	public void writeObjectDefinitions( Appendable out ) throws IOException {
 
-		StringBuilder sb = new StringBuilder( "define contact{\n" );
+		out.append( "define contact{\n" );
 
-		sb.append( "\tcontact_name\t" );
-		sb.append( name );
-		sb.append( "\n" );
+		out.append( "\tcontact_name\t" );
+		out.append( name );
+		out.append( "\n" );
 
-		sb.append( "\talias\t" );
-		sb.append( alias );
-		sb.append( "\n" );
+		out.append( "\talias\t" );
+		out.append( alias );
+		out.append( "\n" );
 
-		sb.append( "\temail\t" );
-		sb.append( email );
-		sb.append( "\n" );
+		out.append( "\temail\t" );
+		out.append( email );
+		out.append( "\n" );
 
-		sb.append( "\thost_notifications_enabled\t" );
-		sb.append( hostNotificationsEnabled ? "1" : "0" );
-		sb.append( "\n" );
+		out.append( "\thost_notifications_enabled\t" );
+		out.append( hostNotificationsEnabled ? "1" : "0" );
+		out.append( "\n" );
 
-		sb.append( "\tservice_notifications_enabled\t" );
-		sb.append( serviceNotificationsEnabled ? "1" : "0" );
-		sb.append( "\n" );
+		out.append( "\tservice_notifications_enabled\t" );
+		out.append( serviceNotificationsEnabled ? "1" : "0" );
+		out.append( "\n" );
 
-		sb.append( "\thost_notification_period\t" );
-		sb.append( hostNotificationPeriod );
-		sb.append( "\n" );
+		out.append( "\thost_notification_period\t" );
+		out.append( hostNotificationPeriod );
+		out.append( "\n" );
 
-		sb.append( "\tservice_notification_period\t" );
-		sb.append( serviceNotificationPeriod );
-		sb.append( "\n" );
+		out.append( "\tservice_notification_period\t" );
+		out.append( serviceNotificationPeriod );
+		out.append( "\n" );
 
-		sb.append( "\thost_notification_options\t" );
-		sb.append( hostNotificationOptions.stream().map( option -> option.name() ).collect( Collectors.joining( "," ) ) );
-		sb.append( "\n" );
+		out.append( "\thost_notification_options\t" );
+		out.append( hostNotificationOptions.stream().map( option -> option.name() ).collect( Collectors.joining( "," ) ) );
+		out.append( "\n" );
 
-		sb.append( "\tservice_notification_options\t" );
-		sb.append( serviceNotificationOptions.stream().map( option -> option.name() ).collect( Collectors.joining( "," ) ) );
-		sb.append( "\n" );
+		out.append( "\tservice_notification_options\t" );
+		out.append( serviceNotificationOptions.stream().map( option -> option.name() ).collect( Collectors.joining( "," ) ) );
+		out.append( "\n" );
 
-		sb.append( "\thost_notification_commands\t" );
-		sb.append( hostNotificationCommands.stream().collect( Collectors.joining( "," ) ) );
-		sb.append( "\n" );
+		out.append( "\thost_notification_commands\t" );
+		out.append( hostNotificationCommands.stream().collect( Collectors.joining( "," ) ) );
+		out.append( "\n" );
 
-		sb.append( "\tservice_notification_commands\t" );
-		sb.append( serviceNotificationCommands.stream().collect( Collectors.joining( "," ) ) );
-		sb.append( "\n" );
-
-		sb.append( "}\n\n" );
-
-		return sb.toString();
+		out.append( "\tservice_notification_commands\t" );
+		out.append( serviceNotificationCommands.stream().collect( Collectors.joining( "," ) ) );
+		out.append( "\n" );
 
+		out.append( "}\n\n" );
 	}
 
 	public static class ContactBuilder {
@@ -1,5 +1,6 @@
 package io.codearcs.candlestack.nagios.object.contacts;
 
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -51,26 +52,23 @@ public class ContactGroup implements NagiosObject {
 
 
 	@Override
-	public String getObjectDefinitions() {
+	public void writeObjectDefinitions( Appendable out ) throws IOException {
 
-		StringBuilder sb = new StringBuilder( "define contactgroup{\n" );
+		out.append( "define contactgroup{\n" );
 
-		sb.append( "\tcontactgroup_name\t" );
-		sb.append( name );
-		sb.append( "\n" );
+		out.append( "\tcontactgroup_name\t" );
+		out.append( name );
+		out.append( "\n" );
 
-		sb.append( "\talias\t" );
-		sb.append( alias );
-		sb.append( "\n" );
+		out.append( "\talias\t" );
+		out.append( alias );
+		out.append( "\n" );
 
-		sb.append( "\tmembers\t" );
-		sb.append( members.stream().collect( Collectors.joining( "," ) ) );
-		sb.append( "\n" );
-
-		sb.append( "}\n\n" );
-
-		return sb.toString();
+		out.append( "\tmembers\t" );
+		out.append( members.stream().collect( Collectors.joining( "," ) ) );
+		out.append( "\n" );
 
+		out.append( "}\n\n" );
 	}
 
 }
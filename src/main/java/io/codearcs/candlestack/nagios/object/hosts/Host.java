@@ -1,5 +1,6 @@
 package io.codearcs.candlestack.nagios.object.hosts;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -7,7 +8,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import io.codearcs.candlestack.nagios.NagiosUtil;
+import io.codearcs.candlestack.nagios.object.Fingerprint;
 import io.codearcs.candlestack.nagios.object.NagiosObject;
 import io.codearcs.candlestack.nagios.object.services.Service;
 import io.codearcs.candlestack.nagios.object.timeperiod.TimePeriod;
@@ -19,6 +20,8 @@ import io.codearcs.candlestack.nagios.object.timeperiod.TimePeriod;
  */
 public class Host implements NagiosObject {
 
+	private static final String TEMPLATE_NAME_PREFIX = "candlestack-host-";
+
 	private final String name, alias, address;
 
 	private final Set<String> contactGroups;
@@ -31,6 +34,8 @@ public class Host implements NagiosObject {
 
 	private boolean notificationsEnabled;
 
+	private Long fingerprint, templateFingerprint;
+
 
 	public Host( String name, String alias, String address, Set<String> contactGroups ) {
 		this.name = name;
@@ -110,6 +115,7 @@ public class Host implements NagiosObject {
 
 	public void addService( Service service ) {
 		services.add( service );
+		fingerprint = null;
 	}
 
 
@@ -123,119 +129,133 @@ public class Host implements NagiosObject {
 	}
 
 
-	@Override
-	public String getObjectDefinitions() {
-		StringBuilder sb = new StringBuilder( "define host{\n" );
+	/**
+	 * @return the name of the host template holding the settings this host shares with
+	 *         every other host configured the same way
+	 */
+	public String getTemplateName() {
+		return TEMPLATE_NAME_PREFIX + Long.toHexString( getTemplateFingerprint() );
+	}
 
-		sb.append( "\thost_name\t" );
-		sb.append( name );
-		sb.append( "\n" );
 
-		sb.append( "\talias\t" );
-		sb.append( alias );
-		sb.append( "\n" );
+	/**
+	 * Writes the host template the object definition of the host uses, which must be
+	 * written to the Nagios configuration once alongside the host.
+	 */
+	public void writeTemplateDefinition( Appendable out ) throws IOException {
+		out.append( "define host{\n" );
 
-		sb.append( "\taddress\t" );
-		sb.append( address );
-		sb.append( "\n" );
+		out.append( "\tname\t" );
+		out.append( getTemplateName() );
+		out.append( "\n" );
 
-		sb.append( "\tmax_check_attempts\t" );
-		sb.append( maxCheckAttempts );
-		sb.append( "\n" );
+		out.append( "\tregister\t0\n" );
 
-		sb.append( "\tcheck_interval\t" );
-		sb.append( checkInterval );
-		sb.append( "\n" );
+		out.append( "\tmax_check_attempts\t" );
+		out.append( String.valueOf( maxCheckAttempts ) );
+		out.append( "\n" );
 
-		sb.append( "\tcheck_period\t" );
-		sb.append( checkPeriod );
-		sb.append( "\n" );
+		out.append( "\tcheck_interval\t" );
+		out.append( String.valueOf( checkInterval ) );
+		out.append( "\n" );
 
-		sb.append( "\tnotification_interval\t" );
-		sb.append( notificationInterval );
-		sb.append( "\n" );
+		out.append( "\tcheck_period\t" );
+		out.append( checkPeriod );
+		out.append( "\n" );
 
-		sb.append( "\tnotification_period\t" );
-		sb.append( notificationPeriod );
-		sb.append( "\n" );
+		out.append( "\tnotification_interval\t" );
+		out.append( String.valueOf( notificationInterval ) );
+		out.append( "\n" );
 
-		sb.append( "\tnotifications_enabled\t" );
-		sb.append( notificationsEnabled ? "1" : "0" );
-		sb.append( "\n" );
+		out.append( "\tnotification_period\t" );
+		out.append( notificationPeriod );
+		out.append( "\n" );
 
-		sb.append( "\tcontact_groups\t" );
-		sb.append( contactGroups.stream().collect( Collectors.joining( "," ) ) );
-		sb.append( "\n" );
+		out.append( "\tnotifications_enabled\t" );
+		out.append( notificationsEnabled ? "1" : "0" );
+		out.append( "\n" );
 
-		sb.append( "}\n\n" );
+		out.append( "\tcontact_groups\t" );
+		out.append( contactGroups.stream().sorted().collect( Collectors.joining( "," ) ) );
+		out.append( "\n" );
 
-		for ( Service service : services ) {
-			sb.append( service.getObjectDefinitions() );
-		}
-
-		return sb.toString();
+		out.append( "}\n\n" );
 	}
 
 
-	public static boolean areEquivalent( List<Host> hosts1, List<Host> hosts2 ) {
+	/**
+	 * Writes only what is specific to this host and its services, everything else comes
+	 * from their templates, see {@link #writeTemplateDefinition(Appendable)}.
+	 */
+	@Override
+	public void writeObjectDefinitions( Appendable out ) throws IOException {
+		out.append( "define host{\n" );
 
-		boolean equivalent = true;
+		out.append( "\tuse\t" );
+		out.append( getTemplateName() );
+		out.append( "\n" );
 
-		if ( hosts1.size() != hosts2.size() ) {
-			equivalent = false;
-		} else {
+		out.append( "\thost_name\t" );
+		out.append( name );
+		out.append( "\n" );
 
-			for ( Host host1 : hosts1 ) {
+		out.append( "\talias\t" );
+		out.append( alias );
+		out.append( "\n" );
 
-				boolean foundEquivalentHost = false;
-				for ( Host host2 : hosts2 ) {
-					if ( areEquivalent( host1, host2 ) ) {
-						foundEquivalentHost = true;
-						break;
-					}
-				}
+		out.append( "\taddress\t" );
+		out.append( address );
+		out.append( "\n" );
 
-				if ( !foundEquivalentHost ) {
-					equivalent = false;
-					break;
-				}
-			}
+		out.append( "}\n\n" );
 
+		for ( Service service : services ) {
+			service.writeObjectDefinitions( out );
 		}
+	}
 
-		return equivalent;
 
+	/**
+	 * @return a fingerprint of everything that goes into the object definitions of the host
+	 *         and its services, computed the first time it is needed
+	 */
+	public long getFingerprint() {
+		if ( fingerprint == null ) {
+			fingerprint = new Fingerprint()
+					.add( name )
+					.add( alias )
+					.add( address )
+					.add( getTemplateFingerprint() )
+					.addUnordered( services, Service::getFingerprint )
+					.get();
+		}
+		return fingerprint;
 	}
 
 
-	public static boolean areEquivalent( Host host1, Host host2 ) {
-
-		boolean equivalent = true;
-
-		if ( !host1.getName().equals( host2.getName() ) ) {
-			equivalent = false;
-		} else if ( !host1.getAlias().equals( host2.getAlias() ) ) {
-			equivalent = false;
-		} else if ( !host1.getAddress().equals( host2.getAddress() ) ) {
-			equivalent = false;
-		} else if ( !host1.getCheckPeriod().equals( host2.getCheckPeriod() ) ) {
-			equivalent = false;
-		} else if ( !host1.getNotificationPeriod().equals( host2.getNotificationPeriod() ) ) {
-			equivalent = false;
-		} else if ( host1.getMaxCheckAttempts() != host2.getMaxCheckAttempts() ) {
-			equivalent = false;
-		} else if ( host1.getNotificationInterval() != host2.getNotificationInterval() ) {
-			equivalent = false;
-		} else if ( host1.getCheckInterval() != host2.getCheckInterval() ) {
-			equivalent = false;
-		} else if ( !Service.areEquivalent( host1.getServices(), host2.getServices() ) ) {
-			equivalent = false;
-		} else if ( !NagiosUtil.areEquivalent( host1.getContactGroups(), host2.getContactGroups() ) ) {
-			equivalent = false;
+	private long getTemplateFingerprint() {
+		if ( templateFingerprint == null ) {
+			templateFingerprint = new Fingerprint()
+					.add( maxCheckAttempts )
+					.add( checkInterval )
+					.add( checkPeriod )
+					.add( notificationInterval )
+					.add( notificationPeriod )
+					.add( notificationsEnabled )
+					.addUnordered( contactGroups )
+					.get();
 		}
+		return templateFingerprint;
+	}
 
-		return equivalent;
 
+	public static boolean areEquivalent( List<Host> hosts1, List<Host> hosts2 ) {
+		return Fingerprint.areEquivalent( hosts1, hosts2, Host::getFingerprint );
+	}
+
+
+	public static boolean areEquivalent( Host host1, Host host2 ) {
+		return host1.getFingerprint() == host2.getFingerprint();
 	}
 
 }
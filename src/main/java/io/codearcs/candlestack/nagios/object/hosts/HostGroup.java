@@ -1,9 +1,11 @@
 package io.codearcs.candlestack.nagios.object.hosts;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import io.codearcs.candlestack.nagios.object.Fingerprint;
 import io.codearcs.candlestack.nagios.object.NagiosObject;
 
 
@@ -17,6 +19,8 @@ public class HostGroup implements NagiosObject {
 
 	private List<Host> hosts;
 
+	private Long fingerprint;
+
 
 	public HostGroup( String name, String alias ) {
 		this.name = name;
@@ -43,6 +47,7 @@ public class HostGroup implements NagiosObject {
 
 	public void addHost( Host host ) {
 		hosts.add( host );
+		fingerprint = null;
 	}
 
 
@@ -52,77 +57,61 @@ public class HostGroup implements NagiosObject {
 
 
 	@Override
-	public String getObjectDefinitions() {
-		StringBuilder sb = new StringBuilder( "define hostgroup{\n" );
-
-		sb.append( "\thostgroup_name\t" );
-		sb.append( name );
-		sb.append( "\n" );
-
-		sb.append( "\talias\t" );
-		sb.append( alias );
-		sb.append( "\n" );
-
-
-		sb.append( "\tmembers\t" );
-		sb.append( hosts.stream().map( host -> host.getName() ).collect( Collectors.joining( "," ) ) );
-		sb.append( "\n" );
-
-		sb.append( "}\n\n" );
+	public void writeObjectDefinitions( Appendable out ) throws IOException {
+		writeHostGroupDefinition( out );
 
 		for ( Host host : hosts ) {
-			sb.append( host.getObjectDefinitions() );
+			host.writeObjectDefinitions( out );
 		}
-
-		return sb.toString();
 	}
 
 
-	public static boolean areEquivalent( List<HostGroup> hostGroups1, List<HostGroup> hostGroups2 ) {
+	/**
+	 * Writes the definition of just the hostgroup itself, without the hosts that are its members.
+	 */
+	public void writeHostGroupDefinition( Appendable out ) throws IOException {
+		out.append( "define hostgroup{\n" );
 
-		boolean equivalent = true;
+		out.append( "\thostgroup_name\t" );
+		out.append( name );
+		out.append( "\n" );
 
-		if ( hostGroups1.size() != hostGroups2.size() ) {
-			equivalent = false;
-		} else {
+		out.append( "\talias\t" );
+		out.append( alias );
+		out.append( "\n" );
 
-			for ( HostGroup hostGroup1 : hostGroups1 ) {
 
-				boolean foundEquivalentHostGroup = false;
-				for ( HostGroup hostGroup2 : hostGroups2 ) {
-					if ( areEquivalent( hostGroup1, hostGroup2 ) ) {
-						foundEquivalentHostGroup = true;
-						break;
-					}
-				}
+		out.append( "\tmembers\t" );
+		out.append( hosts.stream().map( host -> host.getName() ).collect( Collectors.joining( "," ) ) );
+		out.append( "\n" );
 
-				if ( !foundEquivalentHostGroup ) {
-					equivalent = false;
-					break;
-				}
+		out.append( "}\n\n" );
+	}
 
-			}
 
+	/**
+	 * @return a fingerprint of everything that goes into the object definitions of the host group
+	 *         and its hosts, computed the first time it is needed
+	 */
+	public long getFingerprint() {
+		if ( fingerprint == null ) {
+			fingerprint = new Fingerprint()
+					.add( name )
+					.add( alias )
+					.addUnordered( hosts, Host::getFingerprint )
+					.get();
 		}
+		return fingerprint;
+	}
 
-		return equivalent;
 
+	public static boolean areEquivalent( List<HostGroup> hostGroups1, List<HostGroup> hostGroups2 ) {
+		return Fingerprint.areEquivalent( hostGroups1, hostGroups2, HostGroup::getFingerprint );
 	}
 
 
 	public static boolean areEquivalent( HostGroup hostGroup1, HostGroup hostGroup2 ) {
-
-		boolean equivalent = true;
-		if ( !hostGroup1.getName().equals( hostGroup2.getName() ) ) {
-			equivalent = false;
-		} else if ( !hostGroup1.getAlias().equals( hostGroup2.getAlias() ) ) {
-			equivalent = false;
-		} else if ( !Host.areEquivalent( hostGroup1.getHosts(), hostGroup2.getHosts() ) ) {
-			equivalent = false;
-		}
-
-		return equivalent;
+		return hostGroup1.getFingerprint() == hostGroup2.getFingerprint();
 	}
 
-
 }
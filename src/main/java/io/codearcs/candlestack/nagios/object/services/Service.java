@@ -1,12 +1,14 @@
 package io.codearcs.candlestack.nagios.object.services;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import io.codearcs.candlestack.nagios.NagiosUtil;
+import io.codearcs.candlestack.nagios.check.MetricCheck;
+import io.codearcs.candlestack.nagios.object.Fingerprint;
 import io.codearcs.candlestack.nagios.object.NagiosObject;
 import io.codearcs.candlestack.nagios.object.timeperiod.TimePeriod;
 
@@ -17,6 +19,8 @@ import io.codearcs.candlestack.nagios.object.timeperiod.TimePeriod;
  */
 public class Service implements NagiosObject {
 
+	private static final String TEMPLATE_NAME_PREFIX = "candlestack-service-";
+
 	private final String hostName, description, checkCommand, notes;
 
 	private final Set<String> contactGroups;
@@ -27,6 +31,12 @@ public class Service implements NagiosObject {
 
 	private boolean notificationsEnabled;
 
+	private MetricCheck metricCheck;
+
+	private int freshnessThreshold;
+
+	private Long fingerprint, templateFingerprint;
+
 
 	public Service( String description, String hostName, String checkCommand, String notes, String notificationPeriod, Set<String> contactGroups ) {
 
@@ -108,120 +118,178 @@ public class Service implements NagiosObject {
 	}
 
 
-	@Override
-	public String getObjectDefinitions() {
-		StringBuilder sb = new StringBuilder( "define service{\n" );
+	/**
+	 * Turns the service into a passive check whose results are submitted by the CheckEngine
+	 * evaluating the provided MetricCheck. The check command is kept so Nagios can still run
+	 * it should no result have been submitted within the freshness threshold.
+	 */
+	public void setMetricCheck( MetricCheck metricCheck, int freshnessThreshold ) {
+		this.metricCheck = metricCheck;
+		this.freshnessThreshold = freshnessThreshold;
+		fingerprint = null;
+		templateFingerprint = null;
+	}
+
+
+	public MetricCheck getMetricCheck() {
+		return metricCheck;
+	}
+
+
+	public boolean isPassive() {
+		return metricCheck != null;
+	}
+
+
+	public int getFreshnessThreshold() {
+		return freshnessThreshold;
+	}
+
+
+	/**
+	 * @return the name of the service template holding the settings this service shares
+	 *         with every other service configured the same way
+	 */
+	public String getTemplateName() {
+		return TEMPLATE_NAME_PREFIX + Long.toHexString( getTemplateFingerprint() );
+	}
+
 
-		sb.append( "\thost_name\t" );
-		sb.append( hostName );
-		sb.append( "\n" );
+	/**
+	 * Writes the service template the object definition of the service uses, which must be
+	 * written to the Nagios configuration once alongside the service.
+	 */
+	public void writeTemplateDefinition( Appendable out ) throws IOException {
+		out.append( "define service{\n" );
 
-		sb.append( "\tservice_description\t" );
-		sb.append( description );
-		sb.append( "\n" );
+		out.append( "\tname\t" );
+		out.append( getTemplateName() );
+		out.append( "\n" );
 
-		sb.append( "\tnotes\t" );
-		sb.append( notes );
-		sb.append( "\n" );
+		out.append( "\tregister\t0\n" );
 
-		sb.append( "\tcheck_command\t" );
-		sb.append( checkCommand );
-		sb.append( "\n" );
+		out.append( "\tmax_check_attempts\t" );
+		out.append( String.valueOf( maxCheckAttempts ) );
+		out.append( "\n" );
 
-		sb.append( "\tmax_check_attempts\t" );
-		sb.append( maxCheckAttempts );
-		sb.append( "\n" );
+		out.append( "\tcheck_interval\t" );
+		out.append( String.valueOf( checkInterval ) );
+		out.append( "\n" );
 
-		sb.append( "\tcheck_interval\t" );
-		sb.append( checkInterval );
-		sb.append( "\n" );
+		out.append( "\tretry_interval\t" );
+		out.append( String.valueOf( retryInterval ) );
+		out.append( "\n" );
 
-		sb.append( "\tretry_interval\t" );
-		sb.append( retryInterval );
-		sb.append( "\n" );
+		out.append( "\tnotification_interval\t" );
+		out.append( String.valueOf( notificationInterval ) );
+		out.append( "\n" );
 
-		sb.append( "\tnotification_interval\t" );
-		sb.append( notificationInterval );
-		sb.append( "\n" );
+		out.append( "\tnotifications_enabled\t" );
+		out.append( notificationsEnabled ? "1" : "0" );
+		out.append( "\n" );
 
-		sb.append( "\tnotifications_enabled\t" );
-		sb.append( notificationsEnabled ? "1" : "0" );
-		sb.append( "\n" );
+		if ( isPassive() ) {
+			out.append( "\tactive_checks_enabled\t0\n" );
+			out.append( "\tpassive_checks_enabled\t1\n" );
+			out.append( "\tcheck_freshness\t1\n" );
 
-		sb.append( "\tcheck_period\t" );
-		sb.append( checkPeriod );
-		sb.append( "\n" );
+			out.append( "\tfreshness_threshold\t" );
+			out.append( String.valueOf( freshnessThreshold ) );
+			out.append( "\n" );
+		}
 
-		sb.append( "\tnotification_period\t" );
-		sb.append( notificationPeriod );
-		sb.append( "\n" );
+		out.append( "\tcheck_period\t" );
+		out.append( checkPeriod );
+		out.append( "\n" );
 
-		sb.append( "\tcontact_groups\t" );
-		sb.append( contactGroups.stream().collect( Collectors.joining( "," ) ) );
-		sb.append( "\n" );
+		out.append( "\tnotification_period\t" );
+		out.append( notificationPeriod );
+		out.append( "\n" );
 
-		sb.append( "}\n\n" );
+		out.append( "\tcontact_groups\t" );
+		out.append( contactGroups.stream().sorted().collect( Collectors.joining( "," ) ) );
+		out.append( "\n" );
 
-		return sb.toString();
+		out.append( "}\n\n" );
 	}
 
 
-	public static boolean areEquivalent( List<Service> services1, List<Service> services2 ) {
-		boolean equivalent = true;
+	/**
+	 * Writes only what is specific to this service, everything else comes from the service
+	 * template, see {@link #writeTemplateDefinition(Appendable)}.
+	 */
+	@Override
+	public void writeObjectDefinitions( Appendable out ) throws IOException {
+		out.append( "define service{\n" );
 
-		if ( services1.size() != services2.size() ) {
-			equivalent = false;
-		} else {
+		out.append( "\tuse\t" );
+		out.append( getTemplateName() );
+		out.append( "\n" );
 
-			for ( Service service1 : services1 ) {
+		out.append( "\thost_name\t" );
+		out.append( hostName );
+		out.append( "\n" );
 
-				boolean foundEquivalentService = false;
-				for ( Service service2 : services2 ) {
-					if ( areEquivalent( service1, service2 ) ) {
-						foundEquivalentService = true;
-						break;
-					}
-				}
+		out.append( "\tservice_description\t" );
+		out.append( description );
+		out.append( "\n" );
 
-				if ( !foundEquivalentService ) {
-					equivalent = false;
-					break;
-				}
-			}
+		out.append( "\tnotes\t" );
+		out.append( notes );
+		out.append( "\n" );
 
-		}
+		out.append( "\tcheck_command\t" );
+		out.append( checkCommand );
+		out.append( "\n" );
 
-		return equivalent;
+		out.append( "}\n\n" );
 	}
 
 
-	public static boolean areEquivalent( Service service1, Service service2 ) {
-		boolean equivalent = true;
-
-		if ( !service1.getHostName().equals( service2.getHostName() ) ) {
-			equivalent = false;
-		} else if ( !service1.getDescription().equals( service2.getDescription() ) ) {
-			equivalent = false;
-		} else if ( !service1.getCheckCommand().equals( service2.getCheckCommand() ) ) {
-			equivalent = false;
-		} else if ( !service1.getCheckPeriod().equals( service2.getCheckPeriod() ) ) {
-			equivalent = false;
-		} else if ( !service1.getNotificationPeriod().equals( service2.getNotificationPeriod() ) ) {
-			equivalent = false;
-		} else if ( service1.getCheckInterval() != service2.getCheckInterval() ) {
-			equivalent = false;
-		} else if ( service1.getRetryInterval() != service2.getRetryInterval() ) {
-			equivalent = false;
-		} else if ( service1.getNotificationInterval() != service2.getNotificationInterval() ) {
-			equivalent = false;
-		} else if ( service1.getMaxCheckAttempts() != service2.getMaxCheckAttempts() ) {
-			equivalent = false;
-		} else if ( !NagiosUtil.areEquivalent( service1.getContactGroups(), service2.getContactGroups() ) ) {
-			equivalent = false;
+	/**
+	 * @return a fingerprint of everything that goes into the object definition of the service,
+	 *         computed the first time it is needed
+	 */
+	public long getFingerprint() {
+		if ( fingerprint == null ) {
+			fingerprint = new Fingerprint()
+					.add( hostName )
+					.add( description )
+					.add( notes )
+					.add( checkCommand )
+					.add( getTemplateFingerprint() )
+					.get();
 		}
+		return fingerprint;
+	}
+
 
-		return equivalent;
+	private long getTemplateFingerprint() {
+		if ( templateFingerprint == null ) {
+			templateFingerprint = new Fingerprint()
+					.add( maxCheckAttempts )
+					.add( checkInterval )
+					.add( retryInterval )
+					.add( notificationInterval )
+					.add( notificationsEnabled )
+					.add( isPassive() )
+					.add( freshnessThreshold )
+					.add( checkPeriod )
+					.add( notificationPeriod )
+					.addUnordered( contactGroups )
+					.get();
+		}
+		return templateFingerprint;
+	}
+
+
+	public static boolean areEquivalent( List<Service> services1, List<Service> services2 ) {
+		return Fingerprint.areEquivalent( services1, services2, Service::getFingerprint );
 	}
 
 
+	public static boolean areEquivalent( Service service1, Service service2 ) {
+		return service1.getFingerprint() == service2.getFingerprint();
+	}
+
 }
@@ -1,5 +1,6 @@
 package io.codearcs.candlestack.nagios.object.timeperiod;
 
+import java.io.IOException;
 import java.time.DayOfWeek;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -43,29 +44,27 @@ public class TimePeriod implements NagiosObject {
 
 
 	@Override
-	public String getObjectDefinitions() {
-		StringBuilder sb = new StringBuilder( "define timeperiod{\n" );
+	public void writeObjectDefinitions( Appendable out ) throws IOException {
+		out.append( "define timeperiod{\n" );
 
-		sb.append( "\ttimeperiod_name\t" );
-		sb.append( name );
-		sb.append( "\n" );
+		out.append( "\ttimeperiod_name\t" );
+		out.append( name );
+		out.append( "\n" );
 
-		sb.append( "\talias\t" );
-		sb.append( alias );
-		sb.append( "\n" );
+		out.append( "\talias\t" );
+		out.append( alias );
+		out.append( "\n" );
 
 		for ( Weekday weekday : weekdays ) {
-			sb.append( "\t" );
-			sb.append( weekday.getDay().name().toLowerCase() );
-			sb.append( "\t" );
+			out.append( "\t" );
+			out.append( weekday.getDay().name().toLowerCase() );
+			out.append( "\t" );
 
-			sb.append( weekday.getTimeRanges().stream().map( timeRange -> timeRange.toString() ).collect( Collectors.joining( "," ) ) );
-			sb.append( "\n" );
+			out.append( weekday.getTimeRanges().stream().map( timeRange -> timeRange.toString() ).collect( Collectors.joining( "," ) ) );
+			out.append( "\n" );
 		}
 
-		sb.append( "}\n\n" );
-
-		return sb.toString();
+		out.append( "}\n\n" );
 	}
 
 
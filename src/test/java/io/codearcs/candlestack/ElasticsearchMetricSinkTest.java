@@ -0,0 +1,229 @@
+package io.codearcs.candlestack;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Runs the sink against a local HttpServer standing in for the Elasticsearch bulk API.
+ */
+public class ElasticsearchMetricSinkTest extends TestCase {
+
+	private static final String OK_RESPONSE = "{\"took\":1,\"errors\":false,\"items\":[]}";
+
+	// 2017-07-14T02:40:00Z
+	private static final long METRIC_DATE = 1500000000000L;
+
+
+	private HttpServer server;
+
+	private List<String> requestBodies;
+
+	private LinkedList<Integer> statusCodes;
+
+	private LinkedList<String> responses;
+
+	private int defaultStatusCode;
+
+	private File spillFile;
+
+
+	@Override
+	protected void setUp() throws Exception {
+
+		requestBodies = Collections.synchronizedList( new ArrayList<>() );
+		statusCodes = new LinkedList<>();
+		responses = new LinkedList<>();
+		defaultStatusCode = 200;
+
+		server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+		server.createContext( "/_bulk", this::handleBulkRequest );
+		server.start();
+
+		spillFile = new File( System.getProperty( "java.io.tmpdir" ), "candlestack_" + getName() + "_" + System.nanoTime() + "_spill.ndjson" );
+
+		String propertyKeyPrefix = "metrics.sink." + getName();
+		TestProperties.set( propertyKeyPrefix + ".url", "http://127.0.0.1:" + server.getAddress().getPort() );
+		TestProperties.set( propertyKeyPrefix + ".spill.file", spillFile.getPath() );
+		TestProperties.set( propertyKeyPrefix + ".max.retries", "1" );
+		TestProperties.set( propertyKeyPrefix + ".initial.backoff.ms", "1" );
+		TestProperties.set( propertyKeyPrefix + ".max.backoff.ms", "1" );
+		TestProperties.set( propertyKeyPrefix + ".timeout.ms", "5000" );
+
+	}
+
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.stop( 0 );
+		spillFile.delete();
+		new File( spillFile.getPath() + ".replay" ).delete();
+	}
+
+
+	public void testBulkRequestFormat() throws Exception {
+
+		ElasticsearchMetricSink sink = new ElasticsearchMetricSink( getName() );
+		sink.write( new MetricRecord( "aws_ec2", "i-0abc", METRIC_DATE, "CPUUtilization", 42, 0, false ) );
+		sink.write( new MetricRecord( "aws_ec2", "i-0abc", METRIC_DATE + 1000, "CPUUtilization", 0, 1.5, true ) );
+		sink.flush();
+
+		assertEquals( 1, requestBodies.size() );
+		String[] lines = requestBodies.get( 0 ).split( "\n" );
+		assertEquals( 4, lines.length );
+		assertTrue( requestBodies.get( 0 ).endsWith( "\n" ) );
+
+		assertEquals( "{\"index\":{\"_index\":\"candlestack-2017.07.14\",\"_type\":\"logs\"}}", lines[0] );
+		assertEquals( lines[0], lines[2] );
+
+		JsonObject first = new JsonParser().parse( lines[1] ).getAsJsonObject();
+		assertEquals( "i_0abc", first.get( "instanceId" ).getAsString() );
+		assertEquals( "CPUUtilization", first.get( "metric_name" ).getAsString() );
+		assertEquals( "42", first.get( "metric_value" ).toString() );
+		assertEquals( "aws_ec2", first.get( "type" ).getAsString() );
+
+		JsonObject second = new JsonParser().parse( lines[3] ).getAsJsonObject();
+		assertEquals( "1.5", second.get( "metric_value" ).toString() );
+
+		assertFalse( spillFile.exists() );
+
+	}
+
+
+	public void testOnlyRejectedItemsAreRetried() throws Exception {
+
+		// The first item is indexed, the second pushed back on and the third can never be indexed
+		queueResponse( 200, "{\"took\":1,\"errors\":true,\"items\":["
+				+ "{\"index\":{\"status\":201}},"
+				+ "{\"index\":{\"status\":429,\"error\":{\"type\":\"es_rejected_execution_exception\"}}},"
+				+ "{\"index\":{\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\"}}}]}" );
+
+		ElasticsearchMetricSink sink = new ElasticsearchMetricSink( getName() );
+		sink.write( new MetricRecord( "aws_sqs", "queue-1", METRIC_DATE, "ApproximateNumberOfMessages", 1, 0, false ) );
+		sink.write( new MetricRecord( "aws_sqs", "queue-2", METRIC_DATE, "ApproximateNumberOfMessages", 2, 0, false ) );
+		sink.write( new MetricRecord( "aws_sqs", "queue-3", METRIC_DATE, "ApproximateNumberOfMessages", 3, 0, false ) );
+		sink.flush();
+
+		assertEquals( 2, requestBodies.size() );
+		String[] retried = requestBodies.get( 1 ).split( "\n" );
+		assertEquals( 2, retried.length );
+		assertEquals( "queue_2", new JsonParser().parse( retried[1] ).getAsJsonObject().get( "instanceId" ).getAsString() );
+
+		assertFalse( spillFile.exists() );
+
+	}
+
+
+	public void testOutageIsSpilledAndReplayed() throws Exception {
+
+		queueResponse( 503, "" );
+		queueResponse( 503, "" );
+
+		ElasticsearchMetricSink sink = new ElasticsearchMetricSink( getName() );
+		sink.write( new MetricRecord( "aws_rds", "db-1", METRIC_DATE, "CPUUtilization", 1, 0, false ) );
+		sink.write( new MetricRecord( "aws_rds", "db-1", METRIC_DATE + 1000, "CPUUtilization", 2, 0, false ) );
+		sink.flush();
+
+		// The first attempt and its one retry both failed so the batch was spilled
+		assertEquals( 2, requestBodies.size() );
+		assertTrue( spillFile.exists() );
+		assertEquals( 4, Files.readAllLines( spillFile.toPath() ).size() );
+
+		// Wait out the outage backoff, after which the next flush sends the new batch and replays the spill file
+		Thread.sleep( 10 );
+		sink.write( new MetricRecord( "aws_rds", "db-1", METRIC_DATE + 2000, "CPUUtilization", 3, 0, false ) );
+		sink.flush();
+
+		assertEquals( 4, requestBodies.size() );
+		assertEquals( 2, requestBodies.get( 2 ).split( "\n" ).length );
+		assertEquals( requestBodies.get( 0 ), requestBodies.get( 3 ) );
+		assertFalse( spillFile.exists() );
+		assertFalse( new File( spillFile.getPath() + ".replay" ).exists() );
+
+	}
+
+
+	public void testRetriesAreBoundedByMaxRetryTime() throws Exception {
+
+		String propertyKeyPrefix = "metrics.sink." + getName();
+		TestProperties.set( propertyKeyPrefix + ".max.retries", "100" );
+		TestProperties.set( propertyKeyPrefix + ".initial.backoff.ms", "100" );
+		TestProperties.set( propertyKeyPrefix + ".max.backoff.ms", "100" );
+		TestProperties.set( propertyKeyPrefix + ".max.retry.ms", "250" );
+		defaultStatusCode = 429;
+
+		ElasticsearchMetricSink sink = new ElasticsearchMetricSink( getName() );
+		sink.write( new MetricRecord( "aws_s3", "bucket", METRIC_DATE, "LastModified", 1, 0, false ) );
+
+		long start = System.currentTimeMillis();
+		sink.flush();
+		long elapsed = System.currentTimeMillis() - start;
+
+		// Attempts at roughly 0, 100 and 200 ms, another at 300 ms would be past the max retry time
+		assertEquals( 3, requestBodies.size() );
+		assertTrue( "flush took " + elapsed + " ms", elapsed < 1000 );
+		assertEquals( 2, Files.readAllLines( spillFile.toPath() ).size() );
+
+		// While the cluster is unavailable further batches go straight to the spill file
+		sink.write( new MetricRecord( "aws_s3", "bucket", METRIC_DATE + 1000, "LastModified", 2, 0, false ) );
+		sink.flush();
+		assertEquals( 3, requestBodies.size() );
+		assertEquals( 4, Files.readAllLines( spillFile.toPath() ).size() );
+
+	}
+
+
+	private synchronized void queueResponse( int statusCode, String response ) {
+		statusCodes.add( statusCode );
+		responses.add( response );
+	}
+
+
+	private void handleBulkRequest( HttpExchange exchange ) throws IOException {
+
+		InputStream in = exchange.getRequestBody();
+		if ( "gzip".equals( exchange.getRequestHeaders().getFirst( "Content-Encoding" ) ) ) {
+			in = new GZIPInputStream( in );
+		}
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ( ( read = in.read( buffer ) ) != -1 ) {
+			body.write( buffer, 0, read );
+		}
+		requestBodies.add( new String( body.toByteArray(), StandardCharsets.UTF_8 ) );
+
+		int statusCode;
+		String response;
+		synchronized ( this ) {
+			statusCode = statusCodes.isEmpty() ? defaultStatusCode : statusCodes.removeFirst();
+			response = responses.isEmpty() ? ( statusCode == 200 ? OK_RESPONSE : "" ) : responses.removeFirst();
+		}
+
+		byte[] responseBytes = response.getBytes( StandardCharsets.UTF_8 );
+		exchange.sendResponseHeaders( statusCode, responseBytes.length == 0 ? -1 : responseBytes.length );
+		try ( OutputStream out = exchange.getResponseBody() ) {
+			out.write( responseBytes );
+		}
+
+	}
+
+}
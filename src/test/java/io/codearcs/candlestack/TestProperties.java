@@ -0,0 +1,17 @@
+package io.codearcs.candlestack;
+
+import java.util.Properties;
+
+
+/**
+ * The global properties can only be initialized once per JVM, so tests set the properties
+ * they need on the shared instance rather than each initializing their own.
+ */
+public class TestProperties {
+
+	public synchronized static void set( String propertyKey, String value ) {
+		GlobalCandlestackProperties.init( new Properties() );
+		GlobalCandlestackProperties.globalProps.setProperty( propertyKey, value );
+	}
+
+}
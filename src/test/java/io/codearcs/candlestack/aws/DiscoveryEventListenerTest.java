@@ -0,0 +1,393 @@
+package io.codearcs.candlestack.aws;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Filter;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.InstanceState;
+import com.amazonaws.services.ec2.model.Reservation;
+import com.amazonaws.services.ec2.model.Tag;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.google.gson.JsonObject;
+
+import io.codearcs.candlestack.TestProperties;
+import io.codearcs.candlestack.aws.ec2.EC2Inventory;
+import junit.framework.TestCase;
+
+
+/**
+ * Runs the listener against in memory stand-ins for the SQS queue and EC2, applying the
+ * events to the EC2Inventory.
+ */
+public class DiscoveryEventListenerTest extends TestCase {
+
+	private static final String QUEUE_URL = "https://sqs.us-east-1.amazonaws.com/123456789012/candlestack-discovery";
+
+	private static final long AWAIT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis( 10 );
+
+
+	private LocalSQS sqs;
+
+	private LocalEC2 ec2;
+
+	private AtomicInteger changes;
+
+	private DiscoveryEventListener listener;
+
+
+	@Override
+	protected void setUp() throws Exception {
+
+		TestProperties.set( "aws.region", "us-east-1" );
+		TestProperties.set( "aws.ec2.enabled", "true" );
+		TestProperties.set( "aws.eb.enabled", "false" );
+		TestProperties.set( "aws.rds.enabled", "false" );
+		TestProperties.set( "aws.discovery.queue.url", QUEUE_URL );
+		TestProperties.set( "aws.ec2.new.resource.monitor.delay.min", "0" );
+
+		sqs = new LocalSQS();
+		ec2 = new LocalEC2();
+		ec2.put( createInstance( "i-1", 16, "running", "web-1" ) );
+
+		// Point the inventory at the EC2 stand-in and load it so the events have something to apply to
+		EC2Inventory.destroy();
+		Field ec2ClientField = EC2Inventory.class.getDeclaredField( "ec2Client" );
+		ec2ClientField.setAccessible( true );
+		ec2ClientField.set( EC2Inventory.getInstance(), ec2.client );
+		assertEquals( set( "i-1" ), getInventoryIds() );
+		assertEquals( 1, ec2.describeCount.get() );
+
+		changes = new AtomicInteger();
+		listener = new DiscoveryEventListener( changes::incrementAndGet, sqs.client, ec2.client );
+
+	}
+
+
+	@Override
+	protected void tearDown() throws Exception {
+		listener.shutdown();
+		listener.join( AWAIT_TIMEOUT_MS );
+		EC2Inventory.destroy();
+		AWSClientRegistry.destroy();
+	}
+
+
+	public void testRunningInstanceIsAdded() throws Exception {
+
+		ec2.put( createInstance( "i-2", 16, "running", "web-2" ) );
+		sqs.send( createEC2Event( "i-2", "running" ).toString() );
+		consumeQueue();
+
+		// Only the changed instance was described and the inventory wasn't reloaded to pick it up
+		assertEquals( set( "i-1", "i-2" ), getInventoryIds() );
+		assertEquals( 2, ec2.describeCount.get() );
+		assertEquals( 1, changes.get() );
+		assertEquals( 1, sqs.deletedCount.get() );
+
+	}
+
+
+	public void testSnsWrappedStoppedEventRemovesInstance() throws Exception {
+
+		ec2.put( createInstance( "i-1", 80, "stopped", "web-1" ) );
+
+		JsonObject notification = new JsonObject();
+		notification.addProperty( "Type", "Notification" );
+		notification.addProperty( "Message", createEC2Event( "i-1", "stopped" ).toString() );
+		sqs.send( notification.toString() );
+		consumeQueue();
+
+		assertEquals( set(), getInventoryIds() );
+		assertEquals( 2, ec2.describeCount.get() );
+		assertEquals( 1, changes.get() );
+		assertEquals( 1, sqs.deletedCount.get() );
+
+	}
+
+
+	public void testPendingEventIsIgnored() throws Exception {
+
+		ec2.put( createInstance( "i-3", 0, "pending", "web-3" ) );
+		sqs.send( createEC2Event( "i-3", "pending" ).toString() );
+		consumeQueue();
+
+		// Nothing to describe until its running event arrives, but the message is still done with
+		assertEquals( set( "i-1" ), getInventoryIds() );
+		assertEquals( 1, ec2.describeCount.get() );
+		assertEquals( 0, changes.get() );
+		assertEquals( 1, sqs.deletedCount.get() );
+
+	}
+
+
+	public void testInstanceWithoutNameTagIsNotAdded() throws Exception {
+
+		ec2.put( createInstance( "i-4", 16, "running", null ) );
+		sqs.send( createEC2Event( "i-4", "running" ).toString() );
+		consumeQueue();
+
+		// Same rules as describing them all, so an untagged instance isn't monitored
+		assertEquals( set( "i-1" ), getInventoryIds() );
+		assertEquals( 2, ec2.describeCount.get() );
+		assertEquals( 1, sqs.deletedCount.get() );
+
+	}
+
+
+	public void testInvalidMessagesAreDeleted() throws Exception {
+
+		sqs.send( "not an event" );
+		sqs.send( "{\"Type\":\"Notification\",\"Message\":\"{}\"}" );
+		consumeQueue();
+
+		assertEquals( set( "i-1" ), getInventoryIds() );
+		assertEquals( 1, ec2.describeCount.get() );
+		assertEquals( 0, changes.get() );
+		assertEquals( 2, sqs.deletedCount.get() );
+
+	}
+
+
+	/**
+	 * Runs the listener until every message has been received and deleted, then stops it so
+	 * it has finished with the messages before anything is checked.
+	 */
+	private void consumeQueue() throws Exception {
+
+		listener.start();
+
+		long deadline = System.currentTimeMillis() + AWAIT_TIMEOUT_MS;
+		while ( !sqs.isDrained() ) {
+			assertTrue( "queue was not drained", System.currentTimeMillis() < deadline );
+			Thread.sleep( 10 );
+		}
+
+		listener.shutdown();
+		listener.join( AWAIT_TIMEOUT_MS );
+		assertFalse( listener.isAlive() );
+
+	}
+
+
+	private Set<String> getInventoryIds() throws Exception {
+		Set<String> ids = new TreeSet<>();
+		for ( Instance instance : EC2Inventory.getInstance().getEligibleInstances() ) {
+			ids.add( instance.getInstanceId() );
+		}
+		return ids;
+	}
+
+
+	private static Set<String> set( String... values ) {
+		Set<String> set = new TreeSet<>();
+		for ( String value : values ) {
+			set.add( value );
+		}
+		return set;
+	}
+
+
+	private static Instance createInstance( String instanceId, int stateCode, String stateName, String name ) {
+		Instance instance = new Instance()
+				.withInstanceId( instanceId )
+				.withState( new InstanceState().withCode( stateCode ).withName( stateName ) )
+				.withLaunchTime( new Date( System.currentTimeMillis() - TimeUnit.HOURS.toMillis( 1 ) ) );
+		if ( name != null ) {
+			instance.withTags( new Tag( "Name", name ) );
+		}
+		return instance;
+	}
+
+
+	private static JsonObject createEC2Event( String instanceId, String state ) {
+		JsonObject detail = new JsonObject();
+		detail.addProperty( "instance-id", instanceId );
+		detail.addProperty( "state", state );
+
+		JsonObject event = new JsonObject();
+		event.addProperty( "source", "aws.ec2" );
+		event.addProperty( "detail-type", "EC2 Instance State-change Notification" );
+		event.addProperty( "time", "2017-07-14T02:40:00Z" );
+		event.add( "detail", detail );
+		return event;
+	}
+
+
+	private static <T> T createProxy( Class<T> type, InvocationHandler handler ) {
+		return type.cast( Proxy.newProxyInstance( type.getClassLoader(), new Class<?>[] { type }, handler ) );
+	}
+
+
+	/**
+	 * A queue that hands out visible messages and holds them in flight until deleted.
+	 */
+	private static class LocalSQS implements InvocationHandler {
+
+		private final AmazonSQS client = createProxy( AmazonSQS.class, this );
+
+		private final LinkedList<Message> visible = new LinkedList<>();
+
+		private final Map<String, Message> inFlight = new LinkedHashMap<>();
+
+		private final AtomicInteger deletedCount = new AtomicInteger();
+
+		private int nextId;
+
+
+		synchronized void send( String body ) {
+			String id = String.valueOf( nextId++ );
+			visible.add( new Message().withMessageId( "message-" + id ).withReceiptHandle( "receipt-" + id ).withBody( body ) );
+			notifyAll();
+		}
+
+
+		synchronized boolean isDrained() {
+			return visible.isEmpty() && inFlight.isEmpty();
+		}
+
+
+		@Override
+		public synchronized Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+			switch ( method.getName() ) {
+
+				case "receiveMessage":
+					ReceiveMessageRequest request = (ReceiveMessageRequest) args[0];
+					assertEquals( QUEUE_URL, request.getQueueUrl() );
+					if ( visible.isEmpty() ) {
+						// A short long poll, interrupted when the listener shuts down
+						try {
+							wait( 50 );
+						} catch ( InterruptedException e ) {
+							Thread.currentThread().interrupt();
+							throw new IllegalStateException( "receive interrupted", e );
+						}
+					}
+					List<Message> messages = new ArrayList<>();
+					while ( !visible.isEmpty() && messages.size() < request.getMaxNumberOfMessages() ) {
+						Message message = visible.removeFirst();
+						inFlight.put( message.getReceiptHandle(), message );
+						messages.add( message );
+					}
+					return new ReceiveMessageResult().withMessages( messages );
+
+				case "deleteMessageBatch":
+					DeleteMessageBatchRequest deleteRequest = (DeleteMessageBatchRequest) args[0];
+					assertEquals( QUEUE_URL, deleteRequest.getQueueUrl() );
+					for ( DeleteMessageBatchRequestEntry entry : deleteRequest.getEntries() ) {
+						assertNotNull( "unknown receipt handle " + entry.getReceiptHandle(), inFlight.remove( entry.getReceiptHandle() ) );
+						deletedCount.incrementAndGet();
+					}
+					return new DeleteMessageBatchResult();
+
+				case "toString":
+					return "LocalSQS";
+
+				default:
+					throw new UnsupportedOperationException( method.getName() );
+
+			}
+		}
+
+	}
+
+
+	/**
+	 * Describes instances applying the filters used by the inventory and the listener.
+	 */
+	private static class LocalEC2 implements InvocationHandler {
+
+		private final AmazonEC2 client = createProxy( AmazonEC2.class, this );
+
+		private final Map<String, Instance> instances = new LinkedHashMap<>();
+
+		private final AtomicInteger describeCount = new AtomicInteger();
+
+
+		synchronized void put( Instance instance ) {
+			instances.put( instance.getInstanceId(), instance );
+		}
+
+
+		@Override
+		public synchronized Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+			switch ( method.getName() ) {
+
+				case "describeInstances":
+					describeCount.incrementAndGet();
+					DescribeInstancesRequest request = (DescribeInstancesRequest) args[0];
+					List<Instance> matches = new ArrayList<>();
+					for ( Instance instance : instances.values() ) {
+						if ( matches( instance, request.getFilters() ) ) {
+							matches.add( instance );
+						}
+					}
+					return new DescribeInstancesResult().withReservations( new Reservation().withInstances( matches ) );
+
+				case "toString":
+					return "LocalEC2";
+
+				default:
+					throw new UnsupportedOperationException( method.getName() );
+
+			}
+		}
+
+
+		private static boolean matches( Instance instance, List<Filter> filters ) {
+			for ( Filter filter : filters ) {
+
+				boolean matches = false;
+				switch ( filter.getName() ) {
+
+					case "instance-id":
+						matches = filter.getValues().contains( instance.getInstanceId() );
+						break;
+
+					case "instance-state-name":
+						matches = filter.getValues().contains( instance.getState().getName() );
+						break;
+
+					case "tag-key":
+						for ( Tag tag : instance.getTags() ) {
+							matches |= filter.getValues().contains( tag.getKey() );
+						}
+						break;
+
+					default:
+						throw new UnsupportedOperationException( filter.getName() );
+
+				}
+
+				if ( !matches ) {
+					return false;
+				}
+
+			}
+			return true;
+		}
+
+	}
+
+}